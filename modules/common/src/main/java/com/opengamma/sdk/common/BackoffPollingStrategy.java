@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Polling strategy that backs off exponentially, up to a maximum delay.
+ */
+final class BackoffPollingStrategy implements PollingStrategy {
+
+  /**
+   * The standard strategy.
+   */
+  static final BackoffPollingStrategy STANDARD =
+      new BackoffPollingStrategy(Duration.ofMillis(50), 1.5, Duration.ofSeconds(1));
+
+  /** The initial delay, in nanoseconds. */
+  private final long initialNanos;
+  /** The multiplier. */
+  private final double multiplier;
+  /** The maximum delay, in nanoseconds. */
+  private final long maxNanos;
+
+  // creates an instance
+  BackoffPollingStrategy(Duration initialDelay, double multiplier, Duration maxDelay) {
+    Objects.requireNonNull(initialDelay, "initialDelay must not be null");
+    Objects.requireNonNull(maxDelay, "maxDelay must not be null");
+    if (initialDelay.isNegative() || initialDelay.isZero()) {
+      throw new IllegalArgumentException("initialDelay must be positive");
+    }
+    if (maxDelay.compareTo(initialDelay) < 0) {
+      throw new IllegalArgumentException("maxDelay must not be less than initialDelay");
+    }
+    if (!(multiplier >= 1)) {
+      throw new IllegalArgumentException("multiplier must be one or greater");
+    }
+    this.initialNanos = initialDelay.toNanos();
+    this.multiplier = multiplier;
+    this.maxNanos = maxDelay.toNanos();
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public PollingSchedule start(String key) {
+    return new Schedule(initialNanos);
+  }
+
+  @Override
+  public String toString() {
+    return "BackoffPollingStrategy[initial=" + Duration.ofNanos(initialNanos) + ", multiplier=" + multiplier +
+        ", max=" + Duration.ofNanos(maxNanos) + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  // the schedule for a single task
+  private final class Schedule implements PollingSchedule {
+    /** The next delay, in nanoseconds. */
+    private long nextNanos;
+
+    private Schedule(long firstNanos) {
+      this.nextNanos = firstNanos;
+    }
+
+    @Override
+    public Duration nextDelay() {
+      long delay = nextNanos;
+      nextNanos = (long) Math.min(delay * multiplier, maxNanos);
+      return Duration.ofNanos(delay);
+    }
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Polling strategy that sizes the first delay from a running model of past durations.
+ * <p>
+ * An exponentially weighted moving average of task duration is held for each key.
+ * The first delay is a fraction of that average, with the underlying strategy
+ * providing the delays thereafter.
+ */
+final class DurationModelPollingStrategy implements PollingStrategy {
+
+  /**
+   * The weight given to the most recent observation.
+   */
+  private static final double WEIGHT = 0.2;
+  /**
+   * The fraction of the average duration to wait before the first poll.
+   */
+  private static final double FIRST_POLL_FRACTION = 0.8;
+
+  /** The underlying strategy. */
+  private final PollingStrategy underlying;
+  /** The average duration in nanoseconds, keyed by task group. */
+  private final ConcurrentHashMap<String, Long> averages = new ConcurrentHashMap<>();
+
+  // creates an instance
+  DurationModelPollingStrategy(PollingStrategy underlying) {
+    this.underlying = Objects.requireNonNull(underlying, "underlying must not be null");
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public PollingStrategy withDurationModel() {
+    return this;
+  }
+
+  @Override
+  public PollingSchedule start(String key) {
+    Long average = averages.get(key);
+    PollingSchedule schedule = underlying.start(key);
+    long firstNanos = average != null ? (long) (average * FIRST_POLL_FRACTION) : 0;
+    return new Schedule(key, schedule, firstNanos);
+  }
+
+  // gets the average duration, for testing
+  Duration averageDuration(String key) {
+    Long average = averages.get(key);
+    return average != null ? Duration.ofNanos(average) : Duration.ZERO;
+  }
+
+  // records an observation
+  private void record(String key, long nanos) {
+    averages.merge(key, nanos, (old, obs) -> (long) (old * (1 - WEIGHT) + obs * WEIGHT));
+  }
+
+  @Override
+  public String toString() {
+    return "DurationModelPollingStrategy[" + underlying + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  // the schedule for a single task
+  private final class Schedule implements PollingSchedule {
+    /** The key. */
+    private final String key;
+    /** The underlying schedule. */
+    private final PollingSchedule underlying;
+    /** The start instant. */
+    private final long startNanos = System.nanoTime();
+    /** The first delay, zero once used or if there is no model yet. */
+    private long firstNanos;
+
+    private Schedule(String key, PollingSchedule underlying, long firstNanos) {
+      this.key = key;
+      this.underlying = underlying;
+      this.firstNanos = firstNanos;
+    }
+
+    @Override
+    public Duration nextDelay() {
+      if (firstNanos > 0) {
+        long delay = firstNanos;
+        firstNanos = 0;
+        return Duration.ofNanos(delay);
+      }
+      return underlying.nextDelay();
+    }
+
+    @Override
+    public void completed() {
+      underlying.completed();
+      record(key, System.nanoTime() - startNanos);
+    }
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common;
+
+import java.time.Duration;
+
+/**
+ * Strategy that determines how often the service is polled for the result of a long-running task.
+ * <p>
+ * Calculations are submitted to the service and then polled until they complete.
+ * A strategy controls the delay before each poll. For each task, {@link #start(String)}
+ * is called to obtain a {@link PollingSchedule} which provides the successive delays.
+ * <p>
+ * If the service sends a {@code Retry-After} header, the delay it specifies takes
+ * precedence over the delay provided by the schedule.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface PollingStrategy {
+
+  /**
+   * Obtains the standard strategy.
+   * <p>
+   * This polls quickly at first, then backs off exponentially by a factor of 1.5,
+   * starting at 50 milliseconds and capped at 1 second.
+   *
+   * @return the standard strategy
+   */
+  public static PollingStrategy standard() {
+    return BackoffPollingStrategy.STANDARD;
+  }
+
+  /**
+   * Obtains a strategy that polls at a fixed interval.
+   *
+   * @param interval  the interval between polls
+   * @return the strategy
+   */
+  public static PollingStrategy fixed(Duration interval) {
+    return backoff(interval, 1, interval);
+  }
+
+  /**
+   * Obtains a strategy that backs off exponentially.
+   * <p>
+   * The first poll happens after the initial delay, with each subsequent delay
+   * being the previous one multiplied by the multiplier, up to the maximum.
+   *
+   * @param initialDelay  the delay before the first poll
+   * @param multiplier  the multiplier to apply to each successive delay, one or greater
+   * @param maxDelay  the maximum delay between polls
+   * @return the strategy
+   */
+  public static PollingStrategy backoff(Duration initialDelay, double multiplier, Duration maxDelay) {
+    return new BackoffPollingStrategy(initialDelay, multiplier, maxDelay);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns a strategy that sizes the first delay from the observed durations of previous tasks.
+   * <p>
+   * The returned strategy keeps a running average of how long tasks take to complete, grouped
+   * by the key passed to {@link #start(String)}, typically the CCP. The first delay is a fraction
+   * of the average duration, so that the first poll is likely to be shortly before completion.
+   * The delays thereafter are provided by this strategy.
+   * <p>
+   * The returned strategy holds state and should be shared between clients for best effect.
+   *
+   * @return the adaptive strategy
+   */
+  public default PollingStrategy withDurationModel() {
+    return new DurationModelPollingStrategy(this);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Starts the schedule for a single task.
+   *
+   * @param key  the key grouping similar tasks, such as the name of the CCP
+   * @return the schedule for the task
+   */
+  public abstract PollingSchedule start(String key);
+
+  //-------------------------------------------------------------------------
+  /**
+   * The schedule of polls for a single task.
+   * <p>
+   * Instances are used by a single task and need not be thread-safe.
+   */
+  public interface PollingSchedule {
+
+    /**
+     * Gets the delay before the next poll, advancing the schedule.
+     *
+     * @return the delay before the next poll
+     */
+    public abstract Duration nextDelay();
+
+    /**
+     * Called when the task has completed.
+     * <p>
+     * This allows a strategy to learn from the duration of the task.
+     */
+    public default void completed() {
+      // do nothing by default
+    }
+  }
+
+}
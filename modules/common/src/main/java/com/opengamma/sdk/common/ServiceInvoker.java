@@ -6,6 +6,9 @@
 package com.opengamma.sdk.common;
 
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 
 import com.opengamma.sdk.common.auth.AuthClient;
@@ -50,6 +53,14 @@ public final class ServiceInvoker implements AutoCloseable {
   private final OkHttpClient httpClient;
   /** Executor. */
   private final ScheduledExecutorService executor;
+  /** Polling strategy. */
+  private final PollingStrategy pollingStrategy;
+  /** Token interceptor. */
+  private final TokenInterceptor tokenInterceptor;
+  /** The action releasing the token shared via a runtime, null if the executor and token are not shared. */
+  private final Runnable release;
+  /** The tasks to run on close. */
+  private final Set<Runnable> closeTasks = ConcurrentHashMap.newKeySet();
 
   //-------------------------------------------------------------------------
   /**
@@ -151,10 +162,20 @@ public final class ServiceInvoker implements AutoCloseable {
 
   //-------------------------------------------------------------------------
   // creates an instance
-  ServiceInvoker(HttpUrl serviceUrl, OkHttpClient httpClient, ScheduledExecutorService executor) {
+  ServiceInvoker(
+      HttpUrl serviceUrl,
+      OkHttpClient httpClient,
+      ScheduledExecutorService executor,
+      PollingStrategy pollingStrategy,
+      TokenInterceptor tokenInterceptor,
+      Runnable release) {
+
     this.serviceUrl = Objects.requireNonNull(serviceUrl, "serviceUrl must not be null");
     this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
     this.executor = Objects.requireNonNull(executor, "executor must not be null");
+    this.pollingStrategy = Objects.requireNonNull(pollingStrategy, "pollingStrategy must not be null");
+    this.tokenInterceptor = Objects.requireNonNull(tokenInterceptor, "tokenInterceptor must not be null");
+    this.release = release;
   }
 
   //-------------------------------------------------------------------------
@@ -185,18 +206,103 @@ public final class ServiceInvoker implements AutoCloseable {
     return executor;
   }
 
+  /**
+   * Gets the strategy used to poll for the result of long-running tasks.
+   *
+   * @return the polling strategy
+   */
+  public PollingStrategy getPollingStrategy() {
+    return pollingStrategy;
+  }
+
+  /**
+   * Checks whether the executor runs tasks on virtual threads.
+   * <p>
+   * When true, clients may run blocking work on the executor, such as one task per calculation,
+   * without the concurrency being limited by the number of platform threads.
+   * See {@link ServiceInvokerBuilder#virtualThreads()}.
+   *
+   * @return true if the executor uses virtual threads
+   */
+  public boolean isVirtualThreads() {
+    return executor instanceof VirtualThreadExecutorService;
+  }
+
+  /**
+   * Gets metrics describing how the access token has been refreshed.
+   * <p>
+   * The access token is refreshed in the background before it expires.
+   * See {@link ServiceInvokerBuilder#tokenRefreshFraction(double)}.
+   *
+   * @return a snapshot of the metrics
+   */
+  public TokenRefreshMetrics getTokenRefreshMetrics() {
+    return tokenInterceptor.metrics();
+  }
+
+  /**
+   * Gets a key identifying the credentials used for authentication.
+   * <p>
+   * This is the {@linkplain Credentials#tokenStoreKey() token store key} of the credentials, which does not
+   * reveal any secret. It allows clients to keep state that outlives the invoker, such as results stored
+   * on disk, separate for each user.
+   *
+   * @return the key, empty if the credentials do not provide one
+   */
+  public Optional<String> getCredentialsKey() {
+    return tokenInterceptor.credentialsKey();
+  }
+
   //-------------------------------------------------------------------------
+  /**
+   * Adds a task to be run when this invoker is closed.
+   * <p>
+   * This allows clients to finish background work, such as cleaning up server state,
+   * while the executor is still available. The task should not block for long.
+   * If the task is already present, it is not added again.
+   *
+   * @param task  the task to run on close
+   */
+  public void addCloseTask(Runnable task) {
+    closeTasks.add(Objects.requireNonNull(task, "task must not be null"));
+  }
+
+  /**
+   * Removes a task that was to be run when this invoker is closed.
+   *
+   * @param task  the task to remove
+   */
+  public void removeCloseTask(Runnable task) {
+    closeTasks.remove(task);
+  }
+
   /**
    * Closes access to the remote service.
    * <p>
    * This instance must not be used once this method is called.
    * <p>
-   * This closes the executor, but not the HTTP client (as {@link OkHttpClient}
+   * Any tasks added by {@link #addCloseTask(Runnable)} are run first.
+   * This stops the background refresh of the access token and closes the executor, but not the HTTP client (as {@link OkHttpClient}
    * advises it should not normally be explicitly closed).
+   * If the invoker was created from a {@link ServiceRuntime}, the executor is shared, so is not closed.
+   * The access token is released, stopping its background refresh if no other open invoker of the runtime uses it.
    */
   @Override
   public void close() {
-    executor.shutdown();
+    for (Runnable task : closeTasks) {
+      try {
+        task.run();
+      } catch (RuntimeException ex) {
+        // ignore, so that the invoker is always closed
+      }
+    }
+    closeTasks.clear();
+    if (release != null) {
+      release.run();
+    } else {
+      tokenInterceptor.close();
+      executor.shutdown();
+    }
   }
 
 }
@@ -6,26 +6,27 @@
 package com.opengamma.sdk.common;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.opengamma.sdk.common.auth.AccessTokenResult;
 import com.opengamma.sdk.common.auth.AuthClient;
 import com.opengamma.sdk.common.auth.Credentials;
+import com.opengamma.sdk.common.auth.TokenStore;
 
+import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
 
@@ -63,9 +64,18 @@ public final class ServiceInvokerBuilder {
   }
 
   /**
-   * HTTP header.
+   * The default fraction of the lifetime of an access token after which it is refreshed.
    */
-  private static final String AUTHORIZATION = "Authorization";
+  private static final double DEFAULT_TOKEN_REFRESH_FRACTION = 0.75;
+  /**
+   * The maximum number of asynchronous requests to execute concurrently.
+   */
+  private static final int MAX_REQUESTS = 256;
+  /**
+   * The maximum number of asynchronous requests to execute concurrently against one host.
+   * All requests go to the same service, so the OkHttp default of 5 is too low.
+   */
+  private static final int MAX_REQUESTS_PER_HOST = 64;
 
   /** The credentials. */
   private Credentials credentials;
@@ -75,8 +85,18 @@ public final class ServiceInvokerBuilder {
   private OkHttpClient httpClient;
   /** The executor. */
   private ScheduledExecutorService executorService;
+  /** Whether to create an executor that uses virtual threads. */
+  private boolean virtualThreads;
   /** The auth client factory. */
   private Function<ServiceInvoker, AuthClient> authClientFactory;
+  /** The polling strategy. */
+  private PollingStrategy pollingStrategy = PollingStrategy.standard();
+  /** The fraction of the lifetime of an access token after which it is refreshed. */
+  private double tokenRefreshFraction = DEFAULT_TOKEN_REFRESH_FRACTION;
+  /** The token store, null if not used. */
+  private TokenStore tokenStore;
+  /** The shared runtime, null if not used. */
+  private ServiceRuntime runtime;
 
   //-------------------------------------------------------------------------
   /**
@@ -134,17 +154,15 @@ public final class ServiceInvokerBuilder {
    * <p>
    * Unlike {@link #httpClient(OkHttpClient)}, this method allows the standard settings
    * that the service invoker uses to be accessed. As such, the builder will be pre-populated
-   * with a logging interceptor, read timeout and write timeout.
+   * with a logging interceptor, read timeout, write timeout and a dispatcher that allows
+   * many concurrent asynchronous requests to the service.
    *
    * @param httpClientFactory  the function that provides an HTTP client from a builder
    * @return this builder, for method chaining
    */
   public ServiceInvokerBuilder httpClientFactory(Function<OkHttpClient.Builder, OkHttpClient> httpClientFactory) {
     Objects.requireNonNull(httpClientFactory, "httpClientFactory must not be null");
-    this.httpClient = httpClientFactory.apply(new OkHttpClient.Builder()
-        .addInterceptor(new LoggingInterceptor())
-        .readTimeout(30, TimeUnit.SECONDS)
-        .writeTimeout(10, TimeUnit.SECONDS));
+    this.httpClient = httpClientFactory.apply(standardHttpClientBuilder());
     return this;
   }
 
@@ -163,6 +181,36 @@ public final class ServiceInvokerBuilder {
    */
   public ServiceInvokerBuilder executorService(ScheduledExecutorService executor) {
     this.executorService = Objects.requireNonNull(executor, "executor must not be null");
+    this.virtualThreads = false;
+    return this;
+  }
+
+  /**
+   * Sets the executor service to one that runs tasks on virtual threads.
+   * <p>
+   * By default, the executor service is a pool of {@code Runtime.getRuntime().availableProcessors()}
+   * platform threads, which limits the number of blocking calls that can be in progress at once.
+   * With this option, each task runs on its own virtual thread, with a single platform thread
+   * used only for timers. Clients such as {@code MarginClient} then run each asynchronous
+   * calculation as a blocking task on its own virtual thread.
+   * <p>
+   * With this option, the HTTP client only uses HTTP/1.1. An HTTP/2 stream of OkHttp 3 waits for
+   * the response headers in a {@code synchronized} method, which pins the carrier thread of the
+   * virtual thread for the whole round trip to the service, so HTTP/2 would limit the number of
+   * calls in progress to the number of carrier threads.
+   * <p>
+   * This replaces any executor service previously set.
+   * Virtual threads require Java 21 or later.
+   *
+   * @return this builder, for method chaining
+   * @throws IllegalStateException if virtual threads are not supported by the running JVM
+   */
+  public ServiceInvokerBuilder virtualThreads() {
+    if (!VirtualThreadExecutorService.isSupported()) {
+      throw new IllegalStateException("Virtual threads require Java 21 or later");
+    }
+    this.executorService = null;
+    this.virtualThreads = true;
     return this;
   }
 
@@ -180,6 +228,81 @@ public final class ServiceInvokerBuilder {
     return this;
   }
 
+  /**
+   * Sets the runtime to share with other invokers.
+   * <p>
+   * By default, each invoker has its own HTTP client, connection pool and executor.
+   * When many invokers are needed, such as one per tenant each with its own credentials,
+   * a {@link ServiceRuntime} allows them to share one dispatcher, connection pool and executor.
+   * Invokers built from the same runtime with equal credentials also share the access token,
+   * so must use the same token refresh fraction and token store.
+   * <p>
+   * If a runtime is set, the HTTP client and executor service of the runtime are used,
+   * and those set on this builder are ignored. Closing the invoker does not close the runtime.
+   * See {@link ServiceRuntime#invoker(Credentials)} for a convenient alternative.
+   *
+   * @param runtime  the shared runtime
+   * @return this builder, for method chaining
+   */
+  public ServiceInvokerBuilder runtime(ServiceRuntime runtime) {
+    this.runtime = Objects.requireNonNull(runtime, "runtime must not be null");
+    return this;
+  }
+
+  /**
+   * Sets the strategy used to poll for the result of long-running tasks.
+   * <p>
+   * This allows the delay between polls to be changed from the standard one,
+   * which polls quickly at first and then backs off exponentially.
+   * See {@link PollingStrategy} for the available strategies.
+   *
+   * @param pollingStrategy  the polling strategy
+   * @return this builder, for method chaining
+   */
+  public ServiceInvokerBuilder pollingStrategy(PollingStrategy pollingStrategy) {
+    this.pollingStrategy = Objects.requireNonNull(pollingStrategy, "pollingStrategy must not be null");
+    return this;
+  }
+
+  /**
+   * Sets the fraction of the lifetime of an access token after which it is refreshed.
+   * <p>
+   * The invoker refreshes the access token in the background before it expires,
+   * so that requests do not wait for authentication or fail because the token expired.
+   * The default is 0.75, refreshing once three quarters of the lifetime has passed.
+   * See {@link ServiceInvoker#getTokenRefreshMetrics()} for metrics on the refreshes.
+   * <p>
+   * If a runtime is set, this must match that of any open invoker of the runtime with the same credentials.
+   *
+   * @param tokenRefreshFraction  the fraction of the token lifetime, greater than zero and less than one
+   * @return this builder, for method chaining
+   */
+  public ServiceInvokerBuilder tokenRefreshFraction(double tokenRefreshFraction) {
+    if (!(tokenRefreshFraction > 0 && tokenRefreshFraction < 1)) {
+      throw new IllegalArgumentException("tokenRefreshFraction must be greater than zero and less than one");
+    }
+    this.tokenRefreshFraction = tokenRefreshFraction;
+    return this;
+  }
+
+  /**
+   * Sets the store used to hold access tokens beyond the life of the invoker.
+   * <p>
+   * By default, no store is used, and each invoker authenticates before its first call.
+   * With a store, the invoker uses a stored token that is still valid, avoiding the need
+   * to authenticate, and saves each new token it obtains.
+   * This is most useful for short-lived processes, using {@link TokenStore#ofDirectory(java.nio.file.Path)}.
+   * <p>
+   * If a runtime is set, this must match that of any open invoker of the runtime with the same credentials.
+   *
+   * @param tokenStore  the token store
+   * @return this builder, for method chaining
+   */
+  public ServiceInvokerBuilder tokenStore(TokenStore tokenStore) {
+    this.tokenStore = Objects.requireNonNull(tokenStore, "tokenStore must not be null");
+    return this;
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Builds the service invoker, using the information provided.
@@ -190,26 +313,72 @@ public final class ServiceInvokerBuilder {
    */
   public ServiceInvoker build() {
     // apply defaults
+    if (authClientFactory == null) {
+      authClientFactory = inv -> AuthClient.of(inv);
+    }
+    if (runtime != null) {
+      // the token is shared between invokers of the runtime with the same credentials
+      return runtime.createInvoker(
+          credentials,
+          serviceUrl,
+          tokenRefreshFraction,
+          tokenStore,
+          (tokenInterceptor, release) -> createInvoker(runtime.getHttpClient(), runtime.getExecutor(), tokenInterceptor, release),
+          authClientFactory);
+    }
     if (httpClient == null) {
       httpClientFactory(builder -> builder.build());
     }
     if (executorService == null) {
-      executorService = createExecutorService();
-    }
-    if (authClientFactory == null) {
-      authClientFactory = inv -> AuthClient.of(inv);
+      executorService = virtualThreads ? VirtualThreadExecutorService.create() : createExecutorService();
     }
-    // setup HttpClient
-    TokenInterceptor tokenInterceptor = new TokenInterceptor();
-    httpClient = httpClient.newBuilder()
+    TokenInterceptor tokenInterceptor = new TokenInterceptor(executorService, tokenRefreshFraction, tokenStore, serviceUrl);
+    ServiceInvoker invoker = createInvoker(httpClient, executorService, tokenInterceptor, null);
+    tokenInterceptor.init(authClientFactory.apply(invoker), credentials);
+    return invoker;
+  }
+
+  // creates the invoker, adding the interceptors to the HTTP client
+  // the token interceptor must be initialized using the invoker before any request is made
+  // the release action is null unless the executor and token are shared via a runtime
+  private ServiceInvoker createInvoker(
+      OkHttpClient baseHttpClient,
+      ScheduledExecutorService executor,
+      TokenInterceptor tokenInterceptor,
+      Runnable release) {
+
+    // setup HttpClient, which shares the dispatcher and connection pool of the base client
+    OkHttpClient.Builder httpClientBuilder = baseHttpClient.newBuilder()
         .addInterceptor(tokenInterceptor)
-        .addInterceptor(new UserAgentHeaderInterceptor())
-        .build();
+        .addInterceptor(new UserAgentHeaderInterceptor());
+    if (executor instanceof VirtualThreadExecutorService) {
+      // an HTTP/2 stream waits for the response holding a monitor, which would pin the carrier thread
+      httpClientBuilder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+    }
+    OkHttpClient invokerHttpClient = httpClientBuilder.build();
     // setup instance, creating a pure immutable ServiceInvoker, then using it
     // care should be taken when altering this code to ensure Java Memory Model semantics are considered
-    ServiceInvoker invoker = new ServiceInvoker(serviceUrl, httpClient, executorService);
-    tokenInterceptor.init(authClientFactory.apply(invoker), credentials);
-    return invoker;
+    return new ServiceInvoker(serviceUrl, invokerHttpClient, executor, pollingStrategy, tokenInterceptor, release);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates a builder for the standard HTTP client.
+   * <p>
+   * This has a logging interceptor, read timeout, write timeout and a dispatcher that allows
+   * many concurrent asynchronous requests to the service.
+   *
+   * @return the HTTP client builder
+   */
+  static OkHttpClient.Builder standardHttpClientBuilder() {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(MAX_REQUESTS);
+    dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+    return new OkHttpClient.Builder()
+        .dispatcher(dispatcher)
+        .addInterceptor(new LoggingInterceptor())
+        .readTimeout(30, TimeUnit.SECONDS)
+        .writeTimeout(10, TimeUnit.SECONDS);
   }
 
   //-------------------------------------------------------------------------
@@ -220,7 +389,7 @@ public final class ServiceInvokerBuilder {
    * 
    * @return the executor service
    */
-  private static ScheduledExecutorService createExecutorService() {
+  static ScheduledExecutorService createExecutorService() {
     ThreadFactory threadFactory = r -> {
       Thread t = Executors.defaultThreadFactory().newThread(r);
       t.setName("ServiceInvoker-" + t.getName());
@@ -257,57 +426,4 @@ public final class ServiceInvokerBuilder {
     }
   }
 
-  // an interceptor that adds the access token, and refreshes it when necessary
-  private static class TokenInterceptor implements Interceptor {
-    /** The lock protecting the token. */
-    private final Lock lock = new ReentrantLock();
-    /** The auth client. */
-    private volatile AuthClient authClient;
-    /** The credentials. */
-    private volatile Credentials credentials;
-    /** The current token. */
-    private volatile AccessTokenResult token;
-
-    // initializes the state, to ensure that ServiceInvoker is pure immutable wrt Java Memory Model
-    void init(AuthClient authClient, Credentials credentials) {
-      this.authClient = authClient;
-      this.credentials = credentials;
-    }
-
-    @Override
-    public Response intercept(Chain chain) throws IOException {
-      // do nothing for auth
-      Request initialRequest = chain.request();
-      if (initialRequest.url().pathSegments().contains("auth")) {
-        return chain.proceed(initialRequest);
-      }
-
-      // try using the current access token, unless not present
-      AccessTokenResult copyOfToken = token;
-      if (copyOfToken != null) {
-        log.trace("Add token: {}", copyOfToken.getAccessToken());
-        Request modifiedRequest = initialRequest.newBuilder()
-            .header(AUTHORIZATION, "Bearer " + copyOfToken.getAccessToken())
-            .build();
-        Response response = chain.proceed(modifiedRequest);
-        if (response.code() != 401) {
-          return response;
-        }
-      }
-
-      // try to get a new token
-      lock.lock();
-      try {
-        token = credentials.authenticate(authClient);
-        Request modifiedRequest2 = initialRequest.newBuilder()
-            .header(AUTHORIZATION, "Bearer " + token.getAccessToken())
-            .build();
-        return chain.proceed(modifiedRequest2);
-
-      } finally {
-        lock.unlock();
-      }
-    }
-  }
-
 }
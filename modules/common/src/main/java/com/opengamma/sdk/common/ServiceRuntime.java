@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import com.opengamma.sdk.common.auth.AuthClient;
+import com.opengamma.sdk.common.auth.Credentials;
+import com.opengamma.sdk.common.auth.TokenStore;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+/**
+ * Runtime shared by many service invokers.
+ * <p>
+ * Each {@link ServiceInvoker} normally has its own HTTP client, connection pool and executor.
+ * When calling the service on behalf of many tenants, each with their own credentials, that
+ * results in many thread pools and cold connection pools. Instead, a single runtime can be
+ * created, with each tenant using a lightweight invoker obtained from {@link #invoker(Credentials)}.
+ * All such invokers share one dispatcher, connection pool and executor, so the number of
+ * threads and sockets does not grow with the number of tenants.
+ * <p>
+ * Access tokens are held by the runtime, one for each set of credentials and service URL.
+ * Invokers obtained with equal credentials share the token, including its background refresh.
+ * The token is held until the last invoker using it is closed, when its background refresh
+ * is stopped and the credentials released. Invokers sharing a token must use the same
+ * token refresh fraction and token store.
+ * <p>
+ * This class implements {@link AutoCloseable} and should be closed when no longer needed.
+ * Closing an invoker obtained from the runtime does not close the shared executor.
+ */
+public final class ServiceRuntime implements AutoCloseable {
+
+  /** The HTTP client that invokers are derived from. */
+  private final OkHttpClient httpClient;
+  /** The executor. */
+  private final ScheduledExecutorService executor;
+  /** The lock protecting the tokens. */
+  private final Lock lock = new ReentrantLock();
+  /** The shared tokens, keyed by credentials and service URL, protected by the lock. */
+  private final Map<Entry<Credentials, HttpUrl>, SharedToken> tokens = new HashMap<>();
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates a runtime with the standard HTTP client and executor.
+   * <p>
+   * The executor will be initialized with {@link Runtime#availableProcessors()} threads.
+   *
+   * @return the runtime
+   */
+  public static ServiceRuntime create() {
+    return new ServiceRuntime(
+        ServiceInvokerBuilder.standardHttpClientBuilder().build(),
+        ServiceInvokerBuilder.createExecutorService());
+  }
+
+  /**
+   * Creates a runtime with the specified HTTP client and executor.
+   * <p>
+   * The invokers use clients derived from the specified client, sharing its dispatcher and connection pool.
+   * The executor is shut down when the runtime is closed.
+   *
+   * @param httpClient  the HTTP client
+   * @param executor  the executor service
+   * @return the runtime
+   */
+  public static ServiceRuntime of(OkHttpClient httpClient, ScheduledExecutorService executor) {
+    return new ServiceRuntime(httpClient, executor);
+  }
+
+  private ServiceRuntime(OkHttpClient httpClient, ScheduledExecutorService executor) {
+    this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+    this.executor = Objects.requireNonNull(executor, "executor must not be null");
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an invoker for the specified credentials, using the standard service URL.
+   * <p>
+   * Use {@link #invokerBuilder(Credentials)} to customize the invoker.
+   *
+   * @param credentials  the credentials to use for authentication
+   * @return the invoker
+   */
+  public ServiceInvoker invoker(Credentials credentials) {
+    return invokerBuilder(credentials).build();
+  }
+
+  /**
+   * Returns a builder for an invoker that uses this runtime.
+   *
+   * @param credentials  the credentials to use for authentication
+   * @return the builder, used to further customize the invoker
+   */
+  public ServiceInvokerBuilder invokerBuilder(Credentials credentials) {
+    return ServiceInvoker.builder(credentials).runtime(this);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the HTTP client that invokers are derived from.
+   *
+   * @return the HTTP client
+   */
+  public OkHttpClient getHttpClient() {
+    return httpClient;
+  }
+
+  /**
+   * Gets the executor shared by the invokers.
+   *
+   * @return the executor
+   */
+  public ScheduledExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Gets the number of access tokens held, one for each set of credentials and service URL.
+   * <p>
+   * A token is held while any invoker using it is open.
+   *
+   * @return the number of tokens
+   */
+  public int getTokenCount() {
+    lock.lock();
+    try {
+      return tokens.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // creates an invoker, sharing the token interceptor with other open invokers with the same credentials
+  // the invoker factory is passed the action that releases the token when the invoker is closed
+  ServiceInvoker createInvoker(
+      Credentials credentials,
+      HttpUrl serviceUrl,
+      double tokenRefreshFraction,
+      TokenStore tokenStore,
+      BiFunction<TokenInterceptor, Runnable, ServiceInvoker> invokerFactory,
+      Function<ServiceInvoker, AuthClient> authClientFactory) {
+
+    Entry<Credentials, HttpUrl> key = new SimpleImmutableEntry<>(credentials, serviceUrl);
+    lock.lock();
+    try {
+      if (executor.isShutdown()) {
+        throw new IllegalStateException("ServiceRuntime has been closed");
+      }
+      SharedToken token = tokens.get(key);
+      if (token != null) {
+        if (token.refreshFraction != tokenRefreshFraction || !Objects.equals(token.tokenStore, tokenStore)) {
+          throw new IllegalArgumentException(
+              "Invokers with the same credentials must use the same tokenRefreshFraction and tokenStore");
+        }
+        token.invokerCount++;
+        return invokerFactory.apply(token.interceptor, releaser(key, token));
+      }
+      // the first invoker for the credentials initializes the token interceptor
+      TokenInterceptor tokenInterceptor = new TokenInterceptor(executor, tokenRefreshFraction, tokenStore, serviceUrl);
+      token = new SharedToken(tokenInterceptor, tokenRefreshFraction, tokenStore);
+      ServiceInvoker invoker = invokerFactory.apply(tokenInterceptor, releaser(key, token));
+      tokenInterceptor.init(authClientFactory.apply(invoker), credentials);
+      tokens.put(key, token);
+      return invoker;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // creates the action run when an invoker is closed, which releases the token at most once
+  private Runnable releaser(Entry<Credentials, HttpUrl> key, SharedToken token) {
+    AtomicBoolean released = new AtomicBoolean();
+    return () -> {
+      if (released.compareAndSet(false, true)) {
+        release(key, token);
+      }
+    };
+  }
+
+  // releases the token, closing it if no invoker is still using it
+  private void release(Entry<Credentials, HttpUrl> key, SharedToken token) {
+    lock.lock();
+    try {
+      token.invokerCount--;
+      if (token.invokerCount == 0 && tokens.get(key) == token) {
+        tokens.remove(key);
+        token.interceptor.close();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Closes the runtime.
+   * <p>
+   * This stops the background refresh of all access tokens and closes the executor.
+   * Invokers obtained from this runtime must not be used once this method is called.
+   */
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      tokens.values().forEach(token -> token.interceptor.close());
+      tokens.clear();
+      executor.shutdown();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // a token shared by the open invokers with the same credentials and service URL
+  private static final class SharedToken {
+    /** The token interceptor. */
+    private final TokenInterceptor interceptor;
+    /** The fraction of the token lifetime after which it is refreshed. */
+    private final double refreshFraction;
+    /** The token store, null if not used. */
+    private final TokenStore tokenStore;
+    /** The number of open invokers using the token, protected by the lock. */
+    private int invokerCount = 1;
+
+    private SharedToken(TokenInterceptor interceptor, double refreshFraction, TokenStore tokenStore) {
+      this.interceptor = interceptor;
+      this.refreshFraction = refreshFraction;
+      this.tokenStore = tokenStore;
+    }
+  }
+
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.sdk.common.auth.AccessTokenResult;
+import com.opengamma.sdk.common.auth.AuthClient;
+import com.opengamma.sdk.common.auth.Credentials;
+import com.opengamma.sdk.common.auth.StoredAccessToken;
+import com.opengamma.sdk.common.auth.TokenStore;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Interceptor that adds the access token to each request.
+ * <p>
+ * The token is obtained when the first request is made. Thereafter, it is refreshed in the
+ * background once a fraction of its lifetime has passed, so that requests neither wait for
+ * authentication nor are rejected because the token expired. If a request is rejected with
+ * status 401 regardless, a new token is obtained and the request is retried.
+ * <p>
+ * Each token has a generation. When requests are rejected, only the first thread to find that the
+ * generation it used is still current authenticates. The other threads wait for, and reuse, the
+ * newer token, such that a burst of rejections results in a single auth call.
+ * <p>
+ * If a token store is configured, each new token is saved to it, and the first request
+ * uses a stored token that is still valid rather than authenticating.
+ */
+final class TokenInterceptor implements Interceptor {
+
+  /** Log, which uses ServiceInvoker.class for compatibility. */
+  private static final Logger log = LoggerFactory.getLogger(ServiceInvoker.class);
+  /**
+   * HTTP header.
+   */
+  private static final String AUTHORIZATION = "Authorization";
+  /**
+   * The minimum delay before retrying a failed refresh.
+   */
+  private static final long MIN_RETRY_NANOS = SECONDS.toNanos(1);
+  /**
+   * The minimum remaining lifetime of a stored token for it to be used.
+   */
+  private static final long MIN_STORED_REMAINING_NANOS = SECONDS.toNanos(30);
+
+  /** The executor used to refresh in the background. */
+  private final ScheduledExecutorService executor;
+  /** The fraction of the token lifetime after which the token is refreshed. */
+  private final double refreshFraction;
+  /** The token store, null if not used. */
+  private final TokenStore tokenStore;
+  /** The URL of the service, part of the key in the token store. */
+  private final HttpUrl serviceUrl;
+  /** The lock ensuring a single authentication at a time, also protecting the refresh task. */
+  private final Lock lock = new ReentrantLock();
+  /** The auth client. */
+  private volatile AuthClient authClient;
+  /** The credentials. */
+  private volatile Credentials credentials;
+  /** The key in the token store, null if tokens are not stored. */
+  private volatile String tokenStoreKey;
+  /** The current token. */
+  private volatile Token token;
+  /** The scheduled refresh, protected by the lock. */
+  private ScheduledFuture<?> refreshTask;
+  /** Whether the interceptor has been closed, protected by the lock. */
+  private boolean closed;
+
+  /** The number of successful background refreshes. */
+  private final AtomicLong refreshCount = new AtomicLong();
+  /** The number of failed background refreshes. */
+  private final AtomicLong failedRefreshCount = new AtomicLong();
+  /** The total latency of successful background refreshes. */
+  private final AtomicLong totalRefreshNanos = new AtomicLong();
+  /** The latency of the last successful background refresh. */
+  private final AtomicLong lastRefreshNanos = new AtomicLong();
+  /** The number of 401 responses received. */
+  private final AtomicLong unauthorizedCount = new AtomicLong();
+  /** The number of 401 responses avoided. */
+  private final AtomicLong unauthorizedAvoided = new AtomicLong();
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates an instance.
+   *
+   * @param executor  the executor used to refresh in the background
+   * @param refreshFraction  the fraction of the token lifetime after which the token is refreshed
+   * @param tokenStore  the token store, null if not used
+   * @param serviceUrl  the URL of the service
+   */
+  TokenInterceptor(ScheduledExecutorService executor, double refreshFraction, TokenStore tokenStore, HttpUrl serviceUrl) {
+    this.executor = executor;
+    this.refreshFraction = refreshFraction;
+    this.tokenStore = tokenStore;
+    this.serviceUrl = serviceUrl;
+  }
+
+  // initializes the state, to ensure that ServiceInvoker is pure immutable wrt Java Memory Model
+  void init(AuthClient authClient, Credentials credentials) {
+    this.authClient = authClient;
+    this.credentials = credentials;
+    if (tokenStore != null) {
+      this.tokenStoreKey = credentials.tokenStoreKey().map(key -> key + " " + serviceUrl).orElse(null);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    // do nothing for auth
+    Request initialRequest = chain.request();
+    if (initialRequest.url().pathSegments().contains("auth")) {
+      return chain.proceed(initialRequest);
+    }
+
+    // use the current access token, obtaining one on the first request
+    Token copyOfToken = token;
+    if (copyOfToken == null) {
+      copyOfToken = renew(null);
+    }
+    copyOfToken.checkReplacedExpiry();
+    Response response = chain.proceed(withToken(initialRequest, copyOfToken));
+    if (response.code() != 401) {
+      return response;
+    }
+    unauthorizedCount.incrementAndGet();
+    response.close();
+
+    // replay with a newer token, which may have been obtained by another thread
+    return chain.proceed(withToken(initialRequest, renew(copyOfToken)));
+  }
+
+  // gets a token newer than the one that failed, authenticating only if no other thread has done so
+  // threads rejected at the same time all wait here, with only the first making the auth call
+  private Token renew(Token failed) {
+    long failedGeneration = failed != null ? failed.generation : 0;
+    lock.lock();
+    try {
+      Token current = token;
+      if (current != null && current.generation > failedGeneration) {
+        return current;
+      }
+      // on the first request, try the store, which may hold a token from an earlier process
+      if (current == null) {
+        Token stored = loadStored();
+        if (stored != null) {
+          token = stored;
+          scheduleRefresh(stored);
+          return stored;
+        }
+      }
+      long generation = current != null ? current.generation + 1 : 1;
+      Token newToken = new Token(credentials.authenticate(authClient), System.nanoTime(), generation, null);
+      token = newToken;
+      save(newToken);
+      scheduleRefresh(newToken);
+      return newToken;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // adds the token to the request
+  private static Request withToken(Request request, Token token) {
+    log.trace("Add token: {}", token.result.getAccessToken());
+    return request.newBuilder()
+        .header(AUTHORIZATION, "Bearer " + token.result.getAccessToken())
+        .build();
+  }
+
+  //-------------------------------------------------------------------------
+  // loads a token from the store, returning null if there is no valid token
+  private Token loadStored() {
+    if (tokenStoreKey == null) {
+      return null;
+    }
+    try {
+      Optional<StoredAccessToken> loaded = tokenStore.load(tokenStoreKey);
+      if (!loaded.isPresent()) {
+        return null;
+      }
+      StoredAccessToken stored = loaded.get();
+      Instant now = Instant.now();
+      if (stored.getToken().getExpiresIn() <= 0 || stored.remaining(now).toNanos() < MIN_STORED_REMAINING_NANOS) {
+        return null;
+      }
+      // map the issue instant onto the nano clock
+      long issuedNanos = System.nanoTime() - Duration.between(stored.getIssuedAt(), now).toNanos();
+      log.debug("Using stored access token, expiring at {}", stored.getExpiresAt());
+      return new Token(stored.getToken(), issuedNanos, 1, null);
+
+    } catch (RuntimeException ex) {
+      log.warn("Unable to load stored access token: {}", ex.getMessage());
+      return null;
+    }
+  }
+
+  // saves a token to the store, ignoring failures
+  private void save(Token newToken) {
+    if (tokenStoreKey == null) {
+      return;
+    }
+    try {
+      Instant issuedAt = Instant.now().minusNanos(System.nanoTime() - newToken.issuedNanos);
+      tokenStore.save(tokenStoreKey, StoredAccessToken.of(newToken.result, issuedAt));
+    } catch (RuntimeException ex) {
+      log.warn("Unable to store access token: {}", ex.getMessage());
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // schedules the background refresh of the token, called with the lock held
+  private void scheduleRefresh(Token newToken) {
+    if (newToken.result.getExpiresIn() <= 0) {
+      return;
+    }
+    long lifetimeNanos = SECONDS.toNanos(newToken.result.getExpiresIn());
+    long refreshNanos = newToken.issuedNanos + (long) (lifetimeNanos * refreshFraction);
+    schedule(refreshNanos - System.nanoTime());
+  }
+
+  // schedules the refresh task, called with the lock held
+  private void schedule(long delayNanos) {
+    if (closed) {
+      return;
+    }
+    if (refreshTask != null) {
+      refreshTask.cancel(false);
+    }
+    try {
+      // the scheduler only hands over, so that the refresh does not block a timer thread
+      refreshTask = executor.schedule(() -> executor.execute(this::refresh), Math.max(delayNanos, 0), NANOSECONDS);
+    } catch (RejectedExecutionException ex) {
+      refreshTask = null;
+    }
+  }
+
+  // refreshes the token in the background
+  // the lock is held while authenticating, so that any request rejected meanwhile waits for this token
+  private void refresh() {
+    lock.lock();
+    try {
+      Token previous = token;
+      if (closed || previous == null) {
+        return;
+      }
+      long startNanos = System.nanoTime();
+      try {
+        AccessTokenResult result = credentials.authenticate(authClient);
+        long latencyNanos = System.nanoTime() - startNanos;
+        refreshCount.incrementAndGet();
+        totalRefreshNanos.addAndGet(latencyNanos);
+        lastRefreshNanos.set(latencyNanos);
+        log.debug("Refreshed access token in {}ms", NANOSECONDS.toMillis(latencyNanos));
+        Token newToken = new Token(result, startNanos, previous.generation + 1, previous);
+        token = newToken;
+        save(newToken);
+        scheduleRefresh(newToken);
+
+      } catch (RuntimeException ex) {
+        failedRefreshCount.incrementAndGet();
+        log.warn("Unable to refresh access token: {}", ex.getMessage());
+        // retry while the current token is valid, after that a request will authenticate
+        long remainingNanos = previous.expiryNanos() - System.nanoTime();
+        if (remainingNanos > MIN_RETRY_NANOS) {
+          schedule(Math.max(remainingNanos / 2, MIN_RETRY_NANOS));
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // gets the key identifying the credentials, which reveals no secret
+  Optional<String> credentialsKey() {
+    return credentials.tokenStoreKey();
+  }
+
+  // gets the metrics
+  TokenRefreshMetrics metrics() {
+    return TokenRefreshMetrics.of(
+        refreshCount.get(),
+        failedRefreshCount.get(),
+        Duration.ofNanos(totalRefreshNanos.get()),
+        Duration.ofNanos(lastRefreshNanos.get()),
+        unauthorizedCount.get(),
+        unauthorizedAvoided.get());
+  }
+
+  // stops refreshing in the background
+  void close() {
+    lock.lock();
+    try {
+      closed = true;
+      if (refreshTask != null) {
+        refreshTask.cancel(false);
+        refreshTask = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // an access token, with the time it was obtained
+  private final class Token {
+    /** The token. */
+    private final AccessTokenResult result;
+    /** The instant the token was requested, an estimate of when it was issued. */
+    private final long issuedNanos;
+    /** The generation, incremented each time a new token is obtained. */
+    private final long generation;
+    /** The token this one replaced in the background, null once expired. */
+    private volatile Token replaced;
+    /** Whether this token has been counted as expiring after being replaced. */
+    private final AtomicBoolean expiryCounted = new AtomicBoolean();
+
+    private Token(AccessTokenResult result, long issuedNanos, long generation, Token replaced) {
+      this.result = result;
+      this.issuedNanos = issuedNanos;
+      this.generation = generation;
+      this.replaced = replaced;
+    }
+
+    // the instant the token expires, zero if not known
+    private long expiryNanos() {
+      return result.getExpiresIn() > 0 ? issuedNanos + SECONDS.toNanos(result.getExpiresIn()) : 0;
+    }
+
+    // counts a 401 avoided for each replaced token that has now expired
+    // older tokens expire first, so once one has expired the rest of the chain is counted and dropped
+    private void checkReplacedExpiry() {
+      long nowNanos = System.nanoTime();
+      Token newer = this;
+      for (Token old = replaced; old != null; newer = old, old = old.replaced) {
+        if (old.expiryNanos() != 0 && nowNanos - old.expiryNanos() >= 0) {
+          for (Token expired = old; expired != null; expired = expired.replaced) {
+            if (expired.expiryCounted.compareAndSet(false, true)) {
+              unauthorizedAvoided.incrementAndGet();
+            }
+          }
+          newer.replaced = null;
+          return;
+        }
+      }
+    }
+  }
+
+}
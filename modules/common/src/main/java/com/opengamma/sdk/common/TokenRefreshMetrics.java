@@ -0,0 +1,469 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.joda.beans.Bean;
+import org.joda.beans.BeanBuilder;
+import org.joda.beans.ImmutableBean;
+import org.joda.beans.JodaBeanUtils;
+import org.joda.beans.MetaBean;
+import org.joda.beans.MetaProperty;
+import org.joda.beans.gen.BeanDefinition;
+import org.joda.beans.gen.PropertyDefinition;
+import org.joda.beans.impl.direct.DirectMetaBean;
+import org.joda.beans.impl.direct.DirectMetaProperty;
+import org.joda.beans.impl.direct.DirectMetaPropertyMap;
+import org.joda.beans.impl.direct.DirectPrivateBeanBuilder;
+
+/**
+ * Metrics describing how the access token of a service invoker has been refreshed.
+ * <p>
+ * The invoker refreshes its access token in the background before it expires.
+ * An instance of this class is a snapshot, obtained from {@link ServiceInvoker#getTokenRefreshMetrics()}.
+ */
+@BeanDefinition(builderScope = "private", metaScope = "private", factoryName = "of")
+public final class TokenRefreshMetrics implements ImmutableBean {
+
+  /**
+   * The number of successful background refreshes.
+   */
+  @PropertyDefinition
+  private final long refreshCount;
+  /**
+   * The number of background refreshes that failed.
+   * <p>
+   * A failed refresh is retried in the background while the current token remains valid.
+   */
+  @PropertyDefinition
+  private final long failedRefreshCount;
+  /**
+   * The total latency of the successful background refreshes.
+   */
+  @PropertyDefinition(validate = "notNull")
+  private final Duration totalRefreshLatency;
+  /**
+   * The latency of the last successful background refresh, zero if there have been no refreshes.
+   */
+  @PropertyDefinition(validate = "notNull")
+  private final Duration lastRefreshLatency;
+  /**
+   * The number of requests that were rejected by the service with status 401.
+   * <p>
+   * Such requests are retried after authenticating again.
+   */
+  @PropertyDefinition
+  private final long unauthorizedCount;
+  /**
+   * The number of 401 responses avoided by refreshing in the background.
+   * <p>
+   * This counts the number of times a token reached its expiry with a replacement already in use.
+   * Without the background refresh, each of these would have caused at least one request
+   * to be rejected and retried.
+   */
+  @PropertyDefinition
+  private final long unauthorizedAvoided;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the mean latency of the successful background refreshes.
+   *
+   * @return the mean latency, zero if there have been no refreshes
+   */
+  public Duration getMeanRefreshLatency() {
+    return refreshCount == 0 ? Duration.ZERO : totalRefreshLatency.dividedBy(refreshCount);
+  }
+
+  //------------------------- AUTOGENERATED START -------------------------
+  /**
+   * The meta-bean for {@code TokenRefreshMetrics}.
+   * @return the meta-bean, not null
+   */
+  public static MetaBean meta() {
+    return TokenRefreshMetrics.Meta.INSTANCE;
+  }
+
+  static {
+    MetaBean.register(TokenRefreshMetrics.Meta.INSTANCE);
+  }
+
+  /**
+   * Obtains an instance.
+   * @param refreshCount  the value of the property
+   * @param failedRefreshCount  the value of the property
+   * @param totalRefreshLatency  the value of the property, not null
+   * @param lastRefreshLatency  the value of the property, not null
+   * @param unauthorizedCount  the value of the property
+   * @param unauthorizedAvoided  the value of the property
+   * @return the instance
+   */
+  public static TokenRefreshMetrics of(
+      long refreshCount,
+      long failedRefreshCount,
+      Duration totalRefreshLatency,
+      Duration lastRefreshLatency,
+      long unauthorizedCount,
+      long unauthorizedAvoided) {
+    return new TokenRefreshMetrics(
+      refreshCount,
+      failedRefreshCount,
+      totalRefreshLatency,
+      lastRefreshLatency,
+      unauthorizedCount,
+      unauthorizedAvoided);
+  }
+
+  private TokenRefreshMetrics(
+      long refreshCount,
+      long failedRefreshCount,
+      Duration totalRefreshLatency,
+      Duration lastRefreshLatency,
+      long unauthorizedCount,
+      long unauthorizedAvoided) {
+    JodaBeanUtils.notNull(totalRefreshLatency, "totalRefreshLatency");
+    JodaBeanUtils.notNull(lastRefreshLatency, "lastRefreshLatency");
+    this.refreshCount = refreshCount;
+    this.failedRefreshCount = failedRefreshCount;
+    this.totalRefreshLatency = totalRefreshLatency;
+    this.lastRefreshLatency = lastRefreshLatency;
+    this.unauthorizedCount = unauthorizedCount;
+    this.unauthorizedAvoided = unauthorizedAvoided;
+  }
+
+  @Override
+  public MetaBean metaBean() {
+    return TokenRefreshMetrics.Meta.INSTANCE;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the number of successful background refreshes.
+   * @return the value of the property
+   */
+  public long getRefreshCount() {
+    return refreshCount;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the number of background refreshes that failed.
+   * <p>
+   * A failed refresh is retried in the background while the current token remains valid.
+   * @return the value of the property
+   */
+  public long getFailedRefreshCount() {
+    return failedRefreshCount;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the total latency of the successful background refreshes.
+   * @return the value of the property, not null
+   */
+  public Duration getTotalRefreshLatency() {
+    return totalRefreshLatency;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the latency of the last successful background refresh, zero if there have been no refreshes.
+   * @return the value of the property, not null
+   */
+  public Duration getLastRefreshLatency() {
+    return lastRefreshLatency;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the number of requests that were rejected by the service with status 401.
+   * <p>
+   * Such requests are retried after authenticating again.
+   * @return the value of the property
+   */
+  public long getUnauthorizedCount() {
+    return unauthorizedCount;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the number of 401 responses avoided by refreshing in the background.
+   * <p>
+   * This counts the number of times a token reached its expiry with a replacement already in use.
+   * Without the background refresh, each of these would have caused at least one request
+   * to be rejected and retried.
+   * @return the value of the property
+   */
+  public long getUnauthorizedAvoided() {
+    return unauthorizedAvoided;
+  }
+
+  //-----------------------------------------------------------------------
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj != null && obj.getClass() == this.getClass()) {
+      TokenRefreshMetrics other = (TokenRefreshMetrics) obj;
+      return (refreshCount == other.refreshCount) &&
+          (failedRefreshCount == other.failedRefreshCount) &&
+          JodaBeanUtils.equal(totalRefreshLatency, other.totalRefreshLatency) &&
+          JodaBeanUtils.equal(lastRefreshLatency, other.lastRefreshLatency) &&
+          (unauthorizedCount == other.unauthorizedCount) &&
+          (unauthorizedAvoided == other.unauthorizedAvoided);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = getClass().hashCode();
+    hash = hash * 31 + JodaBeanUtils.hashCode(refreshCount);
+    hash = hash * 31 + JodaBeanUtils.hashCode(failedRefreshCount);
+    hash = hash * 31 + JodaBeanUtils.hashCode(totalRefreshLatency);
+    hash = hash * 31 + JodaBeanUtils.hashCode(lastRefreshLatency);
+    hash = hash * 31 + JodaBeanUtils.hashCode(unauthorizedCount);
+    hash = hash * 31 + JodaBeanUtils.hashCode(unauthorizedAvoided);
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buf = new StringBuilder(224);
+    buf.append("TokenRefreshMetrics{");
+    buf.append("refreshCount").append('=').append(refreshCount).append(',').append(' ');
+    buf.append("failedRefreshCount").append('=').append(failedRefreshCount).append(',').append(' ');
+    buf.append("totalRefreshLatency").append('=').append(totalRefreshLatency).append(',').append(' ');
+    buf.append("lastRefreshLatency").append('=').append(lastRefreshLatency).append(',').append(' ');
+    buf.append("unauthorizedCount").append('=').append(unauthorizedCount).append(',').append(' ');
+    buf.append("unauthorizedAvoided").append('=').append(JodaBeanUtils.toString(unauthorizedAvoided));
+    buf.append('}');
+    return buf.toString();
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The meta-bean for {@code TokenRefreshMetrics}.
+   */
+  private static final class Meta extends DirectMetaBean {
+    /**
+     * The singleton instance of the meta-bean.
+     */
+    static final Meta INSTANCE = new Meta();
+
+    /**
+     * The meta-property for the {@code refreshCount} property.
+     */
+    private final MetaProperty<Long> refreshCount = DirectMetaProperty.ofImmutable(
+        this, "refreshCount", TokenRefreshMetrics.class, Long.TYPE);
+    /**
+     * The meta-property for the {@code failedRefreshCount} property.
+     */
+    private final MetaProperty<Long> failedRefreshCount = DirectMetaProperty.ofImmutable(
+        this, "failedRefreshCount", TokenRefreshMetrics.class, Long.TYPE);
+    /**
+     * The meta-property for the {@code totalRefreshLatency} property.
+     */
+    private final MetaProperty<Duration> totalRefreshLatency = DirectMetaProperty.ofImmutable(
+        this, "totalRefreshLatency", TokenRefreshMetrics.class, Duration.class);
+    /**
+     * The meta-property for the {@code lastRefreshLatency} property.
+     */
+    private final MetaProperty<Duration> lastRefreshLatency = DirectMetaProperty.ofImmutable(
+        this, "lastRefreshLatency", TokenRefreshMetrics.class, Duration.class);
+    /**
+     * The meta-property for the {@code unauthorizedCount} property.
+     */
+    private final MetaProperty<Long> unauthorizedCount = DirectMetaProperty.ofImmutable(
+        this, "unauthorizedCount", TokenRefreshMetrics.class, Long.TYPE);
+    /**
+     * The meta-property for the {@code unauthorizedAvoided} property.
+     */
+    private final MetaProperty<Long> unauthorizedAvoided = DirectMetaProperty.ofImmutable(
+        this, "unauthorizedAvoided", TokenRefreshMetrics.class, Long.TYPE);
+    /**
+     * The meta-properties.
+     */
+    private final Map<String, MetaProperty<?>> metaPropertyMap$ = new DirectMetaPropertyMap(
+        this, null,
+        "refreshCount",
+        "failedRefreshCount",
+        "totalRefreshLatency",
+        "lastRefreshLatency",
+        "unauthorizedCount",
+        "unauthorizedAvoided");
+
+    /**
+     * Restricted constructor.
+     */
+    private Meta() {
+    }
+
+    @Override
+    protected MetaProperty<?> metaPropertyGet(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case -72196364:  // refreshCount
+          return refreshCount;
+        case -1659972655:  // failedRefreshCount
+          return failedRefreshCount;
+        case -1153231353:  // totalRefreshLatency
+          return totalRefreshLatency;
+        case -354773543:  // lastRefreshLatency
+          return lastRefreshLatency;
+        case 2063040635:  // unauthorizedCount
+          return unauthorizedCount;
+        case 1021821248:  // unauthorizedAvoided
+          return unauthorizedAvoided;
+      }
+      return super.metaPropertyGet(propertyName);
+    }
+
+    @Override
+    public BeanBuilder<? extends TokenRefreshMetrics> builder() {
+      return new TokenRefreshMetrics.Builder();
+    }
+
+    @Override
+    public Class<? extends TokenRefreshMetrics> beanType() {
+      return TokenRefreshMetrics.class;
+    }
+
+    @Override
+    public Map<String, MetaProperty<?>> metaPropertyMap() {
+      return metaPropertyMap$;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    protected Object propertyGet(Bean bean, String propertyName, boolean quiet) {
+      switch (propertyName.hashCode()) {
+        case -72196364:  // refreshCount
+          return ((TokenRefreshMetrics) bean).getRefreshCount();
+        case -1659972655:  // failedRefreshCount
+          return ((TokenRefreshMetrics) bean).getFailedRefreshCount();
+        case -1153231353:  // totalRefreshLatency
+          return ((TokenRefreshMetrics) bean).getTotalRefreshLatency();
+        case -354773543:  // lastRefreshLatency
+          return ((TokenRefreshMetrics) bean).getLastRefreshLatency();
+        case 2063040635:  // unauthorizedCount
+          return ((TokenRefreshMetrics) bean).getUnauthorizedCount();
+        case 1021821248:  // unauthorizedAvoided
+          return ((TokenRefreshMetrics) bean).getUnauthorizedAvoided();
+      }
+      return super.propertyGet(bean, propertyName, quiet);
+    }
+
+    @Override
+    protected void propertySet(Bean bean, String propertyName, Object newValue, boolean quiet) {
+      metaProperty(propertyName);
+      if (quiet) {
+        return;
+      }
+      throw new UnsupportedOperationException("Property cannot be written: " + propertyName);
+    }
+
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The bean-builder for {@code TokenRefreshMetrics}.
+   */
+  private static final class Builder extends DirectPrivateBeanBuilder<TokenRefreshMetrics> {
+
+    private long refreshCount;
+    private long failedRefreshCount;
+    private Duration totalRefreshLatency;
+    private Duration lastRefreshLatency;
+    private long unauthorizedCount;
+    private long unauthorizedAvoided;
+
+    /**
+     * Restricted constructor.
+     */
+    private Builder() {
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public Object get(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case -72196364:  // refreshCount
+          return refreshCount;
+        case -1659972655:  // failedRefreshCount
+          return failedRefreshCount;
+        case -1153231353:  // totalRefreshLatency
+          return totalRefreshLatency;
+        case -354773543:  // lastRefreshLatency
+          return lastRefreshLatency;
+        case 2063040635:  // unauthorizedCount
+          return unauthorizedCount;
+        case 1021821248:  // unauthorizedAvoided
+          return unauthorizedAvoided;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+    }
+
+    @Override
+    public Builder set(String propertyName, Object newValue) {
+      switch (propertyName.hashCode()) {
+        case -72196364:  // refreshCount
+          this.refreshCount = (Long) newValue;
+          break;
+        case -1659972655:  // failedRefreshCount
+          this.failedRefreshCount = (Long) newValue;
+          break;
+        case -1153231353:  // totalRefreshLatency
+          this.totalRefreshLatency = (Duration) newValue;
+          break;
+        case -354773543:  // lastRefreshLatency
+          this.lastRefreshLatency = (Duration) newValue;
+          break;
+        case 2063040635:  // unauthorizedCount
+          this.unauthorizedCount = (Long) newValue;
+          break;
+        case 1021821248:  // unauthorizedAvoided
+          this.unauthorizedAvoided = (Long) newValue;
+          break;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+      return this;
+    }
+
+    @Override
+    public TokenRefreshMetrics build() {
+      return new TokenRefreshMetrics(
+          refreshCount,
+          failedRefreshCount,
+          totalRefreshLatency,
+          lastRefreshLatency,
+          unauthorizedCount,
+          unauthorizedAvoided);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public String toString() {
+      StringBuilder buf = new StringBuilder(224);
+      buf.append("TokenRefreshMetrics.Builder{");
+      buf.append("refreshCount").append('=').append(JodaBeanUtils.toString(refreshCount)).append(',').append(' ');
+      buf.append("failedRefreshCount").append('=').append(JodaBeanUtils.toString(failedRefreshCount)).append(',').append(' ');
+      buf.append("totalRefreshLatency").append('=').append(JodaBeanUtils.toString(totalRefreshLatency)).append(',').append(' ');
+      buf.append("lastRefreshLatency").append('=').append(JodaBeanUtils.toString(lastRefreshLatency)).append(',').append(' ');
+      buf.append("unauthorizedCount").append('=').append(JodaBeanUtils.toString(unauthorizedCount)).append(',').append(' ');
+      buf.append("unauthorizedAvoided").append('=').append(JodaBeanUtils.toString(unauthorizedAvoided));
+      buf.append('}');
+      return buf.toString();
+    }
+
+  }
+
+  //-------------------------- AUTOGENERATED END --------------------------
+}
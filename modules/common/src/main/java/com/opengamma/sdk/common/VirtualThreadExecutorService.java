@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor service that runs tasks on virtual threads.
+ * <p>
+ * Each task submitted for immediate execution runs on its own virtual thread, so blocking
+ * calls do not tie up a platform thread. Scheduled tasks are run by a single platform thread,
+ * which is only intended for timers, and as such scheduled tasks must be short.
+ * <p>
+ * Virtual threads are created via reflection, as the SDK targets Java 8.
+ */
+final class VirtualThreadExecutorService extends AbstractExecutorService implements ScheduledExecutorService {
+
+  /**
+   * The factory method for the virtual thread executor, null if not supported.
+   */
+  private static final Method FACTORY;
+  static {
+    Method factory = null;
+    try {
+      factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException | SecurityException ex) {
+      // not supported
+    }
+    FACTORY = factory;
+  }
+
+  /** The executor that runs tasks on virtual threads. */
+  private final ExecutorService workers;
+  /** The platform scheduler that runs timers. */
+  private final ScheduledExecutorService timer;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Checks whether virtual threads are supported by the running JVM.
+   *
+   * @return true if supported
+   */
+  static boolean isSupported() {
+    return FACTORY != null;
+  }
+
+  /**
+   * Creates an instance backed by virtual threads.
+   *
+   * @return the executor service
+   * @throws IllegalStateException if virtual threads are not supported
+   */
+  static VirtualThreadExecutorService create() {
+    if (FACTORY == null) {
+      throw new IllegalStateException("Virtual threads require Java 21 or later");
+    }
+    ExecutorService workers;
+    try {
+      workers = (ExecutorService) FACTORY.invoke(null);
+    } catch (IllegalAccessException | InvocationTargetException ex) {
+      throw new IllegalStateException("Unable to create virtual thread executor", ex);
+    }
+    ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = Executors.defaultThreadFactory().newThread(r);
+      t.setName("ServiceInvoker-timer");
+      t.setDaemon(true);
+      return t;
+    });
+    return new VirtualThreadExecutorService(workers, timer);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param workers  the executor that runs tasks
+   * @param timer  the scheduler that runs timers
+   */
+  VirtualThreadExecutorService(ExecutorService workers, ScheduledExecutorService timer) {
+    this.workers = Objects.requireNonNull(workers, "workers must not be null");
+    this.timer = Objects.requireNonNull(timer, "timer must not be null");
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public void execute(Runnable command) {
+    workers.execute(command);
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    return timer.schedule(command, delay, unit);
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+    return timer.schedule(callable, delay, unit);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+    return timer.scheduleAtFixedRate(command, initialDelay, period, unit);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+    return timer.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public void shutdown() {
+    timer.shutdown();
+    workers.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    List<Runnable> pending = new ArrayList<>(timer.shutdownNow());
+    pending.addAll(workers.shutdownNow());
+    return pending;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return timer.isShutdown() && workers.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return timer.isTerminated() && workers.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    if (!timer.awaitTermination(timeout, unit)) {
+      return false;
+    }
+    return workers.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+  }
+
+}
@@ -7,6 +7,7 @@ package com.opengamma.sdk.common.auth;
 
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 
 import org.joda.beans.Bean;
 import org.joda.beans.BeanBuilder;
@@ -49,6 +50,12 @@ final class ApiKeyCredentials implements Credentials, ImmutableBean {
     return client.authenticateApiKey(apiKey, secret);
   }
 
+  @Override
+  public Optional<String> tokenStoreKey() {
+    // the secret is not part of the key, only a hash of the key is exposed
+    return Optional.of("apikey:" + FileTokenStore.sha256(apiKey));
+  }
+
   //------------------------- AUTOGENERATED START -------------------------
   /**
    * The meta-bean for {@code ApiKeyCredentials}.
@@ -6,6 +6,7 @@
 package com.opengamma.sdk.common.auth;
 
 import java.io.UncheckedIOException;
+import java.util.Optional;
 
 /**
  * Credentials used to authenticate with the service.
@@ -38,4 +39,17 @@ public interface Credentials {
    */
   public abstract AccessTokenResult authenticate(AuthClient client);
 
+  /**
+   * Gets a key identifying these credentials, used to store access tokens.
+   * <p>
+   * The key is used by a {@link TokenStore} to find a token obtained previously for the same credentials.
+   * It must not reveal any secret, thus is typically a hash.
+   * By default, no key is available and tokens obtained using these credentials are not stored.
+   *
+   * @return the key, empty if tokens should not be stored
+   */
+  public default Optional<String> tokenStoreKey() {
+    return Optional.empty();
+  }
+
 }
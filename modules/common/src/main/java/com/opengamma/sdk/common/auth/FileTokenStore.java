@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Token store that holds each token in a file.
+ * <p>
+ * The file is a properties file, named using a hash of the key. It is written to a temporary
+ * file and then moved into place, so that readers never see a partially written token.
+ */
+final class FileTokenStore implements TokenStore {
+
+  /**
+   * The permissions of the files, only accessible by the owner.
+   */
+  private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+  /**
+   * The permissions of the directory, only accessible by the owner.
+   */
+  private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+  /**
+   * The hex digits.
+   */
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /** The directory. */
+  private final Path directory;
+
+  //-------------------------------------------------------------------------
+  // creates an instance
+  FileTokenStore(Path directory) {
+    this.directory = Objects.requireNonNull(directory, "directory must not be null");
+  }
+
+  // hashes the text using SHA-256, returning hex
+  static String sha256(String text) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(UTF_8));
+      char[] hex = new char[hash.length * 2];
+      for (int i = 0; i < hash.length; i++) {
+        hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+        hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+      }
+      return new String(hex);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public Optional<StoredAccessToken> load(String key) {
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file(key), UTF_8)) {
+      properties.load(reader);
+    } catch (NoSuchFileException ex) {
+      return Optional.empty();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    try {
+      AccessTokenResult token = AccessTokenResult.of(
+          properties.getProperty("access_token"),
+          properties.getProperty("token_type"),
+          Long.parseLong(properties.getProperty("expires_in")));
+      return Optional.of(StoredAccessToken.of(token, Instant.parse(properties.getProperty("issued_at"))));
+    } catch (RuntimeException ex) {
+      // a corrupt or incompatible file is treated as absent
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public void save(String key, StoredAccessToken token) {
+    Properties properties = new Properties();
+    properties.setProperty("access_token", token.getToken().getAccessToken());
+    properties.setProperty("token_type", token.getToken().getTokenType());
+    properties.setProperty("expires_in", Long.toString(token.getToken().getExpiresIn()));
+    properties.setProperty("issued_at", token.getIssuedAt().toString());
+    try {
+      Files.createDirectories(directory, attributes(DIRECTORY_PERMISSIONS));
+      checkDirectoryPermissions();
+      Path temp = Files.createTempFile(directory, "token", ".tmp", attributes(FILE_PERMISSIONS));
+      try {
+        try (Writer writer = Files.newBufferedWriter(temp, UTF_8)) {
+          properties.store(writer, null);
+        }
+        move(temp, file(key));
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // the file for the key
+  private Path file(String key) {
+    return directory.resolve(sha256(key) + ".token");
+  }
+
+  // checks that a directory that already existed is not accessible by others, as the tokens grant access
+  private void checkDirectoryPermissions() throws IOException {
+    if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory);
+      if (!DIRECTORY_PERMISSIONS.containsAll(permissions)) {
+        throw new IOException("Token store directory must only be accessible by its owner, but has permissions " +
+            PosixFilePermissions.toString(permissions) + ": " + directory);
+      }
+    }
+  }
+
+  // the attributes restricting access, empty if the file system does not support POSIX permissions
+  private FileAttribute<?>[] attributes(Set<PosixFilePermission> permissions) {
+    if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      return new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(permissions)};
+    }
+    return new FileAttribute<?>[0];
+  }
+
+  // replaces the target atomically where possible
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException ex) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "FileTokenStore[" + directory + "]";
+  }
+
+}
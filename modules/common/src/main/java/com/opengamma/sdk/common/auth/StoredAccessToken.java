@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common.auth;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.joda.beans.Bean;
+import org.joda.beans.BeanBuilder;
+import org.joda.beans.ImmutableBean;
+import org.joda.beans.JodaBeanUtils;
+import org.joda.beans.MetaBean;
+import org.joda.beans.MetaProperty;
+import org.joda.beans.gen.BeanDefinition;
+import org.joda.beans.gen.PropertyDefinition;
+import org.joda.beans.impl.direct.DirectMetaBean;
+import org.joda.beans.impl.direct.DirectMetaProperty;
+import org.joda.beans.impl.direct.DirectMetaPropertyMap;
+import org.joda.beans.impl.direct.DirectPrivateBeanBuilder;
+
+/**
+ * An access token, together with the instant it was issued.
+ * <p>
+ * This is the unit held by a {@link TokenStore}.
+ */
+@BeanDefinition(builderScope = "private", metaScope = "private", factoryName = "of")
+public final class StoredAccessToken implements ImmutableBean {
+
+  /**
+   * The token.
+   */
+  @PropertyDefinition(validate = "notNull")
+  private final AccessTokenResult token;
+  /**
+   * The instant the token was issued.
+   */
+  @PropertyDefinition(validate = "notNull")
+  private final Instant issuedAt;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the instant the token expires.
+   *
+   * @return the instant
+   */
+  public Instant getExpiresAt() {
+    return issuedAt.plusSeconds(token.getExpiresIn());
+  }
+
+  /**
+   * Gets the lifetime of the token remaining at the specified instant.
+   *
+   * @param now  the current instant
+   * @return the remaining lifetime, negative if expired
+   */
+  public Duration remaining(Instant now) {
+    return Duration.between(now, getExpiresAt());
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    // the access token itself is not output
+    return "StoredAccessToken{issuedAt=" + issuedAt + ", expiresAt=" + getExpiresAt() + "}";
+  }
+
+  //------------------------- AUTOGENERATED START -------------------------
+  /**
+   * The meta-bean for {@code StoredAccessToken}.
+   * @return the meta-bean, not null
+   */
+  public static MetaBean meta() {
+    return StoredAccessToken.Meta.INSTANCE;
+  }
+
+  static {
+    MetaBean.register(StoredAccessToken.Meta.INSTANCE);
+  }
+
+  /**
+   * Obtains an instance.
+   * @param token  the value of the property, not null
+   * @param issuedAt  the value of the property, not null
+   * @return the instance
+   */
+  public static StoredAccessToken of(
+      AccessTokenResult token,
+      Instant issuedAt) {
+    return new StoredAccessToken(
+      token,
+      issuedAt);
+  }
+
+  private StoredAccessToken(
+      AccessTokenResult token,
+      Instant issuedAt) {
+    JodaBeanUtils.notNull(token, "token");
+    JodaBeanUtils.notNull(issuedAt, "issuedAt");
+    this.token = token;
+    this.issuedAt = issuedAt;
+  }
+
+  @Override
+  public MetaBean metaBean() {
+    return StoredAccessToken.Meta.INSTANCE;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the token.
+   * @return the value of the property, not null
+   */
+  public AccessTokenResult getToken() {
+    return token;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the instant the token was issued.
+   * @return the value of the property, not null
+   */
+  public Instant getIssuedAt() {
+    return issuedAt;
+  }
+
+  //-----------------------------------------------------------------------
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj != null && obj.getClass() == this.getClass()) {
+      StoredAccessToken other = (StoredAccessToken) obj;
+      return JodaBeanUtils.equal(token, other.token) &&
+          JodaBeanUtils.equal(issuedAt, other.issuedAt);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = getClass().hashCode();
+    hash = hash * 31 + JodaBeanUtils.hashCode(token);
+    hash = hash * 31 + JodaBeanUtils.hashCode(issuedAt);
+    return hash;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The meta-bean for {@code StoredAccessToken}.
+   */
+  private static final class Meta extends DirectMetaBean {
+    /**
+     * The singleton instance of the meta-bean.
+     */
+    static final Meta INSTANCE = new Meta();
+
+    /**
+     * The meta-property for the {@code token} property.
+     */
+    private final MetaProperty<AccessTokenResult> token = DirectMetaProperty.ofImmutable(
+        this, "token", StoredAccessToken.class, AccessTokenResult.class);
+    /**
+     * The meta-property for the {@code issuedAt} property.
+     */
+    private final MetaProperty<Instant> issuedAt = DirectMetaProperty.ofImmutable(
+        this, "issuedAt", StoredAccessToken.class, Instant.class);
+    /**
+     * The meta-properties.
+     */
+    private final Map<String, MetaProperty<?>> metaPropertyMap$ = new DirectMetaPropertyMap(
+        this, null,
+        "token",
+        "issuedAt");
+
+    /**
+     * Restricted constructor.
+     */
+    private Meta() {
+    }
+
+    @Override
+    protected MetaProperty<?> metaPropertyGet(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case 110541305:  // token
+          return token;
+        case 698711102:  // issuedAt
+          return issuedAt;
+      }
+      return super.metaPropertyGet(propertyName);
+    }
+
+    @Override
+    public BeanBuilder<? extends StoredAccessToken> builder() {
+      return new StoredAccessToken.Builder();
+    }
+
+    @Override
+    public Class<? extends StoredAccessToken> beanType() {
+      return StoredAccessToken.class;
+    }
+
+    @Override
+    public Map<String, MetaProperty<?>> metaPropertyMap() {
+      return metaPropertyMap$;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    protected Object propertyGet(Bean bean, String propertyName, boolean quiet) {
+      switch (propertyName.hashCode()) {
+        case 110541305:  // token
+          return ((StoredAccessToken) bean).getToken();
+        case 698711102:  // issuedAt
+          return ((StoredAccessToken) bean).getIssuedAt();
+      }
+      return super.propertyGet(bean, propertyName, quiet);
+    }
+
+    @Override
+    protected void propertySet(Bean bean, String propertyName, Object newValue, boolean quiet) {
+      metaProperty(propertyName);
+      if (quiet) {
+        return;
+      }
+      throw new UnsupportedOperationException("Property cannot be written: " + propertyName);
+    }
+
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The bean-builder for {@code StoredAccessToken}.
+   */
+  private static final class Builder extends DirectPrivateBeanBuilder<StoredAccessToken> {
+
+    private AccessTokenResult token;
+    private Instant issuedAt;
+
+    /**
+     * Restricted constructor.
+     */
+    private Builder() {
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public Object get(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case 110541305:  // token
+          return token;
+        case 698711102:  // issuedAt
+          return issuedAt;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+    }
+
+    @Override
+    public Builder set(String propertyName, Object newValue) {
+      switch (propertyName.hashCode()) {
+        case 110541305:  // token
+          this.token = (AccessTokenResult) newValue;
+          break;
+        case 698711102:  // issuedAt
+          this.issuedAt = (Instant) newValue;
+          break;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+      return this;
+    }
+
+    @Override
+    public StoredAccessToken build() {
+      return new StoredAccessToken(
+          token,
+          issuedAt);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public String toString() {
+      StringBuilder buf = new StringBuilder(96);
+      buf.append("StoredAccessToken.Builder{");
+      buf.append("token").append('=').append(JodaBeanUtils.toString(token)).append(',').append(' ');
+      buf.append("issuedAt").append('=').append(JodaBeanUtils.toString(issuedAt));
+      buf.append('}');
+      return buf.toString();
+    }
+
+  }
+
+  //-------------------------- AUTOGENERATED END --------------------------
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common.auth;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Store of access tokens, allowing a token to be reused beyond the life of a single invoker.
+ * <p>
+ * Short-lived processes, such as batch jobs, would otherwise need to authenticate before the first call.
+ * With a store, an invoker that finds a token that is still valid uses it without authenticating.
+ * Each new token obtained by the invoker is saved to the store.
+ * <p>
+ * Tokens are stored by a key that combines {@link Credentials#tokenStoreKey()} and the URL of the service.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface TokenStore {
+
+  /**
+   * Obtains a store that holds each token in a file in the specified directory.
+   * <p>
+   * The directory is created if necessary. Each file is named using a hash of the key,
+   * and where supported is only readable and writable by the owner.
+   * Where supported, tokens are not saved if the directory is accessible by anyone other than the owner,
+   * such as a directory that already existed with wider permissions.
+   * Files are replaced atomically, so that concurrent processes always see a complete token.
+   *
+   * @param directory  the directory to store tokens in
+   * @return the token store
+   */
+  public static TokenStore ofDirectory(Path directory) {
+    return new FileTokenStore(directory);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Loads the token stored for the key.
+   * <p>
+   * The token that is returned may have expired.
+   *
+   * @param key  the key
+   * @return the token, empty if none is stored
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public abstract Optional<StoredAccessToken> load(String key);
+
+  /**
+   * Saves a token for the key, replacing any stored token.
+   *
+   * @param key  the key
+   * @param token  the token to store
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public abstract void save(String key, StoredAccessToken token);
+
+}
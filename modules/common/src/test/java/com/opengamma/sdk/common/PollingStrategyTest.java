@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.sdk.common.PollingStrategy.PollingSchedule;
+
+/**
+ * Test {@link PollingStrategy}.
+ */
+@Test
+public class PollingStrategyTest {
+
+  public void test_fixed() {
+    PollingSchedule test = PollingStrategy.fixed(Duration.ofMillis(500)).start("LCH");
+    assertEquals(test.nextDelay(), Duration.ofMillis(500));
+    assertEquals(test.nextDelay(), Duration.ofMillis(500));
+    assertEquals(test.nextDelay(), Duration.ofMillis(500));
+  }
+
+  public void test_backoff() {
+    PollingSchedule test = PollingStrategy.backoff(Duration.ofMillis(100), 2, Duration.ofMillis(500)).start("LCH");
+    assertEquals(test.nextDelay(), Duration.ofMillis(100));
+    assertEquals(test.nextDelay(), Duration.ofMillis(200));
+    assertEquals(test.nextDelay(), Duration.ofMillis(400));
+    assertEquals(test.nextDelay(), Duration.ofMillis(500));
+    assertEquals(test.nextDelay(), Duration.ofMillis(500));
+  }
+
+  public void test_backoff_independentSchedules() {
+    PollingStrategy strategy = PollingStrategy.backoff(Duration.ofMillis(100), 2, Duration.ofMillis(500));
+    PollingSchedule first = strategy.start("LCH");
+    first.nextDelay();
+    first.nextDelay();
+    assertEquals(strategy.start("LCH").nextDelay(), Duration.ofMillis(100));
+  }
+
+  public void test_backoff_invalid() {
+    assertThrows(IllegalArgumentException.class, () -> PollingStrategy.backoff(Duration.ZERO, 2, Duration.ofSeconds(1)));
+    assertThrows(IllegalArgumentException.class, () -> PollingStrategy.backoff(Duration.ofSeconds(1), 0.5, Duration.ofSeconds(1)));
+    assertThrows(IllegalArgumentException.class, () -> PollingStrategy.backoff(Duration.ofSeconds(2), 2, Duration.ofSeconds(1)));
+  }
+
+  public void test_standard() {
+    PollingSchedule test = PollingStrategy.standard().start("LCH");
+    assertEquals(test.nextDelay(), Duration.ofMillis(50));
+    assertEquals(test.nextDelay(), Duration.ofMillis(75));
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_durationModel() throws Exception {
+    PollingStrategy strategy = PollingStrategy.fixed(Duration.ofMillis(10)).withDurationModel();
+    assertSame(strategy.withDurationModel(), strategy);
+
+    // no model yet, so use underlying
+    PollingSchedule first = strategy.start("LCH");
+    assertEquals(first.nextDelay(), Duration.ofMillis(10));
+    Thread.sleep(200);
+    first.completed();
+
+    // first delay sized from model, then underlying
+    Duration average = ((DurationModelPollingStrategy) strategy).averageDuration("LCH");
+    assertTrue(average.compareTo(Duration.ofMillis(200)) >= 0);
+    PollingSchedule second = strategy.start("LCH");
+    assertEquals(second.nextDelay(), Duration.ofNanos((long) (average.toNanos() * 0.8)));
+    assertEquals(second.nextDelay(), Duration.ofMillis(10));
+
+    // other keys unaffected
+    assertEquals(strategy.start("CME").nextDelay(), Duration.ofMillis(10));
+  }
+
+}
@@ -6,8 +6,13 @@
 package com.opengamma.sdk.common;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -68,4 +73,36 @@ public class ServiceInvokerTest {
       assertTrue(response.isSuccessful());
     }
   }
+
+  @Test
+  public void testCloseTasks() {
+    ServiceInvoker invoker = ServiceInvoker.builder(Credentials.ofApiKey("test", "test"))
+        .serviceUrl(HttpUrl.parse("http://" + server.getHostName() + ":" + server.getPort()))
+        .authClientFactory(inv -> new TestingAuthClient())
+        .build();
+    List<String> ran = new ArrayList<>();
+    Runnable removed = () -> ran.add("removed");
+    // tasks run before the executor is shut down, and a failing task does not stop the others
+    invoker.addCloseTask(() -> ran.add(invoker.getExecutor().isShutdown() ? "shutdown" : "running"));
+    invoker.addCloseTask(() -> {
+      throw new IllegalStateException();
+    });
+    invoker.addCloseTask(removed);
+    invoker.removeCloseTask(removed);
+    invoker.close();
+    assertEquals(ran, Arrays.asList("running"));
+    assertTrue(invoker.getExecutor().isShutdown());
+  }
+
+  @Test
+  public void testCredentialsKey() {
+    Credentials credentials = Credentials.ofApiKey("test", "test");
+    try (ServiceInvoker invoker = ServiceInvoker.builder(credentials)
+        .serviceUrl(HttpUrl.parse("http://" + server.getHostName() + ":" + server.getPort()))
+        .authClientFactory(inv -> new TestingAuthClient())
+        .build()) {
+      assertEquals(invoker.getCredentialsKey(), credentials.tokenStoreKey());
+      assertFalse(invoker.getCredentialsKey().get().contains("test"));
+    }
+  }
 }
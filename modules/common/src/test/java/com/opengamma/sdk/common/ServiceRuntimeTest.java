@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.sdk.common.auth.AccessTokenResult;
+import com.opengamma.sdk.common.auth.AuthClient;
+import com.opengamma.sdk.common.auth.Credentials;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Test {@link ServiceRuntime}.
+ */
+@Test
+public class ServiceRuntimeTest {
+
+  private static final int TENANTS = 50;
+
+  private MockWebServer server;
+  private CountingAuthClient authClient;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    authClient = new CountingAuthClient();
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return new MockResponse().setResponseCode(200);
+      }
+    });
+    server.start();
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_tenantsShareResources() throws Exception {
+    try (ServiceRuntime runtime = ServiceRuntime.create()) {
+      List<ServiceInvoker> invokers = new ArrayList<>();
+      for (int i = 0; i < TENANTS; i++) {
+        invokers.add(invoker(runtime, Credentials.ofApiKey("user" + i, "pw")));
+      }
+      for (ServiceInvoker invoker : invokers) {
+        assertSame(invoker.getHttpClient().dispatcher(), runtime.getHttpClient().dispatcher());
+        assertSame(invoker.getHttpClient().connectionPool(), runtime.getHttpClient().connectionPool());
+        assertSame(invoker.getExecutor(), runtime.getExecutor());
+        try (Response response = invoker.getHttpClient().newCall(request(invoker)).execute()) {
+          assertEquals(response.code(), 200);
+        }
+      }
+      // one socket serves every tenant
+      assertEquals(runtime.getHttpClient().connectionPool().connectionCount(), 1);
+      assertEquals(authClient.count.get(), TENANTS);
+      assertEquals(runtime.getTokenCount(), TENANTS);
+    }
+  }
+
+  public void test_equalCredentialsShareToken() throws Exception {
+    try (ServiceRuntime runtime = ServiceRuntime.create()) {
+      List<ServiceInvoker> invokers = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        ServiceInvoker invoker = invoker(runtime, Credentials.ofApiKey("user", "pw"));
+        try (Response response = invoker.getHttpClient().newCall(request(invoker)).execute()) {
+          assertEquals(response.code(), 200);
+        }
+        invokers.add(invoker);
+      }
+      assertEquals(authClient.count.get(), 1);
+      assertEquals(runtime.getTokenCount(), 1);
+
+      // the token is held until the last invoker using it is closed, closing twice having no effect
+      invokers.get(0).close();
+      invokers.get(0).close();
+      invokers.get(1).close();
+      assertEquals(runtime.getTokenCount(), 1);
+      invokers.get(2).close();
+      assertEquals(runtime.getTokenCount(), 0);
+
+      ServiceInvoker invoker = invoker(runtime, Credentials.ofApiKey("user", "pw"));
+      try (Response response = invoker.getHttpClient().newCall(request(invoker)).execute()) {
+        assertEquals(response.code(), 200);
+      }
+      assertEquals(authClient.count.get(), 2);
+      assertEquals(runtime.getTokenCount(), 1);
+    }
+  }
+
+  public void test_differentTokenSettings() {
+    try (ServiceRuntime runtime = ServiceRuntime.create()) {
+      ServiceInvoker invoker = invoker(runtime, Credentials.ofApiKey("user", "pw"));
+      assertThrows(IllegalArgumentException.class, () -> runtime.invokerBuilder(Credentials.ofApiKey("user", "pw"))
+          .serviceUrl(server.url("/"))
+          .authClientFactory(inv -> authClient)
+          .tokenRefreshFraction(0.5)
+          .build());
+      // once the token is released, other settings may be used
+      invoker.close();
+      runtime.invokerBuilder(Credentials.ofApiKey("user", "pw"))
+          .serviceUrl(server.url("/"))
+          .authClientFactory(inv -> authClient)
+          .tokenRefreshFraction(0.5)
+          .build()
+          .close();
+      assertEquals(runtime.getTokenCount(), 0);
+    }
+  }
+
+  public void test_close() throws Exception {
+    ServiceRuntime runtime = ServiceRuntime.create();
+    ServiceInvoker invoker = invoker(runtime, Credentials.ofApiKey("user", "pw"));
+    invoker.close();
+    // closing an invoker leaves the shared executor running
+    assertFalse(runtime.getExecutor().isShutdown());
+    runtime.close();
+    assertTrue(runtime.getExecutor().isShutdown());
+    assertThrows(IllegalStateException.class, () -> invoker(runtime, Credentials.ofApiKey("user", "pw")));
+  }
+
+  //-------------------------------------------------------------------------
+  private ServiceInvoker invoker(ServiceRuntime runtime, Credentials credentials) {
+    return runtime.invokerBuilder(credentials)
+        .serviceUrl(server.url("/"))
+        .authClientFactory(inv -> authClient)
+        .build();
+  }
+
+  private static Request request(ServiceInvoker invoker) {
+    return new Request.Builder()
+        .url(invoker.getServiceUrl().resolve("test"))
+        .get()
+        .build();
+  }
+
+  // auth client that counts the authentications
+  private static final class CountingAuthClient implements AuthClient {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public AccessTokenResult authenticateApiKey(Credentials credentials) {
+      return credentials.authenticate(this);
+    }
+
+    @Override
+    public AccessTokenResult authenticateApiKey(String apiKey, String apiKeySecret) {
+      return AccessTokenResult.of("token" + count.incrementAndGet(), "bearer", 3600);
+    }
+  }
+
+}
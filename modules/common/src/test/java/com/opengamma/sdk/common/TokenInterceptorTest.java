@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.sdk.common.auth.AccessTokenResult;
+import com.opengamma.sdk.common.auth.AuthClient;
+import com.opengamma.sdk.common.auth.Credentials;
+import com.opengamma.sdk.common.auth.TokenStore;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Test {@link TokenInterceptor}.
+ */
+@Test
+public class TokenInterceptorTest {
+
+  private static final Credentials CREDENTIALS = Credentials.ofApiKey("user", "pw");
+
+  private MockWebServer server;
+  private ExpiringAuthClient authClient;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    authClient = new ExpiringAuthClient(1);
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        String header = request.getHeader("Authorization");
+        boolean valid = header != null && authClient.isValid(header.substring("Bearer ".length()));
+        return new MockResponse().setResponseCode(valid ? 200 : 401);
+      }
+    });
+    server.start();
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_refreshBeforeExpiry() throws Exception {
+    try (ServiceInvoker invoker = ServiceInvoker.builder(CREDENTIALS)
+        .serviceUrl(server.url("/"))
+        .authClientFactory(inv -> authClient)
+        .tokenRefreshFraction(0.5)
+        .build()) {
+
+      // make requests across several token lifetimes
+      long end = System.nanoTime() + Duration.ofMillis(2600).toNanos();
+      while (System.nanoTime() < end) {
+        try (Response response = invoker.getHttpClient().newCall(request(invoker)).execute()) {
+          assertEquals(response.code(), 200);
+        }
+        Thread.sleep(20);
+      }
+      TokenRefreshMetrics metrics = invoker.getTokenRefreshMetrics();
+      assertEquals(metrics.getUnauthorizedCount(), 0);
+      assertTrue(metrics.getRefreshCount() >= 3, metrics.toString());
+      assertTrue(metrics.getUnauthorizedAvoided() >= 1, metrics.toString());
+      assertEquals(metrics.getFailedRefreshCount(), 0);
+      assertTrue(metrics.getMeanRefreshLatency().compareTo(Duration.ZERO) >= 0);
+      assertEquals(authClient.count.get(), metrics.getRefreshCount() + 1);
+    }
+  }
+
+  public void test_unauthorizedRetried() throws Exception {
+    try (ServiceInvoker invoker = ServiceInvoker.builder(CREDENTIALS)
+        .serviceUrl(server.url("/"))
+        .authClientFactory(inv -> authClient)
+        .build()) {
+
+      try (Response response = invoker.getHttpClient().newCall(request(invoker)).execute()) {
+        assertEquals(response.code(), 200);
+      }
+      authClient.revokeAll();
+      try (Response response = invoker.getHttpClient().newCall(request(invoker)).execute()) {
+        assertEquals(response.code(), 200);
+      }
+      assertEquals(invoker.getTokenRefreshMetrics().getUnauthorizedCount(), 1);
+      assertEquals(authClient.count.get(), 2);
+    }
+  }
+
+  public void test_singleFlight_stress() throws Exception {
+    int requests = 500;
+    authClient = new ExpiringAuthClient(60_000, Duration.ofMillis(100));
+    ExecutorService pool = Executors.newFixedThreadPool(requests);
+    try (ServiceInvoker invoker = ServiceInvoker.builder(CREDENTIALS)
+        .serviceUrl(server.url("/"))
+        .httpClient(new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(requests, 1, TimeUnit.MINUTES))
+            .build())
+        .authClientFactory(inv -> authClient)
+        .build()) {
+
+      invoker.getHttpClient().newCall(request(invoker)).execute().close();
+      assertEquals(authClient.count.get(), 1);
+
+      // expire the token, then send all the requests at once
+      authClient.revokeAll();
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < requests; i++) {
+        futures.add(pool.submit(() -> {
+          start.await();
+          try (Response response = invoker.getHttpClient().newCall(request(invoker)).execute()) {
+            return response.code();
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<Integer> future : futures) {
+        assertEquals(future.get(60, TimeUnit.SECONDS).intValue(), 200);
+      }
+      assertEquals(authClient.count.get(), 2);
+      assertTrue(invoker.getTokenRefreshMetrics().getUnauthorizedCount() > 0);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  public void test_tokenStore_reusedByNextInvoker() throws Exception {
+    authClient = new ExpiringAuthClient(3600);
+    Path directory = Files.createTempDirectory("tokenstore");
+    try {
+      TokenStore store = TokenStore.ofDirectory(directory);
+      for (int i = 0; i < 3; i++) {
+        try (ServiceInvoker invoker = ServiceInvoker.builder(CREDENTIALS)
+            .serviceUrl(server.url("/"))
+            .authClientFactory(inv -> authClient)
+            .tokenStore(store)
+            .build()) {
+          try (Response response = invoker.getHttpClient().newCall(request(invoker)).execute()) {
+            assertEquals(response.code(), 200);
+          }
+        }
+      }
+      // only the first invoker authenticated
+      assertEquals(authClient.count.get(), 1);
+
+      // a stored token that is rejected is replaced
+      authClient.revokeAll();
+      try (ServiceInvoker invoker = ServiceInvoker.builder(CREDENTIALS)
+          .serviceUrl(server.url("/"))
+          .authClientFactory(inv -> authClient)
+          .tokenStore(store)
+          .build()) {
+        try (Response response = invoker.getHttpClient().newCall(request(invoker)).execute()) {
+          assertEquals(response.code(), 200);
+        }
+      }
+      assertEquals(authClient.count.get(), 2);
+      assertEquals(store.load(CREDENTIALS.tokenStoreKey().get() + " " + server.url("/")).get().getToken().getAccessToken(), "token2");
+    } finally {
+      try (Stream<Path> files = Files.list(directory)) {
+        for (Path file : files.collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+      Files.delete(directory);
+    }
+  }
+
+  public void test_closeStopsRefresh() throws Exception {
+    ServiceInvoker invoker = ServiceInvoker.builder(CREDENTIALS)
+        .serviceUrl(server.url("/"))
+        .authClientFactory(inv -> authClient)
+        .tokenRefreshFraction(0.1)
+        .build();
+    invoker.getHttpClient().newCall(request(invoker)).execute().close();
+    invoker.close();
+    int countAtClose = authClient.count.get();
+    // several refresh intervals pass without a refresh
+    Thread.sleep(300);
+    assertEquals(authClient.count.get(), countAtClose);
+  }
+
+  public void test_invalidFraction() {
+    assertThrows(IllegalArgumentException.class, () -> ServiceInvoker.builder(CREDENTIALS).tokenRefreshFraction(0));
+    assertThrows(IllegalArgumentException.class, () -> ServiceInvoker.builder(CREDENTIALS).tokenRefreshFraction(1));
+    assertThrows(IllegalArgumentException.class, () -> ServiceInvoker.builder(CREDENTIALS).tokenRefreshFraction(Double.NaN));
+  }
+
+  //-------------------------------------------------------------------------
+  private static Request request(ServiceInvoker invoker) {
+    return new Request.Builder()
+        .url(invoker.getServiceUrl().resolve("test"))
+        .get()
+        .build();
+  }
+
+  // auth client issuing tokens that the server rejects once they expire
+  private static final class ExpiringAuthClient implements AuthClient {
+    private final long expiresIn;
+    private final Duration latency;
+    private final AtomicInteger count = new AtomicInteger();
+    private final Map<String, Long> expiryNanos = new ConcurrentHashMap<>();
+
+    private ExpiringAuthClient(long expiresIn) {
+      this(expiresIn, Duration.ZERO);
+    }
+
+    private ExpiringAuthClient(long expiresIn, Duration latency) {
+      this.expiresIn = expiresIn;
+      this.latency = latency;
+    }
+
+    @Override
+    public AccessTokenResult authenticateApiKey(Credentials credentials) {
+      return credentials.authenticate(this);
+    }
+
+    @Override
+    public AccessTokenResult authenticateApiKey(String apiKey, String apiKeySecret) {
+      try {
+        Thread.sleep(latency.toMillis());
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      String token = "token" + count.incrementAndGet();
+      expiryNanos.put(token, System.nanoTime() + Duration.ofSeconds(expiresIn).toNanos());
+      return AccessTokenResult.of(token, "bearer", expiresIn);
+    }
+
+    private boolean isValid(String token) {
+      Long expiry = expiryNanos.get(token);
+      return expiry != null && System.nanoTime() - expiry < 0;
+    }
+
+    private void revokeAll() {
+      expiryNanos.clear();
+    }
+  }
+
+}
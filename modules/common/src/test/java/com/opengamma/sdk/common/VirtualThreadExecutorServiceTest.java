@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.sdk.common.auth.Credentials;
+
+import okhttp3.Protocol;
+
+/**
+ * Test {@link VirtualThreadExecutorService}.
+ */
+@Test
+public class VirtualThreadExecutorServiceTest {
+
+  public void test_executeAndSchedule() throws Exception {
+    ExecutorService workers = Executors.newSingleThreadExecutor(r -> new Thread(r, "worker"));
+    ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "timer"));
+    VirtualThreadExecutorService test = new VirtualThreadExecutorService(workers, timer);
+
+    CompletableFuture<String> executed = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), test);
+    assertEquals(executed.get(5, SECONDS), "worker");
+    assertEquals(test.schedule(() -> Thread.currentThread().getName(), 1, MILLISECONDS).get(5, SECONDS), "timer");
+
+    test.shutdown();
+    assertTrue(test.awaitTermination(5, SECONDS));
+    assertTrue(test.isShutdown());
+    assertTrue(test.isTerminated());
+    assertTrue(workers.isShutdown());
+    assertTrue(timer.isShutdown());
+  }
+
+  public void test_builder() throws Exception {
+    if (VirtualThreadExecutorService.isSupported()) {
+      try (ServiceInvoker invoker = ServiceInvoker.builder(Credentials.ofApiKey("user", "password"))
+          .virtualThreads()
+          .build()) {
+        assertTrue(invoker.isVirtualThreads());
+        Thread thread = CompletableFuture.supplyAsync(Thread::currentThread, invoker.getExecutor()).get(5, SECONDS);
+        assertNotEquals(thread.getName(), "ServiceInvoker-timer");
+      }
+    } else {
+      assertThrows(IllegalStateException.class, () -> ServiceInvoker.builder(Credentials.ofApiKey("user", "password"))
+          .virtualThreads());
+      assertThrows(IllegalStateException.class, () -> VirtualThreadExecutorService.create());
+    }
+  }
+
+  public void test_builder_default() {
+    try (ServiceInvoker invoker = ServiceInvoker.of(Credentials.ofApiKey("user", "password"))) {
+      assertFalse(invoker.isVirtualThreads());
+      assertTrue(invoker.getHttpClient().protocols().contains(Protocol.HTTP_2));
+    }
+  }
+
+  public void test_builder_onlyHttp11() {
+    ExecutorService workers = Executors.newSingleThreadExecutor();
+    ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    try (ServiceInvoker invoker = ServiceInvoker.builder(Credentials.ofApiKey("user", "password"))
+        .executorService(new VirtualThreadExecutorService(workers, timer))
+        .build()) {
+      // HTTP/2 would pin the carrier thread while waiting for a response
+      assertEquals(invoker.getHttpClient().protocols(), Collections.singletonList(Protocol.HTTP_1_1));
+    }
+  }
+
+}
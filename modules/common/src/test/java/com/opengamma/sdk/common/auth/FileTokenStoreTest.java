@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.common.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test {@link FileTokenStore}.
+ */
+@Test
+public class FileTokenStoreTest {
+
+  private static final Instant ISSUED = Instant.parse("2026-06-01T10:15:30Z");
+  private static final StoredAccessToken TOKEN = StoredAccessToken.of(AccessTokenResult.of("abc", "bearer", 3600), ISSUED);
+
+  private Path directory;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("tokenstore");
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path path : files.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_saveLoad() throws IOException {
+    TokenStore test = TokenStore.ofDirectory(directory.resolve("tokens"));
+    assertEquals(test.load("key"), Optional.empty());
+
+    test.save("key", TOKEN);
+    assertEquals(test.load("key"), Optional.of(TOKEN));
+    assertEquals(test.load("other"), Optional.empty());
+    assertEquals(TOKEN.getExpiresAt(), ISSUED.plusSeconds(3600));
+    assertFalse(TOKEN.toString().contains("abc"));
+
+    // replace, leaving no temporary files behind
+    StoredAccessToken token2 = StoredAccessToken.of(AccessTokenResult.of("def", "bearer", 60), ISSUED.plusSeconds(10));
+    test.save("key", token2);
+    assertEquals(test.load("key"), Optional.of(token2));
+    try (Stream<Path> files = Files.list(directory.resolve("tokens"))) {
+      List<Path> list = files.collect(Collectors.toList());
+      assertEquals(list.size(), 1);
+      // the file name does not reveal the key
+      assertFalse(list.get(0).getFileName().toString().contains("key"));
+    }
+  }
+
+  public void test_permissions() throws IOException {
+    if (!directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      return;
+    }
+    TokenStore test = TokenStore.ofDirectory(directory.resolve("tokens"));
+    test.save("key", TOKEN);
+    try (Stream<Path> files = Files.list(directory.resolve("tokens"))) {
+      Path file = files.findFirst().get();
+      assertEquals(PosixFilePermissions.toString(Files.getPosixFilePermissions(file)), "rw-------");
+    }
+    assertEquals(PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.resolve("tokens"))), "rwx------");
+  }
+
+  public void test_permissions_existingDirectoryAccessibleByOthers() throws IOException {
+    if (!directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      return;
+    }
+    Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwxr-xr-x"));
+    TokenStore test = TokenStore.ofDirectory(directory);
+    assertThrows(UncheckedIOException.class, () -> test.save("key", TOKEN));
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(files.count(), 0L);
+    }
+  }
+
+  public void test_corruptFile() throws IOException {
+    TokenStore test = TokenStore.ofDirectory(directory);
+    test.save("key", TOKEN);
+    try (Stream<Path> files = Files.list(directory)) {
+      Files.write(files.findFirst().get(), "rubbish".getBytes(UTF_8));
+    }
+    assertEquals(test.load("key"), Optional.empty());
+  }
+
+  public void test_credentialsKey() {
+    Optional<String> key = Credentials.ofApiKey("user", "secret").tokenStoreKey();
+    assertTrue(key.isPresent());
+    assertFalse(key.get().contains("user"));
+    assertFalse(key.get().contains("secret"));
+    assertEquals(Credentials.ofApiKey("user", "other").tokenStoreKey(), key);
+    assertNotEquals(Credentials.ofApiKey("user2", "secret").tokenStoreKey(), key);
+  }
+
+}
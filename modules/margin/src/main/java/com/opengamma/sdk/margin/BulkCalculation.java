@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A bulk calculation, running many jobs with bounded parallelism.
+ * <p>
+ * Jobs are started in the order given, with no more than the maximum number in flight at once,
+ * both overall and for each CCP. When the limit for one CCP is reached, jobs for other CCPs are
+ * started in preference, taking each CCP in turn. A job remains in flight until its result has
+ * been delivered, so the memory used is bounded by the window, however many jobs there are.
+ * <p>
+ * The failure of a job is delivered as its result, and does not affect the other jobs.
+ */
+final class BulkCalculation {
+
+  /** The function that runs a single job. */
+  private final Function<MarginCalcJob, CompletableFuture<MarginCalcResult>> calculateFn;
+  /** The function that delivers a result, given the task to run once it has been consumed. */
+  private final BiConsumer<MarginCalcJobResult, Runnable> deliverFn;
+  /** The maximum number of jobs in flight. */
+  private final int maxInFlight;
+  /** The maximum number of jobs in flight for each CCP. */
+  private final int maxInFlightPerCcp;
+  /** The lock protecting the state. */
+  private final Lock lock = new ReentrantLock();
+  /** The jobs waiting to start, by CCP, in order. */
+  private final Map<Ccp, Deque<MarginCalcJob>> waiting = new EnumMap<>(Ccp.class);
+  /** The number of jobs in flight, by CCP. */
+  private final Map<Ccp, Integer> inFlightByCcp = new EnumMap<>(Ccp.class);
+  /** The calculations in progress, cancelled if the bulk calculation is cancelled. */
+  private final Set<CompletableFuture<MarginCalcResult>> running = ConcurrentHashMap.newKeySet();
+  /** The future completed when all jobs have finished. */
+  private final CompletableFuture<Void> done = new CompletableFuture<>();
+  /** The number of jobs in flight. */
+  private int inFlight;
+  /** The number of jobs not yet finished. */
+  private int remaining;
+  /** The index of the CCP to consider first when starting the next job, for fairness. */
+  private int nextCcp;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Runs the jobs, delivering each result to the consumer as it completes.
+   * <p>
+   * The consumer is called by one thread at a time per job, but may be called concurrently for different jobs.
+   * If the consumer throws an exception, the remaining jobs still run, and the returned future
+   * completes with the first such exception.
+   *
+   * @param jobs  the jobs to run
+   * @param calculateFn  the function that runs a single job
+   * @param maxInFlight  the maximum number of jobs in flight
+   * @param maxInFlightPerCcp  the maximum number of jobs in flight for each CCP
+   * @param resultConsumer  the consumer of the results
+   * @return the future completed when all jobs have finished, which can be cancelled to abandon the remaining jobs
+   */
+  static CompletableFuture<Void> run(
+      Collection<MarginCalcJob> jobs,
+      Function<MarginCalcJob, CompletableFuture<MarginCalcResult>> calculateFn,
+      int maxInFlight,
+      int maxInFlightPerCcp,
+      Consumer<MarginCalcJobResult> resultConsumer) {
+
+    Objects.requireNonNull(resultConsumer, "resultConsumer must not be null");
+    AtomicReference<RuntimeException> consumerFailure = new AtomicReference<>();
+    BiConsumer<MarginCalcJobResult, Runnable> deliverFn = (result, release) -> {
+      try {
+        resultConsumer.accept(result);
+      } catch (RuntimeException ex) {
+        consumerFailure.compareAndSet(null, ex);
+      } finally {
+        release.run();
+      }
+    };
+    BulkCalculation bulk = new BulkCalculation(jobs, calculateFn, deliverFn, maxInFlight, maxInFlightPerCcp);
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    bulk.done.whenComplete((ignored, ex) -> {
+      if (consumerFailure.get() != null) {
+        result.completeExceptionally(consumerFailure.get());
+      } else {
+        result.complete(null);
+      }
+    });
+    // cancelling the returned future cancels the jobs
+    result.whenComplete((ignored, ex) -> bulk.cancel());
+    bulk.start();
+    return result;
+  }
+
+  /**
+   * Runs the jobs, returning an iterator over the results in the order they complete.
+   * <p>
+   * The iterator blocks until the next result is available.
+   * A job remains in flight until its result is obtained from the iterator, so further jobs
+   * are only started as the results are consumed.
+   *
+   * @param jobs  the jobs to run
+   * @param calculateFn  the function that runs a single job
+   * @param maxInFlight  the maximum number of jobs in flight
+   * @param maxInFlightPerCcp  the maximum number of jobs in flight for each CCP
+   * @return the iterator over the results
+   */
+  static Iterator<MarginCalcJobResult> iterate(
+      Collection<MarginCalcJob> jobs,
+      Function<MarginCalcJob, CompletableFuture<MarginCalcResult>> calculateFn,
+      int maxInFlight,
+      int maxInFlightPerCcp) {
+
+    BlockingQueue<Delivered> results = new LinkedBlockingQueue<>();
+    BiConsumer<MarginCalcJobResult, Runnable> deliverFn = (result, release) -> results.add(new Delivered(result, release));
+    BulkCalculation bulk = new BulkCalculation(jobs, calculateFn, deliverFn, maxInFlight, maxInFlightPerCcp);
+    int total = jobs.size();
+    bulk.start();
+    return new Iterator<MarginCalcJobResult>() {
+      private int returned;
+
+      @Override
+      public boolean hasNext() {
+        return returned < total;
+      }
+
+      @Override
+      public MarginCalcJobResult next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Delivered delivered;
+        try {
+          delivered = results.take();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(ex);
+        }
+        returned++;
+        delivered.release.run();
+        return delivered.result;
+      }
+    };
+  }
+
+  //-------------------------------------------------------------------------
+  // creates an instance
+  private BulkCalculation(
+      Collection<MarginCalcJob> jobs,
+      Function<MarginCalcJob, CompletableFuture<MarginCalcResult>> calculateFn,
+      BiConsumer<MarginCalcJobResult, Runnable> deliverFn,
+      int maxInFlight,
+      int maxInFlightPerCcp) {
+
+    Objects.requireNonNull(jobs, "jobs must not be null");
+    this.calculateFn = Objects.requireNonNull(calculateFn, "calculateFn must not be null");
+    this.deliverFn = deliverFn;
+    this.maxInFlight = maxInFlight;
+    this.maxInFlightPerCcp = maxInFlightPerCcp;
+    for (MarginCalcJob job : jobs) {
+      Objects.requireNonNull(job, "jobs must not contain null");
+      waiting.computeIfAbsent(job.getCcp(), ccp -> new ArrayDeque<>()).add(job);
+      remaining++;
+    }
+  }
+
+  // starts the first jobs
+  private void start() {
+    if (remaining == 0) {
+      done.complete(null);
+    } else {
+      startJobs();
+    }
+  }
+
+  // starts as many jobs as the limits allow
+  private void startJobs() {
+    List<MarginCalcJob> toStart = new ArrayList<>();
+    lock.lock();
+    try {
+      while (inFlight < maxInFlight) {
+        MarginCalcJob job = nextJob();
+        if (job == null) {
+          break;
+        }
+        inFlight++;
+        inFlightByCcp.merge(job.getCcp(), 1, Integer::sum);
+        toStart.add(job);
+      }
+    } finally {
+      lock.unlock();
+    }
+    for (MarginCalcJob job : toStart) {
+      startJob(job);
+    }
+  }
+
+  // takes the next job that can be started, taking each CCP in turn, null if none, called under the lock
+  private MarginCalcJob nextJob() {
+    Ccp[] ccps = Ccp.values();
+    for (int i = 0; i < ccps.length; i++) {
+      Ccp ccp = ccps[(nextCcp + i) % ccps.length];
+      Deque<MarginCalcJob> queue = waiting.get(ccp);
+      if (queue != null && !queue.isEmpty() && inFlightByCcp.getOrDefault(ccp, 0) < maxInFlightPerCcp) {
+        nextCcp = (nextCcp + i + 1) % ccps.length;
+        return queue.poll();
+      }
+    }
+    return null;
+  }
+
+  // starts a single job, delivering its result when complete
+  private void startJob(MarginCalcJob job) {
+    CompletableFuture<MarginCalcResult> future;
+    try {
+      future = calculateFn.apply(job);
+    } catch (RuntimeException ex) {
+      future = new CompletableFuture<>();
+      future.completeExceptionally(ex);
+    }
+    CompletableFuture<MarginCalcResult> started = future;
+    running.add(started);
+    started.whenComplete((result, ex) -> {
+      running.remove(started);
+      if (done.isDone()) {
+        return;
+      }
+      MarginCalcJobResult jobResult = ex == null ?
+          MarginCalcJobResult.success(job, result) :
+          MarginCalcJobResult.failure(job, toMarginException(ex));
+      deliverFn.accept(jobResult, () -> finish(job));
+    });
+  }
+
+  // marks the job as finished, starting the next jobs
+  private void finish(MarginCalcJob job) {
+    boolean last;
+    lock.lock();
+    try {
+      inFlight--;
+      inFlightByCcp.merge(job.getCcp(), -1, Integer::sum);
+      remaining--;
+      last = remaining == 0;
+    } finally {
+      lock.unlock();
+    }
+    if (last) {
+      done.complete(null);
+    } else {
+      startJobs();
+    }
+  }
+
+  // abandons the jobs that have not finished, which also deletes their calculations
+  private void cancel() {
+    if (!done.isDone()) {
+      lock.lock();
+      try {
+        waiting.clear();
+      } finally {
+        lock.unlock();
+      }
+      done.cancel(false);
+      for (CompletableFuture<MarginCalcResult> future : running) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  // converts the failure of a job to the exception type of the client
+  static MarginException toMarginException(Throwable ex) {
+    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    if (cause instanceof MarginException) {
+      return (MarginException) cause;
+    }
+    MarginException wrapped = new MarginException("Calculation failed: " + cause, "Unexpected");
+    wrapped.initCause(cause);
+    return wrapped;
+  }
+
+  //-------------------------------------------------------------------------
+  // a result that has been delivered, with the task to run once it has been consumed
+  private static final class Delivered {
+    /** The result. */
+    private final MarginCalcJobResult result;
+    /** The task to run once consumed. */
+    private final Runnable release;
+
+    private Delivered(MarginCalcJobResult result, Runnable release) {
+      this.result = result;
+      this.release = release;
+    }
+  }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.sdk.common.ServiceInvoker;
+
+/**
+ * Background deleter of the calculations of a client that are no longer needed.
+ * <p>
+ * Once the result of a calculation has been obtained, the calculation is deleted to free server state.
+ * Rather than the caller waiting for the delete, the calculation is handed to this class, which deletes
+ * it asynchronously, with the number of deletes in progress bounded. Deletes that fail due to an IO error
+ * or a server error are retried after a delay, a limited number of times.
+ * <p>
+ * While deletes are outstanding, a task is registered with the service invoker, so that closing the
+ * invoker waits a limited time for them to finish. Calculations that could not be deleted are logged.
+ */
+final class CalculationJanitor {
+
+  /** The logger. */
+  private static final Logger log = LoggerFactory.getLogger(CalculationJanitor.class);
+  /**
+   * The maximum number of deletes in progress at any one time.
+   */
+  static final int MAX_CONCURRENT_DELETES = 8;
+  /**
+   * The maximum number of attempts to delete a calculation.
+   */
+  static final int MAX_ATTEMPTS = 3;
+  /**
+   * The delay before the first retry, doubling for each subsequent retry.
+   */
+  private static final long RETRY_DELAY_NANOS = MILLISECONDS.toNanos(250);
+  /**
+   * The maximum time that closing the invoker waits for outstanding deletes.
+   */
+  static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(5);
+
+  /** The service invoker. */
+  private final ServiceInvoker invoker;
+  /** The scheduler used for retries. */
+  private final ScheduledExecutorService scheduler;
+  /** The function that deletes a calculation. */
+  private final BiFunction<Ccp, String, CompletableFuture<Void>> deleteFn;
+  /** The lock protecting the registration of the close task. */
+  private final Lock lock = new ReentrantLock();
+  /** The calculations that have not yet been deleted, or given up on. */
+  private final Set<Entry> outstanding = ConcurrentHashMap.newKeySet();
+  /** The calculations waiting for a delete to be started. */
+  private final ConcurrentLinkedQueue<Entry> ready = new ConcurrentLinkedQueue<>();
+  /** The number of deletes in progress. */
+  private final AtomicInteger inFlight = new AtomicInteger();
+  /** The task that drains the outstanding deletes when the invoker is closed. */
+  private final Runnable closeTask = this::close;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates an instance.
+   *
+   * @param invoker  the service invoker, used to register the close task
+   * @param deleteFn  the function that deletes a calculation
+   */
+  CalculationJanitor(ServiceInvoker invoker, BiFunction<Ccp, String, CompletableFuture<Void>> deleteFn) {
+    this.invoker = Objects.requireNonNull(invoker, "invoker must not be null");
+    this.scheduler = invoker.getExecutor();
+    this.deleteFn = Objects.requireNonNull(deleteFn, "deleteFn must not be null");
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Deletes a calculation in the background.
+   *
+   * @param ccp  the CCP
+   * @param calcId  the calculation identifier
+   */
+  void delete(Ccp ccp, String calcId) {
+    Entry entry = new Entry(ccp, calcId);
+    lock.lock();
+    try {
+      if (outstanding.isEmpty()) {
+        invoker.addCloseTask(closeTask);
+      }
+      outstanding.add(entry);
+    } finally {
+      lock.unlock();
+    }
+    ready.add(entry);
+    dispatch();
+  }
+
+  // gets the number of calculations not yet deleted
+  int outstandingCount() {
+    return outstanding.size();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Waits for the outstanding deletes to finish.
+   *
+   * @param timeout  the maximum time to wait
+   * @return the identifiers of the calculations that were not deleted in time
+   */
+  List<String> drain(Duration timeout) {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    for (Entry entry : outstanding) {
+      try {
+        entry.done.get(Math.max(deadline - System.nanoTime(), 0), NANOSECONDS);
+      } catch (TimeoutException ex) {
+        break;
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (ExecutionException ex) {
+        // never completed exceptionally
+      }
+    }
+    List<String> leaked = new ArrayList<>();
+    for (Entry entry : outstanding) {
+      leaked.add(entry.calcId);
+    }
+    return leaked;
+  }
+
+  // drains the outstanding deletes, called when the invoker is closed
+  private void close() {
+    List<String> leaked = drain(DRAIN_TIMEOUT);
+    if (!leaked.isEmpty()) {
+      log.warn("Unable to delete {} calculations before close: {}", leaked.size(), leaked);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // starts as many deletes as the concurrency limit allows
+  private void dispatch() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= MAX_CONCURRENT_DELETES) {
+        return;
+      }
+      if (!inFlight.compareAndSet(current, current + 1)) {
+        continue;
+      }
+      Entry entry = ready.poll();
+      if (entry == null) {
+        inFlight.decrementAndGet();
+        if (ready.isEmpty()) {
+          return;
+        }
+      } else {
+        startDelete(entry);
+      }
+    }
+  }
+
+  // starts a single delete
+  private void startDelete(Entry entry) {
+    entry.attempts++;
+    CompletableFuture<Void> deleteFuture;
+    try {
+      deleteFuture = deleteFn.apply(entry.ccp, entry.calcId);
+    } catch (RuntimeException ex) {
+      deleteFuture = new CompletableFuture<>();
+      deleteFuture.completeExceptionally(ex);
+    }
+    deleteFuture.whenComplete((deleted, ex) -> {
+      inFlight.decrementAndGet();
+      Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+      if (cause == null || isGone(cause)) {
+        finish(entry);
+      } else if (entry.attempts < MAX_ATTEMPTS && isRetryable(cause)) {
+        retry(entry);
+      } else {
+        log.warn("Unable to delete calculation {}: {}", entry.calcId, cause.getMessage());
+        finish(entry);
+      }
+      dispatch();
+    });
+  }
+
+  // schedules the entry to be deleted again, after a delay that doubles with each attempt
+  private void retry(Entry entry) {
+    long delayNanos = RETRY_DELAY_NANOS << (entry.attempts - 1);
+    try {
+      scheduler.schedule(() -> {
+        ready.add(entry);
+        dispatch();
+      }, delayNanos, NANOSECONDS);
+    } catch (RuntimeException ex) {
+      // the scheduler has been shut down
+      log.warn("Unable to delete calculation {}: {}", entry.calcId, ex.getMessage());
+      finish(entry);
+    }
+  }
+
+  // marks the entry as finished, whether or not it was deleted
+  private void finish(Entry entry) {
+    lock.lock();
+    try {
+      outstanding.remove(entry);
+      if (outstanding.isEmpty()) {
+        invoker.removeCloseTask(closeTask);
+      }
+    } finally {
+      lock.unlock();
+    }
+    entry.done.complete(null);
+  }
+
+  // checks if the calculation no longer exists, so need not be deleted
+  private static boolean isGone(Throwable ex) {
+    return ex instanceof MarginException && ((MarginException) ex).getHttpCode() == 404;
+  }
+
+  // checks if the delete might succeed if tried again
+  private static boolean isRetryable(Throwable ex) {
+    return !(ex instanceof MarginException) || ((MarginException) ex).getHttpCode() >= 500;
+  }
+
+  //-------------------------------------------------------------------------
+  // a calculation to be deleted
+  private static final class Entry {
+    /** The CCP. */
+    private final Ccp ccp;
+    /** The calculation identifier. */
+    private final String calcId;
+    /** The future completed once the calculation has been deleted, or given up on. */
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    /** The number of attempts made, only accessed by one thread at a time. */
+    private int attempts;
+
+    private Entry(Ccp ccp, String calcId) {
+      this.ccp = ccp;
+      this.calcId = calcId;
+    }
+  }
+
+}
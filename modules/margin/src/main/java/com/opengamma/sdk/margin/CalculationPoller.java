@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+import com.opengamma.sdk.common.PollingStrategy.PollingSchedule;
+
+/**
+ * Central poller for the pending calculations of a client.
+ * <p>
+ * All pending calculations are held in a single hashed timer wheel, which is advanced by one
+ * task on the scheduler of the service invoker. Calculations that are due are polled in batches,
+ * with the number of polls in progress at any one time bounded. Registering a calculation and
+ * rescheduling it after each poll are constant time operations, so the cost of polling does not
+ * grow with the number of calculations in flight.
+ * <p>
+ * The wheel is only touched by the tick task. Other threads hand over calculations via queues.
+ */
+final class CalculationPoller {
+
+  /**
+   * The default maximum number of polls in progress at any one time.
+   */
+  static final int DEFAULT_MAX_CONCURRENT_POLLS = 16;
+  /**
+   * The default maximum number of long polls in progress at any one time.
+   */
+  static final int DEFAULT_MAX_CONCURRENT_LONG_POLLS = 64;
+  /**
+   * The duration of one tick of the wheel.
+   */
+  private static final long TICK_NANOS = MILLISECONDS.toNanos(10);
+  /**
+   * The number of buckets in the wheel, one rotation covering about 5 seconds.
+   */
+  private static final int WHEEL_SIZE = 512;
+
+  /** The scheduler that advances the wheel. */
+  private final ScheduledExecutorService scheduler;
+  /** The function that polls a calculation. */
+  private final BiFunction<Ccp, String, CompletableFuture<Polled<MarginCalcResult>>> pollFn;
+  /** The maximum number of polls in progress. */
+  private final int maxConcurrentPolls;
+  /** The lock protecting the tick task. */
+  private final Lock lock = new ReentrantLock();
+  /** The instant that tick zero started. */
+  private final long startNanos = System.nanoTime();
+  /** The buckets of the wheel, each a linked list, only accessed by the tick task. */
+  private final Entry[] wheel = new Entry[WHEEL_SIZE];
+  /** The next tick to be processed, only accessed by the tick task. */
+  private long nextTick;
+  /** Calculations waiting to be placed in the wheel. */
+  private final ConcurrentLinkedQueue<Entry> incoming = new ConcurrentLinkedQueue<>();
+  /** Calculations that are due to be polled. */
+  private final ConcurrentLinkedQueue<Entry> ready = new ConcurrentLinkedQueue<>();
+  /** The number of calculations that have not yet finished. */
+  private final AtomicInteger pending = new AtomicInteger();
+  /** The number of polls in progress. */
+  private final AtomicInteger inFlight = new AtomicInteger();
+  /** The tick task, null when there is nothing pending. */
+  private ScheduledFuture<?> tickTask;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates an instance.
+   *
+   * @param scheduler  the scheduler that advances the wheel
+   * @param pollFn  the function that polls a calculation
+   * @param maxConcurrentPolls  the maximum number of polls in progress at any one time
+   */
+  CalculationPoller(
+      ScheduledExecutorService scheduler,
+      BiFunction<Ccp, String, CompletableFuture<Polled<MarginCalcResult>>> pollFn,
+      int maxConcurrentPolls) {
+
+    this.scheduler = Objects.requireNonNull(scheduler, "scheduler must not be null");
+    this.pollFn = Objects.requireNonNull(pollFn, "pollFn must not be null");
+    if (maxConcurrentPolls < 1) {
+      throw new IllegalArgumentException("maxConcurrentPolls must be at least one");
+    }
+    this.maxConcurrentPolls = maxConcurrentPolls;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Polls a calculation until it completes.
+   * <p>
+   * If the returned future is completed by the caller, such as by cancellation,
+   * no further polls are sent and any poll in progress is cancelled.
+   *
+   * @param ccp  the CCP
+   * @param calcId  the calculation identifier
+   * @param schedule  the polling schedule
+   * @param firstDelayNanos  the delay before the first poll
+   * @return the future result, completed when the calculation completes
+   */
+  CompletableFuture<MarginCalcResult> poll(Ccp ccp, String calcId, PollingSchedule schedule, long firstDelayNanos) {
+    Entry entry = new Entry(ccp, calcId, schedule);
+    entry.future.whenComplete((result, ex) -> {
+      CompletableFuture<?> inProgress = entry.inProgress;
+      if (entry.future.isCancelled() && inProgress != null) {
+        inProgress.cancel(false);
+      }
+    });
+    pending.incrementAndGet();
+    submit(entry, firstDelayNanos);
+    lock.lock();
+    try {
+      if (tickTask == null) {
+        tickTask = scheduler.scheduleAtFixedRate(this::tick, TICK_NANOS, TICK_NANOS, NANOSECONDS);
+      }
+    } catch (RuntimeException ex) {
+      pending.decrementAndGet();
+      throw ex;
+    } finally {
+      lock.unlock();
+    }
+    return entry.future;
+  }
+
+  // gets the number of calculations not yet finished
+  int pendingCount() {
+    return pending.get();
+  }
+
+  // hands over an entry to be placed in the wheel
+  private void submit(Entry entry, long delayNanos) {
+    entry.deadlineNanos = System.nanoTime() + delayNanos;
+    incoming.add(entry);
+  }
+
+  //-------------------------------------------------------------------------
+  // advances the wheel, called by one thread at a time
+  private void tick() {
+    long currentTick = (System.nanoTime() - startNanos) / TICK_NANOS;
+    for (Entry entry = incoming.poll(); entry != null; entry = incoming.poll()) {
+      long deadlineTick = (entry.deadlineNanos - startNanos + TICK_NANOS - 1) / TICK_NANOS;
+      entry.deadlineTick = Math.max(deadlineTick, nextTick);
+      int bucket = (int) (entry.deadlineTick % WHEEL_SIZE);
+      entry.next = wheel[bucket];
+      wheel[bucket] = entry;
+    }
+    // if the tick task fell behind by more than a rotation, visit each bucket once
+    for (long tick = Math.max(nextTick, currentTick - WHEEL_SIZE + 1); tick <= currentTick; tick++) {
+      expire((int) (tick % WHEEL_SIZE), currentTick);
+    }
+    nextTick = Math.max(nextTick, currentTick + 1);
+    dispatch();
+    stopIfIdle();
+  }
+
+  // moves the due entries in the bucket to the ready queue
+  private void expire(int bucket, long currentTick) {
+    Entry previous = null;
+    Entry entry = wheel[bucket];
+    while (entry != null) {
+      Entry next = entry.next;
+      boolean abandoned = entry.future.isDone();
+      if (abandoned || entry.deadlineTick <= currentTick) {
+        if (previous == null) {
+          wheel[bucket] = next;
+        } else {
+          previous.next = next;
+        }
+        entry.next = null;
+        if (abandoned) {
+          pending.decrementAndGet();
+        } else {
+          ready.add(entry);
+        }
+      } else {
+        previous = entry;
+      }
+      entry = next;
+    }
+  }
+
+  // stops the tick task if there is nothing left to poll
+  private void stopIfIdle() {
+    lock.lock();
+    try {
+      if (pending.get() == 0 && tickTask != null) {
+        tickTask.cancel(false);
+        tickTask = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // starts as many polls as the concurrency limit allows
+  private void dispatch() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= maxConcurrentPolls) {
+        return;
+      }
+      if (!inFlight.compareAndSet(current, current + 1)) {
+        continue;
+      }
+      Entry entry = ready.poll();
+      if (entry == null) {
+        inFlight.decrementAndGet();
+        if (ready.isEmpty()) {
+          return;
+        }
+      } else if (entry.future.isDone()) {
+        inFlight.decrementAndGet();
+        pending.decrementAndGet();
+      } else {
+        startPoll(entry);
+      }
+    }
+  }
+
+  // starts a single poll
+  private void startPoll(Entry entry) {
+    CompletableFuture<Polled<MarginCalcResult>> polledFuture;
+    try {
+      polledFuture = pollFn.apply(entry.ccp, entry.calcId);
+    } catch (RuntimeException ex) {
+      polledFuture = new CompletableFuture<>();
+      polledFuture.completeExceptionally(ex);
+    }
+    // the future is checked after publishing the poll, so that a cancellation is not missed
+    entry.inProgress = polledFuture;
+    if (entry.future.isCancelled()) {
+      polledFuture.cancel(false);
+    }
+    polledFuture.whenComplete((polled, ex) -> {
+      entry.inProgress = null;
+      inFlight.decrementAndGet();
+      if (ex != null) {
+        pending.decrementAndGet();
+        entry.future.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+      } else if (polled.hasValue() && polled.getValue().getStatus() == MarginCalcResultStatus.COMPLETED) {
+        pending.decrementAndGet();
+        entry.schedule.completed();
+        entry.future.complete(polled.getValue());
+      } else if (entry.future.isDone()) {
+        pending.decrementAndGet();
+      } else {
+        submit(entry, polled.delayNanos(entry.schedule));
+      }
+      dispatch();
+    });
+  }
+
+  //-------------------------------------------------------------------------
+  // a calculation being polled
+  private static final class Entry {
+    /** The CCP. */
+    private final Ccp ccp;
+    /** The calculation identifier. */
+    private final String calcId;
+    /** The polling schedule. */
+    private final PollingSchedule schedule;
+    /** The future result. */
+    private final CompletableFuture<MarginCalcResult> future = new CompletableFuture<>();
+    /** The instant the next poll is due, published to the tick task via the queue. */
+    private long deadlineNanos;
+    /** The tick the next poll is due, only accessed by the tick task. */
+    private long deadlineTick;
+    /** The next entry in the bucket, only accessed by the tick task. */
+    private Entry next;
+    /** The poll in progress, null if none. */
+    private volatile CompletableFuture<?> inProgress;
+
+    private Entry(Ccp ccp, String calcId, PollingSchedule schedule) {
+      this.ccp = ccp;
+      this.calcId = calcId;
+      this.schedule = schedule;
+    }
+  }
+
+}
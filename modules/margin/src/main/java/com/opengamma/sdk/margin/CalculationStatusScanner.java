@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Scanner that finds the status of a calculation result without parsing it.
+ * <p>
+ * The status is the only part of the result needed to know if polling should continue.
+ * The JSON is scanned in the buffer of the source, without consuming it, until the top-level
+ * {@code status} property is found. If the result has completed, the full result can then
+ * be parsed from the same source, with nothing read twice.
+ * <p>
+ * The service writes the status first, so only a few bytes are normally examined.
+ * If the status is not found within a limit, or the JSON is not as expected, the scan gives up.
+ */
+final class CalculationStatusScanner {
+
+  /**
+   * The maximum number of bytes to examine.
+   */
+  private static final long SCAN_LIMIT = 16 * 1024;
+  /**
+   * The status property name.
+   */
+  private static final String STATUS = "status";
+  /**
+   * The maximum number of characters of a string that are retained.
+   */
+  private static final int MAX_RETAINED = 32;
+
+  /** The source. */
+  private final BufferedSource source;
+  /** The buffer of the source. */
+  private final Buffer buffer;
+  /** The index of the next byte to examine. */
+  private long index;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Scans the source for the status, without consuming any of it.
+   *
+   * @param source  the source of the JSON
+   * @return the status, empty if not found
+   * @throws IOException if an IO error occurs
+   */
+  static Optional<MarginCalcResultStatus> scan(BufferedSource source) throws IOException {
+    return new CalculationStatusScanner(source).scan();
+  }
+
+  private CalculationStatusScanner(BufferedSource source) {
+    this.source = source;
+    this.buffer = source.buffer();
+  }
+
+  //-------------------------------------------------------------------------
+  // scans the properties of the top-level object, skipping over the values of those that are not the status
+  private Optional<MarginCalcResultStatus> scan() throws IOException {
+    if (nextToken() != '{') {
+      return Optional.empty();
+    }
+    int token = nextToken();
+    while (token == '"') {
+      String key = readString();
+      if (key == null || nextToken() != ':') {
+        return Optional.empty();
+      }
+      if (key.equals(STATUS)) {
+        return nextToken() == '"' ? parseStatus(readString()) : Optional.empty();
+      }
+      if (!skipValue()) {
+        return Optional.empty();
+      }
+      token = nextToken();
+      if (token != ',') {
+        return Optional.empty();
+      }
+      token = nextToken();
+    }
+    return Optional.empty();
+  }
+
+  // parses the status, empty if unknown
+  private static Optional<MarginCalcResultStatus> parseStatus(String value) {
+    if (value != null) {
+      for (MarginCalcResultStatus status : MarginCalcResultStatus.values()) {
+        if (status.name().equals(value)) {
+          return Optional.of(status);
+        }
+      }
+    }
+    return Optional.empty();
+  }
+
+  // skips a value, including nested objects and arrays, returning false if the value could not be skipped
+  private boolean skipValue() throws IOException {
+    int depth = 0;
+    while (true) {
+      int ch = nextByte();
+      switch (ch) {
+        case -1:
+          return false;
+        case '"':
+          if (!skipString()) {
+            return false;
+          }
+          if (depth == 0) {
+            return true;
+          }
+          break;
+        case '{':
+        case '[':
+          depth++;
+          break;
+        case '}':
+        case ']':
+          depth--;
+          if (depth < 0) {
+            return false;
+          }
+          if (depth == 0) {
+            return true;
+          }
+          break;
+        case ',':
+          if (depth == 0) {
+            // end of a literal, such as a number, leaving the comma to be read again
+            index--;
+            return true;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  // reads a string after the opening quote, null if it contains escapes
+  // only the start of a long string is retained, as it cannot be the status
+  private String readString() throws IOException {
+    StringBuilder buf = new StringBuilder();
+    while (true) {
+      int ch = nextByte();
+      if (ch == -1 || ch == '\\') {
+        return null;
+      }
+      if (ch == '"') {
+        return buf.toString();
+      }
+      if (buf.length() < MAX_RETAINED) {
+        buf.append((char) ch);
+      }
+    }
+  }
+
+  // skips a string after the opening quote
+  private boolean skipString() throws IOException {
+    while (true) {
+      int ch = nextByte();
+      if (ch == -1) {
+        return false;
+      }
+      if (ch == '\\') {
+        if (nextByte() == -1) {
+          return false;
+        }
+      } else if (ch == '"') {
+        return true;
+      }
+    }
+  }
+
+  // gets the next byte that is not whitespace, -1 if none
+  private int nextToken() throws IOException {
+    int ch = nextByte();
+    while (ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r') {
+      ch = nextByte();
+    }
+    return ch;
+  }
+
+  // gets the next byte, requesting more from the source as necessary, -1 at the end or limit
+  private int nextByte() throws IOException {
+    if (index >= SCAN_LIMIT || !source.request(index + 1)) {
+      return -1;
+    }
+    return buffer.getByte(index++) & 0xFF;
+  }
+
+}
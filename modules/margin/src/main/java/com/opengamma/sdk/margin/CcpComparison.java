@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import org.joda.beans.Bean;
+import org.joda.beans.BeanBuilder;
+import org.joda.beans.ImmutableBean;
+import org.joda.beans.JodaBeanUtils;
+import org.joda.beans.MetaBean;
+import org.joda.beans.MetaProperty;
+import org.joda.beans.gen.BeanDefinition;
+import org.joda.beans.gen.ImmutableConstructor;
+import org.joda.beans.gen.PropertyDefinition;
+import org.joda.beans.impl.direct.DirectMetaBean;
+import org.joda.beans.impl.direct.DirectMetaProperty;
+import org.joda.beans.impl.direct.DirectMetaPropertyMap;
+import org.joda.beans.impl.direct.DirectPrivateBeanBuilder;
+
+/**
+ * The margin of one portfolio calculated at several CCPs, side by side.
+ * <p>
+ * Each CCP either has a result, or a failure explaining why the margin could not be calculated,
+ * such as the CCP not being available. The failure of one CCP does not affect the others.
+ * See {@link MarginClient#compareCcps(java.util.List, Set)}.
+ */
+@BeanDefinition(builderScope = "private", metaScope = "private")
+public final class CcpComparison implements ImmutableBean {
+
+  /**
+   * The successful results, keyed by CCP, in a fixed order.
+   */
+  @PropertyDefinition(validate = "notNull")
+  private final Map<Ccp, MarginCalcResult> results;
+  /**
+   * The failures, keyed by CCP, in a fixed order.
+   * <p>
+   * Failures that were not reported by the service, such as IO errors,
+   * are wrapped in a {@code MarginException} with the original as the cause.
+   */
+  @PropertyDefinition(validate = "notNull")
+  private final Map<Ccp, MarginException> failures;
+
+  //-------------------------------------------------------------------------
+  // calculates the margin at each available CCP concurrently, waiting until all have completed
+  // a CCP that is not available is a failure, and if interrupted, the calculations are abandoned
+  static CcpComparison calculate(
+      Set<Ccp> ccps,
+      CcpsResult available,
+      Function<Ccp, CompletableFuture<MarginCalcResult>> calculateFn) {
+
+    Map<Ccp, CompletableFuture<MarginCalcResult>> futures = new EnumMap<>(Ccp.class);
+    for (Ccp ccp : ccps) {
+      if (available.isCcpAvailable(ccp)) {
+        futures.put(ccp, calculateFn.apply(ccp));
+      } else {
+        CompletableFuture<MarginCalcResult> unavailable = new CompletableFuture<>();
+        unavailable.completeExceptionally(new MarginException("CCP not available: " + ccp, "Unavailable"));
+        futures.put(ccp, unavailable);
+      }
+    }
+    try {
+      CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).exceptionally(ex -> null).get();
+    } catch (InterruptedException ex) {
+      futures.values().forEach(future -> future.cancel(false));
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ex);
+    } catch (ExecutionException ex) {
+      throw new IllegalStateException(ex);
+    }
+    Map<Ccp, MarginCalcResult> results = new EnumMap<>(Ccp.class);
+    Map<Ccp, MarginException> failures = new EnumMap<>(Ccp.class);
+    futures.forEach((ccp, future) -> {
+      try {
+        results.put(ccp, future.join());
+      } catch (CompletionException | CancellationException ex) {
+        failures.put(ccp, BulkCalculation.toMarginException(ex));
+      }
+    });
+    return new CcpComparison(results, failures);
+  }
+
+  @ImmutableConstructor
+  private CcpComparison(Map<Ccp, MarginCalcResult> results, Map<Ccp, MarginException> failures) {
+    JodaBeanUtils.notNull(results, "results");
+    JodaBeanUtils.notNull(failures, "failures");
+    this.results = Collections.unmodifiableMap(copy(results));
+    this.failures = Collections.unmodifiableMap(copy(failures));
+  }
+
+  // copies the map, which is sorted by CCP
+  private static <T> Map<Ccp, T> copy(Map<Ccp, T> map) {
+    Map<Ccp, T> copy = new EnumMap<>(Ccp.class);
+    copy.putAll(map);
+    return copy;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the CCPs that were compared, whether or not the calculation succeeded.
+   *
+   * @return the CCPs, in a fixed order
+   */
+  public Set<Ccp> getCcps() {
+    Set<Ccp> ccps = EnumSet.noneOf(Ccp.class);
+    ccps.addAll(results.keySet());
+    ccps.addAll(failures.keySet());
+    return ccps;
+  }
+
+  /**
+   * Gets the result of the calculation for a CCP.
+   *
+   * @param ccp  the CCP
+   * @return the result, empty if the CCP was not compared or its calculation failed
+   */
+  public Optional<MarginCalcResult> getResult(Ccp ccp) {
+    return Optional.ofNullable(results.get(ccp));
+  }
+
+  /**
+   * Gets the margin summary for a CCP.
+   *
+   * @param ccp  the CCP
+   * @return the margin summary, empty if there is no result for the CCP or the result has no margin
+   */
+  public Optional<MarginSummary> getMargin(Ccp ccp) {
+    return getResult(ccp).flatMap(MarginCalcResult::getMargin);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Formats the comparison as a plain text table, with one row per CCP.
+   * <p>
+   * Each row shows the valuation date and reporting currency used for that CCP, together with
+   * the total margin and its standardized breakdown. The reporting currency may differ between CCPs.
+   *
+   * @return the table
+   */
+  public String toTable() {
+    StringBuilder buf = new StringBuilder(128 * (results.size() + failures.size() + 1));
+    buf.append(String.format(Locale.ENGLISH, "%-8s %-10s %-8s %18s %18s %18s %18s%n",
+        "CCP", "Date", "Currency", "Margin", "Base margin", "Add-ons", "NLV"));
+    for (Ccp ccp : getCcps()) {
+      MarginCalcResult result = results.get(ccp);
+      if (result == null) {
+        buf.append(String.format(Locale.ENGLISH, "%-8s failed: %s%n", ccp, failures.get(ccp).getMessage()));
+        continue;
+      }
+      MarginSummary margin = result.getMargin().orElse(null);
+      MarginBreakdown breakdown = margin != null ? margin.getBreakdown() : null;
+      buf.append(String.format(Locale.ENGLISH, "%-8s %-10s %-8s %18s %18s %18s %18s%n",
+          ccp,
+          result.getValuationDate(),
+          result.getReportingCurrency(),
+          margin != null ? format(margin.getMargin()) : "-",
+          breakdown != null ? format(breakdown.getBaseMargin()) : "-",
+          breakdown != null ? format(breakdown.getAddOns()) : "-",
+          breakdown != null ? format(breakdown.getNetLiquidatingValue()) : "-"));
+    }
+    return buf.toString();
+  }
+
+  // formats an amount
+  private static String format(double amount) {
+    return String.format(Locale.ENGLISH, "%,.2f", amount);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "CcpComparison{results=" + results.keySet() + ", failures=" + failures.keySet() + "}";
+  }
+
+  //------------------------- AUTOGENERATED START -------------------------
+  /**
+   * The meta-bean for {@code CcpComparison}.
+   * @return the meta-bean, not null
+   */
+  public static MetaBean meta() {
+    return CcpComparison.Meta.INSTANCE;
+  }
+
+  static {
+    MetaBean.register(CcpComparison.Meta.INSTANCE);
+  }
+
+  @Override
+  public MetaBean metaBean() {
+    return CcpComparison.Meta.INSTANCE;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the successful results, keyed by CCP, in a fixed order.
+   * @return the value of the property, not null
+   */
+  public Map<Ccp, MarginCalcResult> getResults() {
+    return results;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the failures, keyed by CCP, in a fixed order.
+   * <p>
+   * Failures that were not reported by the service, such as IO errors,
+   * are wrapped in a {@code MarginException} with the original as the cause.
+   * @return the value of the property, not null
+   */
+  public Map<Ccp, MarginException> getFailures() {
+    return failures;
+  }
+
+  //-----------------------------------------------------------------------
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj != null && obj.getClass() == this.getClass()) {
+      CcpComparison other = (CcpComparison) obj;
+      return JodaBeanUtils.equal(results, other.results) &&
+          JodaBeanUtils.equal(failures, other.failures);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = getClass().hashCode();
+    hash = hash * 31 + JodaBeanUtils.hashCode(results);
+    hash = hash * 31 + JodaBeanUtils.hashCode(failures);
+    return hash;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The meta-bean for {@code CcpComparison}.
+   */
+  private static final class Meta extends DirectMetaBean {
+    /**
+     * The singleton instance of the meta-bean.
+     */
+    static final Meta INSTANCE = new Meta();
+
+    /**
+     * The meta-property for the {@code results} property.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes" })
+    private final MetaProperty<Map<Ccp, MarginCalcResult>> results = DirectMetaProperty.ofImmutable(
+        this, "results", CcpComparison.class, (Class) Map.class);
+    /**
+     * The meta-property for the {@code failures} property.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes" })
+    private final MetaProperty<Map<Ccp, MarginException>> failures = DirectMetaProperty.ofImmutable(
+        this, "failures", CcpComparison.class, (Class) Map.class);
+    /**
+     * The meta-properties.
+     */
+    private final Map<String, MetaProperty<?>> metaPropertyMap$ = new DirectMetaPropertyMap(
+        this, null,
+        "results",
+        "failures");
+
+    /**
+     * Restricted constructor.
+     */
+    private Meta() {
+    }
+
+    @Override
+    protected MetaProperty<?> metaPropertyGet(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case 1097546742:  // results
+          return results;
+        case 675938345:  // failures
+          return failures;
+      }
+      return super.metaPropertyGet(propertyName);
+    }
+
+    @Override
+    public BeanBuilder<? extends CcpComparison> builder() {
+      return new CcpComparison.Builder();
+    }
+
+    @Override
+    public Class<? extends CcpComparison> beanType() {
+      return CcpComparison.class;
+    }
+
+    @Override
+    public Map<String, MetaProperty<?>> metaPropertyMap() {
+      return metaPropertyMap$;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    protected Object propertyGet(Bean bean, String propertyName, boolean quiet) {
+      switch (propertyName.hashCode()) {
+        case 1097546742:  // results
+          return ((CcpComparison) bean).getResults();
+        case 675938345:  // failures
+          return ((CcpComparison) bean).getFailures();
+      }
+      return super.propertyGet(bean, propertyName, quiet);
+    }
+
+    @Override
+    protected void propertySet(Bean bean, String propertyName, Object newValue, boolean quiet) {
+      metaProperty(propertyName);
+      if (quiet) {
+        return;
+      }
+      throw new UnsupportedOperationException("Property cannot be written: " + propertyName);
+    }
+
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The bean-builder for {@code CcpComparison}.
+   */
+  private static final class Builder extends DirectPrivateBeanBuilder<CcpComparison> {
+
+    private Map<Ccp, MarginCalcResult> results = Collections.emptyMap();
+    private Map<Ccp, MarginException> failures = Collections.emptyMap();
+
+    /**
+     * Restricted constructor.
+     */
+    private Builder() {
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public Object get(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case 1097546742:  // results
+          return results;
+        case 675938345:  // failures
+          return failures;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Builder set(String propertyName, Object newValue) {
+      switch (propertyName.hashCode()) {
+        case 1097546742:  // results
+          this.results = (Map<Ccp, MarginCalcResult>) newValue;
+          break;
+        case 675938345:  // failures
+          this.failures = (Map<Ccp, MarginException>) newValue;
+          break;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+      return this;
+    }
+
+    @Override
+    public CcpComparison build() {
+      return new CcpComparison(
+          results,
+          failures);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public String toString() {
+      StringBuilder buf = new StringBuilder(96);
+      buf.append("CcpComparison.Builder{");
+      buf.append("results").append('=').append(JodaBeanUtils.toString(results)).append(',').append(' ');
+      buf.append("failures").append('=').append(JodaBeanUtils.toString(failures));
+      buf.append('}');
+      return buf.toString();
+    }
+
+  }
+
+  //-------------------------- AUTOGENERATED END --------------------------
+}
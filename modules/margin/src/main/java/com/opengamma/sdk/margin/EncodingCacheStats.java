@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.joda.beans.Bean;
+import org.joda.beans.BeanBuilder;
+import org.joda.beans.ImmutableBean;
+import org.joda.beans.JodaBeanUtils;
+import org.joda.beans.MetaBean;
+import org.joda.beans.MetaProperty;
+import org.joda.beans.gen.BeanDefinition;
+import org.joda.beans.gen.PropertyDefinition;
+import org.joda.beans.impl.direct.DirectMetaBean;
+import org.joda.beans.impl.direct.DirectMetaProperty;
+import org.joda.beans.impl.direct.DirectMetaPropertyMap;
+import org.joda.beans.impl.direct.DirectPrivateBeanBuilder;
+
+/**
+ * Statistics of a cache of encoded portfolio files.
+ * <p>
+ * The counts are totals since the cache was created.
+ * See {@link PortfolioEncodingCache}.
+ */
+@BeanDefinition(builderScope = "private", metaScope = "private", factoryName = "of")
+public final class EncodingCacheStats implements ImmutableBean {
+
+  /**
+   * The number of files returned from the cache, without being read and compressed.
+   */
+  @PropertyDefinition
+  private final long hitCount;
+  /**
+   * The number of files not found in the cache, or changed since cached, and so read and compressed.
+   */
+  @PropertyDefinition
+  private final long missCount;
+  /**
+   * The number of files removed from the cache.
+   * <p>
+   * This includes files removed to stay within the size bound, and files replaced because they had changed.
+   */
+  @PropertyDefinition
+  private final long evictionCount;
+  /**
+   * The number of files currently cached.
+   */
+  @PropertyDefinition
+  private final int size;
+  /**
+   * The estimated memory retained by the files currently cached, in bytes.
+   */
+  @PropertyDefinition
+  private final long weight;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the fraction of files returned from the cache.
+   *
+   * @return the hit rate, from zero to one, zero if there have been no requests
+   */
+  public double getHitRate() {
+    long total = hitCount + missCount;
+    return total == 0 ? 0d : (double) hitCount / total;
+  }
+
+  //------------------------- AUTOGENERATED START -------------------------
+  /**
+   * The meta-bean for {@code EncodingCacheStats}.
+   * @return the meta-bean, not null
+   */
+  public static MetaBean meta() {
+    return EncodingCacheStats.Meta.INSTANCE;
+  }
+
+  static {
+    MetaBean.register(EncodingCacheStats.Meta.INSTANCE);
+  }
+
+  /**
+   * Obtains an instance.
+   * @param hitCount  the value of the property
+   * @param missCount  the value of the property
+   * @param evictionCount  the value of the property
+   * @param size  the value of the property
+   * @param weight  the value of the property
+   * @return the instance
+   */
+  public static EncodingCacheStats of(
+      long hitCount,
+      long missCount,
+      long evictionCount,
+      int size,
+      long weight) {
+    return new EncodingCacheStats(
+      hitCount,
+      missCount,
+      evictionCount,
+      size,
+      weight);
+  }
+
+  private EncodingCacheStats(
+      long hitCount,
+      long missCount,
+      long evictionCount,
+      int size,
+      long weight) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.size = size;
+    this.weight = weight;
+  }
+
+  @Override
+  public MetaBean metaBean() {
+    return EncodingCacheStats.Meta.INSTANCE;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the number of files returned from the cache, without being read and compressed.
+   * @return the value of the property
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the number of files not found in the cache, or changed since cached, and so read and compressed.
+   * @return the value of the property
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the number of files removed from the cache.
+   * <p>
+   * This includes files removed to stay within the size bound, and files replaced because they had changed.
+   * @return the value of the property
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the number of files currently cached.
+   * @return the value of the property
+   */
+  public int getSize() {
+    return size;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the estimated memory retained by the files currently cached, in bytes.
+   * @return the value of the property
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  //-----------------------------------------------------------------------
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj != null && obj.getClass() == this.getClass()) {
+      EncodingCacheStats other = (EncodingCacheStats) obj;
+      return (hitCount == other.hitCount) &&
+          (missCount == other.missCount) &&
+          (evictionCount == other.evictionCount) &&
+          (size == other.size) &&
+          (weight == other.weight);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = getClass().hashCode();
+    hash = hash * 31 + JodaBeanUtils.hashCode(hitCount);
+    hash = hash * 31 + JodaBeanUtils.hashCode(missCount);
+    hash = hash * 31 + JodaBeanUtils.hashCode(evictionCount);
+    hash = hash * 31 + JodaBeanUtils.hashCode(size);
+    hash = hash * 31 + JodaBeanUtils.hashCode(weight);
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buf = new StringBuilder(192);
+    buf.append("EncodingCacheStats{");
+    buf.append("hitCount").append('=').append(hitCount).append(',').append(' ');
+    buf.append("missCount").append('=').append(missCount).append(',').append(' ');
+    buf.append("evictionCount").append('=').append(evictionCount).append(',').append(' ');
+    buf.append("size").append('=').append(size).append(',').append(' ');
+    buf.append("weight").append('=').append(JodaBeanUtils.toString(weight));
+    buf.append('}');
+    return buf.toString();
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The meta-bean for {@code EncodingCacheStats}.
+   */
+  private static final class Meta extends DirectMetaBean {
+    /**
+     * The singleton instance of the meta-bean.
+     */
+    static final Meta INSTANCE = new Meta();
+
+    /**
+     * The meta-property for the {@code hitCount} property.
+     */
+    private final MetaProperty<Long> hitCount = DirectMetaProperty.ofImmutable(
+        this, "hitCount", EncodingCacheStats.class, Long.TYPE);
+    /**
+     * The meta-property for the {@code missCount} property.
+     */
+    private final MetaProperty<Long> missCount = DirectMetaProperty.ofImmutable(
+        this, "missCount", EncodingCacheStats.class, Long.TYPE);
+    /**
+     * The meta-property for the {@code evictionCount} property.
+     */
+    private final MetaProperty<Long> evictionCount = DirectMetaProperty.ofImmutable(
+        this, "evictionCount", EncodingCacheStats.class, Long.TYPE);
+    /**
+     * The meta-property for the {@code size} property.
+     */
+    private final MetaProperty<Integer> size = DirectMetaProperty.ofImmutable(
+        this, "size", EncodingCacheStats.class, Integer.TYPE);
+    /**
+     * The meta-property for the {@code weight} property.
+     */
+    private final MetaProperty<Long> weight = DirectMetaProperty.ofImmutable(
+        this, "weight", EncodingCacheStats.class, Long.TYPE);
+    /**
+     * The meta-properties.
+     */
+    private final Map<String, MetaProperty<?>> metaPropertyMap$ = new DirectMetaPropertyMap(
+        this, null,
+        "hitCount",
+        "missCount",
+        "evictionCount",
+        "size",
+        "weight");
+
+    /**
+     * Restricted constructor.
+     */
+    private Meta() {
+    }
+
+    @Override
+    protected MetaProperty<?> metaPropertyGet(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case -1346432708:  // hitCount
+          return hitCount;
+        case 1208809843:  // missCount
+          return missCount;
+        case -1450003152:  // evictionCount
+          return evictionCount;
+        case 3530753:  // size
+          return size;
+        case -791592328:  // weight
+          return weight;
+      }
+      return super.metaPropertyGet(propertyName);
+    }
+
+    @Override
+    public BeanBuilder<? extends EncodingCacheStats> builder() {
+      return new EncodingCacheStats.Builder();
+    }
+
+    @Override
+    public Class<? extends EncodingCacheStats> beanType() {
+      return EncodingCacheStats.class;
+    }
+
+    @Override
+    public Map<String, MetaProperty<?>> metaPropertyMap() {
+      return metaPropertyMap$;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    protected Object propertyGet(Bean bean, String propertyName, boolean quiet) {
+      switch (propertyName.hashCode()) {
+        case -1346432708:  // hitCount
+          return ((EncodingCacheStats) bean).getHitCount();
+        case 1208809843:  // missCount
+          return ((EncodingCacheStats) bean).getMissCount();
+        case -1450003152:  // evictionCount
+          return ((EncodingCacheStats) bean).getEvictionCount();
+        case 3530753:  // size
+          return ((EncodingCacheStats) bean).getSize();
+        case -791592328:  // weight
+          return ((EncodingCacheStats) bean).getWeight();
+      }
+      return super.propertyGet(bean, propertyName, quiet);
+    }
+
+    @Override
+    protected void propertySet(Bean bean, String propertyName, Object newValue, boolean quiet) {
+      metaProperty(propertyName);
+      if (quiet) {
+        return;
+      }
+      throw new UnsupportedOperationException("Property cannot be written: " + propertyName);
+    }
+
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The bean-builder for {@code EncodingCacheStats}.
+   */
+  private static final class Builder extends DirectPrivateBeanBuilder<EncodingCacheStats> {
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private int size;
+    private long weight;
+
+    /**
+     * Restricted constructor.
+     */
+    private Builder() {
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public Object get(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case -1346432708:  // hitCount
+          return hitCount;
+        case 1208809843:  // missCount
+          return missCount;
+        case -1450003152:  // evictionCount
+          return evictionCount;
+        case 3530753:  // size
+          return size;
+        case -791592328:  // weight
+          return weight;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+    }
+
+    @Override
+    public Builder set(String propertyName, Object newValue) {
+      switch (propertyName.hashCode()) {
+        case -1346432708:  // hitCount
+          this.hitCount = (Long) newValue;
+          break;
+        case 1208809843:  // missCount
+          this.missCount = (Long) newValue;
+          break;
+        case -1450003152:  // evictionCount
+          this.evictionCount = (Long) newValue;
+          break;
+        case 3530753:  // size
+          this.size = (Integer) newValue;
+          break;
+        case -791592328:  // weight
+          this.weight = (Long) newValue;
+          break;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+      return this;
+    }
+
+    @Override
+    public EncodingCacheStats build() {
+      return new EncodingCacheStats(
+          hitCount,
+          missCount,
+          evictionCount,
+          size,
+          weight);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public String toString() {
+      StringBuilder buf = new StringBuilder(192);
+      buf.append("EncodingCacheStats.Builder{");
+      buf.append("hitCount").append('=').append(JodaBeanUtils.toString(hitCount)).append(',').append(' ');
+      buf.append("missCount").append('=').append(JodaBeanUtils.toString(missCount)).append(',').append(' ');
+      buf.append("evictionCount").append('=').append(JodaBeanUtils.toString(evictionCount)).append(',').append(' ');
+      buf.append("size").append('=').append(JodaBeanUtils.toString(size)).append(',').append(' ');
+      buf.append("weight").append('=').append(JodaBeanUtils.toString(weight));
+      buf.append('}');
+      return buf.toString();
+    }
+
+  }
+
+  //-------------------------- AUTOGENERATED END --------------------------
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import okio.ByteString;
+
+/**
+ * The calculations in flight, shared by identical requests.
+ * <p>
+ * When a request is made that is identical to one whose calculation is still running, as determined by
+ * the key of {@link MarginCalcResultCache#key}, the caller is attached to the running calculation instead
+ * of a new calculation being created on the service. Each caller receives its own future.
+ * <p>
+ * Leaving is reference-counted. When a caller completes its future, such as by cancellation,
+ * only that caller leaves. The calculation itself is abandoned only once every caller has left.
+ * Once the calculation has completed, the next identical request starts a new calculation.
+ */
+final class InFlightCalculations {
+
+  /** The calculations in flight, by key. */
+  private final Map<ByteString, Shared> calculations = new ConcurrentHashMap<>();
+
+  //-------------------------------------------------------------------------
+  /**
+   * Attaches to the calculation in flight for the key, starting it if there is none.
+   * <p>
+   * The calculation is started by calling the supplier, which is called at most once for each calculation.
+   * If the future it returns is completed by this class, the calculation is to be abandoned.
+   *
+   * @param key  the key of the request
+   * @param starter  the supplier that starts the calculation
+   * @return the future for this caller, which may be cancelled without affecting other callers
+   */
+  CompletableFuture<MarginCalcResult> attach(ByteString key, Supplier<CompletableFuture<MarginCalcResult>> starter) {
+    while (true) {
+      Shared created = new Shared(key);
+      Shared shared = calculations.putIfAbsent(key, created);
+      if (shared == null) {
+        CompletableFuture<MarginCalcResult> subscriber = created.subscribe();
+        created.start(starter);
+        return subscriber;
+      }
+      CompletableFuture<MarginCalcResult> subscriber = shared.subscribe();
+      if (subscriber != null) {
+        return subscriber;
+      }
+      // the calculation finished after being found, so try again
+      calculations.remove(key, shared);
+    }
+  }
+
+  /**
+   * Gets the number of calculations in flight.
+   *
+   * @return the number of calculations
+   */
+  int size() {
+    return calculations.size();
+  }
+
+  //-------------------------------------------------------------------------
+  // a calculation shared by its callers
+  private final class Shared {
+    /** The key. */
+    private final ByteString key;
+    /** The lock protecting the state. */
+    private final Lock lock = new ReentrantLock();
+    /** The result of the calculation, completed only by the calculation. */
+    private final CompletableFuture<MarginCalcResult> result = new CompletableFuture<>();
+    /** The future of the calculation, null until started. */
+    private CompletableFuture<MarginCalcResult> calc;
+    /** The number of callers attached. */
+    private int subscribers;
+    /** Whether the calculation has finished, or been abandoned, so that no more callers can attach. */
+    private boolean finished;
+
+    private Shared(ByteString key) {
+      this.key = key;
+    }
+
+    // attaches a caller, null if the calculation has finished
+    private CompletableFuture<MarginCalcResult> subscribe() {
+      lock.lock();
+      try {
+        if (finished) {
+          return null;
+        }
+        subscribers++;
+      } finally {
+        lock.unlock();
+      }
+      CompletableFuture<MarginCalcResult> subscriber = new CompletableFuture<>();
+      result.whenComplete((calcResult, ex) -> {
+        if (ex != null) {
+          subscriber.completeExceptionally(ex);
+        } else {
+          subscriber.complete(calcResult);
+        }
+      });
+      // completing the caller's future before the result is available detaches the caller
+      subscriber.whenComplete((calcResult, ex) -> unsubscribe());
+      return subscriber;
+    }
+
+    // detaches a caller, abandoning the calculation if it was the last
+    private void unsubscribe() {
+      CompletableFuture<MarginCalcResult> abandoned;
+      lock.lock();
+      try {
+        if (finished || --subscribers > 0) {
+          return;
+        }
+        finished = true;
+        abandoned = calc;
+      } finally {
+        lock.unlock();
+      }
+      calculations.remove(key, this);
+      if (abandoned != null) {
+        abandoned.cancel(false);
+      }
+    }
+
+    // starts the calculation, unless every caller has already left
+    private void start(Supplier<CompletableFuture<MarginCalcResult>> starter) {
+      CompletableFuture<MarginCalcResult> started;
+      try {
+        started = starter.get();
+      } catch (RuntimeException ex) {
+        started = new CompletableFuture<>();
+        started.completeExceptionally(ex);
+      }
+      boolean abandoned;
+      lock.lock();
+      try {
+        calc = started;
+        abandoned = finished;
+      } finally {
+        lock.unlock();
+      }
+      if (abandoned) {
+        started.cancel(false);
+        return;
+      }
+      started.whenComplete((calcResult, ex) -> {
+        lock.lock();
+        try {
+          finished = true;
+        } finally {
+          lock.unlock();
+        }
+        // removed before the callers are told, so that a caller repeating the request starts a new calculation
+        calculations.remove(key, this);
+        if (ex != null) {
+          result.completeExceptionally(ex);
+        } else {
+          result.complete(calcResult);
+        }
+      });
+    }
+  }
+
+}
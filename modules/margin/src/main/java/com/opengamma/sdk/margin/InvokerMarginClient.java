@@ -12,29 +12,48 @@ import static com.opengamma.sdk.margin.MarginOperation.GET_CALCULATION;
 import static com.opengamma.sdk.margin.MarginOperation.GET_CCP_INFO;
 import static com.opengamma.sdk.margin.MarginOperation.LIST_CCPS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.Period;
-import java.util.ArrayList;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
-import java.util.function.Function;
-import java.util.function.Supplier;
+import java.util.function.Consumer;
 
 import org.joda.beans.ser.JodaBeanSer;
 import org.joda.beans.ser.SerDeserializers;
 
+import com.opengamma.sdk.common.PollingStrategy;
+import com.opengamma.sdk.common.PollingStrategy.PollingSchedule;
 import com.opengamma.sdk.common.ServiceInvoker;
 
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.ByteString;
 
 /**
  * Implementation of the margin client.
@@ -44,23 +63,85 @@ final class InvokerMarginClient implements MarginClient {
   /**
    * The serializer.
    */
-  private static final JodaBeanSer SERIALIZER = JodaBeanSer.COMPACT.withDeserializers(SerDeserializers.LENIENT);
+  static final JodaBeanSer SERIALIZER = JodaBeanSer.COMPACT.withDeserializers(SerDeserializers.LENIENT);
   static {
     SERIALIZER.getConverter().register(Period.class, new TenorStringConverter());
   }
   /**
-   * Sleep for 500ms between polls.
+   * HTTP header.
    */
-  private static final long POLL_WAIT = 500;
+  private static final String LOCATION = "Location";
   /**
    * HTTP header.
    */
-  private static final String LOCATION = "Location";
+  private static final String RETRY_AFTER = "Retry-After";
+  /**
+   * HTTP header, used to ask the service to hold a poll until the calculation completes.
+   */
+  private static final String PREFER = "Prefer";
+  /**
+   * HTTP header, used by the service to confirm that a poll was held.
+   */
+  private static final String PREFERENCE_APPLIED = "Preference-Applied";
+  /**
+   * The additional time allowed to read a long poll response, beyond the wait.
+   */
+  private static final Duration LONG_POLL_READ_MARGIN = Duration.ofSeconds(10);
 
   /**
    * The service invoker.
    */
   private final ServiceInvoker invoker;
+  /**
+   * The polling strategy.
+   */
+  private final PollingStrategy pollingStrategy;
+  /**
+   * The poller for asynchronous calculations.
+   */
+  private final CalculationPoller poller;
+  /**
+   * The poller for asynchronous calculations that are long polled, null if long polling is disabled.
+   * Long polls are held by the service, so have their own limit, rather than delaying other polls.
+   */
+  private final CalculationPoller longPoller;
+  /**
+   * The janitor that deletes calculations in the background.
+   */
+  private final CalculationJanitor janitor;
+  /**
+   * The time the service is asked to hold each poll, zero if long polling is disabled.
+   */
+  private final Duration longPollWait;
+  /**
+   * The HTTP client used for long polls, null if long polling is disabled.
+   * This has its own dispatcher, so waiting polls do not delay other requests to the service.
+   */
+  private final OkHttpClient longPollClient;
+  /**
+   * Whether the service holds polls, null until known, and true once the service has held a poll.
+   */
+  private volatile Boolean longPollSupported;
+  /**
+   * The maximum number of calculations of a bulk calculation in flight.
+   */
+  private final int maxConcurrentCalcs;
+  /**
+   * The maximum number of calculations of a bulk calculation in flight for each CCP.
+   */
+  private final int maxConcurrentCalcsPerCcp;
+  /**
+   * The cache of calculation results, null if disabled.
+   */
+  private final MarginCalcResultCache resultCache;
+  /**
+   * The store of calculation results on disk, null if disabled.
+   */
+  private final MarginCalcResultStore resultStore;
+  /**
+   * The calculations in flight, shared by identical requests, null if disabled.
+   */
+  private final InFlightCalculations inFlight;
 
   //-------------------------------------------------------------------------
   /**
@@ -70,115 +151,383 @@ final class InvokerMarginClient implements MarginClient {
    * @return the client
    */
   static InvokerMarginClient of(ServiceInvoker invoker) {
-    return new InvokerMarginClient(invoker);
+    return new InvokerMarginClient(
+        invoker,
+        invoker.getPollingStrategy(),
+        CalculationPoller.DEFAULT_MAX_CONCURRENT_POLLS,
+        Duration.ZERO,
+        CalculationPoller.DEFAULT_MAX_CONCURRENT_LONG_POLLS,
+        MarginClientBuilder.DEFAULT_MAX_CONCURRENT_CALCULATIONS,
+        Integer.MAX_VALUE,
+        null,
+        null,
+        false);
   }
 
-  private InvokerMarginClient(ServiceInvoker invoker) {
+  /**
+   * Creates an instance.
+   *
+   * @param invoker  the service invoker
+   * @param pollingStrategy  the polling strategy
+   * @param maxConcurrentPolls  the maximum number of asynchronous polls in progress at any one time
+   * @param longPollWait  the time the service is asked to hold each poll, zero to disable long polling
+   * @param maxConcurrentLongPolls  the maximum number of asynchronous long polls in progress at any one time
+   * @param maxConcurrentCalcs  the maximum number of calculations of a bulk calculation in flight
+   * @param maxConcurrentCalcsPerCcp  the maximum number of calculations of a bulk calculation in flight for each CCP
+   * @param resultCache  the cache of calculation results, null if disabled
+   * @param resultStore  the store of calculation results on disk, null if disabled, closed when the invoker is closed
+   * @param deduplicate  whether identical requests share a calculation in flight
+   */
+  InvokerMarginClient(
+      ServiceInvoker invoker,
+      PollingStrategy pollingStrategy,
+      int maxConcurrentPolls,
+      Duration longPollWait,
+      int maxConcurrentLongPolls,
+      int maxConcurrentCalcs,
+      int maxConcurrentCalcsPerCcp,
+      MarginCalcResultCache resultCache,
+      MarginCalcResultStore resultStore,
+      boolean deduplicate) {
+
     this.invoker = Objects.requireNonNull(invoker, "invoker must not be null");
+    this.pollingStrategy = Objects.requireNonNull(pollingStrategy, "pollingStrategy must not be null");
+    this.poller = new CalculationPoller(
+        invoker.getExecutor(),
+        this::pollStatusAsync,
+        maxConcurrentPolls);
+    this.janitor = new CalculationJanitor(invoker, this::deleteCalculationAsync);
+    this.longPollWait = Objects.requireNonNull(longPollWait, "longPollWait must not be null");
+    if (longPollWait.isZero()) {
+      this.longPoller = null;
+      this.longPollClient = null;
+    } else {
+      this.longPoller = new CalculationPoller(invoker.getExecutor(), this::pollStatusAsync, maxConcurrentLongPolls);
+      // the long poll client shares the connection pool, but has its own dispatcher and read timeout
+      Dispatcher dispatcher = new Dispatcher();
+      dispatcher.setMaxRequests(maxConcurrentLongPolls);
+      dispatcher.setMaxRequestsPerHost(maxConcurrentLongPolls);
+      this.longPollClient = invoker.getHttpClient().newBuilder()
+          .dispatcher(dispatcher)
+          .readTimeout(longPollWait.plus(LONG_POLL_READ_MARGIN).toMillis(), MILLISECONDS)
+          .build();
+    }
+    this.maxConcurrentCalcs = maxConcurrentCalcs;
+    this.maxConcurrentCalcsPerCcp = maxConcurrentCalcsPerCcp;
+    this.resultCache = resultCache;
+    this.resultStore = resultStore;
+    this.inFlight = deduplicate ? new InFlightCalculations() : null;
+    if (resultStore != null) {
+      invoker.addCloseTask(resultStore::close);
+    }
   }
 
   //-------------------------------------------------------------------------
   @Override
   public CcpsResult listCcps() {
-    Request request = new Request.Builder()
+    return execute(listCcpsRequest(), this::parseCcps);
+  }
+
+  @Override
+  public CompletableFuture<CcpsResult> listCcpsAsync() {
+    return enqueue(listCcpsRequest(), this::parseCcps);
+  }
+
+  private Request listCcpsRequest() {
+    return new Request.Builder()
         .url(invoker.getServiceUrl().resolve("margin/v3/ccps"))
         .get()
         .header("Accept", MEDIA_JSON.toString())
         .build();
+  }
 
-    try (Response response = invoker.getHttpClient().newCall(request).execute()) {
-      if (!response.isSuccessful()) {
-        throw parseError(LIST_CCPS, response);
-      }
-      return SERIALIZER.jsonReader().read(response.body().string(), CcpsResult.class);
-
-    } catch (IOException ex) {
-      throw new UncheckedIOException(ex);
+  private CcpsResult parseCcps(Response response) throws IOException {
+    if (!response.isSuccessful()) {
+      throw parseError(LIST_CCPS, response);
     }
+    return readJson(SERIALIZER, response, CcpsResult.class);
   }
 
   @Override
   public CcpInfo getCcpInfo(Ccp ccp) {
-    Request request = new Request.Builder()
+    return execute(getCcpInfoRequest(ccp), response -> parseCcpInfo(ccp, response));
+  }
+
+  @Override
+  public CompletableFuture<CcpInfo> getCcpInfoAsync(Ccp ccp) {
+    return enqueue(getCcpInfoRequest(ccp), response -> parseCcpInfo(ccp, response));
+  }
+
+  private Request getCcpInfoRequest(Ccp ccp) {
+    return new Request.Builder()
         .url(invoker.getServiceUrl().resolve("margin/v3/ccps/" + ccp.name().toLowerCase(Locale.ENGLISH)))
         .get()
         .header("Accept", MEDIA_JSON.toString())
         .build();
+  }
 
-    try (Response response = invoker.getHttpClient().newCall(request).execute()) {
-      if (!response.isSuccessful()) {
-        throw parseError(GET_CCP_INFO, response);
-      }
-      return SERIALIZER.jsonReader().read(response.body().string(), CcpInfo.class);
-    } catch (IOException ex) {
-      throw new UncheckedIOException(ex);
+  // a new latest valuation date invalidates the cached results of the CCP
+  private CcpInfo parseCcpInfo(Ccp ccp, Response response) throws IOException {
+    if (!response.isSuccessful()) {
+      throw parseError(GET_CCP_INFO, response);
+    }
+    CcpInfo info = readJson(SERIALIZER, response, CcpInfo.class);
+    if (resultCache != null) {
+      resultCache.ccpInfoReceived(ccp, info);
     }
+    return info;
   }
 
   @Override
   public String createCalculation(Ccp ccp, MarginCalcRequest calcRequest) {
-    String text = SERIALIZER.jsonWriter().write(calcRequest, false);
-    RequestBody body = RequestBody.create(MEDIA_JSON, text);
-    Request request = new Request.Builder()
+    return submitCalculation(ccp, requestBody(calcRequest)).getValue();
+  }
+
+  @Override
+  public CompletableFuture<String> createCalculationAsync(Ccp ccp, MarginCalcRequest calcRequest) {
+    return submitCalculationAsync(ccp, requestBody(calcRequest)).thenApply(Polled::getValue);
+  }
+
+  // creates the calculation, capturing any delay requested by the server
+  private Polled<String> submitCalculation(Ccp ccp, MarginCalcRequestBody body) {
+    return execute(createCalculationRequest(ccp, body), this::parseCreated);
+  }
+
+  // creates the calculation asynchronously, capturing any delay requested by the server
+  private CompletableFuture<Polled<String>> submitCalculationAsync(Ccp ccp, MarginCalcRequestBody body) {
+    return enqueue(createCalculationRequest(ccp, body), this::parseCreated);
+  }
+
+  // the body streams the portfolio data, and can be reused when the same request is sent again
+  private static MarginCalcRequestBody requestBody(MarginCalcRequest calcRequest) {
+    return MarginCalcRequestBody.of(calcRequest, SERIALIZER);
+  }
+
+  private Request createCalculationRequest(Ccp ccp, RequestBody body) {
+    return new Request.Builder()
         .url(invoker.getServiceUrl().resolve("margin/v3/ccps/" + ccp.name().toLowerCase(Locale.ENGLISH) + "/calculations"))
         .post(body)
         .header("Content-Type", MEDIA_JSON.toString())
         .header("Accept", MEDIA_JSON.toString())
         .build();
+  }
 
-    try (Response response = invoker.getHttpClient().newCall(request).execute()) {
-      if (response.code() != 202) {
-        throw parseError(CREATE_CALCULATION, response);
-      }
-      String location = response.header(LOCATION);
-      return location.substring(location.lastIndexOf('/') + 1);
-
-    } catch (IOException ex) {
-      throw new UncheckedIOException(ex);
+  private Polled<String> parseCreated(Response response) throws IOException {
+    if (response.code() != 202) {
+      throw parseError(CREATE_CALCULATION, response);
     }
+    String location = response.header(LOCATION);
+    return new Polled<>(location.substring(location.lastIndexOf('/') + 1), retryAfter(response));
   }
 
   @Override
   public MarginCalcResult getCalculation(Ccp ccp, String calcId) {
-    Request request = new Request.Builder()
+    return pollCalculation(ccp, calcId).getValue();
+  }
+
+  @Override
+  public CompletableFuture<MarginCalcResult> getCalculationAsync(Ccp ccp, String calcId) {
+    return pollCalculationAsync(ccp, calcId).thenApply(Polled::getValue);
+  }
+
+  // gets the calculation, capturing any delay requested by the server
+  private Polled<MarginCalcResult> pollCalculation(Ccp ccp, String calcId) {
+    return execute(getCalculationRequest(ccp, calcId), response -> parseCalculation(ccp, response));
+  }
+
+  // gets the calculation asynchronously, capturing any delay requested by the server
+  private CompletableFuture<Polled<MarginCalcResult>> pollCalculationAsync(Ccp ccp, String calcId) {
+    return enqueue(getCalculationRequest(ccp, calcId), response -> parseCalculation(ccp, response));
+  }
+
+  // polls the calculation, only reading the result once the calculation has completed
+  private Polled<MarginCalcResult> pollStatus(Ccp ccp, String calcId) {
+    if (isLongPolling()) {
+      return execute(longPollClient, longPollRequest(ccp, calcId), response -> parseLongPoll(ccp, response));
+    }
+    return execute(getCalculationRequest(ccp, calcId), response -> parseCalculationIfCompleted(ccp, response));
+  }
+
+  // polls the calculation asynchronously, only reading the result once the calculation has completed
+  private CompletableFuture<Polled<MarginCalcResult>> pollStatusAsync(Ccp ccp, String calcId) {
+    if (isLongPolling()) {
+      return enqueue(longPollClient, longPollRequest(ccp, calcId), response -> parseLongPoll(ccp, response));
+    }
+    return enqueue(getCalculationRequest(ccp, calcId), response -> parseCalculationIfCompleted(ccp, response));
+  }
+
+  private Request getCalculationRequest(Ccp ccp, String calcId) {
+    return new Request.Builder()
         .url(invoker.getServiceUrl()
             .resolve("margin/v3/ccps/" + ccp.name().toLowerCase(Locale.ENGLISH) + "/calculations/" + calcId))
         .get()
         .header("Accept", MEDIA_JSON.toString())
         .build();
+  }
+
+  // the request asks the service to hold the response until the calculation completes, as per RFC 7240
+  private Request longPollRequest(Ccp ccp, String calcId) {
+    return getCalculationRequest(ccp, calcId).newBuilder()
+        .header(PREFER, "wait=" + longPollWait.getSeconds())
+        .build();
+  }
 
-    try (Response response = invoker.getHttpClient().newCall(request).execute()) {
-      if (!response.isSuccessful()) {
-        throw parseError(GET_CALCULATION, response);
+  // a service that holds polls confirms it, so the next poll can be sent at once
+  // a service that returns a pending calculation without confirming it ignored the preference,
+  // and is polled as normal from then on, unless it has held a poll before
+  // a completed calculation without confirmation is not conclusive, as it may have completed before the poll
+  private Polled<MarginCalcResult> parseLongPoll(Ccp ccp, Response response) throws IOException {
+    if (!response.isSuccessful()) {
+      return parseCalculationIfCompleted(ccp, response);
+    }
+    String applied = response.header(PREFERENCE_APPLIED);
+    boolean held = applied != null && applied.trim().startsWith("wait");
+    Polled<MarginCalcResult> polled = parseCalculationIfCompleted(ccp, response);
+    if (held) {
+      longPollSupported = Boolean.TRUE;
+      if (!polled.getRetryAfter().isPresent()) {
+        return new Polled<>(polled.getValue(), Optional.of(Duration.ZERO));
       }
-      SerDeserializers deser = MarginDetailDeserializer.of(ccp)
-          .map(ds -> new SerDeserializers(true, ds))
-          .orElse(SerDeserializers.LENIENT);
-      return SERIALIZER.withDeserializers(deser).jsonReader().read(response.body().string(), MarginCalcResult.class);
+    } else if (isPending(polled) && longPollSupported == null) {
+      longPollSupported = Boolean.FALSE;
+    }
+    return polled;
+  }
 
-    } catch (IOException ex) {
-      throw new UncheckedIOException(ex);
+  // checks if polls should ask the service to hold the response
+  private boolean isLongPolling() {
+    return longPollClient != null && !Boolean.FALSE.equals(longPollSupported);
+  }
+
+  // the delay before the first poll, none if the service will hold the poll
+  private long firstPollDelayNanos(PollingSchedule schedule, Polled<String> created) {
+    if (isLongPolling() && !created.getRetryAfter().isPresent()) {
+      return 0;
+    }
+    return created.delayNanos(schedule);
+  }
+
+  private Polled<MarginCalcResult> parseCalculation(Ccp ccp, Response response) throws IOException {
+    if (!response.isSuccessful()) {
+      throw parseError(GET_CALCULATION, response);
+    }
+    SerDeserializers deser = MarginDetailDeserializer.of(ccp)
+        .map(ds -> new SerDeserializers(true, ds))
+        .orElse(SerDeserializers.LENIENT);
+    MarginCalcResult result = readJson(SERIALIZER.withDeserializers(deser), response, MarginCalcResult.class);
+    return new Polled<>(result, retryAfter(response));
+  }
+
+  // the status is scanned first, and while pending the rest of the response is not parsed
+  // the polled value is null while pending, whether or not the scan found the status
+  private Polled<MarginCalcResult> parseCalculationIfCompleted(Ccp ccp, Response response) throws IOException {
+    if (response.isSuccessful()) {
+      Optional<MarginCalcResultStatus> status = CalculationStatusScanner.scan(response.body().source());
+      if (status.orElse(null) == MarginCalcResultStatus.PENDING) {
+        return new Polled<>(null, retryAfter(response));
+      }
     }
+    Polled<MarginCalcResult> polled = parseCalculation(ccp, response);
+    return isPending(polled) ? new Polled<>(null, polled.getRetryAfter()) : polled;
+  }
+
+  // checks if the polled calculation is still pending
+  private static boolean isPending(Polled<MarginCalcResult> polled) {
+    return !polled.hasValue() || polled.getValue().getStatus() == MarginCalcResultStatus.PENDING;
   }
 
   @Override
   public void deleteCalculation(Ccp ccp, String calcId) {
-    Request request = new Request.Builder()
+    execute(deleteCalculationRequest(ccp, calcId), this::parseDeleted);
+  }
+
+  @Override
+  public CompletableFuture<Void> deleteCalculationAsync(Ccp ccp, String calcId) {
+    return enqueue(deleteCalculationRequest(ccp, calcId), this::parseDeleted);
+  }
+
+  private Request deleteCalculationRequest(Ccp ccp, String calcId) {
+    return new Request.Builder()
         .url(invoker.getServiceUrl()
             .resolve("margin/v3/ccps/" + ccp.name().toLowerCase(Locale.ENGLISH) + "/calculations/" + calcId))
         .delete()
         .header("Accept", MEDIA_JSON.toString())
         .build();
+  }
 
-    try (Response response = invoker.getHttpClient().newCall(request).execute()) {
-      if (!response.isSuccessful()) {
-        throw parseError(DELETE_CALCULATION, response);
-      }
+  private Void parseDeleted(Response response) throws IOException {
+    if (!response.isSuccessful()) {
+      throw parseError(DELETE_CALCULATION, response);
+    }
+    return null;
+  }
+
+  //-------------------------------------------------------------------------
+  // executes the request on the calling thread
+  private <T> T execute(Request request, ResponseHandler<T> handler) {
+    return execute(invoker.getHttpClient(), request, handler);
+  }
+
+  // executes the request on the calling thread, using the specified client
+  private <T> T execute(OkHttpClient httpClient, Request request, ResponseHandler<T> handler) {
+    try (Response response = httpClient.newCall(request).execute()) {
+      return handler.handle(response);
     } catch (IOException ex) {
       throw new UncheckedIOException(ex);
     }
   }
 
+  // enqueues the request, with the handler called back when the response arrives
+  // no thread of the invoker is used while waiting, and cancelling the future cancels the call
+  private <T> CompletableFuture<T> enqueue(Request request, ResponseHandler<T> handler) {
+    return enqueue(invoker.getHttpClient(), request, handler);
+  }
+
+  // enqueues the request using the specified client
+  private <T> CompletableFuture<T> enqueue(OkHttpClient httpClient, Request request, ResponseHandler<T> handler) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    Call call = httpClient.newCall(request);
+    call.enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException ex) {
+        future.completeExceptionally(new UncheckedIOException(ex));
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        try (Response closeable = response) {
+          future.complete(handler.handle(closeable));
+        } catch (IOException ex) {
+          future.completeExceptionally(new UncheckedIOException(ex));
+        } catch (RuntimeException ex) {
+          future.completeExceptionally(ex);
+        }
+      }
+    });
+    future.whenComplete((result, ex) -> {
+      if (future.isCancelled()) {
+        call.cancel();
+      }
+    });
+    return future;
+  }
+
+  // parses the JSON as it is read from the response, rather than reading it into a string first
+  // large results, such as those with trade sensitivities, are then never held in memory as text
+  private static <T> T readJson(JodaBeanSer serializer, Response response, Class<T> type) throws IOException {
+    try (Reader reader = new BufferedReader(response.body().charStream())) {
+      return serializer.jsonReader().read(reader, type);
+    } catch (RuntimeException ex) {
+      // the reader wraps IO errors, perhaps several times, so they are unwrapped to be handled like those of the call
+      for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+      }
+      throw ex;
+    }
+  }
+
   // throw exception in case of error
   private MarginException parseError(MarginOperation operation, Response response) throws IOException {
     ErrorMessage errorMessage = parseError(response);
@@ -196,63 +545,307 @@ final class InvokerMarginClient implements MarginClient {
     }
   }
 
+  // parses the Retry-After header, which may be in seconds or an HTTP date
+  static Optional<Duration> retryAfter(Response response) {
+    String header = response.header(RETRY_AFTER);
+    if (header == null || header.trim().isEmpty()) {
+      return Optional.empty();
+    }
+    String value = header.trim();
+    try {
+      return Optional.of(Duration.ofSeconds(Math.max(Long.parseLong(value), 0)));
+    } catch (NumberFormatException ex) {
+      try {
+        Instant instant = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        Duration delay = Duration.between(Instant.now(), instant);
+        return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+      } catch (DateTimeParseException ex2) {
+        return Optional.empty();
+      }
+    }
+  }
+
+  // sleeps for the delay before the next poll
+  private static void sleep(PollingSchedule schedule, Polled<?> polled) {
+    sleep(polled.delayNanos(schedule));
+  }
+
+  // sleeps for the delay
+  private static void sleep(long delayNanos) {
+    try {
+      NANOSECONDS.sleep(delayNanos);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ex);
+    }
+  }
+
+  // sleeps for the delay, waking to throw as soon as the caller's future is completed by the caller
+  private static void sleep(long delayNanos, CompletableFuture<?> callerFuture) {
+    if (callerFuture == null) {
+      sleep(delayNanos);
+      return;
+    }
+    try {
+      callerFuture.get(delayNanos, NANOSECONDS);
+    } catch (TimeoutException ex) {
+      return;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ex);
+    } catch (ExecutionException | CancellationException ex) {
+      // abandoned
+    }
+    throw new CancellationException("Calculation abandoned by the caller");
+  }
+
   //-------------------------------------------------------------------------
+  @Override
+  public Optional<ResultCacheStats> getResultCacheStats() {
+    return resultCache != null ? Optional.of(resultCache.stats()) : Optional.empty();
+  }
+
   @Override
   public MarginCalcResult calculate(Ccp ccp, MarginCalcRequest request) {
-    String calcId = createCalculation(ccp, request);
-    MarginCalcResult result = getCalculation(ccp, calcId);
-    while (result.getStatus() == MarginCalcResultStatus.PENDING) {
-      try {
-        Thread.sleep(POLL_WAIT);
-      } catch (InterruptedException ex) {
-        Thread.currentThread().interrupt();
-        throw new RuntimeException(ex);
+    if (inFlight != null) {
+      return await(calculateAsync(ccp, request));
+    }
+    if (resultCache == null && resultStore == null) {
+      return calculate(ccp, requestBody(request), null);
+    }
+    ByteString key = MarginCalcResultCache.key(ccp, request);
+    MarginCalcResult cached = cachedResult(key, ccp);
+    if (cached != null) {
+      return cached;
+    }
+    MarginCalcResult result = calculate(ccp, requestBody(request), null);
+    cacheResult(key, ccp, result);
+    return result;
+  }
+
+  // gets a previous result from the cache, then the store, null if not found
+  // a result found in the store is added to the cache
+  private MarginCalcResult cachedResult(ByteString key, Ccp ccp) {
+    MarginCalcResult cached = resultCache != null ? resultCache.get(key) : null;
+    if (cached == null && resultStore != null) {
+      cached = resultStore.get(key);
+      if (cached != null && resultCache != null) {
+        resultCache.put(key, ccp, cached);
       }
-      result = getCalculation(ccp, calcId);
     }
-    // cleanup server state quietly
+    return cached;
+  }
+
+  // adds a result calculated by the service to the cache and the store
+  private void cacheResult(ByteString key, Ccp ccp, MarginCalcResult result) {
+    if (resultCache != null) {
+      resultCache.put(key, ccp, result);
+    }
+    if (resultStore != null) {
+      resultStore.put(key, result);
+    }
+  }
+
+  // submits and polls a calculation, which is deleted in the background once finished with
+  // if the caller's future is completed by the caller, polling stops and the calculation is deleted
+  private MarginCalcResult calculate(Ccp ccp, MarginCalcRequestBody body, CompletableFuture<?> callerFuture) {
+    PollingSchedule schedule = pollingStrategy.start(ccp.name());
+    Polled<String> created = submitCalculation(ccp, body);
+    String calcId = created.getValue();
     try {
-      deleteCalculation(ccp, calcId);
-    } catch (RuntimeException ex) {
-      // ignore
+      sleep(firstPollDelayNanos(schedule, created), callerFuture);
+      Polled<MarginCalcResult> polled = pollStatus(ccp, calcId);
+      while (isPending(polled)) {
+        sleep(polled.delayNanos(schedule), callerFuture);
+        polled = pollStatus(ccp, calcId);
+      }
+      schedule.completed();
+      return polled.getValue();
+    } finally {
+      janitor.delete(ccp, calcId);
     }
-    return result;
   }
 
   @Override
   public CompletableFuture<MarginCalcResult> calculateAsync(Ccp ccp, MarginCalcRequest request) {
-    ScheduledExecutorService executorService = invoker.getExecutor();
-    // async function to create the calculation
-    Supplier<String> createFn = () -> createCalculation(ccp, request);
-    // async function to poll for results
-    Function<String, CompletableFuture<MarginCalcResult>> pollingFn = id -> {
-      // manually manage the result future and polling
-      CompletableFuture<MarginCalcResult> resultFuture = new CompletableFuture<>();
-      // polling task must catch exceptions, otherwise it will poll forever
-      Runnable pollTask = () -> {
+    if (resultCache == null && resultStore == null && inFlight == null) {
+      return calculateAsync(ccp, requestBody(request));
+    }
+    ByteString key = MarginCalcResultCache.key(ccp, request);
+    MarginCalcResult cached = cachedResult(key, ccp);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+    if (inFlight != null) {
+      return inFlight.attach(key, () -> calculateAndCacheAsync(key, ccp, request));
+    }
+    return calculateAndCacheAsync(key, ccp, request);
+  }
+
+  // calculates asynchronously, caching the result before the returned future completes,
+  // and only if calculated by the service
+  private CompletableFuture<MarginCalcResult> calculateAndCacheAsync(ByteString key, Ccp ccp, MarginCalcRequest request) {
+    CompletableFuture<MarginCalcResult> calc = calculateAsync(ccp, requestBody(request));
+    if (resultCache == null && resultStore == null) {
+      return calc;
+    }
+    CompletableFuture<MarginCalcResult> result = new CompletableFuture<>();
+    calc.whenComplete((calcResult, ex) -> {
+      if (ex != null) {
+        result.completeExceptionally(ex);
+      } else {
+        cacheResult(key, ccp, calcResult);
+        result.complete(calcResult);
+      }
+    });
+    result.whenComplete((calcResult, ex) -> calc.cancel(false));
+    return result;
+  }
+
+  // waits for the result of an asynchronous calculation, abandoning it if interrupted
+  private static MarginCalcResult await(CompletableFuture<MarginCalcResult> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      future.cancel(false);
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = unwrap(ex.getCause());
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  // submits and polls a calculation asynchronously, which is deleted in the background once finished with
+  // if the returned future is completed by the caller, such as by cancellation, polling stops
+  // at once and the calculation is deleted, or is deleted as soon as it has been created
+  private CompletableFuture<MarginCalcResult> calculateAsync(Ccp ccp, MarginCalcRequestBody body) {
+    CompletableFuture<MarginCalcResult> result = new CompletableFuture<>();
+    if (invoker.isVirtualThreads()) {
+      // blocking calls are cheap on a virtual thread, so use one per calculation
+      // any throwable completes the future, so that an error does not leave it pending forever
+      invoker.getExecutor().execute(() -> {
         try {
-          MarginCalcResult calcResult = getCalculation(ccp, id);
-          if (calcResult.getStatus() == MarginCalcResultStatus.COMPLETED) {
-            resultFuture.complete(calcResult);
-          }
-        } catch (RuntimeException ex) {
-          resultFuture.completeExceptionally(ex);
+          result.complete(calculate(ccp, body, result));
+        } catch (Throwable ex) {
+          result.completeExceptionally(ex);
         }
-      };
-      ScheduledFuture<?> scheduledTask = executorService.scheduleWithFixedDelay(pollTask, POLL_WAIT, POLL_WAIT, MILLISECONDS);
-      // stop the scheduled job and cleanup server state quietly
-      BiConsumer<MarginCalcResult, Throwable> cleanupFn = (result, resultEx) -> {
-        scheduledTask.cancel(true);
-        try {
-          deleteCalculation(ccp, id);
-        } catch (RuntimeException ex) {
-          // ignore
+      });
+      return result;
+    }
+    PollingSchedule schedule = pollingStrategy.start(ccp.name());
+    // polls for results using the central poller, once the calculation has been created
+    BiConsumer<Polled<String>, Throwable> pollingFn = (created, createEx) -> {
+      if (createEx != null) {
+        result.completeExceptionally(unwrap(createEx));
+        return;
+      }
+      String id = created.getValue();
+      if (result.isDone()) {
+        janitor.delete(ccp, id);
+        return;
+      }
+      CompletableFuture<MarginCalcResult> polling;
+      try {
+        CalculationPoller selected = isLongPolling() ? longPoller : poller;
+        polling = selected.poll(ccp, id, schedule, firstPollDelayNanos(schedule, created));
+      } catch (RuntimeException ex) {
+        janitor.delete(ccp, id);
+        result.completeExceptionally(ex);
+        return;
+      }
+      // cleanup server state in the background, completing without waiting for the delete
+      polling.whenComplete((polled, pollEx) -> {
+        janitor.delete(ccp, id);
+        if (pollEx != null) {
+          result.completeExceptionally(pollEx);
+        } else {
+          result.complete(polled);
         }
-      };
-      return resultFuture.whenComplete(cleanupFn);
+      });
+      result.whenComplete((polled, ex) -> polling.cancel(false));
     };
+    submitCalculationAsync(ccp, body).whenComplete(pollingFn);
+    return result;
+  }
+
+  // unwraps the exception of a dependent stage
+  private static Throwable unwrap(Throwable ex) {
+    return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public CompletableFuture<Void> calculateAll(
+      Collection<MarginCalcJob> jobs,
+      Consumer<MarginCalcJobResult> resultConsumer) {
+
+    return BulkCalculation.run(jobs, this::calculateAsync, maxConcurrentCalcs, maxConcurrentCalcsPerCcp, resultConsumer);
+  }
+
+  @Override
+  public Iterator<MarginCalcJobResult> calculateAll(Collection<MarginCalcJob> jobs) {
+    return BulkCalculation.iterate(jobs, this::calculateAsync, maxConcurrentCalcs, maxConcurrentCalcsPerCcp);
+  }
 
-    return CompletableFuture.supplyAsync(createFn, executorService).thenCompose(pollingFn);
+  // runs a job of a bulk calculation, the request only being serialized once the job starts
+  private CompletableFuture<MarginCalcResult> calculateAsync(MarginCalcJob job) {
+    return calculateAsync(job.getCcp(), job.getRequest());
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public CcpComparison compareCcps(List<PortfolioDataFile> portfolioData, Set<Ccp> ccps) {
+    Objects.requireNonNull(portfolioData, "portfolioData must not be null");
+    Objects.requireNonNull(ccps, "ccps must not be null");
+    // the portfolio data is escaped and measured once, with only the small envelope varying by CCP
+    MarginCalcRequestBody portfolioBody = MarginCalcRequestBody.ofPortfolioData(portfolioData);
+    CcpsResult available = listCcps();
+    return CcpComparison.calculate(ccps, available, ccp -> compareCcpAsync(ccp, portfolioData, portfolioBody));
+  }
+
+  // calculates the margin at a single CCP, using its latest valuation date and default currency
+  // if the returned future is completed by the caller, the calculation is abandoned
+  private CompletableFuture<MarginCalcResult> compareCcpAsync(
+      Ccp ccp,
+      List<PortfolioDataFile> portfolioData,
+      MarginCalcRequestBody portfolioBody) {
+
+    CompletableFuture<MarginCalcResult> result = new CompletableFuture<>();
+    CompletableFuture<CcpInfo> infoFuture = getCcpInfoAsync(ccp);
+    infoFuture.whenComplete((info, infoEx) -> {
+      if (infoEx != null) {
+        result.completeExceptionally(unwrap(infoEx));
+        return;
+      }
+      CompletableFuture<MarginCalcResult> calc;
+      try {
+        MarginCalcRequest request = MarginCalcRequest.of(
+            info.getLatestValuationDate(),
+            info.getDefaultCurrency(),
+            portfolioData);
+        calc = calculateAsync(ccp, portfolioBody.withRequest(request, SERIALIZER));
+      } catch (RuntimeException ex) {
+        result.completeExceptionally(ex);
+        return;
+      }
+      calc.whenComplete((calcResult, calcEx) -> {
+        if (calcEx != null) {
+          result.completeExceptionally(unwrap(calcEx));
+        } else {
+          result.complete(calcResult);
+        }
+      });
+      result.whenComplete((calcResult, ex) -> calc.cancel(false));
+    });
+    result.whenComplete((calcResult, ex) -> infoFuture.cancel(false));
+    return result;
   }
 
   //-------------------------------------------------------------------------
@@ -262,39 +855,64 @@ final class InvokerMarginClient implements MarginClient {
       MarginCalcRequest request,
       List<PortfolioDataFile> deltaFiles) {
 
-    String baseCalcId = createCalculation(ccp, request);
-    ArrayList<PortfolioDataFile> combinedPortfolioData = new ArrayList<>();
-    combinedPortfolioData.addAll(request.getPortfolioData());
-    combinedPortfolioData.addAll(deltaFiles);
-
-    MarginCalcRequest secondRequest = request.toBuilder()
-        .portfolioData(combinedPortfolioData)
-        .build();
-
-    String deltaCalcId = createCalculation(ccp, secondRequest);
-    MarginCalcResult baseResult = getCalculation(ccp, baseCalcId);
-    MarginCalcResult deltaResult = getCalculation(ccp, deltaCalcId);
-    while (MarginCalcResultStatus.PENDING.equals(baseResult.getStatus()) ||
-        MarginCalcResultStatus.PENDING.equals(deltaResult.getStatus())) {
+    PollingSchedule schedule = pollingStrategy.start(ccp.name());
+    MarginCalcRequestBody baseBody = requestBody(request);
+    Polled<String> baseCreated = submitCalculation(ccp, baseBody);
+    String baseCalcId = baseCreated.getValue();
+    try {
+      // the combined request reuses the JSON of the base request, adding the delta files
+      Polled<String> deltaCreated = submitCalculation(ccp, baseBody.withAdditionalFiles(deltaFiles));
+      String deltaCalcId = deltaCreated.getValue();
       try {
-        Thread.sleep(POLL_WAIT);
-      } catch (InterruptedException ex) {
-        throw new RuntimeException(ex);
-      }
-      if (MarginCalcResultStatus.PENDING.equals(baseResult.getStatus())) {
-        baseResult = getCalculation(ccp, baseCalcId);
-      }
-      if (MarginCalcResultStatus.PENDING.equals(deltaResult.getStatus())) {
-        deltaResult = getCalculation(ccp, deltaCalcId);
+        sleep(firstPollDelayNanos(schedule, baseCreated.getRetryAfter().isPresent() ? baseCreated : deltaCreated));
+        Polled<MarginCalcResult> basePolled = pollStatus(ccp, baseCalcId);
+        Polled<MarginCalcResult> deltaPolled = pollStatus(ccp, deltaCalcId);
+        while (isPending(basePolled) || isPending(deltaPolled)) {
+          sleep(schedule, isPending(basePolled) ? basePolled : deltaPolled);
+          if (isPending(basePolled)) {
+            basePolled = pollStatus(ccp, baseCalcId);
+          }
+          if (isPending(deltaPolled)) {
+            deltaPolled = pollStatus(ccp, deltaCalcId);
+          }
+        }
+        schedule.completed();
+        return whatIfResult(request, basePolled.getValue(), deltaPolled.getValue());
+      } finally {
+        janitor.delete(ccp, deltaCalcId);
       }
+    } finally {
+      // cleanup server state in the background, even if the delta could not be submitted
+      janitor.delete(ccp, baseCalcId);
     }
-    // cleanup server state quietly
-    try {
-      deleteCalculation(ccp, baseCalcId);
-      deleteCalculation(ccp, deltaCalcId);
-    } catch (RuntimeException ex) {
-      // ignore
-    }
+  }
+
+  @Override
+  public CompletableFuture<MarginWhatIfCalcResult> calculateWhatIfAsync(
+      Ccp ccp,
+      MarginCalcRequest request,
+      List<PortfolioDataFile> deltaFiles) {
+
+    // the two calculations run concurrently, each deleted as soon as it completes
+    MarginCalcRequestBody baseBody = requestBody(request);
+    CompletableFuture<MarginCalcResult> baseFuture = calculateAsync(ccp, baseBody);
+    CompletableFuture<MarginCalcResult> deltaFuture = calculateAsync(ccp, baseBody.withAdditionalFiles(deltaFiles));
+    CompletableFuture<MarginWhatIfCalcResult> result = baseFuture.thenCombine(
+        deltaFuture,
+        (baseResult, deltaResult) -> whatIfResult(request, baseResult, deltaResult));
+    // once the result is known, or is no longer wanted, neither calculation needs to continue
+    result.whenComplete((whatIf, ex) -> {
+      baseFuture.cancel(false);
+      deltaFuture.cancel(false);
+    });
+    return result;
+  }
+
+  // combines the results of the base and combined calculations
+  private static MarginWhatIfCalcResult whatIfResult(
+      MarginCalcRequest request,
+      MarginCalcResult baseResult,
+      MarginCalcResult deltaResult) {
 
     return MarginWhatIfCalcResult.of(
         MarginCalcResultStatus.COMPLETED,
@@ -307,4 +925,11 @@ final class InvokerMarginClient implements MarginClient {
         deltaResult.getFailures());
   }
 
+  //-------------------------------------------------------------------------
+  // handles a response, shared between the blocking and non-blocking calls
+  @FunctionalInterface
+  private interface ResponseHandler<T> {
+    T handle(Response response) throws IOException;
+  }
+
 }
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.joda.beans.Bean;
+import org.joda.beans.BeanBuilder;
+import org.joda.beans.ImmutableBean;
+import org.joda.beans.JodaBeanUtils;
+import org.joda.beans.MetaBean;
+import org.joda.beans.MetaProperty;
+import org.joda.beans.gen.BeanDefinition;
+import org.joda.beans.gen.PropertyDefinition;
+import org.joda.beans.impl.direct.DirectMetaBean;
+import org.joda.beans.impl.direct.DirectMetaProperty;
+import org.joda.beans.impl.direct.DirectMetaPropertyMap;
+import org.joda.beans.impl.direct.DirectPrivateBeanBuilder;
+
+/**
+ * A single calculation to be run as part of a bulk calculation.
+ * <p>
+ * A job pairs a CCP with the calculation request to be run against it.
+ * See {@link MarginClient#calculateAll(java.util.Collection)}.
+ */
+@BeanDefinition(builderScope = "private", metaScope = "private", factoryName = "of")
+public final class MarginCalcJob implements ImmutableBean {
+
+  /**
+   * The CCP to use.
+   */
+  @PropertyDefinition(validate = "notNull")
+  private final Ccp ccp;
+  /**
+   * The calculation request.
+   */
+  @PropertyDefinition(validate = "notNull")
+  private final MarginCalcRequest request;
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "MarginCalcJob{ccp=" + ccp + ", valuationDate=" + request.getValuationDate() + "}";
+  }
+
+  //------------------------- AUTOGENERATED START -------------------------
+  /**
+   * The meta-bean for {@code MarginCalcJob}.
+   * @return the meta-bean, not null
+   */
+  public static MetaBean meta() {
+    return MarginCalcJob.Meta.INSTANCE;
+  }
+
+  static {
+    MetaBean.register(MarginCalcJob.Meta.INSTANCE);
+  }
+
+  /**
+   * Obtains an instance.
+   * @param ccp  the value of the property, not null
+   * @param request  the value of the property, not null
+   * @return the instance
+   */
+  public static MarginCalcJob of(
+      Ccp ccp,
+      MarginCalcRequest request) {
+    return new MarginCalcJob(
+      ccp,
+      request);
+  }
+
+  private MarginCalcJob(
+      Ccp ccp,
+      MarginCalcRequest request) {
+    JodaBeanUtils.notNull(ccp, "ccp");
+    JodaBeanUtils.notNull(request, "request");
+    this.ccp = ccp;
+    this.request = request;
+  }
+
+  @Override
+  public MetaBean metaBean() {
+    return MarginCalcJob.Meta.INSTANCE;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the CCP to use.
+   * @return the value of the property, not null
+   */
+  public Ccp getCcp() {
+    return ccp;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the calculation request.
+   * @return the value of the property, not null
+   */
+  public MarginCalcRequest getRequest() {
+    return request;
+  }
+
+  //-----------------------------------------------------------------------
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj != null && obj.getClass() == this.getClass()) {
+      MarginCalcJob other = (MarginCalcJob) obj;
+      return JodaBeanUtils.equal(ccp, other.ccp) &&
+          JodaBeanUtils.equal(request, other.request);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = getClass().hashCode();
+    hash = hash * 31 + JodaBeanUtils.hashCode(ccp);
+    hash = hash * 31 + JodaBeanUtils.hashCode(request);
+    return hash;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The meta-bean for {@code MarginCalcJob}.
+   */
+  private static final class Meta extends DirectMetaBean {
+    /**
+     * The singleton instance of the meta-bean.
+     */
+    static final Meta INSTANCE = new Meta();
+
+    /**
+     * The meta-property for the {@code ccp} property.
+     */
+    private final MetaProperty<Ccp> ccp = DirectMetaProperty.ofImmutable(
+        this, "ccp", MarginCalcJob.class, Ccp.class);
+    /**
+     * The meta-property for the {@code request} property.
+     */
+    private final MetaProperty<MarginCalcRequest> request = DirectMetaProperty.ofImmutable(
+        this, "request", MarginCalcJob.class, MarginCalcRequest.class);
+    /**
+     * The meta-properties.
+     */
+    private final Map<String, MetaProperty<?>> metaPropertyMap$ = new DirectMetaPropertyMap(
+        this, null,
+        "ccp",
+        "request");
+
+    /**
+     * Restricted constructor.
+     */
+    private Meta() {
+    }
+
+    @Override
+    protected MetaProperty<?> metaPropertyGet(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case 98320:  // ccp
+          return ccp;
+        case 1095692943:  // request
+          return request;
+      }
+      return super.metaPropertyGet(propertyName);
+    }
+
+    @Override
+    public BeanBuilder<? extends MarginCalcJob> builder() {
+      return new MarginCalcJob.Builder();
+    }
+
+    @Override
+    public Class<? extends MarginCalcJob> beanType() {
+      return MarginCalcJob.class;
+    }
+
+    @Override
+    public Map<String, MetaProperty<?>> metaPropertyMap() {
+      return metaPropertyMap$;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    protected Object propertyGet(Bean bean, String propertyName, boolean quiet) {
+      switch (propertyName.hashCode()) {
+        case 98320:  // ccp
+          return ((MarginCalcJob) bean).getCcp();
+        case 1095692943:  // request
+          return ((MarginCalcJob) bean).getRequest();
+      }
+      return super.propertyGet(bean, propertyName, quiet);
+    }
+
+    @Override
+    protected void propertySet(Bean bean, String propertyName, Object newValue, boolean quiet) {
+      metaProperty(propertyName);
+      if (quiet) {
+        return;
+      }
+      throw new UnsupportedOperationException("Property cannot be written: " + propertyName);
+    }
+
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The bean-builder for {@code MarginCalcJob}.
+   */
+  private static final class Builder extends DirectPrivateBeanBuilder<MarginCalcJob> {
+
+    private Ccp ccp;
+    private MarginCalcRequest request;
+
+    /**
+     * Restricted constructor.
+     */
+    private Builder() {
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public Object get(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case 98320:  // ccp
+          return ccp;
+        case 1095692943:  // request
+          return request;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+    }
+
+    @Override
+    public Builder set(String propertyName, Object newValue) {
+      switch (propertyName.hashCode()) {
+        case 98320:  // ccp
+          this.ccp = (Ccp) newValue;
+          break;
+        case 1095692943:  // request
+          this.request = (MarginCalcRequest) newValue;
+          break;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+      return this;
+    }
+
+    @Override
+    public MarginCalcJob build() {
+      return new MarginCalcJob(
+          ccp,
+          request);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public String toString() {
+      StringBuilder buf = new StringBuilder(96);
+      buf.append("MarginCalcJob.Builder{");
+      buf.append("ccp").append('=').append(JodaBeanUtils.toString(ccp)).append(',').append(' ');
+      buf.append("request").append('=').append(JodaBeanUtils.toString(request));
+      buf.append('}');
+      return buf.toString();
+    }
+
+  }
+
+  //-------------------------- AUTOGENERATED END --------------------------
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.joda.beans.Bean;
+import org.joda.beans.BeanBuilder;
+import org.joda.beans.ImmutableBean;
+import org.joda.beans.JodaBeanUtils;
+import org.joda.beans.MetaBean;
+import org.joda.beans.MetaProperty;
+import org.joda.beans.gen.BeanDefinition;
+import org.joda.beans.gen.PropertyDefinition;
+import org.joda.beans.impl.direct.DirectMetaBean;
+import org.joda.beans.impl.direct.DirectMetaProperty;
+import org.joda.beans.impl.direct.DirectMetaPropertyMap;
+import org.joda.beans.impl.direct.DirectPrivateBeanBuilder;
+
+/**
+ * The outcome of a single job of a bulk calculation.
+ * <p>
+ * Each job either succeeds with a result, or fails with an exception.
+ * The failure of one job does not affect the others.
+ * See {@link MarginClient#calculateAll(java.util.Collection)}.
+ */
+@BeanDefinition(builderScope = "private", metaScope = "private")
+public final class MarginCalcJobResult implements ImmutableBean {
+
+  /**
+   * The job.
+   */
+  @PropertyDefinition(validate = "notNull")
+  private final MarginCalcJob job;
+  /**
+   * The result of the calculation, empty if the job failed.
+   */
+  @PropertyDefinition(get = "optional")
+  private final MarginCalcResult result;
+  /**
+   * The failure of the calculation, empty if the job succeeded.
+   * <p>
+   * Failures that were not reported by the service, such as IO errors,
+   * are wrapped in a {@code MarginException} with the original as the cause.
+   */
+  @PropertyDefinition(get = "optional")
+  private final MarginException failure;
+
+  //-------------------------------------------------------------------------
+  // creates a successful instance
+  static MarginCalcJobResult success(MarginCalcJob job, MarginCalcResult result) {
+    return new MarginCalcJobResult(job, Objects.requireNonNull(result, "result must not be null"), null);
+  }
+
+  // creates a failed instance
+  static MarginCalcJobResult failure(MarginCalcJob job, MarginException failure) {
+    return new MarginCalcJobResult(job, null, Objects.requireNonNull(failure, "failure must not be null"));
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Checks if the job succeeded.
+   *
+   * @return true if the job has a result
+   */
+  public boolean isSuccess() {
+    return result != null;
+  }
+
+  @Override
+  public String toString() {
+    return "MarginCalcJobResult{job=" + job + ", " +
+        (result != null ? "status=" + result.getStatus() : "failure=" + failure.getMessage()) + "}";
+  }
+
+  //------------------------- AUTOGENERATED START -------------------------
+  /**
+   * The meta-bean for {@code MarginCalcJobResult}.
+   * @return the meta-bean, not null
+   */
+  public static MetaBean meta() {
+    return MarginCalcJobResult.Meta.INSTANCE;
+  }
+
+  static {
+    MetaBean.register(MarginCalcJobResult.Meta.INSTANCE);
+  }
+
+  private MarginCalcJobResult(
+      MarginCalcJob job,
+      MarginCalcResult result,
+      MarginException failure) {
+    JodaBeanUtils.notNull(job, "job");
+    this.job = job;
+    this.result = result;
+    this.failure = failure;
+  }
+
+  @Override
+  public MetaBean metaBean() {
+    return MarginCalcJobResult.Meta.INSTANCE;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the job.
+   * @return the value of the property, not null
+   */
+  public MarginCalcJob getJob() {
+    return job;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the result of the calculation, empty if the job failed.
+   * @return the optional value of the property, not null
+   */
+  public Optional<MarginCalcResult> getResult() {
+    return Optional.ofNullable(result);
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the failure of the calculation, empty if the job succeeded.
+   * <p>
+   * Failures that were not reported by the service, such as IO errors,
+   * are wrapped in a {@code MarginException} with the original as the cause.
+   * @return the optional value of the property, not null
+   */
+  public Optional<MarginException> getFailure() {
+    return Optional.ofNullable(failure);
+  }
+
+  //-----------------------------------------------------------------------
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj != null && obj.getClass() == this.getClass()) {
+      MarginCalcJobResult other = (MarginCalcJobResult) obj;
+      return JodaBeanUtils.equal(job, other.job) &&
+          JodaBeanUtils.equal(result, other.result) &&
+          JodaBeanUtils.equal(failure, other.failure);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = getClass().hashCode();
+    hash = hash * 31 + JodaBeanUtils.hashCode(job);
+    hash = hash * 31 + JodaBeanUtils.hashCode(result);
+    hash = hash * 31 + JodaBeanUtils.hashCode(failure);
+    return hash;
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The meta-bean for {@code MarginCalcJobResult}.
+   */
+  private static final class Meta extends DirectMetaBean {
+    /**
+     * The singleton instance of the meta-bean.
+     */
+    static final Meta INSTANCE = new Meta();
+
+    /**
+     * The meta-property for the {@code job} property.
+     */
+    private final MetaProperty<MarginCalcJob> job = DirectMetaProperty.ofImmutable(
+        this, "job", MarginCalcJobResult.class, MarginCalcJob.class);
+    /**
+     * The meta-property for the {@code result} property.
+     */
+    private final MetaProperty<MarginCalcResult> result = DirectMetaProperty.ofImmutable(
+        this, "result", MarginCalcJobResult.class, MarginCalcResult.class);
+    /**
+     * The meta-property for the {@code failure} property.
+     */
+    private final MetaProperty<MarginException> failure = DirectMetaProperty.ofImmutable(
+        this, "failure", MarginCalcJobResult.class, MarginException.class);
+    /**
+     * The meta-properties.
+     */
+    private final Map<String, MetaProperty<?>> metaPropertyMap$ = new DirectMetaPropertyMap(
+        this, null,
+        "job",
+        "result",
+        "failure");
+
+    /**
+     * Restricted constructor.
+     */
+    private Meta() {
+    }
+
+    @Override
+    protected MetaProperty<?> metaPropertyGet(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case 105405:  // job
+          return job;
+        case -934426595:  // result
+          return result;
+        case -1086574198:  // failure
+          return failure;
+      }
+      return super.metaPropertyGet(propertyName);
+    }
+
+    @Override
+    public BeanBuilder<? extends MarginCalcJobResult> builder() {
+      return new MarginCalcJobResult.Builder();
+    }
+
+    @Override
+    public Class<? extends MarginCalcJobResult> beanType() {
+      return MarginCalcJobResult.class;
+    }
+
+    @Override
+    public Map<String, MetaProperty<?>> metaPropertyMap() {
+      return metaPropertyMap$;
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    protected Object propertyGet(Bean bean, String propertyName, boolean quiet) {
+      switch (propertyName.hashCode()) {
+        case 105405:  // job
+          return ((MarginCalcJobResult) bean).getJob();
+        case -934426595:  // result
+          return ((MarginCalcJobResult) bean).result;
+        case -1086574198:  // failure
+          return ((MarginCalcJobResult) bean).failure;
+      }
+      return super.propertyGet(bean, propertyName, quiet);
+    }
+
+    @Override
+    protected void propertySet(Bean bean, String propertyName, Object newValue, boolean quiet) {
+      metaProperty(propertyName);
+      if (quiet) {
+        return;
+      }
+      throw new UnsupportedOperationException("Property cannot be written: " + propertyName);
+    }
+
+  }
+
+  //-----------------------------------------------------------------------
+  /**
+   * The bean-builder for {@code MarginCalcJobResult}.
+   */
+  private static final class Builder extends DirectPrivateBeanBuilder<MarginCalcJobResult> {
+
+    private MarginCalcJob job;
+    private MarginCalcResult result;
+    private MarginException failure;
+
+    /**
+     * Restricted constructor.
+     */
+    private Builder() {
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public Object get(String propertyName) {
+      switch (propertyName.hashCode()) {
+        case 105405:  // job
+          return job;
+        case -934426595:  // result
+          return result;
+        case -1086574198:  // failure
+          return failure;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+    }
+
+    @Override
+    public Builder set(String propertyName, Object newValue) {
+      switch (propertyName.hashCode()) {
+        case 105405:  // job
+          this.job = (MarginCalcJob) newValue;
+          break;
+        case -934426595:  // result
+          this.result = (MarginCalcResult) newValue;
+          break;
+        case -1086574198:  // failure
+          this.failure = (MarginException) newValue;
+          break;
+        default:
+          throw new NoSuchElementException("Unknown property: " + propertyName);
+      }
+      return this;
+    }
+
+    @Override
+    public MarginCalcJobResult build() {
+      return new MarginCalcJobResult(
+          job,
+          result,
+          failure);
+    }
+
+    //-----------------------------------------------------------------------
+    @Override
+    public String toString() {
+      StringBuilder buf = new StringBuilder(128);
+      buf.append("MarginCalcJobResult.Builder{");
+      buf.append("job").append('=').append(JodaBeanUtils.toString(job)).append(',').append(' ');
+      buf.append("result").append('=').append(JodaBeanUtils.toString(result)).append(',').append(' ');
+      buf.append("failure").append('=').append(JodaBeanUtils.toString(failure));
+      buf.append('}');
+      return buf.toString();
+    }
+
+  }
+
+  //-------------------------- AUTOGENERATED END --------------------------
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.joda.beans.ser.JodaBeanSer;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.Utf8;
+
+/**
+ * The JSON body of a request to create a calculation.
+ * <p>
+ * Serializing the whole request to a {@code String} holds the portfolio data in memory several times,
+ * once as the data of each {@link PortfolioDataFile}, once in the JSON string and once in the encoded bytes.
+ * Instead, this body serializes the request without the portfolio data, and writes the data of each file
+ * to the sink. The small JSON envelope is encoded once, and the body can be written any number of times,
+ * such as when a request is retried.
+ * <p>
+ * The data of each file held in memory is escaped and measured once, and shared by the bodies derived
+ * using {@link #withRequest} and {@link #withAdditionalFiles}, such as when the same portfolio is sent
+ * to several CCPs, or in a what-if calculation. The data is encoded to the sink a chunk at a time as it is
+ * written, so no encoded copy of the whole data is held.
+ * Where a file is {@linkplain PortfolioDataFile#ofStreamed(Path) streamed}, its data is encoded
+ * from the file each time it is written, and is never held in memory.
+ */
+final class MarginCalcRequestBody extends RequestBody {
+
+  /**
+   * The content type, matching that of a body created from a {@code String}.
+   */
+  private static final MediaType MEDIA_JSON_UTF8 = MediaType.parse("application/json; charset=utf-8");
+  /**
+   * The JSON that starts the portfolio data array.
+   * This cannot occur within a JSON string, as the quotes would be escaped.
+   */
+  private static final String PORTFOLIO_DATA_START = "\"portfolioData\":[";
+  /**
+   * The JSON that ends a portfolio data file.
+   */
+  private static final ByteString FILE_END = ByteString.encodeUtf8("\"}");
+  /**
+   * The number of characters or bytes of data written at a time.
+   * The sink only emits once each write completes, so writing in chunks avoids buffering all the data.
+   */
+  private static final int CHUNK_SIZE = 8192;
+  /**
+   * The hex digits.
+   */
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /** The JSON up to and including the start of the portfolio data array. */
+  private final ByteString prefix;
+  /** The JSON of each file. */
+  private final List<FileJson> files;
+  /** The length of the JSON of the files, from the start of the first file to the end of the last. */
+  private final long filesLength;
+  /** The JSON from the end of the portfolio data array. */
+  private final ByteString suffix;
+  /** The content length. */
+  private final long contentLength;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an instance.
+   *
+   * @param request  the request
+   * @param serializer  the serializer
+   * @return the body
+   */
+  static MarginCalcRequestBody of(MarginCalcRequest request, JodaBeanSer serializer) {
+    return ofPortfolioData(request.getPortfolioData()).withRequest(request, serializer);
+  }
+
+  /**
+   * Obtains an instance containing only the portfolio data, to be completed by {@link #withRequest}.
+   * <p>
+   * This allows the same portfolio data to be sent in several requests, such as to different CCPs,
+   * while only being escaped and measured once.
+   *
+   * @param files  the portfolio data files
+   * @return the incomplete body
+   */
+  static MarginCalcRequestBody ofPortfolioData(List<PortfolioDataFile> files) {
+    return new MarginCalcRequestBody(ByteString.EMPTY, new ArrayList<>(), 0, ByteString.EMPTY).withAdditionalFiles(files);
+  }
+
+  private MarginCalcRequestBody(ByteString prefix, List<FileJson> files, long filesLength, ByteString suffix) {
+    this.prefix = prefix;
+    this.files = files;
+    this.filesLength = filesLength;
+    this.suffix = suffix;
+    this.contentLength = prefix.size() + filesLength + suffix.size();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns a body for the specified request, keeping the portfolio data of this body.
+   * <p>
+   * The portfolio data of the request is ignored, with the files of this body sent instead.
+   * Only the small JSON envelope of the request is serialized.
+   *
+   * @param request  the request
+   * @param serializer  the serializer
+   * @return the body
+   */
+  MarginCalcRequestBody withRequest(MarginCalcRequest request, JodaBeanSer serializer) {
+    MarginCalcRequest envelope = request.toBuilder().portfolioData(Collections.emptyList()).build();
+    String json = serializer.jsonWriter().write(envelope, false);
+    int index = json.indexOf(PORTFOLIO_DATA_START);
+    if (index < 0) {
+      throw new IllegalStateException("Unexpected JSON format, portfolio data not found");
+    }
+    int end = index + PORTFOLIO_DATA_START.length();
+    ByteString prefix = ByteString.encodeUtf8(json.substring(0, end));
+    ByteString suffix = ByteString.encodeUtf8(json.substring(end));
+    return new MarginCalcRequestBody(prefix, files, filesLength, suffix);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns a body with additional portfolio data files.
+   * <p>
+   * The result is the body of a request equal to the request of this body but with the additional files.
+   * The JSON of this body is reused, rather than serializing the request again.
+   *
+   * @param files  the files to add
+   * @return the body
+   */
+  MarginCalcRequestBody withAdditionalFiles(List<PortfolioDataFile> files) {
+    List<FileJson> allFiles = new ArrayList<>(this.files);
+    long length = filesLength;
+    for (PortfolioDataFile file : files) {
+      FileJson json = new FileJson(file, allFiles.isEmpty() ? "" : ",");
+      allFiles.add(json);
+      length += json.length;
+    }
+    return new MarginCalcRequestBody(prefix, allFiles, length, suffix);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public MediaType contentType() {
+    return MEDIA_JSON_UTF8;
+  }
+
+  @Override
+  public long contentLength() {
+    return contentLength;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    sink.write(prefix);
+    for (FileJson file : files) {
+      file.writeTo(sink);
+    }
+    sink.write(suffix);
+  }
+
+  // writes the data a chunk at a time, never splitting a surrogate pair
+  static void writeChunked(BufferedSink sink, String data) throws IOException {
+    int length = data.length();
+    int start = 0;
+    while (start < length) {
+      int end = Math.min(start + CHUNK_SIZE, length);
+      if (end < length && Character.isHighSurrogate(data.charAt(end - 1))) {
+        end++;
+      }
+      sink.writeUtf8(data, start, end);
+      start = end;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // escapes the text for use within a JSON string, returning the same instance if no escaping is needed
+  // base-64 portfolio data never needs escaping
+  static String escape(String text) {
+    int length = text.length();
+    int first = 0;
+    while (first < length && !needsEscape(text.charAt(first))) {
+      first++;
+    }
+    if (first == length) {
+      return text;
+    }
+    StringBuilder buf = new StringBuilder(length + 16).append(text, 0, first);
+    for (int i = first; i < length; i++) {
+      char ch = text.charAt(i);
+      switch (ch) {
+        case '"':
+          buf.append("\\\"");
+          break;
+        case '\\':
+          buf.append("\\\\");
+          break;
+        case '\b':
+          buf.append("\\b");
+          break;
+        case '\f':
+          buf.append("\\f");
+          break;
+        case '\n':
+          buf.append("\\n");
+          break;
+        case '\r':
+          buf.append("\\r");
+          break;
+        case '\t':
+          buf.append("\\t");
+          break;
+        default:
+          if (needsEscape(ch)) {
+            buf.append("\\u").append(HEX[ch >> 12]).append(HEX[(ch >> 8) & 0xF]).append(HEX[(ch >> 4) & 0xF]).append(HEX[ch & 0xF]);
+          } else {
+            buf.append(ch);
+          }
+      }
+    }
+    return buf.toString();
+  }
+
+  // checks if the character must be escaped
+  private static boolean needsEscape(char ch) {
+    return ch < 0x20 || ch == '"' || ch == '\\' || ch == '\u2028' || ch == '\u2029';
+  }
+
+  //-------------------------------------------------------------------------
+  // the JSON of a portfolio data file, shared by the bodies derived from the body that added it
+  private static final class FileJson {
+    /** The JSON that starts the file, up to the start of the data. */
+    private final ByteString start;
+    /** The file. */
+    private final PortfolioDataFile file;
+    /** The data, escaped if necessary, null where the file is streamed. */
+    private final String data;
+    /** The length of the JSON of the file. */
+    private final long length;
+
+    private FileJson(PortfolioDataFile file, String separator) {
+      this.start = ByteString.encodeUtf8(separator + "{\"name\":\"" + escape(file.getName()) + "\",\"data\":\"");
+      this.file = file;
+      if (file.isStreamed()) {
+        // streamed data is base-64, which never needs escaping
+        this.data = null;
+        this.length = start.size() + file.getDataLength() + FILE_END.size();
+      } else {
+        this.data = escape(file.getData());
+        this.length = start.size() + Utf8.size(data) + FILE_END.size();
+      }
+    }
+
+    private void writeTo(BufferedSink sink) throws IOException {
+      sink.write(start);
+      if (data == null) {
+        file.writeData(sink);
+      } else {
+        writeChunked(sink, data);
+      }
+      sink.write(FILE_END);
+    }
+  }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static java.util.stream.Collectors.joining;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.joda.beans.ser.JodaBeanSer;
+
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.HashingSink;
+import okio.Okio;
+
+/**
+ * A cache of the results of calculations, keyed by a digest of the request.
+ * <p>
+ * Identical requests produce identical results, so the result of a completed calculation
+ * can be returned again without asking the service to repeat the work. The key is a SHA-256 digest
+ * of the CCP and every field of the request, including the data of each portfolio file,
+ * so that only the digest, rather than the request, is retained.
+ * <p>
+ * The cache is bounded by the estimated memory retained by the results, evicting the least recently
+ * used first. Each result also expires a fixed time after it was added. When the information about a CCP
+ * shows that a new valuation date has become the latest, the results for that CCP are discarded,
+ * as the data for earlier dates may have been revised.
+ */
+final class MarginCalcResultCache {
+
+  /**
+   * The estimated memory retained by an entry, in addition to its result.
+   */
+  private static final long ENTRY_OVERHEAD = 256;
+
+  /** The maximum total weight. */
+  private final long maxWeight;
+  /** The time each result is kept, in nanoseconds. */
+  private final long timeToLiveNanos;
+  /** The source of the time, in nanoseconds. */
+  private final LongSupplier ticker;
+  /** The lock protecting the state. */
+  private final Lock lock = new ReentrantLock();
+  /** The entries, least recently used first. */
+  private final LinkedHashMap<ByteString, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  /** The latest valuation date seen for each CCP. */
+  private final Map<Ccp, LocalDate> latestValuationDates = new EnumMap<>(Ccp.class);
+  /** The total weight of the entries. */
+  private long weight;
+  /** The number of hits. */
+  private long hitCount;
+  /** The number of misses. */
+  private long missCount;
+  /** The number of entries evicted or discarded. */
+  private long evictionCount;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates an instance.
+   *
+   * @param maxWeight  the maximum estimated memory retained by the results, in bytes
+   * @param timeToLive  the time each result is kept
+   */
+  MarginCalcResultCache(long maxWeight, Duration timeToLive) {
+    this(maxWeight, timeToLive, System::nanoTime);
+  }
+
+  // creates an instance, specifying the source of the time
+  MarginCalcResultCache(long maxWeight, Duration timeToLive, LongSupplier ticker) {
+    this.maxWeight = maxWeight;
+    this.timeToLiveNanos = timeToLive.toNanos();
+    this.ticker = Objects.requireNonNull(ticker, "ticker must not be null");
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Computes the key of a request.
+   * <p>
+   * Each field is written in a fixed order, with the calculation types sorted,
+   * so that equal requests always have the same key.
+   * The deprecated calculation type is not written, as it is merged into the calculation types
+   * when the request is created, and is always null afterwards.
+   *
+   * @param ccp  the CCP
+   * @param request  the request
+   * @return the key
+   */
+  static ByteString key(Ccp ccp, MarginCalcRequest request) {
+    HashingSink hashing = HashingSink.sha256(Okio.blackhole());
+    try (BufferedSink sink = Okio.buffer(hashing)) {
+      writeString(sink, ccp.name());
+      writeString(sink, request.getCalculationTypes().stream().sorted().map(MarginCalcType::name).collect(joining(",")));
+      writeString(sink, request.getMode().name());
+      writeString(sink, request.getValuationDate().toString());
+      sink.writeByte(request.isApplyClientMultiplier() ? 1 : 0);
+      writeString(sink, request.getReportingCurrency());
+      writeString(sink, request.getCalculationCurrency().orElse(""));
+      writeString(sink, request.getFpmlPartySelectionRegex().orElse(""));
+      sink.writeInt(request.getPortfolioData().size());
+      for (PortfolioDataFile file : request.getPortfolioData()) {
+        writeString(sink, file.getName());
+        // the data is written as it would be by writeString(), without encoding it in memory if streamed
+        sink.writeInt((int) file.getDataLength());
+        file.writeData(sink);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return hashing.hash();
+  }
+
+  // writes the string, prefixed by its length so that adjacent fields cannot be confused
+  private static void writeString(BufferedSink sink, String value) throws IOException {
+    sink.writeInt(value.length());
+    MarginCalcRequestBody.writeChunked(sink, value);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the result for a key.
+   *
+   * @param key  the key
+   * @return the result, null if not cached
+   */
+  MarginCalcResult get(ByteString key) {
+    lock.lock();
+    try {
+      Entry entry = entries.get(key);
+      if (entry != null && ticker.getAsLong() - entry.expiryNanos >= 0) {
+        remove(key, entry);
+        entry = null;
+      }
+      if (entry == null) {
+        missCount++;
+        return null;
+      }
+      hitCount++;
+      return entry.result;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds the result for a key.
+   * <p>
+   * Only completed results are cached. A result larger than the cache as a whole is not cached.
+   *
+   * @param key  the key
+   * @param ccp  the CCP of the request
+   * @param result  the result
+   */
+  void put(ByteString key, Ccp ccp, MarginCalcResult result) {
+    if (result.getStatus() != MarginCalcResultStatus.COMPLETED) {
+      return;
+    }
+    long resultWeight = weigh(result);
+    if (resultWeight > maxWeight) {
+      return;
+    }
+    long now = ticker.getAsLong();
+    lock.lock();
+    try {
+      Entry previous = entries.remove(key);
+      if (previous != null) {
+        weight -= previous.weight;
+      }
+      entries.put(key, new Entry(ccp, result, resultWeight, now + timeToLiveNanos));
+      weight += resultWeight;
+      // the least recently used are removed until within the bound, together with any expired at the head
+      // other expired entries are removed when next looked up, avoiding a scan of the whole cache on each put
+      Iterator<Entry> it = entries.values().iterator();
+      while (it.hasNext()) {
+        Entry entry = it.next();
+        if (weight <= maxWeight && now - entry.expiryNanos < 0) {
+          break;
+        }
+        it.remove();
+        weight -= entry.weight;
+        evictionCount++;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Updates the cache from the information about a CCP.
+   * <p>
+   * If the latest valuation date of the CCP is later than that seen before,
+   * all the results for that CCP are discarded.
+   *
+   * @param ccp  the CCP
+   * @param info  the information about the CCP
+   */
+  void ccpInfoReceived(Ccp ccp, CcpInfo info) {
+    LocalDate latest = info.getValuationDates().stream().max(LocalDate::compareTo).orElse(null);
+    if (latest == null) {
+      return;
+    }
+    lock.lock();
+    try {
+      LocalDate previous = latestValuationDates.get(ccp);
+      if (previous == null || latest.isAfter(previous)) {
+        latestValuationDates.put(ccp, latest);
+      }
+      if (previous != null && latest.isAfter(previous)) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+          Entry entry = it.next();
+          if (entry.ccp == ccp) {
+            it.remove();
+            weight -= entry.weight;
+            evictionCount++;
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Gets the statistics of the cache.
+   *
+   * @return the statistics
+   */
+  ResultCacheStats stats() {
+    lock.lock();
+    try {
+      return ResultCacheStats.of(hitCount, missCount, evictionCount, entries.size(), weight);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // removes the entry, called under the lock
+  private void remove(ByteString key, Entry entry) {
+    entries.remove(key);
+    weight -= entry.weight;
+    evictionCount++;
+  }
+
+  // estimates the memory retained by the result, as twice the length of its JSON form
+  // the JSON is counted as it is written, rather than being held in memory
+  private static long weigh(MarginCalcResult result) {
+    long[] length = new long[1];
+    Appendable counter = new Appendable() {
+      @Override
+      public Appendable append(CharSequence csq) {
+        length[0] += csq.length();
+        return this;
+      }
+
+      @Override
+      public Appendable append(CharSequence csq, int start, int end) {
+        length[0] += end - start;
+        return this;
+      }
+
+      @Override
+      public Appendable append(char c) {
+        length[0]++;
+        return this;
+      }
+    };
+    try {
+      JodaBeanSer.COMPACT.jsonWriter().write(result, false, counter);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return length[0] * 2 + ENTRY_OVERHEAD;
+  }
+
+  //-------------------------------------------------------------------------
+  // an entry in the cache
+  private static final class Entry {
+    /** The CCP. */
+    private final Ccp ccp;
+    /** The result. */
+    private final MarginCalcResult result;
+    /** The estimated memory retained. */
+    private final long weight;
+    /** The time the entry expires, in nanoseconds. */
+    private final long expiryNanos;
+
+    private Entry(Ccp ccp, MarginCalcResult result, long weight, long expiryNanos) {
+      this.ccp = ccp;
+      this.result = result;
+      this.weight = weight;
+      this.expiryNanos = expiryNanos;
+    }
+  }
+
+}
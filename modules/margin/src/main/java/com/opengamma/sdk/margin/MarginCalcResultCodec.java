@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.joda.beans.ser.JodaBeanSer;
+
+import okio.Buffer;
+import okio.Utf8;
+
+/**
+ * The binary encoding of calculation results used by the result store.
+ * <p>
+ * The trade valuations, which form almost all of a large result, are written field by field,
+ * with the curve names, currencies and tenors written once in a table and referred to by index.
+ * Reading them needs no parsing, and no conversion of the tenors, beyond creating the beans.
+ * The rest of the result is written in the binary format of Joda-Beans, which handles any
+ * type of margin detail. All values are big-endian.
+ */
+final class MarginCalcResultCodec {
+
+  /**
+   * Restricted constructor.
+   */
+  private MarginCalcResultCodec() {
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Writes the result.
+   *
+   * @param result  the result
+   * @param serializer  the serializer of the parts other than the trade valuations
+   * @param sink  the buffer to write to
+   */
+  static void write(MarginCalcResult result, JodaBeanSer serializer, Buffer sink) {
+    MarginCalcResult rest = MarginCalcResult.of(
+        result.getStatus(),
+        result.getCalculationTypes(),
+        result.getMode(),
+        result.getValuationDate(),
+        result.getReportingCurrency(),
+        result.getCalculationCurrency(),
+        result.isApplyClientMultiplier(),
+        result.getPortfolioItems(),
+        result.getMargin().orElse(null),
+        result.getMarginDetail().orElse(null),
+        null,
+        result.getFailures());
+    byte[] bytes = serializer.binWriter().write(rest);
+    sink.writeInt(bytes.length);
+    sink.write(bytes);
+    TradeValuations valuations = result.getTradeValuations().orElse(null);
+    sink.writeByte(valuations != null ? 1 : 0);
+    if (valuations != null) {
+      writeValuations(valuations, sink);
+    }
+  }
+
+  /**
+   * Reads a result.
+   * <p>
+   * The buffer is read from its position to its limit, and is not changed.
+   *
+   * @param buffer  the buffer to read from
+   * @param serializer  the serializer of the parts other than the trade valuations
+   * @return the result
+   */
+  static MarginCalcResult read(ByteBuffer buffer, JodaBeanSer serializer) {
+    ByteBuffer input = buffer.duplicate();
+    int length = input.getInt();
+    ByteBuffer bytes = input.duplicate();
+    bytes.limit(input.position() + length);
+    MarginCalcResult rest = serializer.binReader().read(new ByteBufferInputStream(bytes), MarginCalcResult.class);
+    input.position(input.position() + length);
+    if (input.get() == 0) {
+      return rest;
+    }
+    return MarginCalcResult.of(
+        rest.getStatus(),
+        rest.getCalculationTypes(),
+        rest.getMode(),
+        rest.getValuationDate(),
+        rest.getReportingCurrency(),
+        rest.getCalculationCurrency(),
+        rest.isApplyClientMultiplier(),
+        rest.getPortfolioItems(),
+        rest.getMargin().orElse(null),
+        rest.getMarginDetail().orElse(null),
+        readValuations(input),
+        rest.getFailures());
+  }
+
+  //-------------------------------------------------------------------------
+  // writes the table of names and tenors, then the trades
+  private static void writeValuations(TradeValuations valuations, Buffer sink) {
+    Map<String, Integer> names = new LinkedHashMap<>();
+    Map<Period, Integer> tenors = new LinkedHashMap<>();
+    for (TradeValuation trade : valuations.getTrades()) {
+      trade.getValue().ifPresent(value -> names.putIfAbsent(value.getTradeCurrency(), names.size()));
+      for (TradeSensitivity sensitivity : sensitivities(trade)) {
+        for (TradeCurveSensitivity curve : sensitivity.getCurveSensitivity()) {
+          names.putIfAbsent(curve.getCurveName(), names.size());
+          names.putIfAbsent(curve.getCurrency(), names.size());
+          for (Period tenor : curve.getTenorSensitivity().keySet()) {
+            tenors.putIfAbsent(tenor, tenors.size());
+          }
+        }
+      }
+    }
+    sink.writeInt(names.size());
+    for (String name : names.keySet()) {
+      writeString(name, sink);
+    }
+    sink.writeInt(tenors.size());
+    for (Period tenor : tenors.keySet()) {
+      sink.writeInt(tenor.getYears()).writeInt(tenor.getMonths()).writeInt(tenor.getDays());
+    }
+
+    sink.writeLong(Double.doubleToRawLongBits(valuations.getTotalPresentValue()));
+    writeNullableDouble(valuations.getTotalDelta().isPresent() ? valuations.getTotalDelta().getAsDouble() : null, sink);
+    writeNullableDouble(valuations.getTotalGamma().isPresent() ? valuations.getTotalGamma().getAsDouble() : null, sink);
+    sink.writeInt(valuations.getTrades().size());
+    for (TradeValuation trade : valuations.getTrades()) {
+      writeString(trade.getTradeId(), sink);
+      TradeValue value = trade.getValue().orElse(null);
+      sink.writeByte(value != null ? 1 : 0);
+      if (value != null) {
+        sink.writeLong(Double.doubleToRawLongBits(value.getPresentValue()));
+        sink.writeInt(names.get(value.getTradeCurrency()));
+        sink.writeLong(Double.doubleToRawLongBits(value.getPresentValueTradeCurrency()));
+      }
+      writeSensitivity(trade.getDelta().orElse(null), names, tenors, sink);
+      writeSensitivity(trade.getGamma().orElse(null), names, tenors, sink);
+    }
+  }
+
+  private static List<TradeSensitivity> sensitivities(TradeValuation trade) {
+    List<TradeSensitivity> sensitivities = new ArrayList<>(2);
+    trade.getDelta().ifPresent(sensitivities::add);
+    trade.getGamma().ifPresent(sensitivities::add);
+    return sensitivities;
+  }
+
+  private static void writeSensitivity(
+      TradeSensitivity sensitivity,
+      Map<String, Integer> names,
+      Map<Period, Integer> tenors,
+      Buffer sink) {
+
+    if (sensitivity == null) {
+      sink.writeInt(-1);
+      return;
+    }
+    sink.writeInt(sensitivity.getCurveSensitivity().size());
+    sink.writeLong(Double.doubleToRawLongBits(sensitivity.getSensitivity()));
+    for (TradeCurveSensitivity curve : sensitivity.getCurveSensitivity()) {
+      sink.writeInt(names.get(curve.getCurveName()));
+      sink.writeInt(names.get(curve.getCurrency()));
+      sink.writeLong(Double.doubleToRawLongBits(curve.getSensitivity()));
+      sink.writeInt(curve.getTenorSensitivity().size());
+      for (Entry<Period, Double> entry : curve.getTenorSensitivity().entrySet()) {
+        sink.writeInt(tenors.get(entry.getKey()));
+        writeNullableDouble(entry.getValue(), sink);
+      }
+    }
+  }
+
+  private static void writeNullableDouble(Double value, Buffer sink) {
+    sink.writeByte(value != null ? 1 : 0);
+    if (value != null) {
+      sink.writeLong(Double.doubleToRawLongBits(value));
+    }
+  }
+
+  private static void writeString(String value, Buffer sink) {
+    sink.writeInt((int) Utf8.size(value));
+    sink.writeUtf8(value);
+  }
+
+  //-------------------------------------------------------------------------
+  // reads the trade valuations, as written by writeValuations
+  private static TradeValuations readValuations(ByteBuffer input) {
+    byte[] scratch = new byte[256];
+    String[] names = new String[input.getInt()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = readString(input, scratch);
+    }
+    Period[] tenors = new Period[input.getInt()];
+    for (int i = 0; i < tenors.length; i++) {
+      tenors[i] = Period.of(input.getInt(), input.getInt(), input.getInt());
+    }
+
+    double totalPresentValue = input.getDouble();
+    Double totalDelta = readNullableDouble(input);
+    Double totalGamma = readNullableDouble(input);
+    int tradeCount = input.getInt();
+    List<TradeValuation> trades = new ArrayList<>(tradeCount);
+    for (int i = 0; i < tradeCount; i++) {
+      String tradeId = readString(input, scratch);
+      TradeValue value = null;
+      if (input.get() != 0) {
+        value = TradeValue.of(input.getDouble(), names[input.getInt()], input.getDouble());
+      }
+      TradeSensitivity delta = readSensitivity(input, names, tenors);
+      TradeSensitivity gamma = readSensitivity(input, names, tenors);
+      trades.add(TradeValuation.of(tradeId, value, delta, gamma));
+    }
+    return TradeValuations.of(totalPresentValue, totalDelta, totalGamma, trades);
+  }
+
+  private static TradeSensitivity readSensitivity(ByteBuffer input, String[] names, Period[] tenors) {
+    int curveCount = input.getInt();
+    if (curveCount < 0) {
+      return null;
+    }
+    double sensitivity = input.getDouble();
+    List<TradeCurveSensitivity> curves = new ArrayList<>(curveCount);
+    for (int i = 0; i < curveCount; i++) {
+      String curveName = names[input.getInt()];
+      String currency = names[input.getInt()];
+      double curveSensitivity = input.getDouble();
+      int tenorCount = input.getInt();
+      Map<Period, Double> tenorSensitivity = new LinkedHashMap<>(tenorCount * 2);
+      for (int j = 0; j < tenorCount; j++) {
+        tenorSensitivity.put(tenors[input.getInt()], readNullableDouble(input));
+      }
+      curves.add(TradeCurveSensitivity.of(curveName, currency, curveSensitivity, tenorSensitivity));
+    }
+    return TradeSensitivity.of(sensitivity, curves);
+  }
+
+  private static Double readNullableDouble(ByteBuffer input) {
+    return input.get() != 0 ? input.getDouble() : null;
+  }
+
+  private static String readString(ByteBuffer input, byte[] scratch) {
+    int length = input.getInt();
+    byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+    input.get(bytes, 0, length);
+    return new String(bytes, 0, length, UTF_8);
+  }
+
+  //-------------------------------------------------------------------------
+  // reads from a buffer, without copying it, supporting the mark needed by the binary reader
+  private static final class ByteBufferInputStream extends InputStream {
+    /** The buffer. */
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+      return true;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+      buffer.mark();
+    }
+
+    @Override
+    public void reset() {
+      buffer.reset();
+    }
+  }
+
+}
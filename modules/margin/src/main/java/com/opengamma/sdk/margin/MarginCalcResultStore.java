@@ -0,0 +1,635 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+import org.joda.beans.ser.JodaBeanSer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * A store of the results of calculations on disk, shared by all the processes on a host.
+ * <p>
+ * Completed results are kept in the compact binary form of {@link MarginCalcResultCodec}, in segment files
+ * that are memory-mapped, keyed by the digest of the request as per {@link MarginCalcResultCache#key}.
+ * The key is combined with the identity of the store, formed of the service URL and the user, so that
+ * a result is only found by clients of the same service and user, even if the directory is shared.
+ * The directory and files are only accessible by their owner where the file system supports it.
+ * A result is read straight from the mapped file, without parsing JSON, and the files survive
+ * the process, so a rerun after a crash, or another process, finds the results already calculated.
+ * <p>
+ * Each segment file starts with a header, followed by records that are only ever appended.
+ * Each record is the length of its body, a CRC-32 of the body, then the body, formed of the key
+ * and the encoded result. The length is written last, so a record that was not completely written,
+ * such as when a process crashes, is never seen. Any process may read at any time, while appends
+ * are serialized between processes by a lock on a file in the directory.
+ * <p>
+ * The store is bounded by the total size of the segment files. When the segment being appended to
+ * is full, a new one is started, larger than usual if needed for a large result. Any older segment where more than half the space is taken by
+ * results that have since been written again is compacted, copying its live results to the new segment.
+ * Then, while the store exceeds its maximum size, the oldest segment is deleted, evicting its results.
+ * <p>
+ * Results are encoded and written on an executor, so that the thread completing a calculation does not
+ * wait for disk IO. Until written, a result is found by this store but not by other processes.
+ * Any results not yet written are written when the store is closed.
+ * When a key is not found, the segment files are checked for results written by other processes,
+ * at most once per {@link #REFRESH_INTERVAL_NANOS}, so that repeated misses do not each scan the directory.
+ */
+final class MarginCalcResultStore implements AutoCloseable {
+
+  /**
+   * The logger.
+   */
+  private static final Logger log = LoggerFactory.getLogger(MarginCalcResultStore.class);
+  /**
+   * The value identifying a segment file.
+   */
+  private static final int MAGIC = 0x4f47_5253;
+  /**
+   * The version of the format.
+   */
+  private static final int VERSION = 1;
+  /**
+   * The size of the segment header, the magic value and the version.
+   */
+  private static final int SEGMENT_HEADER_SIZE = 8;
+  /**
+   * The size of the record header, the length and the CRC.
+   */
+  private static final int RECORD_HEADER_SIZE = 8;
+  /**
+   * The size of a key, a SHA-256 digest.
+   */
+  private static final int KEY_SIZE = 32;
+  /**
+   * The minimum size of a segment.
+   */
+  private static final long MIN_SEGMENT_SIZE = 64 * 1024;
+  /**
+   * The maximum size of a segment.
+   */
+  private static final long MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+  /**
+   * The name of the file locked while appending.
+   */
+  private static final String LOCK_FILE = "store.lock";
+  /**
+   * The prefix of the segment file names.
+   */
+  private static final String SEGMENT_PREFIX = "segment-";
+  /**
+   * The suffix of the segment file names.
+   */
+  private static final String SEGMENT_SUFFIX = ".dat";
+  /**
+   * The minimum time between checks for results written by other processes when a key is not found.
+   */
+  static final long REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  /**
+   * The permissions of the files, only accessible by the owner.
+   */
+  private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+  /**
+   * The permissions of the directory, only accessible by the owner.
+   */
+  private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+  /**
+   * The locks used within this process, by directory, as a file lock cannot be held twice by one process.
+   */
+  private static final Map<Path, Lock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+  /** The directory. */
+  private final Path directory;
+  /** The digest of the identity of the store, combined with each key. */
+  private final ByteString scope;
+  /** The maximum total size of the segment files. */
+  private final long maxSize;
+  /** The size of a new segment. */
+  private final int segmentSize;
+  /** The serializer. */
+  private final JodaBeanSer serializer;
+  /** The executor that writes the results. */
+  private final Executor writer;
+  /** The source of the time, in nanoseconds. */
+  private final LongSupplier ticker;
+  /** The channel of the lock file. */
+  private final FileChannel lockChannel;
+  /** The lock shared by all stores of the same directory in this process. */
+  private final Lock processLock;
+  /** The lock protecting the segments. */
+  private final Lock lock = new ReentrantLock();
+  /** The segments, keyed by number, oldest first. */
+  private final TreeMap<Long, Segment> segments = new TreeMap<>();
+  /** The location of the latest record of each key. */
+  private final Map<ByteString, Location> index = new ConcurrentHashMap<>();
+  /** The results waiting to be written, by key. */
+  private final Map<ByteString, MarginCalcResult> pending = new ConcurrentHashMap<>();
+  /** The time of the last check for results written by other processes. */
+  private volatile long refreshNanos;
+  /** Whether the store is closed. */
+  private volatile boolean closed;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Opens the store in the specified directory, creating it if necessary.
+   * <p>
+   * The identity separates the results of different services and users sharing the directory,
+   * and must not reveal any secret.
+   *
+   * @param directory  the directory
+   * @param identity  the identity of the store, such as the service URL and a key identifying the credentials
+   * @param maxSize  the maximum total size of the segment files, in bytes
+   * @param serializer  the serializer
+   * @param writer  the executor that writes the results
+   * @return the store
+   * @throws UncheckedIOException if unable to open the store
+   */
+  static MarginCalcResultStore open(
+      Path directory,
+      String identity,
+      long maxSize,
+      JodaBeanSer serializer,
+      Executor writer) {
+
+    return open(directory, identity, maxSize, serializer, writer, System::nanoTime);
+  }
+
+  // obtains an instance with the specified source of time, for testing
+  static MarginCalcResultStore open(
+      Path directory,
+      String identity,
+      long maxSize,
+      JodaBeanSer serializer,
+      Executor writer,
+      LongSupplier ticker) {
+
+    try {
+      Files.createDirectories(directory, attributes(directory, DIRECTORY_PERMISSIONS));
+      Path realDirectory = directory.toRealPath();
+      FileChannel lockChannel = FileChannel.open(
+          realDirectory.resolve(LOCK_FILE),
+          EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE),
+          attributes(realDirectory, FILE_PERMISSIONS));
+      ByteString scope = ByteString.encodeUtf8(identity).sha256();
+      MarginCalcResultStore store =
+          new MarginCalcResultStore(realDirectory, scope, maxSize, serializer, writer, ticker, lockChannel);
+      store.refresh();
+      return store;
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Unable to open result store: " + directory, ex);
+    }
+  }
+
+  private MarginCalcResultStore(
+      Path directory,
+      ByteString scope,
+      long maxSize,
+      JodaBeanSer serializer,
+      Executor writer,
+      LongSupplier ticker,
+      FileChannel lockChannel) {
+
+    this.directory = directory;
+    this.scope = scope;
+    this.maxSize = maxSize;
+    this.segmentSize = (int) Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, maxSize / 4));
+    this.serializer = serializer;
+    this.writer = writer;
+    this.ticker = ticker;
+    this.lockChannel = lockChannel;
+    this.processLock = PROCESS_LOCKS.computeIfAbsent(directory, dir -> new ReentrantLock());
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the result for a key.
+   * <p>
+   * If the key is not known, the segment files are checked for results written by other processes,
+   * unless they were checked within the refresh interval.
+   *
+   * @param requestKey  the key of the request
+   * @return the result, null if not stored
+   */
+  MarginCalcResult get(ByteString requestKey) {
+    if (closed) {
+      return null;
+    }
+    ByteString key = scoped(requestKey);
+    MarginCalcResult unwritten = pending.get(key);
+    if (unwritten != null) {
+      return unwritten;
+    }
+    Location location = index.get(key);
+    if (location == null) {
+      if (ticker.getAsLong() - refreshNanos < REFRESH_INTERVAL_NANOS) {
+        return null;
+      }
+      try {
+        refresh();
+      } catch (IOException ex) {
+        log.warn("Unable to read result store: {}", directory, ex);
+        return null;
+      }
+      location = index.get(key);
+      if (location == null) {
+        return null;
+      }
+    }
+    ByteBuffer body = location.body();
+    if (body == null) {
+      // the record is damaged, perhaps by a crash, so is ignored
+      index.remove(key, location);
+      return null;
+    }
+    body.position(KEY_SIZE);
+    return MarginCalcResultCodec.read(body, serializer);
+  }
+
+  /**
+   * Adds the result for a key.
+   * <p>
+   * Only completed results are stored. A result taking more than half the maximum size is not stored.
+   * The result is written later, on the executor of the store, but is found by {@link #get} at once.
+   *
+   * @param requestKey  the key of the request
+   * @param result  the result
+   */
+  void put(ByteString requestKey, MarginCalcResult result) {
+    if (closed || result.getStatus() != MarginCalcResultStatus.COMPLETED) {
+      return;
+    }
+    ByteString key = scoped(requestKey);
+    pending.put(key, result);
+    try {
+      writer.execute(() -> writePending(key, result));
+    } catch (RejectedExecutionException ex) {
+      writePending(key, result);
+    }
+  }
+
+  // combines the key of the request with the identity of the store
+  private ByteString scoped(ByteString requestKey) {
+    return new Buffer().write(scope).write(requestKey).sha256();
+  }
+
+  // writes the result, unless superseded, keeping it pending until written so that it is always found
+  private void writePending(ByteString key, MarginCalcResult result) {
+    if (pending.get(key) == result) {
+      write(key, result);
+      pending.remove(key, result);
+    }
+  }
+
+  // encodes and appends the result, logging any failure
+  private void write(ByteString key, MarginCalcResult result) {
+    Buffer data = new Buffer().write(key);
+    MarginCalcResultCodec.write(result, serializer, data);
+    if (RECORD_HEADER_SIZE + data.size() > Math.min(maxSize / 2, Integer.MAX_VALUE / 2)) {
+      return;
+    }
+    ByteBuffer body = ByteBuffer.wrap(data.readByteArray());
+    lock.lock();
+    processLock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      FileLock fileLock = lockChannel.lock();
+      try {
+        refresh();
+        append(key, body);
+      } finally {
+        fileLock.release();
+      }
+    } catch (IOException ex) {
+      log.warn("Unable to write to result store: {}", directory, ex);
+    } finally {
+      processLock.unlock();
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Closes the store.
+   * <p>
+   * Any results not yet written are written first.
+   * The segment files remain, for use by other processes and later runs.
+   */
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      for (Entry<ByteString, MarginCalcResult> entry : pending.entrySet()) {
+        write(entry.getKey(), entry.getValue());
+      }
+      pending.clear();
+      closed = true;
+      index.clear();
+      for (Segment segment : segments.values()) {
+        closeQuietly(segment.channel);
+      }
+      segments.clear();
+      closeQuietly(lockChannel);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // finds the segments and records written since last checked, by this or another process
+  private void refresh() throws IOException {
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      refreshNanos = ticker.getAsLong();
+      Set<Long> numbers = new HashSet<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+        for (Path file : stream) {
+          String name = file.getFileName().toString();
+          try {
+            numbers.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+          } catch (NumberFormatException ex) {
+            // not a segment
+          }
+        }
+      }
+      // segments deleted by another process
+      for (Long number : new ArrayList<>(segments.keySet())) {
+        if (!numbers.contains(number)) {
+          drop(segments.get(number));
+        }
+      }
+      for (Long number : numbers) {
+        if (!segments.containsKey(number)) {
+          Segment segment = Segment.open(segmentFile(number), number);
+          if (segment != null) {
+            segments.put(number, segment);
+          }
+        }
+      }
+      // the records are scanned in the order written, so the latest record of a key is found last
+      for (Segment segment : segments.values()) {
+        scan(segment);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // adds the records of the segment written since it was last scanned to the index
+  private void scan(Segment segment) {
+    ByteBuffer buffer = segment.buffer;
+    int capacity = buffer.capacity();
+    int end = segment.end;
+    while (end + RECORD_HEADER_SIZE + KEY_SIZE <= capacity) {
+      int length = buffer.getInt(end);
+      if (length < KEY_SIZE || end + RECORD_HEADER_SIZE + length > capacity) {
+        break;
+      }
+      byte[] key = new byte[KEY_SIZE];
+      ByteBuffer keyBuffer = buffer.duplicate();
+      keyBuffer.position(end + RECORD_HEADER_SIZE);
+      keyBuffer.get(key);
+      index.put(ByteString.of(key), new Location(segment, end, length));
+      end += RECORD_HEADER_SIZE + length;
+    }
+    segment.end = end;
+  }
+
+  // appends a record, starting a new segment if necessary, called holding all the locks
+  private void append(ByteString key, ByteBuffer body) throws IOException {
+    Segment active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+    if (active == null || !active.hasRoom(body.remaining())) {
+      active = startSegment(body.remaining());
+      compact(active);
+      active = segments.lastEntry().getValue();
+      evict();
+    }
+    index.put(key, active.append(body));
+  }
+
+  // starts a new segment, large enough for a record with the body, called holding all the locks
+  private Segment startSegment(int bodyLength) throws IOException {
+    long number = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+    int size = Math.max(segmentSize, SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + bodyLength);
+    Segment segment = Segment.create(segmentFile(number), number, size);
+    segments.put(number, segment);
+    return segment;
+  }
+
+  // copies the live records of older segments that are mostly superseded, then deletes them
+  private void compact(Segment active) throws IOException {
+    Map<Segment, List<Entry<ByteString, Location>>> live = new HashMap<>();
+    for (Entry<ByteString, Location> entry : index.entrySet()) {
+      live.computeIfAbsent(entry.getValue().segment, seg -> new ArrayList<>()).add(entry);
+    }
+    for (Segment segment : new ArrayList<>(segments.values())) {
+      if (segment == active || segment.end <= SEGMENT_HEADER_SIZE) {
+        continue;
+      }
+      List<Entry<ByteString, Location>> entries = live.getOrDefault(segment, new ArrayList<>());
+      long liveBytes = entries.stream().mapToLong(entry -> RECORD_HEADER_SIZE + entry.getValue().length).sum();
+      if (liveBytes * 2 >= segment.end - SEGMENT_HEADER_SIZE) {
+        continue;
+      }
+      for (Entry<ByteString, Location> entry : entries) {
+        ByteBuffer body = entry.getValue().body();
+        if (body == null) {
+          continue;
+        }
+        Segment target = segments.lastEntry().getValue();
+        if (!target.hasRoom(body.remaining())) {
+          target = startSegment(body.remaining());
+        }
+        index.put(entry.getKey(), target.append(body));
+      }
+      log.debug("Compacted result store segment {}, {} live results", segment.number, entries.size());
+      delete(segment);
+    }
+  }
+
+  // deletes the oldest segments while the store is too large, called holding all the locks
+  private void evict() throws IOException {
+    long total = segments.values().stream().mapToLong(segment -> segment.buffer.capacity()).sum();
+    while (total > maxSize && segments.size() > 1) {
+      Segment oldest = segments.firstEntry().getValue();
+      total -= oldest.buffer.capacity();
+      delete(oldest);
+    }
+  }
+
+  // deletes the segment file, another process may still read it until it notices
+  private void delete(Segment segment) {
+    drop(segment);
+    try {
+      Files.deleteIfExists(segmentFile(segment.number));
+    } catch (IOException ex) {
+      log.debug("Unable to delete result store segment {}", segment.number, ex);
+    }
+  }
+
+  // forgets the segment and its records
+  private void drop(Segment segment) {
+    segments.remove(segment.number);
+    index.values().removeIf(location -> location.segment == segment);
+    closeQuietly(segment.channel);
+  }
+
+  private Path segmentFile(long number) {
+    return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+  }
+
+  // the attributes restricting access, empty if the file system does not support POSIX permissions
+  private static FileAttribute<?>[] attributes(Path path, Set<PosixFilePermission> permissions) {
+    if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      return new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(permissions)};
+    }
+    return new FileAttribute<?>[0];
+  }
+
+  private static void closeQuietly(FileChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException ex) {
+      // ignore
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // a segment file, mapped into memory
+  private static final class Segment {
+    /** The number of the segment, increasing with each new segment. */
+    private final long number;
+    /** The channel, kept open while the segment is used. */
+    private final FileChannel channel;
+    /** The mapped file. */
+    private final MappedByteBuffer buffer;
+    /** The offset of the end of the last record known. */
+    private int end;
+
+    // creates a new segment file
+    private static Segment create(Path file, long number, int size) throws IOException {
+      Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      FileChannel channel = FileChannel.open(file, options, attributes(file, FILE_PERMISSIONS));
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.putInt(4, VERSION);
+      buffer.putInt(0, MAGIC);
+      return new Segment(number, channel, buffer);
+    }
+
+    // opens an existing segment file, null if not a valid segment, such as one still being created
+    private static Segment open(Path file, long number) throws IOException {
+      FileChannel channel;
+      try {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      } catch (IOException ex) {
+        // deleted by another process
+        return null;
+      }
+      long size = channel.size();
+      if (size < SEGMENT_HEADER_SIZE || size > Integer.MAX_VALUE) {
+        closeQuietly(channel);
+        return null;
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        closeQuietly(channel);
+        return null;
+      }
+      return new Segment(number, channel, buffer);
+    }
+
+    private Segment(long number, FileChannel channel, MappedByteBuffer buffer) {
+      this.number = number;
+      this.channel = channel;
+      this.buffer = buffer;
+      this.end = SEGMENT_HEADER_SIZE;
+    }
+
+    // checks if there is room for a record with the body
+    private boolean hasRoom(int bodyLength) {
+      return end + RECORD_HEADER_SIZE + bodyLength <= buffer.capacity();
+    }
+
+    // appends a record, writing the length last, so that readers only see a complete record
+    private Location append(ByteBuffer body) {
+      int offset = end;
+      int length = body.remaining();
+      CRC32 crc = new CRC32();
+      crc.update(body.duplicate());
+      ByteBuffer target = buffer.duplicate();
+      target.position(offset + RECORD_HEADER_SIZE);
+      target.put(body.duplicate());
+      buffer.putInt(offset + 4, (int) crc.getValue());
+      buffer.putInt(offset, length);
+      end = offset + RECORD_HEADER_SIZE + length;
+      return new Location(this, offset, length);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // the location of a record
+  private static final class Location {
+    /** The segment. */
+    private final Segment segment;
+    /** The offset of the record. */
+    private final int offset;
+    /** The length of the body. */
+    private final int length;
+
+    private Location(Segment segment, int offset, int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    // the body of the record, null if it does not match its CRC
+    private ByteBuffer body() {
+      ByteBuffer body = segment.buffer.duplicate();
+      body.position(offset + RECORD_HEADER_SIZE).limit(offset + RECORD_HEADER_SIZE + length);
+      body = body.slice();
+      CRC32 crc = new CRC32();
+      crc.update(body.duplicate());
+      return (int) crc.getValue() == segment.buffer.getInt(offset + 4) ? body : null;
+    }
+  }
+
+}
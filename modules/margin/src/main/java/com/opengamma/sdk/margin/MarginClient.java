@@ -6,8 +6,14 @@
 package com.opengamma.sdk.margin;
 
 import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import com.opengamma.sdk.common.ServiceInvoker;
 
@@ -28,6 +34,18 @@ public interface MarginClient {
     return InvokerMarginClient.of(invoker);
   }
 
+  /**
+   * Returns a builder that can be used to create an instance of the client.
+   * <p>
+   * The builder allows settings, such as the polling strategy, to be customized.
+   *
+   * @param invoker  the service invoker
+   * @return the builder, used to further customize the client
+   */
+  public static MarginClientBuilder builder(ServiceInvoker invoker) {
+    return new MarginClientBuilder(invoker);
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Lists the available CCPs.
@@ -38,6 +56,19 @@ public interface MarginClient {
    */
   public abstract CcpsResult listCcps();
 
+  /**
+   * Lists the available CCPs, without blocking.
+   * <p>
+   * The client created by {@link #of(ServiceInvoker)} sends the request asynchronously, with no thread held
+   * while waiting for the response, and cancelling the returned future cancels the request.
+   * The default implementation calls {@link #listCcps()} on the common fork-join pool.
+   *
+   * @return the list of available CCPs, expressed via a future
+   */
+  public default CompletableFuture<CcpsResult> listCcpsAsync() {
+    return CompletableFuture.supplyAsync(this::listCcps);
+  }
+
   /**
    * Gets information about a single CCP.
    *
@@ -48,6 +79,18 @@ public interface MarginClient {
    */
   public CcpInfo getCcpInfo(Ccp ccp);
 
+  /**
+   * Gets information about a single CCP, without blocking.
+   * <p>
+   * The default implementation calls {@link #getCcpInfo(Ccp)} on the common fork-join pool.
+   *
+   * @param ccp  the CCP to lookup
+   * @return the information about the CCP, expressed via a future
+   */
+  public default CompletableFuture<CcpInfo> getCcpInfoAsync(Ccp ccp) {
+    return CompletableFuture.supplyAsync(() -> getCcpInfo(ccp));
+  }
+
   /**
    * Creates a margin calculation task.
    *
@@ -59,6 +102,19 @@ public interface MarginClient {
    */
   public abstract String createCalculation(Ccp ccp, MarginCalcRequest request);
 
+  /**
+   * Creates a margin calculation task, without blocking.
+   * <p>
+   * The default implementation calls {@link #createCalculation(Ccp, MarginCalcRequest)} on the common fork-join pool.
+   *
+   * @param ccp  the CCP to use
+   * @param request  the calculation request
+   * @return the calculation identifier, expressed via a future
+   */
+  public default CompletableFuture<String> createCalculationAsync(Ccp ccp, MarginCalcRequest request) {
+    return CompletableFuture.supplyAsync(() -> createCalculation(ccp, request));
+  }
+
   /**
    * Gets the result of a margin calculation task.
    *
@@ -70,6 +126,19 @@ public interface MarginClient {
    */
   public abstract MarginCalcResult getCalculation(Ccp ccp, String calcId);
 
+  /**
+   * Gets the result of a margin calculation task, without blocking.
+   * <p>
+   * The default implementation calls {@link #getCalculation(Ccp, String)} on the common fork-join pool.
+   *
+   * @param ccp  the CCP to use
+   * @param calcId  the calculation identifier
+   * @return the calculation result, expressed via a future
+   */
+  public default CompletableFuture<MarginCalcResult> getCalculationAsync(Ccp ccp, String calcId) {
+    return CompletableFuture.supplyAsync(() -> getCalculation(ccp, calcId));
+  }
+
   /**
    * Deletes a margin calculation task.
    *
@@ -80,6 +149,31 @@ public interface MarginClient {
    */
   public abstract void deleteCalculation(Ccp ccp, String calcId);
 
+  /**
+   * Deletes a margin calculation task, without blocking.
+   * <p>
+   * The default implementation calls {@link #deleteCalculation(Ccp, String)} on the common fork-join pool.
+   *
+   * @param ccp  the CCP to use
+   * @param calcId  the calculation identifier
+   * @return a future completed when the calculation has been deleted
+   */
+  public default CompletableFuture<Void> deleteCalculationAsync(Ccp ccp, String calcId) {
+    return CompletableFuture.runAsync(() -> deleteCalculation(ccp, calcId));
+  }
+
+  /**
+   * Gets the statistics of the cache of calculation results.
+   * <p>
+   * The default implementation has no cache, so returns empty.
+   *
+   * @return the statistics, empty if the cache is not enabled
+   * @see MarginClientBuilder#resultCache(long, java.time.Duration)
+   */
+  public default Optional<ResultCacheStats> getResultCacheStats() {
+    return Optional.empty();
+  }
+
   //-------------------------------------------------------------------------
   /**
    * High-level call to submit a portfolio for parsing, validation and IM calculation.
@@ -87,6 +181,9 @@ public interface MarginClient {
    * If the thread is interrupted while this method is blocked, then a runtime exception
    * is thrown, but with the interrupt flag set.
    * For additional control, use {@link #calculateAsync(Ccp, MarginCalcRequest)}.
+   * <p>
+   * Once finished with, the calculation is deleted in the background, without the caller waiting.
+   * Closing the service invoker waits a short time for outstanding deletes to complete.
    *
    * @param ccp  the CCP to use
    * @param request  the calculation request
@@ -100,10 +197,15 @@ public interface MarginClient {
    * High-level call to submit a portfolio for parsing, validation and IM calculation,
    * performing the work on a background thread.
    * <p>
-   * This will use the executor from the service invoker to perform the background work.
+   * The HTTP requests are sent asynchronously and polling is performed by a central poller,
+   * so no thread is held while waiting for the service. If the service invoker uses virtual threads,
+   * each calculation instead runs as a blocking task on its own virtual thread.
    * <p>
    * Callers should consider whether to use {@link CompletableFuture#get(long, java.util.concurrent.TimeUnit)}
    * to enforce a time out on the calculation.
+   * <p>
+   * If the returned future is cancelled, or otherwise completed by the caller, polling stops and the
+   * calculation is deleted on a best-effort basis, so that the service does not continue with unwanted work.
    *
    * @param ccp  the CCP to use
    * @param request  the calculation request
@@ -112,6 +214,93 @@ public interface MarginClient {
    */
   public abstract CompletableFuture<MarginCalcResult> calculateAsync(Ccp ccp, MarginCalcRequest request);
 
+  //-------------------------------------------------------------------------
+  /**
+   * High-level call to run many calculations, delivering the results as they complete.
+   * <p>
+   * Each job is run as per {@link #calculateAsync(Ccp, MarginCalcRequest)}, with the number in flight
+   * at any one time limited overall and for each CCP, as configured on {@link MarginClientBuilder}.
+   * A job remains in flight until the consumer returns, so the memory used is bounded by these limits,
+   * however many jobs there are.
+   * <p>
+   * The failure of a job does not affect the others, and is delivered as a result containing a {@link MarginException}.
+   * The consumer may be called concurrently for different jobs. If it throws an exception, the remaining
+   * jobs still run, and the returned future completes with the first such exception.
+   * Cancelling the returned future abandons the jobs that have not yet completed.
+   * The default implementation allows 32 jobs in flight, with no limit for each CCP.
+   *
+   * @param jobs  the jobs to run
+   * @param resultConsumer  the consumer of the result of each job
+   * @return a future completed when all the results have been consumed
+   */
+  public default CompletableFuture<Void> calculateAll(
+      Collection<MarginCalcJob> jobs,
+      Consumer<MarginCalcJobResult> resultConsumer) {
+
+    return BulkCalculation.run(
+        jobs,
+        job -> calculateAsync(job.getCcp(), job.getRequest()),
+        MarginClientBuilder.DEFAULT_MAX_CONCURRENT_CALCULATIONS,
+        Integer.MAX_VALUE,
+        resultConsumer);
+  }
+
+  /**
+   * High-level call to run many calculations, returning the results in the order they complete.
+   * <p>
+   * Each job is run as per {@link #calculateAsync(Ccp, MarginCalcRequest)}, with the number in flight
+   * at any one time limited overall and for each CCP, as configured on {@link MarginClientBuilder}.
+   * A job remains in flight until its result is obtained from the iterator, so further jobs are only
+   * started as the results are consumed. The iterator blocks until the next result is available.
+   * <p>
+   * The failure of a job does not affect the others, and is returned as a result containing a {@link MarginException}.
+   * The default implementation allows 32 jobs in flight, with no limit for each CCP.
+   *
+   * @param jobs  the jobs to run
+   * @return an iterator over the result of each job
+   */
+  public default Iterator<MarginCalcJobResult> calculateAll(Collection<MarginCalcJob> jobs) {
+    return BulkCalculation.iterate(
+        jobs,
+        job -> calculateAsync(job.getCcp(), job.getRequest()),
+        MarginClientBuilder.DEFAULT_MAX_CONCURRENT_CALCULATIONS,
+        Integer.MAX_VALUE);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * High-level call to calculate the margin of one portfolio at several CCPs, to compare them side by side.
+   * <p>
+   * The CCPs available are checked first. For each available CCP, the latest valuation date
+   * and default currency are obtained from {@link CcpInfo}, and a calculation is run.
+   * The calculations for the different CCPs run concurrently, so this takes about as long as the slowest CCP.
+   * In the client created by {@link #of(ServiceInvoker)}, the portfolio data is encoded once and sent
+   * unchanged to every CCP.
+   * <p>
+   * A CCP that is not available, or whose calculation fails, is reported as a failure in the result,
+   * and does not affect the other CCPs.
+   * If the thread is interrupted while this method is blocked, then the calculations are abandoned
+   * and a runtime exception is thrown, but with the interrupt flag set.
+   * <p>
+   * The default implementation calls {@link #getCcpInfoAsync(Ccp)} and {@link #calculateAsync(Ccp, MarginCalcRequest)}
+   * for each CCP, so the portfolio data is encoded for each CCP.
+   *
+   * @param portfolioData  the portfolio data files
+   * @param ccps  the CCPs to compare
+   * @return the comparison of the CCPs
+   * @throws MarginException if unable to list the CCPs
+   * @throws UncheckedIOException if an IO error occurs listing the CCPs
+   */
+  public default CcpComparison compareCcps(List<PortfolioDataFile> portfolioData, Set<Ccp> ccps) {
+    Objects.requireNonNull(portfolioData, "portfolioData must not be null");
+    Objects.requireNonNull(ccps, "ccps must not be null");
+    CcpsResult available = listCcps();
+    return CcpComparison.calculate(ccps, available, ccp -> getCcpInfoAsync(ccp)
+        .thenCompose(info -> calculateAsync(
+            ccp,
+            MarginCalcRequest.of(info.getLatestValuationDate(), info.getDefaultCurrency(), portfolioData))));
+  }
+
   //-------------------------------------------------------------------------
   /**
    * High-level call to submit a base portfolio together with an extra set of trades,
@@ -132,4 +321,30 @@ public interface MarginClient {
       MarginCalcRequest request,
       List<PortfolioDataFile> deltaFiles);
 
+  /**
+   * High-level call to submit a base portfolio together with an extra set of trades,
+   * for parsing, validation and IM calculation, performing the work on a background thread.
+   * <p>
+   * In the client created by {@link #of(ServiceInvoker)}, the base and combined calculations are submitted
+   * and polled concurrently, in the same way as {@link #calculateAsync(Ccp, MarginCalcRequest)}, and the result
+   * is available as soon as both complete. If the returned future is cancelled, or otherwise completed by
+   * the caller, both calculations are abandoned.
+   * The default implementation calls {@link #calculateWhatIf(Ccp, MarginCalcRequest, List)} on the common fork-join pool.
+   * This will return the margin summary for the base request, the combined request (base portfolio + delta portfolio),
+   * and the difference between the two.
+   *
+   * @param ccp  the CCP to use
+   * @param request  the calculation request
+   * @param deltaFiles  the portfolios representing the extra trades for the what-if scenario
+   * @return the detailed result of the calculation, expressed via a future
+   * @throws RuntimeException if unable to setup the async calculation
+   */
+  public default CompletableFuture<MarginWhatIfCalcResult> calculateWhatIfAsync(
+      Ccp ccp,
+      MarginCalcRequest request,
+      List<PortfolioDataFile> deltaFiles) {
+
+    return CompletableFuture.supplyAsync(() -> calculateWhatIf(ccp, request, deltaFiles));
+  }
+
 }
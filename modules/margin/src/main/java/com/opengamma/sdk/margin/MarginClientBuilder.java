@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+
+import com.opengamma.sdk.common.PollingStrategy;
+import com.opengamma.sdk.common.ServiceInvoker;
+
+/**
+ * Builder used to create instances of the margin client.
+ */
+public final class MarginClientBuilder {
+
+  /**
+   * The default maximum number of calculations of a bulk calculation in flight.
+   */
+  static final int DEFAULT_MAX_CONCURRENT_CALCULATIONS = 32;
+
+  /** The service invoker. */
+  private final ServiceInvoker invoker;
+  /** The polling strategy. */
+  private PollingStrategy pollingStrategy;
+  /** The maximum number of asynchronous polls in progress. */
+  private int maxConcurrentPolls = CalculationPoller.DEFAULT_MAX_CONCURRENT_POLLS;
+  /** The time the service is asked to hold each poll, zero if disabled. */
+  private Duration longPollWait = Duration.ZERO;
+  /** The maximum number of asynchronous long polls in progress. */
+  private int maxConcurrentLongPolls = CalculationPoller.DEFAULT_MAX_CONCURRENT_LONG_POLLS;
+  /** The maximum number of calculations of a bulk calculation in flight. */
+  private int maxConcurrentCalculations = DEFAULT_MAX_CONCURRENT_CALCULATIONS;
+  /** The maximum number of calculations of a bulk calculation in flight for each CCP. */
+  private int maxConcurrentCalculationsPerCcp = Integer.MAX_VALUE;
+  /** The maximum estimated memory retained by the result cache, zero if disabled. */
+  private long resultCacheMaxWeight;
+  /** The time each result is kept in the result cache. */
+  private Duration resultCacheTimeToLive = Duration.ZERO;
+  /** The directory of the result store, null if disabled. */
+  private Path resultStoreDirectory;
+  /** The maximum size of the result store on disk. */
+  private long resultStoreMaxSize;
+  /** Whether identical requests share a calculation in flight. */
+  private boolean deduplicateCalculations;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates an instance for the specified invoker.
+   * <p>
+   * Call {@link MarginClient#builder(ServiceInvoker)} to create an instance.
+   *
+   * @param invoker  the service invoker
+   */
+  MarginClientBuilder(ServiceInvoker invoker) {
+    this.invoker = Objects.requireNonNull(invoker, "invoker must not be null");
+    this.pollingStrategy = invoker.getPollingStrategy();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Sets the strategy used to poll for the result of calculations.
+   * <p>
+   * By default, the polling strategy of the service invoker is used.
+   *
+   * @param pollingStrategy  the polling strategy
+   * @return this builder, for method chaining
+   */
+  public MarginClientBuilder pollingStrategy(PollingStrategy pollingStrategy) {
+    this.pollingStrategy = Objects.requireNonNull(pollingStrategy, "pollingStrategy must not be null");
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of polls that may be in progress at any one time.
+   * <p>
+   * Asynchronous calculations are polled by a single central poller.
+   * When many calculations are due at the same time, they are polled in batches,
+   * with no more than this number of polls in progress at once. The default is 16.
+   *
+   * @param maxConcurrentPolls  the maximum number of polls in progress, at least one
+   * @return this builder, for method chaining
+   */
+  public MarginClientBuilder maxConcurrentPolls(int maxConcurrentPolls) {
+    if (maxConcurrentPolls < 1) {
+      throw new IllegalArgumentException("maxConcurrentPolls must be at least one");
+    }
+    this.maxConcurrentPolls = maxConcurrentPolls;
+    return this;
+  }
+
+  /**
+   * Enables long polling, where the service is asked to hold each poll until the calculation completes.
+   * <p>
+   * When polling for the result of a calculation, the service is asked to delay its response
+   * until the calculation completes, for no longer than the specified wait, using the
+   * {@code Prefer: wait} header of RFC 7240. A service that does so confirms it with the
+   * {@code Preference-Applied} header, and the result is then available as soon as it is ready,
+   * without waiting for the next poll of the polling strategy.
+   * <p>
+   * If the service returns a pending calculation without confirming that it held the poll, the client
+   * falls back to polling using the polling strategy for the rest of its life. Once the service has
+   * confirmed that it holds polls, the client continues to long poll.
+   * <p>
+   * Each long poll holds a connection while it waits. Long polls are sent using their own dispatcher,
+   * so do not delay other requests to the service, and the number of asynchronous long polls in progress
+   * is limited by {@link #maxConcurrentLongPolls(int)} rather than {@link #maxConcurrentPolls(int)}.
+   * By default, long polling is disabled.
+   *
+   * @param maxWait  the maximum time the service is asked to hold each poll, a whole number of seconds, at least one
+   * @return this builder, for method chaining
+   */
+  public MarginClientBuilder longPolling(Duration maxWait) {
+    Objects.requireNonNull(maxWait, "maxWait must not be null");
+    if (maxWait.getSeconds() < 1 || maxWait.getNano() != 0) {
+      throw new IllegalArgumentException("maxWait must be a whole number of seconds, at least one");
+    }
+    this.longPollWait = maxWait;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of long polls that may be in progress at any one time.
+   * <p>
+   * This applies when {@linkplain #longPolling(Duration) long polling} is enabled, and should typically be set to
+   * the number of asynchronous calculations expected at once, as each long poll waits until its calculation completes.
+   * When more calculations are pending, the remainder are polled once a long poll completes. The default is 64.
+   *
+   * @param maxConcurrentLongPolls  the maximum number of long polls in progress, at least one
+   * @return this builder, for method chaining
+   */
+  public MarginClientBuilder maxConcurrentLongPolls(int maxConcurrentLongPolls) {
+    if (maxConcurrentLongPolls < 1) {
+      throw new IllegalArgumentException("maxConcurrentLongPolls must be at least one");
+    }
+    this.maxConcurrentLongPolls = maxConcurrentLongPolls;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of calculations of a bulk calculation that may be in flight at any one time.
+   * <p>
+   * This applies to {@code calculateAll()}, and should typically be set close to the number of
+   * calculations the service will process concurrently for the user. The default is 32.
+   *
+   * @param maxConcurrentCalculations  the maximum number of calculations in flight, at least one
+   * @return this builder, for method chaining
+   */
+  public MarginClientBuilder maxConcurrentCalculations(int maxConcurrentCalculations) {
+    if (maxConcurrentCalculations < 1) {
+      throw new IllegalArgumentException("maxConcurrentCalculations must be at least one");
+    }
+    this.maxConcurrentCalculations = maxConcurrentCalculations;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of calculations of a bulk calculation that may be in flight for each CCP.
+   * <p>
+   * This applies to {@code calculateAll()}, in addition to {@link #maxConcurrentCalculations(int)}.
+   * When the limit for one CCP is reached, calculations for other CCPs are started instead.
+   * By default, there is no limit for each CCP.
+   *
+   * @param maxConcurrentCalculationsPerCcp  the maximum number of calculations in flight for each CCP, at least one
+   * @return this builder, for method chaining
+   */
+  public MarginClientBuilder maxConcurrentCalculationsPerCcp(int maxConcurrentCalculationsPerCcp) {
+    if (maxConcurrentCalculationsPerCcp < 1) {
+      throw new IllegalArgumentException("maxConcurrentCalculationsPerCcp must be at least one");
+    }
+    this.maxConcurrentCalculationsPerCcp = maxConcurrentCalculationsPerCcp;
+    return this;
+  }
+
+  /**
+   * Enables the cache of calculation results.
+   * <p>
+   * When enabled, the result of each completed calculation is kept, and a later request for
+   * the same calculation is answered from the cache instead of the service. This applies to
+   * {@code calculate()}, {@code calculateAsync()} and {@code calculateAll()}. Requests are the same
+   * if they are for the same CCP and all their fields, including the data of each portfolio file, are equal.
+   * Only a digest of the request is retained, but computing it reads all the portfolio data once.
+   * <p>
+   * The cache is bounded by the estimated memory retained by the results, evicting the least
+   * recently used first, and each result is kept for no longer than the time to live.
+   * When {@code getCcpInfo()} shows that a new valuation date has become the latest for a CCP,
+   * the results for that CCP are discarded. By default, the cache is disabled.
+   *
+   * @param maxWeight  the maximum estimated memory retained by the results, in bytes, at least one
+   * @param timeToLive  the time each result is kept, positive
+   * @return this builder, for method chaining
+   */
+  public MarginClientBuilder resultCache(long maxWeight, Duration timeToLive) {
+    Objects.requireNonNull(timeToLive, "timeToLive must not be null");
+    if (maxWeight < 1) {
+      throw new IllegalArgumentException("maxWeight must be at least one");
+    }
+    if (timeToLive.isNegative() || timeToLive.isZero()) {
+      throw new IllegalArgumentException("timeToLive must be positive");
+    }
+    this.resultCacheMaxWeight = maxWeight;
+    this.resultCacheTimeToLive = timeToLive;
+    return this;
+  }
+
+  /**
+   * Enables the store of calculation results on disk.
+   * <p>
+   * When enabled, the result of each completed calculation is written to files in the directory,
+   * and a later request for the same calculation, as defined by {@link #resultCache(long, Duration)},
+   * is answered from the files instead of the service. The files outlive the client, so the results are
+   * available to later runs, and may be shared by any number of clients and processes on the same host.
+   * A result is only found by clients using the same service URL and credentials, as identified by
+   * {@link com.opengamma.sdk.common.auth.Credentials#tokenStoreKey()}, and the directory and files are only
+   * accessible by their owner where the file system supports it.
+   * Results are held in a compact binary form in memory-mapped files, so reading one is much faster
+   * than fetching and parsing it from the service.
+   * <p>
+   * If the result cache is also enabled, it is checked first, and results read from the store are added to it.
+   * The store is bounded by the total size of its files, deleting the oldest results first.
+   * Unlike the result cache, results are not discarded when a new valuation date becomes available.
+   * Results are written to the files on the executor of the service invoker, and results written by
+   * other processes are found within about a second. The store is closed when the service invoker is closed. By default, the store is disabled.
+   *
+   * @param directory  the directory of the store, created if necessary
+   * @param maxSize  the maximum total size of the files, in bytes, at least one
+   * @return this builder, for method chaining
+   * @throws IllegalStateException if the credentials of the service invoker do not provide a token store key
+   */
+  public MarginClientBuilder resultStore(Path directory, long maxSize) {
+    Objects.requireNonNull(directory, "directory must not be null");
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be at least one");
+    }
+    if (!invoker.getCredentialsKey().isPresent()) {
+      throw new IllegalStateException("The result store requires credentials that provide a token store key");
+    }
+    this.resultStoreDirectory = directory;
+    this.resultStoreMaxSize = maxSize;
+    return this;
+  }
+
+  /**
+   * Sets whether identical requests share a calculation that is in flight.
+   * <p>
+   * When enabled, a request made while the calculation of an identical request is still running,
+   * as defined by {@link #resultCache(long, Duration)}, waits for that calculation rather than creating
+   * another on the service. This applies to {@code calculate()}, {@code calculateAsync()} and {@code calculateAll()}.
+   * Each caller receives its own future, and cancelling it only detaches that caller, with the calculation
+   * abandoned once every caller has detached. Unlike the result cache, only running calculations are shared.
+   * Computing the digest of each request reads all the portfolio data once. By default, this is disabled.
+   *
+   * @param deduplicateCalculations  whether identical requests share a calculation in flight
+   * @return this builder, for method chaining
+   */
+  public MarginClientBuilder deduplicateCalculations(boolean deduplicateCalculations) {
+    this.deduplicateCalculations = deduplicateCalculations;
+    return this;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Builds the margin client, using the information provided.
+   *
+   * @return the margin client
+   * @throws java.io.UncheckedIOException if the result store cannot be opened
+   */
+  public MarginClient build() {
+    return new InvokerMarginClient(
+        invoker,
+        pollingStrategy,
+        maxConcurrentPolls,
+        longPollWait,
+        maxConcurrentLongPolls,
+        maxConcurrentCalculations,
+        maxConcurrentCalculationsPerCcp,
+        resultCacheMaxWeight > 0 ? new MarginCalcResultCache(resultCacheMaxWeight, resultCacheTimeToLive) : null,
+        resultStoreDirectory != null ?
+            MarginCalcResultStore.open(
+                resultStoreDirectory,
+                invoker.getServiceUrl() + " " + invoker.getCredentialsKey().get(),
+                resultStoreMaxSize,
+                InvokerMarginClient.SERIALIZER,
+                invoker.getExecutor()) :
+            null,
+        deduplicateCalculations);
+  }
+
+}
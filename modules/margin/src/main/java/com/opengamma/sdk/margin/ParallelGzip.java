@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compressor of GZIP streams using several threads.
+ * <p>
+ * The input is split into fixed-size blocks, each compressed as a separate task on a fork-join pool,
+ * in the manner of {@code pigz}. Each block is primed with the last 32KB of the block before it,
+ * so the compression ratio is close to that of a single stream. Every block but the last ends with
+ * a sync flush, leaving it on a byte boundary, so that the compressed blocks are simply joined,
+ * forming a single standard GZIP member that any GZIP reader can decompress.
+ * <p>
+ * The input is read, and the output written, by the calling thread, which also computes the CRC.
+ * The number of blocks read but not yet written is bounded, limiting the memory used.
+ */
+final class ParallelGzip {
+
+  /**
+   * The default size of a block.
+   */
+  static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+  /**
+   * The size of the dictionary, the maximum distance of a DEFLATE back-reference.
+   */
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+
+  /** The pool compressing the blocks. */
+  private final ForkJoinPool pool;
+  /** The size of a block. */
+  private final int blockSize;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates an instance.
+   *
+   * @param pool  the pool compressing the blocks
+   * @param blockSize  the size of a block
+   */
+  ParallelGzip(ForkJoinPool pool, int blockSize) {
+    this.pool = pool;
+    this.blockSize = blockSize;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Compresses the input to the output.
+   * <p>
+   * Neither stream is closed.
+   *
+   * @param in  the input
+   * @param out  the output
+   * @throws IOException if an IO error occurs
+   */
+  void compress(InputStream in, OutputStream out) throws IOException {
+    out.write(PortfolioCompression.GZIP_HEADER);
+    CRC32 crc = new CRC32();
+    long length = 0;
+    int window = pool.getParallelism() * 2;
+    Deque<ForkJoinTask<byte[]>> compressing = new ArrayDeque<>();
+    try {
+      byte[] previous = null;
+      byte[] block = readBlock(in);
+      while (true) {
+        // reading ahead shows whether the block is the last
+        byte[] next = block.length == blockSize ? readBlock(in) : new byte[0];
+        boolean last = next.length == 0;
+        crc.update(block);
+        length += block.length;
+        byte[] dictionary = previous;
+        byte[] input = block;
+        compressing.add(pool.submit(() -> deflate(input, dictionary, last)));
+        while (compressing.size() >= window || (last && !compressing.isEmpty())) {
+          out.write(compressing.remove().join());
+        }
+        if (last) {
+          break;
+        }
+        previous = block;
+        block = next;
+      }
+    } finally {
+      compressing.forEach(task -> task.cancel(false));
+    }
+    writeIntLe(out, (int) crc.getValue());
+    writeIntLe(out, (int) length);
+  }
+
+  // reads a full block, or less at the end of the input
+  private byte[] readBlock(InputStream in) throws IOException {
+    byte[] block = new byte[blockSize];
+    int length = 0;
+    while (length < blockSize) {
+      int read = in.read(block, length, blockSize - length);
+      if (read < 0) {
+        break;
+      }
+      length += read;
+    }
+    if (length < blockSize) {
+      byte[] shortBlock = new byte[length];
+      System.arraycopy(block, 0, shortBlock, 0, length);
+      return shortBlock;
+    }
+    return block;
+  }
+
+  // compresses a block as raw DEFLATE, primed with the end of the previous block
+  private static byte[] deflate(byte[] input, byte[] previous, boolean last) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      if (previous != null) {
+        // the dictionary is copied, as some JDKs ignore the offset passed to setDictionary()
+        int dictionaryLength = Math.min(DICTIONARY_SIZE, previous.length);
+        deflater.setDictionary(Arrays.copyOfRange(previous, previous.length - dictionaryLength, previous.length));
+      }
+      deflater.setInput(input);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 64);
+      byte[] buffer = new byte[64 * 1024];
+      if (last) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          int count = deflater.deflate(buffer);
+          out.write(buffer, 0, count);
+        }
+      } else {
+        // the flush completes when the output does not fill the buffer
+        int count;
+        do {
+          count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+          out.write(buffer, 0, count);
+        } while (count == buffer.length);
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static void writeIntLe(OutputStream out, int value) throws IOException {
+    out.write(value);
+    out.write(value >>> 8);
+    out.write(value >>> 16);
+    out.write(value >>> 24);
+  }
+
+}
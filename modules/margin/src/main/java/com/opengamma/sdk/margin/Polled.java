@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import com.opengamma.sdk.common.PollingStrategy.PollingSchedule;
+
+/**
+ * A value obtained from the service, with the delay the service requested before the next poll.
+ *
+ * @param <T>  the type of the value
+ */
+final class Polled<T> {
+
+  /** The value, null if not read as the calculation is still pending. */
+  private final T value;
+  /** The delay requested by the service, empty if not specified. */
+  private final Optional<Duration> retryAfter;
+
+  // creates an instance
+  Polled(T value, Optional<Duration> retryAfter) {
+    this.value = value;
+    this.retryAfter = retryAfter;
+  }
+
+  //-------------------------------------------------------------------------
+  // gets the value, null if not read as the calculation is still pending
+  T getValue() {
+    return value;
+  }
+
+  // checks if the value was read
+  boolean hasValue() {
+    return value != null;
+  }
+
+  // gets the delay requested by the service
+  Optional<Duration> getRetryAfter() {
+    return retryAfter;
+  }
+
+  // the delay before the next poll, advancing the schedule, with the service taking precedence
+  long delayNanos(PollingSchedule schedule) {
+    Duration delay = schedule.nextDelay();
+    return retryAfter.orElse(delay).toNanos();
+  }
+
+}
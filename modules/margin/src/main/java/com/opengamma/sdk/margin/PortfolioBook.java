@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+
+/**
+ * A mutable book of trades in a line-based portfolio format, such as CSV, that is compressed incrementally.
+ * <p>
+ * Intraday books often change by a few trades at a time, so compressing the whole book each time
+ * it is sent repeats work that was done before. Instead, the trades are held in segments, and each segment
+ * is compressed as a separate GZIP member. As GZIP members may be concatenated, the segments together
+ * form a single GZIP file, containing the header followed by the trades.
+ * When the book is changed, only the segments containing the changed trades are compressed again,
+ * so the cost of {@link #toPortfolioDataFile()} is proportional to the size of the change, rather than the book.
+ * <p>
+ * Each trade is a single line, identified by a trade ID. A trade that is replaced keeps its position in the book,
+ * while a new trade is added at the end. Compressing the segments separately makes the data slightly larger
+ * than compressing the book as a whole.
+ * <p>
+ * Instances are not thread-safe. The files obtained are unaffected by later changes to the book,
+ * so may be sent while the book is changed.
+ */
+public final class PortfolioBook {
+
+  /**
+   * The target size of the trades in a segment, in characters.
+   */
+  private static final int SEGMENT_SIZE = 64 * 1024;
+  /**
+   * The GZIP flag indicating that the header is followed by a comment.
+   */
+  private static final int FCOMMENT = 0x10;
+  /**
+   * The length of the fixed GZIP header.
+   */
+  private static final int HEADER_LENGTH = 10;
+
+  /** The name of the file. */
+  private final String name;
+  /** The compression. */
+  private final PortfolioCompression compression;
+  /** The segments, in the order of the book. */
+  private final List<Segment> segments = new ArrayList<>();
+  /** The segment of each trade, keyed by trade ID. */
+  private final Map<String, Segment> tradeSegments = new HashMap<>();
+  /** The header, empty if none. */
+  private String header = "";
+  /** The encoded header, null if changed since last encoded. */
+  private ByteString encodedHeader;
+  /** The number of segments compressed, including the header. */
+  private long compressedCount;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates an empty book, compressed using the standard level.
+   *
+   * @param name  the name of the file, such as {@code trades.csv}, indicating the format to the service
+   * @return the book
+   */
+  public static PortfolioBook of(String name) {
+    return of(name, PortfolioCompression.standard());
+  }
+
+  /**
+   * Creates an empty book, compressed using the specified compression.
+   *
+   * @param name  the name of the file, such as {@code trades.csv}, indicating the format to the service
+   * @param compression  the compression
+   * @return the book
+   */
+  public static PortfolioBook of(String name, PortfolioCompression compression) {
+    Objects.requireNonNull(name, "name must not be null");
+    Objects.requireNonNull(compression, "compression must not be null");
+    return new PortfolioBook(name, compression);
+  }
+
+  private PortfolioBook(String name, PortfolioCompression compression) {
+    this.name = name;
+    this.compression = compression;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the header that precedes the trades.
+   *
+   * @return the header, empty if none
+   */
+  public String getHeader() {
+    return header;
+  }
+
+  /**
+   * Sets the header that precedes the trades, such as the column names of a CSV file.
+   * <p>
+   * A line break is added after the header if it does not end with one.
+   *
+   * @param header  the header, empty if none
+   */
+  public void setHeader(String header) {
+    Objects.requireNonNull(header, "header must not be null");
+    if (!header.equals(this.header)) {
+      this.header = header;
+      this.encodedHeader = null;
+    }
+  }
+
+  /**
+   * Gets the number of trades in the book.
+   *
+   * @return the number of trades
+   */
+  public int size() {
+    return tradeSegments.size();
+  }
+
+  /**
+   * Checks if the book contains the trade.
+   *
+   * @param tradeId  the trade ID
+   * @return true if the book contains the trade
+   */
+  public boolean contains(String tradeId) {
+    return tradeSegments.containsKey(tradeId);
+  }
+
+  /**
+   * Adds or replaces a trade.
+   * <p>
+   * A trade that is replaced keeps its position in the book, while a new trade is added at the end.
+   *
+   * @param tradeId  the trade ID
+   * @param line  the line representing the trade, without a line break
+   * @throws IllegalArgumentException if the line contains a line break
+   */
+  public void put(String tradeId, String line) {
+    Objects.requireNonNull(tradeId, "tradeId must not be null");
+    Objects.requireNonNull(line, "line must not be null");
+    if (line.indexOf('\n') >= 0 || line.indexOf('\r') >= 0) {
+      throw new IllegalArgumentException("Trade line must not contain a line break: " + tradeId);
+    }
+    Segment segment = tradeSegments.get(tradeId);
+    if (segment == null) {
+      segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+      if (segment == null || segment.size >= SEGMENT_SIZE) {
+        segment = new Segment();
+        segments.add(segment);
+      }
+      tradeSegments.put(tradeId, segment);
+    }
+    segment.put(tradeId, line);
+  }
+
+  /**
+   * Removes a trade.
+   *
+   * @param tradeId  the trade ID
+   * @return true if the book contained the trade
+   */
+  public boolean remove(String tradeId) {
+    Segment segment = tradeSegments.remove(tradeId);
+    if (segment == null) {
+      return false;
+    }
+    segment.remove(tradeId);
+    if (segment.lines.isEmpty()) {
+      segments.remove(segment);
+    }
+    return true;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains the portfolio file for the current state of the book.
+   * <p>
+   * The segments changed since the last call are compressed, while the others are reused.
+   * The data is written to the request from the segments as it is sent, so is not held as a single string.
+   * The file is unaffected by later changes to the book.
+   *
+   * @return the file, named as the book with the suffix {@code .gz.base64}
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public PortfolioDataFile toPortfolioDataFile() {
+    if (encodedHeader == null) {
+      encodedHeader = encode(header.isEmpty() || header.endsWith("\n") ? header : header + "\n");
+    }
+    ByteString[] encoded = new ByteString[segments.size() + 1];
+    encoded[0] = encodedHeader;
+    long length = encodedHeader.size();
+    for (int i = 0; i < segments.size(); i++) {
+      Segment segment = segments.get(i);
+      if (segment.encoded == null) {
+        segment.encoded = encode(segment.text());
+      }
+      encoded[i + 1] = segment.encoded;
+      length += segment.encoded.size();
+    }
+    return PortfolioDataFile.ofSource(name + ".gz.base64", new Snapshot(encoded, length));
+  }
+
+  /**
+   * Gets the number of segments compressed, including the header, since the book was created.
+   *
+   * @return the number of segments compressed
+   */
+  long getCompressedCount() {
+    return compressedCount;
+  }
+
+  //-------------------------------------------------------------------------
+  // compresses the text as a GZIP member padded to a whole number of Base-64 groups, then encodes it
+  private ByteString encode(String text) {
+    compressedCount++;
+    Buffer input = new Buffer().writeUtf8(text);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      compression.compress(input.inputStream(), out);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to gzip base-64 content", ex);
+    }
+    byte[] member = out.toByteArray();
+    // a comment of up to two characters and its terminator pads the member to a multiple of three bytes,
+    // so the encoded members can be concatenated without Base-64 padding between them
+    int commentLength = (3 - (member.length + 1) % 3) % 3;
+    byte[] padded = new byte[member.length + commentLength + 1];
+    System.arraycopy(member, 0, padded, 0, HEADER_LENGTH);
+    padded[3] |= FCOMMENT;
+    for (int i = 0; i < commentLength; i++) {
+      padded[HEADER_LENGTH + i] = ' ';
+    }
+    int dataStart = HEADER_LENGTH + commentLength + 1;
+    System.arraycopy(member, HEADER_LENGTH, padded, dataStart, member.length - HEADER_LENGTH);
+    return ByteString.of(Base64.getEncoder().encode(padded));
+  }
+
+  //-------------------------------------------------------------------------
+  // a segment of the trades
+  private static final class Segment {
+    /** The lines of the trades, keyed by trade ID. */
+    private final LinkedHashMap<String, String> lines = new LinkedHashMap<>();
+    /** The total length of the lines, including line breaks. */
+    private long size;
+    /** The encoded segment, null if changed since last encoded. */
+    private ByteString encoded;
+
+    private void put(String tradeId, String line) {
+      String previous = lines.put(tradeId, line);
+      if (!line.equals(previous)) {
+        size += line.length() + 1 - (previous != null ? previous.length() + 1 : 0);
+        encoded = null;
+      }
+    }
+
+    private void remove(String tradeId) {
+      size -= lines.remove(tradeId).length() + 1;
+      encoded = null;
+    }
+
+    private String text() {
+      StringBuilder buf = new StringBuilder((int) size);
+      for (String line : lines.values()) {
+        buf.append(line).append('\n');
+      }
+      return buf.toString();
+    }
+  }
+
+  // the encoded segments at a point in time
+  private static final class Snapshot implements PortfolioDataSource {
+    /** The encoded segments. */
+    private final ByteString[] segments;
+    /** The total length. */
+    private final long length;
+
+    private Snapshot(ByteString[] segments, long length) {
+      this.segments = segments;
+      this.length = length;
+    }
+
+    @Override
+    public long length() {
+      return length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+      for (ByteString segment : segments) {
+        sink.write(segment);
+      }
+    }
+
+    @Override
+    public String encode() {
+      Buffer buffer = new Buffer();
+      for (ByteString segment : segments) {
+        buffer.write(segment);
+      }
+      return buffer.readUtf8();
+    }
+  }
+
+}
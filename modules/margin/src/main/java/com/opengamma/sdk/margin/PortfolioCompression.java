@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression of a portfolio file sent to the service.
+ * <p>
+ * Portfolio files are sent to the service compressed using GZIP. This controls the DEFLATE level,
+ * trading the time taken to compress against the size of the data sent, and whether the content
+ * of the file is examined to avoid compressing data that is already compressed.
+ * <p>
+ * With content detection, a file that starts with the signature of a compressed format, such as
+ * the ZIP container of an {@code .xlsx} file, is stored in the GZIP stream without being compressed
+ * again, which would take time for little or no reduction in size.
+ * <p>
+ * Each instance reuses the compressors it creates, avoiding the cost of allocating the native
+ * memory of a compressor for every file. The instances returned by the static methods are shared.
+ * Instances are thread-safe.
+ */
+public final class PortfolioCompression {
+
+  /**
+   * The fixed GZIP header, as written by {@code GZIPOutputStream} of the running JDK.
+   * This is captured rather than hard-coded, as the operating system byte differs between JDK versions.
+   */
+  static final byte[] GZIP_HEADER = gzipHeader();
+  /**
+   * The size of the buffers used to read and compress the data.
+   * The first buffer read must be large enough to hold the longest signature.
+   */
+  private static final int BUFFER_SIZE = 8192;
+  /**
+   * The maximum number of idle compressors kept by each instance.
+   */
+  private static final int MAX_IDLE = Math.max(2, Runtime.getRuntime().availableProcessors());
+  /**
+   * The signatures of compressed formats: ZIP (including {@code .xlsx}), GZIP, BZIP2, XZ, 7-Zip and Zstandard.
+   */
+  private static final byte[][] SIGNATURES = {
+      {0x50, 0x4b, 0x03, 0x04},
+      {0x50, 0x4b, 0x05, 0x06},
+      {0x1f, (byte) 0x8b},
+      {0x42, 0x5a, 0x68},
+      {(byte) 0xfd, 0x37, 0x7a, 0x58, 0x5a, 0x00},
+      {0x37, 0x7a, (byte) 0xbc, (byte) 0xaf, 0x27, 0x1c},
+      {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd}};
+  /**
+   * The shared instances, by level and then whether content detection is enabled.
+   */
+  private static final PortfolioCompression[][] INSTANCES = new PortfolioCompression[11][2];
+  static {
+    for (int level = Deflater.DEFAULT_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+      INSTANCES[level + 1][0] = new PortfolioCompression(level, false, null);
+    }
+    // content that is already compressed is stored, sharing the compressors of level 0
+    PortfolioCompression stored = INSTANCES[Deflater.NO_COMPRESSION + 1][0];
+    for (int level = Deflater.DEFAULT_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++) {
+      INSTANCES[level + 1][1] = new PortfolioCompression(level, true, stored);
+    }
+  }
+
+  /** The DEFLATE level. */
+  private final int level;
+  /** Whether content detection is enabled. */
+  private final boolean detectContent;
+  /** The compression used for content that is already compressed, null if content is not detected. */
+  private final PortfolioCompression stored;
+  /** The idle compressors. */
+  private final Queue<Deflater> idle = new ArrayBlockingQueue<>(MAX_IDLE);
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains the standard compression, used by {@link PortfolioDataFile#of(java.nio.file.Path)}.
+   * <p>
+   * Every file is compressed at the default level, a balance of speed and size.
+   *
+   * @return the compression
+   */
+  public static PortfolioCompression standard() {
+    return level(Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Obtains the fastest compression that still compresses.
+   * <p>
+   * Every file is compressed at level 1, which is several times faster than the default level,
+   * but produces larger data.
+   *
+   * @return the compression
+   */
+  public static PortfolioCompression fastest() {
+    return level(Deflater.BEST_SPEED);
+  }
+
+  /**
+   * Obtains a compression using the specified DEFLATE level.
+   * <p>
+   * The level is from 0, which stores the data without compressing it, to 9, which produces
+   * the smallest data but is slowest. The default level, 6, may be specified as -1.
+   *
+   * @param level  the level, from -1 to 9
+   * @return the compression
+   * @throws IllegalArgumentException if the level is invalid
+   */
+  public static PortfolioCompression level(int level) {
+    if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Compression level must be from -1 to 9, but was " + level);
+    }
+    return INSTANCES[level + 1][0];
+  }
+
+  /**
+   * Obtains the standard compression with content detection.
+   * <p>
+   * Files in a compressed format, such as {@code .xlsx}, are stored without being compressed again,
+   * while other files are compressed at the default level.
+   *
+   * @return the compression
+   */
+  public static PortfolioCompression contentAware() {
+    return standard().withContentDetection();
+  }
+
+  private PortfolioCompression(int level, boolean detectContent, PortfolioCompression stored) {
+    this.level = level;
+    this.detectContent = detectContent;
+    this.stored = stored;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns a compression with content detection.
+   * <p>
+   * Files that start with the signature of a compressed format are stored without being
+   * compressed again, while other files are compressed at the level of this instance.
+   *
+   * @return the compression
+   */
+  public PortfolioCompression withContentDetection() {
+    return INSTANCES[level + 1][1];
+  }
+
+  /**
+   * Gets the DEFLATE level.
+   *
+   * @return the level, from -1 to 9
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Checks if content detection is enabled.
+   *
+   * @return true if files in a compressed format are stored without being compressed again
+   */
+  public boolean isContentDetection() {
+    return detectContent;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Compresses the input to the output using GZIP.
+   * <p>
+   * Neither stream is closed. The output is deterministic, and at the default level is the same
+   * as that of {@code GZIPOutputStream} of the running JDK.
+   *
+   * @param in  the input
+   * @param out  the output
+   * @throws IOException if an IO error occurs
+   */
+  void compress(InputStream in, OutputStream out) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int length = readFully(in, buffer);
+    PortfolioCompression compression = stored != null && isCompressed(buffer, length) ? stored : this;
+    compression.compress(buffer, length, in, out);
+  }
+
+  // compresses the input, which starts with the bytes already read into the buffer
+  private void compress(byte[] buffer, int length, InputStream in, OutputStream out) throws IOException {
+    Deflater deflater = acquire();
+    try {
+      out.write(GZIP_HEADER);
+      CRC32 crc = new CRC32();
+      long total = 0;
+      byte[] output = new byte[BUFFER_SIZE];
+      for (int read = length; read >= 0; read = in.read(buffer)) {
+        crc.update(buffer, 0, read);
+        total += read;
+        deflater.setInput(buffer, 0, read);
+        while (!deflater.needsInput()) {
+          out.write(output, 0, deflater.deflate(output));
+        }
+      }
+      deflater.finish();
+      while (!deflater.finished()) {
+        out.write(output, 0, deflater.deflate(output));
+      }
+      writeIntLe(out, (int) crc.getValue());
+      writeIntLe(out, (int) total);
+    } finally {
+      release(deflater);
+    }
+  }
+
+  // reads until the buffer is full or the input ends
+  private static int readFully(InputStream in, byte[] buffer) throws IOException {
+    int length = 0;
+    while (length < buffer.length) {
+      int read = in.read(buffer, length, buffer.length - length);
+      if (read < 0) {
+        break;
+      }
+      length += read;
+    }
+    return length;
+  }
+
+  // checks if the data starts with the signature of a compressed format
+  static boolean isCompressed(byte[] data, int length) {
+    for (byte[] signature : SIGNATURES) {
+      if (length >= signature.length && startsWith(data, signature)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean startsWith(byte[] data, byte[] prefix) {
+    for (int i = 0; i < prefix.length; i++) {
+      if (data[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeIntLe(OutputStream out, int value) throws IOException {
+    out.write(value);
+    out.write(value >>> 8);
+    out.write(value >>> 16);
+    out.write(value >>> 24);
+  }
+
+  //-------------------------------------------------------------------------
+  // obtains an idle compressor, or creates one
+  private Deflater acquire() {
+    Deflater deflater = idle.poll();
+    return deflater != null ? deflater : new Deflater(level, true);
+  }
+
+  // returns the compressor for reuse, freeing it if enough are idle
+  private void release(Deflater deflater) {
+    deflater.reset();
+    if (!idle.offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "PortfolioCompression[level=" + level + (detectContent ? ", contentDetection" : "") + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  // captures the fixed header written by GZIPOutputStream
+  private static byte[] gzipHeader() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.finish();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return Arrays.copyOf(out.toByteArray(), 10);
+  }
+
+}
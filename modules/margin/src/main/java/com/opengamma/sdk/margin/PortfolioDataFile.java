@@ -10,6 +10,7 @@ import static java.util.stream.Collectors.toList;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
@@ -20,6 +21,8 @@ import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -31,12 +34,18 @@ import org.joda.beans.JodaBeanUtils;
 import org.joda.beans.MetaBean;
 import org.joda.beans.MetaProperty;
 import org.joda.beans.gen.BeanDefinition;
+import org.joda.beans.gen.ImmutableConstructor;
 import org.joda.beans.gen.PropertyDefinition;
 import org.joda.beans.impl.direct.DirectMetaBean;
 import org.joda.beans.impl.direct.DirectMetaProperty;
 import org.joda.beans.impl.direct.DirectMetaPropertyMap;
 import org.joda.beans.impl.direct.DirectPrivateBeanBuilder;
 
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.HashingSink;
+import okio.Okio;
+
 /**
  * Portfolio data to pass to the service.
  */
@@ -51,8 +60,12 @@ public final class PortfolioDataFile implements ImmutableBean {
   /**
    * The portfolio data.
    */
-  @PropertyDefinition(validate = "notNull")
+  @PropertyDefinition(validate = "notNull", get = "manual")
   private final String data;
+  /**
+   * The source of the data, null unless the data is streamed.
+   */
+  private final transient PortfolioDataSource source;
 
   //-------------------------------------------------------------------------
   /**
@@ -80,14 +93,141 @@ public final class PortfolioDataFile implements ImmutableBean {
    * @throws UncheckedIOException if an IO error occurs
    */
   public static PortfolioDataFile of(Path path) {
+    return of(path, PortfolioCompression.standard());
+  }
+
+  /**
+   * Obtains an instance from a file, using the specified compression.
+   * <p>
+   * The file is compressed using GZIP, and sent to the server using Base-64, as per {@link #of(Path)}.
+   * The compression controls the level used, and whether a file that is already compressed,
+   * such as an {@code .xlsx} file, is stored without being compressed again.
+   *
+   * @param path the file
+   * @param compression the compression
+   * @return the instance
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public static PortfolioDataFile of(Path path, PortfolioCompression compression) {
+    Objects.requireNonNull(compression, "compression must not be null");
+    String filename = path.toAbsolutePath().toString();
+    if (Files.notExists(path)) {
+      throw new IllegalArgumentException("Could not find portfolio file: " + filename);
+    }
+    try (InputStream in = Files.newInputStream(path)) {
+      return of(path, in, compression);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to gzip base-64 content", ex);
+    }
+  }
+
+  /**
+   * Obtains an instance from the content of a file, read from a stream.
+   * <p>
+   * This allows the content to be examined as it is read, such as to compute a digest.
+   *
+   * @param path the file, which must exist
+   * @param in the content of the file, not closed
+   * @param compression the compression
+   * @return the instance
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  static PortfolioDataFile of(Path path, InputStream in, PortfolioCompression compression) {
+    String base64Data = gzipBase64(path, in, compression);
+    return new PortfolioDataFile(path.toAbsolutePath().toString() + ".gz.base64", base64Data);
+  }
+
+  /**
+   * Obtains an instance from a file, compressing it using several threads.
+   * <p>
+   * The file is compressed using GZIP, and sent to the server using Base-64, as per {@link #of(Path)}.
+   * Blocks of the file are compressed in parallel using the common fork-join pool, which is much faster
+   * for large files on a machine with several cores. The compressed data is slightly larger,
+   * and differs from that produced by {@link #of(Path)}, but decompresses to the same content.
+   *
+   * @param path the file
+   * @return the instance
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public static PortfolioDataFile ofParallel(Path path) {
+    return ofParallel(path, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Obtains an instance from a file, compressing it using the threads of a fork-join pool.
+   * <p>
+   * The file is compressed using GZIP, and sent to the server using Base-64, as per {@link #of(Path)}.
+   * Blocks of the file are compressed in parallel using the pool, with the number of blocks in memory
+   * at any one time bounded by twice the parallelism of the pool.
+   *
+   * @param path the file
+   * @param pool the pool used to compress the blocks of the file
+   * @return the instance
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public static PortfolioDataFile ofParallel(Path path, ForkJoinPool pool) {
+    Objects.requireNonNull(pool, "pool must not be null");
     String filename = path.toAbsolutePath().toString();
     if (Files.notExists(path)) {
       throw new IllegalArgumentException("Could not find portfolio file: " + filename);
     }
-    String base64Data = gzipBase64(path);
+    String base64Data = gzipBase64(path, new ParallelGzip(pool, ParallelGzip.DEFAULT_BLOCK_SIZE));
     return new PortfolioDataFile(filename + ".gz.base64", base64Data);
   }
 
+  /**
+   * Obtains an instance from a file, encoding the data while it is sent.
+   * <p>
+   * The file is compressed using GZIP, and sent to the server using Base-64, as per {@link #of(Path)}.
+   * Rather than being held in memory, the data is compressed and encoded while the request is written
+   * to the network, so a large file can be sent using little memory. The file is compressed once by
+   * this method, to find the length of the data, and again each time the data is sent.
+   * The file must not be changed while the instance is in use.
+   * <p>
+   * The instance is equal to one returned by {@link #of(Path)} for the same file.
+   * Calling {@link #getData()} encodes the whole file in memory, so should be avoided for large files.
+   *
+   * @param path the file
+   * @return the instance
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public static PortfolioDataFile ofStreamed(Path path) {
+    return ofStreamed(path, PortfolioCompression.standard());
+  }
+
+  /**
+   * Obtains an instance from a file, encoding the data while it is sent using the specified compression.
+   * <p>
+   * The file is compressed as per {@link #of(Path, PortfolioCompression)}, and streamed as per {@link #ofStreamed(Path)}.
+   * The instance is equal to one returned by {@code of(Path, PortfolioCompression)} for the same file and compression.
+   *
+   * @param path the file
+   * @param compression the compression
+   * @return the instance
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public static PortfolioDataFile ofStreamed(Path path, PortfolioCompression compression) {
+    Objects.requireNonNull(compression, "compression must not be null");
+    String filename = path.toAbsolutePath().toString();
+    if (Files.notExists(path)) {
+      throw new IllegalArgumentException("Could not find portfolio file: " + filename);
+    }
+    return new PortfolioDataFile(filename + ".gz.base64", StreamedPortfolioData.of(path, compression));
+  }
+
+  /**
+   * Obtains an instance whose data is written from the source as it is sent.
+   *
+   * @param name the name of the file
+   * @param source the source of the data
+   * @return the instance
+   */
+  static PortfolioDataFile ofSource(String name, PortfolioDataSource source) {
+    Objects.requireNonNull(name, "name must not be null");
+    Objects.requireNonNull(source, "source must not be null");
+    return new PortfolioDataFile(name, source);
+  }
+
   /**
    * Obtains an instance by combining a list of files.
    * <p>
@@ -108,6 +248,124 @@ public final class PortfolioDataFile implements ImmutableBean {
     return new PortfolioDataFile("JavaSDK.zip.base64", base64Data);
   }
 
+  @ImmutableConstructor
+  private PortfolioDataFile(String name, String data) {
+    JodaBeanUtils.notNull(name, "name");
+    JodaBeanUtils.notNull(data, "data");
+    this.name = name;
+    this.data = data;
+    this.source = null;
+  }
+
+  // creates an instance whose data is streamed from the source
+  private PortfolioDataFile(String name, PortfolioDataSource source) {
+    this.name = name;
+    this.data = null;
+    this.source = source;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the portfolio data.
+   * <p>
+   * If the data is streamed, such as from a file, it is encoded in memory each time this is called.
+   *
+   * @return the value of the property, not null
+   * @throws UncheckedIOException if the data is streamed and an IO error occurs
+   */
+  public String getData() {
+    return source != null ? source.encode() : data;
+  }
+
+  /**
+   * Checks if the data is streamed, rather than held in memory as a single string.
+   *
+   * @return true if the data is streamed
+   */
+  boolean isStreamed() {
+    return source != null;
+  }
+
+  /**
+   * Gets the length of the data, without encoding it if streamed.
+   *
+   * @return the length of the data
+   */
+  long getDataLength() {
+    return source != null ? source.length() : data.length();
+  }
+
+  /**
+   * Writes the data to the sink, encoding it while writing if streamed.
+   * <p>
+   * The data is written as is, without any escaping.
+   *
+   * @param sink the sink to write to
+   * @throws IOException if an IO error occurs
+   */
+  void writeData(BufferedSink sink) throws IOException {
+    if (source != null) {
+      source.writeTo(sink);
+    } else {
+      MarginCalcRequestBody.writeChunked(sink, data);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // the data is compared in full only if the names and lengths match, as it may be streamed
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj != null && obj.getClass() == this.getClass()) {
+      PortfolioDataFile other = (PortfolioDataFile) obj;
+      return name.equals(other.name) &&
+          getDataLength() == other.getDataLength() &&
+          dataEquals(other);
+    }
+    return false;
+  }
+
+  // compares the data, using a digest where either is streamed, so that it is not encoded in memory
+  private boolean dataEquals(PortfolioDataFile other) {
+    if (source == null && other.source == null) {
+      return data.equals(other.data);
+    }
+    return dataDigest().equals(other.dataDigest());
+  }
+
+  // hashes the data as it is written
+  private ByteString dataDigest() {
+    HashingSink hashing = HashingSink.sha256(Okio.blackhole());
+    try (BufferedSink sink = Okio.buffer(hashing)) {
+      writeData(sink);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return hashing.hash();
+  }
+
+  // the length of the data is used, as the data may be streamed
+  @Override
+  public int hashCode() {
+    int hash = getClass().hashCode();
+    hash = hash * 31 + name.hashCode();
+    hash = hash * 31 + Long.hashCode(getDataLength());
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buf = new StringBuilder(96);
+    buf.append("PortfolioDataFile{");
+    buf.append("name").append('=').append(name).append(',').append(' ');
+    buf.append("data").append('=').append(source != null ? "<streamed>" : JodaBeanUtils.toString(data));
+    buf.append('}');
+    return buf.toString();
+  }
+
+  //-------------------------------------------------------------------------
   /**
    * Convert input to bytes using UTF-8, gzip it, then base-64 it.
    *
@@ -135,17 +393,40 @@ public final class PortfolioDataFile implements ImmutableBean {
    * Gzips the input then base-64 it.
    *
    * @param path the input data file, as an instance of {@link Path}
+   * @param in the content of the file
+   * @param compression the compression
    * @return the compressed output, as a String
    */
-  private static String gzipBase64(Path path) {
+  private static String gzipBase64(Path path, InputStream in, PortfolioCompression compression) {
     try {
       long size = Files.size(path) / 4 + 1;
       int initialSize = size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
       try (ByteArrayOutputStream baos = new ByteArrayOutputStream(initialSize)) {
         try (OutputStream baseos = Base64.getEncoder().wrap(baos)) {
-          try (GZIPOutputStream zos = new GZIPOutputStream(baseos)) {
-            Files.copy(path, zos);
-          }
+          compression.compress(in, baseos);
+        }
+        return baos.toString("ISO-8859-1");  // base-64 bytes are ASCII, so this is optimal
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to gzip base-64 content", ex);
+    }
+  }
+
+  /**
+   * Gzips the input using several threads then base-64 it.
+   *
+   * @param path the input data file, as an instance of {@link Path}
+   * @param gzip the compressor
+   * @return the compressed output, as a String
+   */
+  static String gzipBase64(Path path, ParallelGzip gzip) {
+    try {
+      long size = Files.size(path) / 4 + 1;
+      int initialSize = size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+      try (ByteArrayOutputStream baos = new ByteArrayOutputStream(initialSize)) {
+        try (OutputStream baseos = Base64.getEncoder().wrap(baos);
+            InputStream in = Files.newInputStream(path)) {
+          gzip.compress(in, baseos);
         }
         return baos.toString("ISO-8859-1");  // base-64 bytes are ASCII, so this is optimal
       }
@@ -196,15 +477,6 @@ public final class PortfolioDataFile implements ImmutableBean {
     MetaBean.register(PortfolioDataFile.Meta.INSTANCE);
   }
 
-  private PortfolioDataFile(
-      String name,
-      String data) {
-    JodaBeanUtils.notNull(name, "name");
-    JodaBeanUtils.notNull(data, "data");
-    this.name = name;
-    this.data = data;
-  }
-
   @Override
   public MetaBean metaBean() {
     return PortfolioDataFile.Meta.INSTANCE;
@@ -219,47 +491,6 @@ public final class PortfolioDataFile implements ImmutableBean {
     return name;
   }
 
-  //-----------------------------------------------------------------------
-  /**
-   * Gets the portfolio data.
-   * @return the value of the property, not null
-   */
-  public String getData() {
-    return data;
-  }
-
-  //-----------------------------------------------------------------------
-  @Override
-  public boolean equals(Object obj) {
-    if (obj == this) {
-      return true;
-    }
-    if (obj != null && obj.getClass() == this.getClass()) {
-      PortfolioDataFile other = (PortfolioDataFile) obj;
-      return JodaBeanUtils.equal(name, other.name) &&
-          JodaBeanUtils.equal(data, other.data);
-    }
-    return false;
-  }
-
-  @Override
-  public int hashCode() {
-    int hash = getClass().hashCode();
-    hash = hash * 31 + JodaBeanUtils.hashCode(name);
-    hash = hash * 31 + JodaBeanUtils.hashCode(data);
-    return hash;
-  }
-
-  @Override
-  public String toString() {
-    StringBuilder buf = new StringBuilder(96);
-    buf.append("PortfolioDataFile{");
-    buf.append("name").append('=').append(name).append(',').append(' ');
-    buf.append("data").append('=').append(JodaBeanUtils.toString(data));
-    buf.append('}');
-    return buf.toString();
-  }
-
   //-----------------------------------------------------------------------
   /**
    * The meta-bean for {@code PortfolioDataFile}.
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import okio.BufferedSink;
+
+/**
+ * Portfolio data that is written to the request as it is sent, rather than held as a single string.
+ * <p>
+ * The data is the Base-64 encoded portfolio file, so is ASCII.
+ * Implementations must be immutable, writing the same data each time.
+ */
+interface PortfolioDataSource {
+
+  /**
+   * Gets the length of the data.
+   * <p>
+   * As the data is Base-64, this is both the number of characters and the number of bytes in UTF-8.
+   *
+   * @return the length
+   */
+  long length();
+
+  /**
+   * Writes the data to the sink.
+   *
+   * @param sink  the sink to write to
+   * @throws IOException if an IO error occurs
+   */
+  void writeTo(BufferedSink sink) throws IOException;
+
+  /**
+   * Writes the data to a string in memory.
+   *
+   * @return the data
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  String encode();
+
+}
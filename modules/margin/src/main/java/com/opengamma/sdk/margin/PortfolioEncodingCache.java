@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.HashingSource;
+import okio.Okio;
+
+/**
+ * A cache of portfolio files, encoded ready to be sent to the service.
+ * <p>
+ * The same portfolio file is often sent many times, such as to several CCPs, or with different
+ * what-if trades. Rather than calling {@link PortfolioDataFile#of(Path)} each time, which reads and
+ * compresses the file again, the file can be obtained from this cache, which returns the instance
+ * encoded before if the file has not changed.
+ * <p>
+ * A file is identified by its absolute path and the compression used. The file is considered unchanged if
+ * its size and last modified time are unchanged, which is checked without reading the file.
+ * Where files may be rewritten within the resolution of the file system's modification time,
+ * the cache may be created to also verify a SHA-256 digest of the content. The file is then read
+ * on each request to compute the digest, but is only compressed if it has changed.
+ * <p>
+ * The cache is bounded by the estimated memory retained by the encoded files, evicting the least
+ * recently used first. Instances are thread-safe.
+ */
+public final class PortfolioEncodingCache {
+
+  /**
+   * The estimated memory retained by an entry, in addition to its data.
+   */
+  private static final long ENTRY_OVERHEAD = 256;
+
+  /** The maximum total weight. */
+  private final long maxWeight;
+  /** Whether the digest of the content is verified. */
+  private final boolean verifyContent;
+  /** The lock protecting the state. */
+  private final Lock lock = new ReentrantLock();
+  /** The entries, least recently used first. */
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  /** The total weight of the entries. */
+  private long weight;
+  /** The number of hits. */
+  private long hitCount;
+  /** The number of misses. */
+  private long missCount;
+  /** The number of entries evicted or replaced. */
+  private long evictionCount;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Creates a cache that identifies changed files by their size and last modified time.
+   *
+   * @param maxWeight  the maximum estimated memory retained by the encoded files, in bytes
+   * @return the cache
+   * @throws IllegalArgumentException if the maximum weight is not positive
+   */
+  public static PortfolioEncodingCache of(long maxWeight) {
+    return new PortfolioEncodingCache(maxWeight, false);
+  }
+
+  /**
+   * Creates a cache that identifies changed files by their size, last modified time and the digest of their content.
+   * <p>
+   * Each file is read when requested, to compute the digest, but is only compressed if it has changed.
+   *
+   * @param maxWeight  the maximum estimated memory retained by the encoded files, in bytes
+   * @return the cache
+   * @throws IllegalArgumentException if the maximum weight is not positive
+   */
+  public static PortfolioEncodingCache verifyingContent(long maxWeight) {
+    return new PortfolioEncodingCache(maxWeight, true);
+  }
+
+  private PortfolioEncodingCache(long maxWeight, boolean verifyContent) {
+    if (maxWeight <= 0) {
+      throw new IllegalArgumentException("Maximum weight must be positive");
+    }
+    this.maxWeight = maxWeight;
+    this.verifyContent = verifyContent;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the encoded file, compressed as per {@link PortfolioDataFile#of(Path)}.
+   *
+   * @param path  the file
+   * @return the encoded file, equal to that returned by {@code PortfolioDataFile.of(Path)}
+   * @throws IllegalArgumentException if the file does not exist
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public PortfolioDataFile get(Path path) {
+    return get(path, PortfolioCompression.standard());
+  }
+
+  /**
+   * Gets the encoded file, compressed as per {@link PortfolioDataFile#of(Path, PortfolioCompression)}.
+   * <p>
+   * If the file has not changed since it was last encoded using the compression, the same instance is returned.
+   * Otherwise, the file is read and compressed, and the result cached.
+   *
+   * @param path  the file
+   * @param compression  the compression
+   * @return the encoded file, equal to that returned by {@code PortfolioDataFile.of(Path, PortfolioCompression)}
+   * @throws IllegalArgumentException if the file does not exist
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  public PortfolioDataFile get(Path path, PortfolioCompression compression) {
+    Objects.requireNonNull(compression, "compression must not be null");
+    Path absolute = path.toAbsolutePath();
+    if (Files.notExists(absolute)) {
+      throw new IllegalArgumentException("Could not find portfolio file: " + absolute);
+    }
+    try {
+      Key key = new Key(absolute, compression);
+      // the attributes are read before the content, so a change while reading results in a later miss
+      BasicFileAttributes attributes = Files.readAttributes(absolute, BasicFileAttributes.class);
+      Entry cached = lookup(key);
+      if (cached != null && cached.matches(attributes) && (!verifyContent || cached.digest.equals(digest(absolute)))) {
+        recordHit();
+        return cached.file;
+      }
+      if (!verifyContent) {
+        return put(key, attributes, PortfolioDataFile.of(absolute, compression), null);
+      }
+      // the digest is computed as the file is read to be compressed
+      try (HashingSource hashing = HashingSource.sha256(Okio.source(absolute));
+          InputStream in = Okio.buffer(hashing).inputStream()) {
+        PortfolioDataFile file = PortfolioDataFile.of(absolute, in, compression);
+        return put(key, attributes, file, hashing.hash());
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to gzip base-64 content", ex);
+    }
+  }
+
+  /**
+   * Gets the statistics of the cache.
+   *
+   * @return the statistics
+   */
+  public EncodingCacheStats getStats() {
+    lock.lock();
+    try {
+      return EncodingCacheStats.of(hitCount, missCount, evictionCount, entries.size(), weight);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // finds the entry for the key, marking it as recently used
+  private Entry lookup(Key key) {
+    lock.lock();
+    try {
+      return entries.get(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // computes the digest of the content of the file
+  private static ByteString digest(Path path) throws IOException {
+    try (HashingSource hashing = HashingSource.sha256(Okio.source(path));
+        BufferedSource source = Okio.buffer(hashing)) {
+      source.readAll(Okio.blackhole());
+      return hashing.hash();
+    }
+  }
+
+  private void recordHit() {
+    lock.lock();
+    try {
+      hitCount++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // caches the newly encoded file, recording a miss, and returns it
+  private PortfolioDataFile put(Key key, BasicFileAttributes attributes, PortfolioDataFile file, ByteString digest) {
+    // a char of the data may occupy two bytes
+    long entryWeight = file.getDataLength() * 2 + file.getName().length() * 2L + ENTRY_OVERHEAD;
+    lock.lock();
+    try {
+      missCount++;
+      Entry previous = entries.remove(key);
+      if (previous != null) {
+        weight -= previous.weight;
+        evictionCount++;
+      }
+      if (entryWeight > maxWeight) {
+        return file;
+      }
+      entries.put(key, new Entry(file, attributes.size(), attributes.lastModifiedTime(), digest, entryWeight));
+      weight += entryWeight;
+      Iterator<Entry> it = entries.values().iterator();
+      while (weight > maxWeight && it.hasNext()) {
+        Entry entry = it.next();
+        it.remove();
+        weight -= entry.weight;
+        evictionCount++;
+      }
+      return file;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // the key of an entry
+  private static final class Key {
+    /** The absolute path of the file. */
+    private final Path path;
+    /** The compression. */
+    private final PortfolioCompression compression;
+
+    private Key(Path path, PortfolioCompression compression) {
+      this.path = path;
+      this.compression = compression;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (obj instanceof Key) {
+        Key other = (Key) obj;
+        return path.equals(other.path) && compression == other.compression;
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return path.hashCode() * 31 + compression.hashCode();
+    }
+  }
+
+  // an encoded file
+  private static final class Entry {
+    /** The encoded file. */
+    private final PortfolioDataFile file;
+    /** The size of the file when encoded. */
+    private final long size;
+    /** The last modified time of the file when encoded. */
+    private final FileTime lastModified;
+    /** The digest of the content, null if not verified. */
+    private final ByteString digest;
+    /** The estimated memory retained. */
+    private final long weight;
+
+    private Entry(PortfolioDataFile file, long size, FileTime lastModified, ByteString digest, long weight) {
+      this.file = file;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.digest = digest;
+      this.weight = weight;
+    }
+
+    // checks if the file has the same size and last modified time
+    private boolean matches(BasicFileAttributes attributes) {
+      return attributes.size() == size && attributes.lastModifiedTime().equals(lastModified);
+    }
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Base64;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Portfolio data that is encoded from a file each time it is written.
+ * <p>
+ * The file is compressed using GZIP and encoded using Base-64 as it is written to the sink,
+ * so the encoded data is never held in memory. The encoding is deterministic, so the length of the data
+ * is found once, when created, by encoding the file and discarding the output.
+ * <p>
+ * The size and modification time of the file are recorded when the length is found.
+ * If either has changed when the data is written, the write fails rather than sending data of the wrong length.
+ */
+final class StreamedPortfolioData implements PortfolioDataSource {
+
+  /** The file. */
+  private final Path path;
+  /** The compression. */
+  private final PortfolioCompression compression;
+  /** The size of the file when measured. */
+  private final long size;
+  /** The modification time of the file when measured. */
+  private final FileTime lastModified;
+  /** The length of the encoded data. */
+  private final long length;
+
+  //-------------------------------------------------------------------------
+  /**
+   * Obtains an instance, encoding the file to find the length of the data.
+   *
+   * @param path  the file
+   * @param compression  the compression
+   * @return the instance
+   * @throws UncheckedIOException if an IO error occurs
+   */
+  static StreamedPortfolioData of(Path path, PortfolioCompression compression) {
+    try {
+      long size = Files.size(path);
+      FileTime lastModified = Files.getLastModifiedTime(path);
+      long length = encode(path, compression, Okio.buffer(Okio.blackhole()));
+      StreamedPortfolioData data = new StreamedPortfolioData(path, compression, size, lastModified, length);
+      data.checkUnchanged();
+      return data;
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to gzip base-64 content", ex);
+    }
+  }
+
+  private StreamedPortfolioData(Path path, PortfolioCompression compression, long size, FileTime lastModified, long length) {
+    this.path = path;
+    this.compression = compression;
+    this.size = size;
+    this.lastModified = lastModified;
+    this.length = length;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public long length() {
+    return length;
+  }
+
+  // the data is written in small chunks as it is encoded, failing if the file has changed since it was measured
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    checkUnchanged();
+    long written = encode(path, compression, sink);
+    if (written != length) {
+      throw new IOException("Portfolio file changed while being sent: " + path.toAbsolutePath());
+    }
+  }
+
+  @Override
+  public String encode() {
+    Buffer buffer = new Buffer();
+    try {
+      writeTo(buffer);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Failed to gzip base-64 content", ex);
+    }
+    return buffer.readUtf8();
+  }
+
+  //-------------------------------------------------------------------------
+  // checks that the file has not changed since it was measured
+  private void checkUnchanged() throws IOException {
+    if (Files.size(path) != size || !Files.getLastModifiedTime(path).equals(lastModified)) {
+      throw new IOException("Portfolio file has changed since it was measured: " + path.toAbsolutePath());
+    }
+  }
+
+  // compresses and encodes the file, returning the number of characters written
+  private static long encode(Path path, PortfolioCompression compression, BufferedSink sink) throws IOException {
+    Base64Output out = new Base64Output(sink);
+    try (InputStream in = Files.newInputStream(path)) {
+      compression.compress(in, out);
+    }
+    return out.finish();
+  }
+
+  //-------------------------------------------------------------------------
+  // encodes the bytes written using Base-64, writing each whole group of three bytes to the sink as it arrives
+  private static final class Base64Output extends OutputStream {
+    /** The sink. */
+    private final BufferedSink sink;
+    /** The bytes not yet encoded. */
+    private final Buffer pending = new Buffer();
+    /** The number of characters written. */
+    private long written;
+
+    private Base64Output(BufferedSink sink) {
+      this.sink = sink;
+    }
+
+    @Override
+    public void write(int b) {
+      pending.writeByte(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      pending.write(bytes, offset, length);
+      // only whole groups of three bytes are encoded until the end, so no padding is written
+      encode(pending.size() - pending.size() % 3);
+    }
+
+    // encodes the remaining bytes, returning the number of characters written
+    private long finish() throws IOException {
+      encode(pending.size());
+      return written;
+    }
+
+    private void encode(long byteCount) throws IOException {
+      if (byteCount > 0) {
+        byte[] encoded = Base64.getEncoder().encode(pending.readByteArray(byteCount));
+        sink.write(encoded);
+        written += encoded.length;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test {@link BulkCalculation}.
+ */
+@Test
+public class BulkCalculationTest {
+
+  private static final LocalDate VAL_DATE = LocalDate.of(2017, 6, 1);
+  private static final MarginCalcResult COMPLETED = MarginCalcResult.of(
+      MarginCalcResultStatus.COMPLETED,
+      Collections.singleton(MarginCalcType.MARGIN),
+      MarginCalcMode.SPOT,
+      VAL_DATE,
+      "GBP",
+      "GBP",
+      true,
+      Collections.emptyList(),
+      null,
+      null,
+      null,
+      Collections.emptyList());
+
+  private ScheduledExecutorService executor;
+
+  @BeforeMethod
+  public void setUp() {
+    executor = Executors.newScheduledThreadPool(4);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_run_boundedConcurrency() throws Exception {
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    Map<Ccp, AtomicInteger> inFlightByCcp = new EnumMap<>(Ccp.class);
+    Map<Ccp, AtomicInteger> maxInFlightByCcp = new EnumMap<>(Ccp.class);
+    for (Ccp ccp : Ccp.values()) {
+      inFlightByCcp.put(ccp, new AtomicInteger());
+      maxInFlightByCcp.put(ccp, new AtomicInteger());
+    }
+    Function<MarginCalcJob, CompletableFuture<MarginCalcResult>> calculateFn = job -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      Ccp ccp = job.getCcp();
+      maxInFlightByCcp.get(ccp).accumulateAndGet(inFlightByCcp.get(ccp).incrementAndGet(), Math::max);
+      CompletableFuture<MarginCalcResult> future = new CompletableFuture<>();
+      executor.schedule(() -> {
+        inFlight.decrementAndGet();
+        inFlightByCcp.get(ccp).decrementAndGet();
+        future.complete(COMPLETED);
+      }, 2, MILLISECONDS);
+      return future;
+    };
+
+    // most jobs are for one CCP, which must not hold up the others
+    List<MarginCalcJob> jobs = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      jobs.add(job(i % 10 == 0 ? Ccp.EUREX : Ccp.LCH));
+    }
+    ConcurrentLinkedQueue<MarginCalcJobResult> results = new ConcurrentLinkedQueue<>();
+    BulkCalculation.run(jobs, calculateFn, 8, 5, results::add).get(30, SECONDS);
+
+    assertEquals(results.size(), 300);
+    assertTrue(results.stream().allMatch(MarginCalcJobResult::isSuccess));
+    assertTrue(maxInFlight.get() <= 8);
+    assertEquals(maxInFlightByCcp.get(Ccp.LCH).get(), 5);
+    assertTrue(maxInFlightByCcp.get(Ccp.EUREX).get() <= 5);
+  }
+
+  public void test_run_failuresIsolated() throws Exception {
+    MarginException serviceFailure = new MarginException("Invalid portfolio", 400, "Invalid", "Invalid");
+    AtomicInteger count = new AtomicInteger();
+    Function<MarginCalcJob, CompletableFuture<MarginCalcResult>> calculateFn = job -> {
+      CompletableFuture<MarginCalcResult> future = new CompletableFuture<>();
+      switch (count.incrementAndGet()) {
+        case 1:
+          future.completeExceptionally(serviceFailure);
+          break;
+        case 2:
+          future.completeExceptionally(new UncheckedIOException(new IOException("Connection reset")));
+          break;
+        case 3:
+          throw new IllegalStateException("Unable to start");
+        default:
+          future.complete(COMPLETED);
+      }
+      return future;
+    };
+
+    List<MarginCalcJobResult> results = Collections.synchronizedList(new ArrayList<>());
+    BulkCalculation.run(jobs(5), calculateFn, 1, 1, results::add).get(30, SECONDS);
+
+    assertEquals(results.size(), 5);
+    assertEquals(results.get(0).getFailure().get(), serviceFailure);
+    assertTrue(results.get(1).getFailure().get().getCause() instanceof UncheckedIOException);
+    assertTrue(results.get(2).getFailure().get().getCause() instanceof IllegalStateException);
+    assertFalse(results.get(2).getResult().isPresent());
+    assertEquals(results.get(3).getResult().get(), COMPLETED);
+    assertEquals(results.get(4).getResult().get(), COMPLETED);
+  }
+
+  public void test_run_consumerFailure() throws Exception {
+    List<MarginCalcJobResult> results = Collections.synchronizedList(new ArrayList<>());
+    CompletableFuture<Void> future = BulkCalculation.run(
+        jobs(3),
+        job -> CompletableFuture.completedFuture(COMPLETED),
+        1,
+        1,
+        result -> {
+          results.add(result);
+          throw new IllegalStateException("Consumer failed");
+        });
+
+    ExecutionException ex = expectThrows(ExecutionException.class, () -> future.get(30, SECONDS));
+    assertTrue(ex.getCause() instanceof IllegalStateException);
+    assertEquals(results.size(), 3);
+  }
+
+  public void test_run_cancel() throws Exception {
+    List<CompletableFuture<MarginCalcResult>> started = Collections.synchronizedList(new ArrayList<>());
+    CompletableFuture<Void> future = BulkCalculation.run(jobs(10), job -> {
+      CompletableFuture<MarginCalcResult> calc = new CompletableFuture<>();
+      started.add(calc);
+      return calc;
+    }, 3, 3, result -> {
+      throw new AssertionError("No results expected");
+    });
+
+    assertEquals(started.size(), 3);
+    future.cancel(true);
+    assertTrue(started.stream().allMatch(CompletableFuture::isCancelled));
+    assertEquals(started.size(), 3);
+  }
+
+  public void test_run_empty() throws Exception {
+    BulkCalculation.run(Collections.emptyList(), job -> null, 1, 1, result -> { }).get(1, SECONDS);
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_iterate_startsJobsAsConsumed() throws Exception {
+    List<CompletableFuture<MarginCalcResult>> started = Collections.synchronizedList(new ArrayList<>());
+    Iterator<MarginCalcJobResult> it = BulkCalculation.iterate(jobs(5), job -> {
+      CompletableFuture<MarginCalcResult> calc = new CompletableFuture<>();
+      started.add(calc);
+      return calc;
+    }, 2, 2);
+
+    assertEquals(started.size(), 2);
+    started.get(1).complete(COMPLETED);
+    started.get(0).complete(COMPLETED);
+    // the results are waiting to be consumed, so no further jobs start
+    assertEquals(started.size(), 2);
+    assertTrue(it.hasNext());
+    assertTrue(it.next().isSuccess());
+    assertEquals(started.size(), 3);
+    assertTrue(it.next().isSuccess());
+    assertEquals(started.size(), 4);
+    started.get(2).completeExceptionally(new MarginException("Failed", "Invalid"));
+    started.get(3).complete(COMPLETED);
+    assertFalse(it.next().isSuccess());
+    assertTrue(it.next().isSuccess());
+    assertEquals(started.size(), 5);
+    started.get(4).complete(COMPLETED);
+    assertTrue(it.next().isSuccess());
+    assertFalse(it.hasNext());
+  }
+
+  //-------------------------------------------------------------------------
+  private static List<MarginCalcJob> jobs(int count) {
+    List<MarginCalcJob> jobs = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      jobs.add(job(Ccp.LCH));
+    }
+    return jobs;
+  }
+
+  private static MarginCalcJob job(Ccp ccp) {
+    return MarginCalcJob.of(ccp, MarginCalcRequest.of(VAL_DATE, "GBP", Collections.emptyList()));
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.common.auth.Credentials;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Test {@link CalculationJanitor}.
+ */
+@Test
+public class CalculationJanitorTest {
+
+  private ScheduledExecutorService executor;
+  private ServiceInvoker invoker;
+
+  @BeforeMethod
+  public void setUp() {
+    executor = Executors.newScheduledThreadPool(4);
+    invoker = ServiceInvoker.builder(Credentials.ofApiKey("user", "password"))
+        .serviceUrl(HttpUrl.parse("http://localhost/"))
+        .executorService(executor)
+        .authClientFactory(inv -> new TestingAuthClient())
+        .build();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_manyDeletes_boundedConcurrency() throws Exception {
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    Map<String, AtomicInteger> deleteCounts = new ConcurrentHashMap<>();
+    CalculationJanitor janitor = new CalculationJanitor(invoker, (ccp, calcId) -> {
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+      deleteCounts.computeIfAbsent(calcId, id -> new AtomicInteger()).incrementAndGet();
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      executor.schedule(() -> {
+        inFlight.decrementAndGet();
+        future.complete(null);
+      }, 1, MILLISECONDS);
+      return future;
+    });
+
+    for (int i = 0; i < 500; i++) {
+      janitor.delete(Ccp.LCH, Integer.toString(i));
+    }
+    assertEquals(janitor.drain(Duration.ofSeconds(30)), Collections.emptyList());
+    assertEquals(janitor.outstandingCount(), 0);
+    assertEquals(deleteCounts.size(), 500);
+    assertTrue(deleteCounts.values().stream().allMatch(count -> count.get() == 1));
+    assertTrue(maxInFlight.get() <= CalculationJanitor.MAX_CONCURRENT_DELETES);
+  }
+
+  public void test_retry() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    CalculationJanitor janitor = new CalculationJanitor(invoker, (ccp, calcId) -> {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      if (attempts.incrementAndGet() == 1) {
+        future.completeExceptionally(new UncheckedIOException(new IOException("Connection reset")));
+      } else if (attempts.get() == 2) {
+        future.completeExceptionally(new MarginException("Error", 503, "Unavailable", "Unavailable"));
+      } else {
+        future.complete(null);
+      }
+      return future;
+    });
+
+    janitor.delete(Ccp.LCH, "1");
+    assertEquals(janitor.drain(Duration.ofSeconds(5)), Collections.emptyList());
+    assertEquals(attempts.get(), 3);
+  }
+
+  public void test_retry_limited() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    CalculationJanitor janitor = new CalculationJanitor(invoker, (ccp, calcId) -> {
+      attempts.incrementAndGet();
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      future.completeExceptionally(new MarginException("Error", 500, "Error", "Error"));
+      return future;
+    });
+
+    janitor.delete(Ccp.LCH, "1");
+    assertEquals(janitor.drain(Duration.ofSeconds(5)), Collections.emptyList());
+    assertEquals(attempts.get(), CalculationJanitor.MAX_ATTEMPTS);
+  }
+
+  public void test_noRetry_clientError() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    CalculationJanitor janitor = new CalculationJanitor(invoker, (ccp, calcId) -> {
+      attempts.incrementAndGet();
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      future.completeExceptionally(new MarginException("Error", calcId.equals("1") ? 404 : 400, "Error", "Error"));
+      return future;
+    });
+
+    janitor.delete(Ccp.LCH, "1");
+    janitor.delete(Ccp.LCH, "2");
+    assertEquals(janitor.drain(Duration.ofSeconds(5)), Collections.emptyList());
+    assertEquals(attempts.get(), 2);
+  }
+
+  public void test_drain_reportsLeaked() throws Exception {
+    CalculationJanitor janitor = new CalculationJanitor(invoker, (ccp, calcId) -> new CompletableFuture<>());
+
+    janitor.delete(Ccp.LCH, "1");
+    janitor.delete(Ccp.LCH, "2");
+    long start = System.nanoTime();
+    assertEquals(new HashSet<>(janitor.drain(Duration.ofMillis(100))), new HashSet<>(Arrays.asList("1", "2")));
+    assertTrue(System.nanoTime() - start < SECONDS.toNanos(5));
+  }
+
+  public void test_invokerCloseDrains() throws Exception {
+    CompletableFuture<Void> deleted = new CompletableFuture<>();
+    CalculationJanitor janitor = new CalculationJanitor(invoker, (ccp, calcId) -> deleted);
+
+    janitor.delete(Ccp.LCH, "1");
+    executor.schedule(() -> deleted.complete(null), 100, MILLISECONDS);
+    invoker.close();
+    assertTrue(deleted.isDone());
+    assertEquals(janitor.outstandingCount(), 0);
+  }
+
+}
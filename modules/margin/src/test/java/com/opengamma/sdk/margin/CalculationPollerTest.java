@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.sdk.common.PollingStrategy;
+
+/**
+ * Test {@link CalculationPoller}.
+ */
+@Test
+public class CalculationPollerTest {
+
+  private static final PollingStrategy STRATEGY = PollingStrategy.fixed(Duration.ofMillis(20));
+  private static final MarginCalcResult PENDING = result(MarginCalcResultStatus.PENDING);
+  private static final MarginCalcResult COMPLETED = result(MarginCalcResultStatus.COMPLETED);
+
+  private ScheduledExecutorService executor;
+
+  @BeforeMethod
+  public void setUp() {
+    executor = Executors.newScheduledThreadPool(4);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_manyCalculations_boundedConcurrency() throws Exception {
+    int maxConcurrent = 8;
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    Map<String, AtomicInteger> pollCounts = new ConcurrentHashMap<>();
+    CalculationPoller poller = new CalculationPoller(executor, (ccp, calcId) -> {
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+      int count = pollCounts.computeIfAbsent(calcId, id -> new AtomicInteger()).incrementAndGet();
+      CompletableFuture<Polled<MarginCalcResult>> future = new CompletableFuture<>();
+      executor.schedule(() -> {
+        inFlight.decrementAndGet();
+        future.complete(new Polled<>(count < 3 ? PENDING : COMPLETED, Optional.empty()));
+      }, 1, MILLISECONDS);
+      return future;
+    }, maxConcurrent);
+
+    List<CompletableFuture<MarginCalcResult>> futures = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      futures.add(poller.poll(Ccp.LCH, Integer.toString(i), STRATEGY.start("LCH"), 0));
+    }
+    for (CompletableFuture<MarginCalcResult> future : futures) {
+      assertEquals(future.get(30, SECONDS).getStatus(), MarginCalcResultStatus.COMPLETED);
+    }
+    assertEquals(pollCounts.size(), 2000);
+    assertTrue(pollCounts.values().stream().allMatch(count -> count.get() == 3));
+    assertTrue(maxInFlight.get() <= maxConcurrent);
+    assertEquals(poller.pendingCount(), 0);
+  }
+
+  public void test_pollError() {
+    CalculationPoller poller = new CalculationPoller(executor, (ccp, calcId) -> {
+      throw new MarginException("Failed", "Failed");
+    }, 1);
+
+    CompletableFuture<MarginCalcResult> future = poller.poll(Ccp.LCH, "1", STRATEGY.start("LCH"), 0);
+    CompletionException ex = expectThrows(CompletionException.class, () -> future.join());
+    assertTrue(ex.getCause() instanceof MarginException);
+    assertEquals(poller.pendingCount(), 0);
+  }
+
+  public void test_cancelStopsPolling() throws Exception {
+    AtomicInteger polls = new AtomicInteger();
+    CalculationPoller poller = new CalculationPoller(executor, (ccp, calcId) -> {
+      polls.incrementAndGet();
+      return CompletableFuture.completedFuture(new Polled<>(PENDING, Optional.empty()));
+    }, 1);
+
+    CompletableFuture<MarginCalcResult> future = poller.poll(Ccp.LCH, "1", STRATEGY.start("LCH"), 0);
+    while (polls.get() == 0) {
+      Thread.sleep(5);
+    }
+    future.cancel(true);
+    Thread.sleep(100);
+    int pollsAfterCancel = polls.get();
+    Thread.sleep(100);
+    assertEquals(polls.get(), pollsAfterCancel);
+    assertEquals(poller.pendingCount(), 0);
+  }
+
+  public void test_cancelCancelsPollInProgress() throws Exception {
+    CompletableFuture<Polled<MarginCalcResult>> inProgress = new CompletableFuture<>();
+    CountDownLatch started = new CountDownLatch(1);
+    CalculationPoller poller = new CalculationPoller(executor, (ccp, calcId) -> {
+      started.countDown();
+      return inProgress;
+    }, 1);
+
+    CompletableFuture<MarginCalcResult> future = poller.poll(Ccp.LCH, "1", STRATEGY.start("LCH"), 0);
+    assertTrue(started.await(5, SECONDS));
+    future.cancel(true);
+    // the poll may be cancelled just after it is published by the poller
+    expectThrows(CancellationException.class, () -> inProgress.get(5, SECONDS));
+    long start = System.nanoTime();
+    while (poller.pendingCount() > 0 && System.nanoTime() - start < SECONDS.toNanos(5)) {
+      Thread.sleep(5);
+    }
+    assertEquals(poller.pendingCount(), 0);
+  }
+
+  public void test_invalidConcurrency() {
+    assertThrows(IllegalArgumentException.class, () -> new CalculationPoller(executor, (ccp, calcId) -> null, 0));
+  }
+
+  //-------------------------------------------------------------------------
+  private static MarginCalcResult result(MarginCalcResultStatus status) {
+    return MarginCalcResult.of(
+        status,
+        Collections.singleton(MarginCalcType.MARGIN),
+        MarginCalcMode.SPOT,
+        LocalDate.of(2017, 6, 1),
+        "GBP",
+        "GBP",
+        true,
+        Collections.emptyList(),
+        null,
+        null,
+        null,
+        Collections.emptyList());
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Optional;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * Test {@link CalculationStatusScanner}.
+ */
+@Test
+public class CalculationStatusScannerTest {
+
+  @DataProvider(name = "json")
+  Object[][] data_json() {
+    return new Object[][] {
+        {"{\"status\":\"PENDING\",\"x\":1}", MarginCalcResultStatus.PENDING},
+        {" { \"status\" : \"COMPLETED\" } ", MarginCalcResultStatus.COMPLETED},
+        {"{\"a\":1.5e3,\"b\":true,\"c\":null,\"status\":\"PENDING\"}", MarginCalcResultStatus.PENDING},
+        {"{\"a\":{\"status\":\"COMPLETED\",\"b\":[1,{}]},\"status\":\"PENDING\"}", MarginCalcResultStatus.PENDING},
+        {"{\"a\":\"x\\\"}],\\\\\",\"status\":\"PENDING\"}", MarginCalcResultStatus.PENDING},
+        {"{\"aVeryLongPropertyNameThatIsNotRetainedInFull\":[],\"status\":\"PENDING\"}", MarginCalcResultStatus.PENDING},
+        {"{\"status\":\"UNKNOWN\"}", null},
+        {"{\"status\":1}", null},
+        {"{\"a\":1}", null},
+        {"{\"st\\u0061tus\":\"PENDING\"}", null},
+        {"[\"status\",\"PENDING\"]", null},
+        {"{\"status\":\"PEND", null},
+        {"", null},
+    };
+  }
+
+  @Test(dataProvider = "json")
+  public void test_scan(String json, MarginCalcResultStatus expected) throws Exception {
+    BufferedSource source = Okio.buffer((okio.Source) new Buffer().writeUtf8(json));
+    assertEquals(CalculationStatusScanner.scan(source), Optional.ofNullable(expected));
+    // nothing is consumed
+    assertEquals(source.readUtf8(), json);
+  }
+
+  public void test_scan_limit() throws Exception {
+    StringBuilder json = new StringBuilder("{\"a\":\"");
+    for (int i = 0; i < 20_000; i++) {
+      json.append('x');
+    }
+    json.append("\",\"status\":\"PENDING\"}");
+    BufferedSource source = Okio.buffer((okio.Source) new Buffer().writeUtf8(json.toString()));
+    assertEquals(CalculationStatusScanner.scan(source), Optional.empty());
+    assertEquals(source.readUtf8(), json.toString());
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import org.testng.annotations.Test;
+
+import okio.ByteString;
+
+/**
+ * Test {@link InFlightCalculations}.
+ */
+@Test
+public class InFlightCalculationsTest {
+
+  private static final ByteString KEY1 = ByteString.encodeUtf8("key1");
+  private static final ByteString KEY2 = ByteString.encodeUtf8("key2");
+  private static final MarginCalcResult RESULT = MarginCalcResult.of(
+      MarginCalcResultStatus.COMPLETED,
+      Collections.singleton(MarginCalcType.MARGIN),
+      MarginCalcMode.SPOT,
+      LocalDate.of(2017, 6, 1),
+      "GBP",
+      "GBP",
+      true,
+      Collections.emptyList(),
+      null,
+      null,
+      null,
+      Collections.emptyList());
+
+  //-------------------------------------------------------------------------
+  public void test_attach_shared() {
+    InFlightCalculations test = new InFlightCalculations();
+    Starter starter = new Starter();
+    CompletableFuture<MarginCalcResult> future1 = test.attach(KEY1, starter);
+    CompletableFuture<MarginCalcResult> future2 = test.attach(KEY1, starter);
+    CompletableFuture<MarginCalcResult> other = test.attach(KEY2, starter);
+    assertEquals(starter.calcs.size(), 2);
+    assertEquals(test.size(), 2);
+
+    starter.calcs.get(0).complete(RESULT);
+    assertSame(future1.join(), RESULT);
+    assertSame(future2.join(), RESULT);
+    assertFalse(other.isDone());
+    assertEquals(test.size(), 1);
+
+    // once finished, an identical request starts a new calculation
+    test.attach(KEY1, starter);
+    assertEquals(starter.calcs.size(), 3);
+  }
+
+  public void test_attach_failure() {
+    InFlightCalculations test = new InFlightCalculations();
+    Starter starter = new Starter();
+    CompletableFuture<MarginCalcResult> future1 = test.attach(KEY1, starter);
+    CompletableFuture<MarginCalcResult> future2 = test.attach(KEY1, starter);
+    starter.calcs.get(0).completeExceptionally(new MarginException("Failed", "Error"));
+    assertThrows(CompletionException.class, future1::join);
+    assertThrows(CompletionException.class, future2::join);
+    assertEquals(test.size(), 0);
+  }
+
+  public void test_attach_starterThrows() {
+    InFlightCalculations test = new InFlightCalculations();
+    CompletableFuture<MarginCalcResult> future = test.attach(KEY1, () -> {
+      throw new IllegalStateException();
+    });
+    assertThrows(CompletionException.class, future::join);
+    assertEquals(test.size(), 0);
+  }
+
+  public void test_cancel_referenceCounted() {
+    InFlightCalculations test = new InFlightCalculations();
+    Starter starter = new Starter();
+    CompletableFuture<MarginCalcResult> future1 = test.attach(KEY1, starter);
+    CompletableFuture<MarginCalcResult> future2 = test.attach(KEY1, starter);
+    CompletableFuture<MarginCalcResult> calc = starter.calcs.get(0);
+
+    future1.cancel(true);
+    assertFalse(calc.isDone());
+    CompletableFuture<MarginCalcResult> future3 = test.attach(KEY1, starter);
+    future2.cancel(true);
+    assertFalse(calc.isDone());
+    assertEquals(starter.calcs.size(), 1);
+
+    // the last caller leaving abandons the calculation
+    future3.cancel(true);
+    assertTrue(calc.isCancelled());
+    assertEquals(test.size(), 0);
+    test.attach(KEY1, starter);
+    assertEquals(starter.calcs.size(), 2);
+  }
+
+  //-------------------------------------------------------------------------
+  // records the calculations started
+  private static final class Starter implements Supplier<CompletableFuture<MarginCalcResult>> {
+    private final List<CompletableFuture<MarginCalcResult>> calcs = new ArrayList<>();
+
+    @Override
+    public CompletableFuture<MarginCalcResult> get() {
+      CompletableFuture<MarginCalcResult> calc = new CompletableFuture<>();
+      calcs.add(calc);
+      return calc;
+    }
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.joda.beans.ser.JodaBeanSer;
+import org.testng.annotations.Test;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Test {@link MarginCalcRequestBody}.
+ */
+@Test
+public class MarginCalcRequestBodyTest {
+
+  private static final LocalDate VAL_DATE = LocalDate.of(2017, 6, 1);
+  private static final PortfolioDataFile PORTFOLIO = PortfolioDataFile.of(Paths.get("src/test/resources/lch-trades.txt"));
+  private static final PortfolioDataFile PORTFOLIO2 = PortfolioDataFile.of("delta.txt", "a=b");
+
+  //-------------------------------------------------------------------------
+  public void test_matchesSerializer() throws Exception {
+    MarginCalcRequest request = MarginCalcRequest.of(VAL_DATE, "GBP", Arrays.asList(PORTFOLIO, PORTFOLIO2));
+    MarginCalcRequestBody test = MarginCalcRequestBody.of(request, JodaBeanSer.COMPACT);
+    String expected = JodaBeanSer.COMPACT.jsonWriter().write(request, false);
+    assertEquals(write(test), expected);
+    assertEquals(test.contentLength(), expected.length());
+    assertEquals(test.contentType().toString(), "application/json; charset=utf-8");
+  }
+
+  public void test_noPortfolioData() throws Exception {
+    MarginCalcRequest request = MarginCalcRequest.of(VAL_DATE, "GBP", Collections.emptyList());
+    MarginCalcRequestBody test = MarginCalcRequestBody.of(request, JodaBeanSer.COMPACT);
+    assertEquals(write(test), JodaBeanSer.COMPACT.jsonWriter().write(request, false));
+  }
+
+  public void test_escapedName() throws Exception {
+    MarginCalcRequest request = MarginCalcRequest.of(VAL_DATE, "GBP", Arrays.asList(PortfolioDataFile.of("a\"b\\c\n\u0001\u00e9", "a=b")));
+    MarginCalcRequestBody test = MarginCalcRequestBody.of(request, JodaBeanSer.COMPACT);
+    String json = write(test);
+    assertEquals(JodaBeanSer.COMPACT.jsonReader().read(json, MarginCalcRequest.class), request);
+    assertEquals(test.contentLength(), bytes(test).size());
+  }
+
+  public void test_surrogatesAcrossChunks() throws Exception {
+    // odd length prefix, so that a surrogate pair straddles the end of the first chunk
+    StringBuilder data = new StringBuilder("a");
+    for (int i = 0; i < 10_000; i++) {
+      data.append("\uD83D\uDE00");
+    }
+    PortfolioDataFile file = JodaBeanSer.COMPACT.jsonReader()
+        .read("{\"name\":\"emoji\",\"data\":\"" + data + "\"}", PortfolioDataFile.class);
+    MarginCalcRequest request = MarginCalcRequest.of(VAL_DATE, "GBP", Arrays.asList(file));
+    MarginCalcRequestBody test = MarginCalcRequestBody.of(request, JodaBeanSer.COMPACT);
+    assertEquals(write(test), JodaBeanSer.COMPACT.jsonWriter().write(request, false));
+    assertEquals(test.contentLength(), bytes(test).size());
+  }
+
+  public void test_withAdditionalFiles() throws Exception {
+    MarginCalcRequest request = MarginCalcRequest.of(VAL_DATE, "GBP", Collections.singletonList(PORTFOLIO));
+    List<PortfolioDataFile> combined = new ArrayList<>(request.getPortfolioData());
+    combined.add(PORTFOLIO2);
+    MarginCalcRequest combinedRequest = request.toBuilder().portfolioData(combined).build();
+
+    MarginCalcRequestBody base = MarginCalcRequestBody.of(request, JodaBeanSer.COMPACT);
+    MarginCalcRequestBody test = base.withAdditionalFiles(Collections.singletonList(PORTFOLIO2));
+    assertEquals(write(test), JodaBeanSer.COMPACT.jsonWriter().write(combinedRequest, false));
+    // the base body is unaffected
+    assertEquals(write(base), JodaBeanSer.COMPACT.jsonWriter().write(request, false));
+  }
+
+  public void test_withRequest() throws Exception {
+    List<PortfolioDataFile> files = Arrays.asList(PORTFOLIO, PORTFOLIO2);
+    MarginCalcRequestBody portfolio = MarginCalcRequestBody.ofPortfolioData(files);
+    MarginCalcRequest request1 = MarginCalcRequest.of(VAL_DATE, "GBP", files);
+    MarginCalcRequest request2 = MarginCalcRequest.of(VAL_DATE.plusDays(1), "EUR", files);
+
+    MarginCalcRequestBody test1 = portfolio.withRequest(request1, JodaBeanSer.COMPACT);
+    MarginCalcRequestBody test2 = portfolio.withRequest(request2, JodaBeanSer.COMPACT);
+    String expected1 = JodaBeanSer.COMPACT.jsonWriter().write(request1, false);
+    String expected2 = JodaBeanSer.COMPACT.jsonWriter().write(request2, false);
+    assertEquals(write(test1), expected1);
+    assertEquals(test1.contentLength(), expected1.length());
+    assertEquals(write(test2), expected2);
+    assertEquals(test2.contentLength(), expected2.length());
+  }
+
+  public void test_writtenRepeatedly() throws Exception {
+    List<PortfolioDataFile> files = Arrays.asList(PORTFOLIO, PORTFOLIO2);
+    MarginCalcRequest request = MarginCalcRequest.of(VAL_DATE, "GBP", files);
+    MarginCalcRequestBody test = MarginCalcRequestBody.of(request, JodaBeanSer.COMPACT);
+    String expected = JodaBeanSer.COMPACT.jsonWriter().write(request, false);
+    // the data encoded by the first write is reused by later writes, and by derived bodies
+    assertEquals(write(test), expected);
+    assertEquals(write(test), expected);
+    MarginCalcRequest request2 = MarginCalcRequest.of(VAL_DATE.plusDays(1), "EUR", files);
+    assertEquals(write(test.withRequest(request2, JodaBeanSer.COMPACT)), JodaBeanSer.COMPACT.jsonWriter().write(request2, false));
+    assertEquals(bytes(test).size(), test.contentLength());
+  }
+
+  public void test_streamed() throws Exception {
+    Path path = Paths.get("src/test/resources/lch-trades.txt");
+    PortfolioDataFile streamed = PortfolioDataFile.ofStreamed(path);
+    MarginCalcRequest request = MarginCalcRequest.of(VAL_DATE, "GBP", Arrays.asList(PORTFOLIO2, streamed));
+    MarginCalcRequestBody test = MarginCalcRequestBody.of(request, JodaBeanSer.COMPACT);
+    MarginCalcRequest expected = MarginCalcRequest.of(VAL_DATE, "GBP", Arrays.asList(PORTFOLIO2, PORTFOLIO));
+    String json = JodaBeanSer.COMPACT.jsonWriter().write(expected, false);
+    assertEquals(write(test), json);
+    assertEquals(test.contentLength(), json.length());
+    // the data is encoded again each time the body is written
+    assertEquals(write(test), json);
+  }
+
+  public void test_escape() {
+    String base64 = PORTFOLIO.getData();
+    assertSame(MarginCalcRequestBody.escape(base64), base64);
+    assertEquals(MarginCalcRequestBody.escape("a\"b\\c\t\u2028"), "a\\\"b\\\\c\\t\\u2028");
+  }
+
+  //-------------------------------------------------------------------------
+  private static String write(MarginCalcRequestBody body) throws Exception {
+    Buffer buffer = new Buffer();
+    body.writeTo(buffer);
+    return buffer.readUtf8();
+  }
+
+  private static ByteString bytes(MarginCalcRequestBody body) throws Exception {
+    Buffer buffer = new Buffer();
+    body.writeTo(buffer);
+    return buffer.readByteString();
+  }
+
+}
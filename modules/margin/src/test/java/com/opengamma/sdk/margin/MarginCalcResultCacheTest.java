@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+
+import okio.ByteString;
+
+/**
+ * Test {@link MarginCalcResultCache}.
+ */
+@Test
+public class MarginCalcResultCacheTest {
+
+  private static final LocalDate VAL_DATE = LocalDate.of(2017, 6, 1);
+  private static final PortfolioDataFile FILE = PortfolioDataFile.of("portfolio.txt", "a=b");
+  private static final MarginCalcRequest REQUEST = MarginCalcRequest.builder()
+      .calculationTypes(EnumSet.of(MarginCalcType.MARGIN, MarginCalcType.PORTFOLIO_SUMMARY))
+      .valuationDate(VAL_DATE)
+      .reportingCurrency("GBP")
+      .portfolioData(Collections.singletonList(FILE))
+      .build();
+  private static final MarginCalcResult COMPLETED = result(MarginCalcResultStatus.COMPLETED);
+
+  //-------------------------------------------------------------------------
+  public void test_key() {
+    ByteString key = MarginCalcResultCache.key(Ccp.LCH, REQUEST);
+    // equal requests have equal keys, whatever the order of the calculation types
+    MarginCalcRequest reordered = REQUEST.toBuilder()
+        .calculationTypes(EnumSet.of(MarginCalcType.PORTFOLIO_SUMMARY, MarginCalcType.MARGIN))
+        .build();
+    assertEquals(MarginCalcResultCache.key(Ccp.LCH, reordered), key);
+    assertEquals(MarginCalcResultCache.key(Ccp.LCH, REQUEST.toBuilder().build()), key);
+    // any difference gives a different key
+    assertNotEquals(MarginCalcResultCache.key(Ccp.EUREX, REQUEST), key);
+    assertNotEquals(MarginCalcResultCache.key(Ccp.LCH, REQUEST.toBuilder().reportingCurrency("USD").build()), key);
+    assertNotEquals(MarginCalcResultCache.key(Ccp.LCH, REQUEST.toBuilder().valuationDate(VAL_DATE.plusDays(1)).build()), key);
+    assertNotEquals(MarginCalcResultCache.key(Ccp.LCH, REQUEST.toBuilder()
+        .portfolioData(Collections.singletonList(PortfolioDataFile.of("portfolio.txt", "a=c")))
+        .build()), key);
+    assertNotEquals(MarginCalcResultCache.key(Ccp.LCH, REQUEST.toBuilder()
+        .portfolioData(Arrays.asList(FILE, FILE))
+        .build()), key);
+  }
+
+  public void test_key_streamed() {
+    Path path = Paths.get("src/test/resources/simple.csv");
+    MarginCalcRequest request = REQUEST.toBuilder().portfolioData(Collections.singletonList(PortfolioDataFile.of(path))).build();
+    MarginCalcRequest streamed = REQUEST.toBuilder().portfolioData(Collections.singletonList(PortfolioDataFile.ofStreamed(path))).build();
+    assertEquals(MarginCalcResultCache.key(Ccp.LCH, streamed), MarginCalcResultCache.key(Ccp.LCH, request));
+  }
+
+  public void test_getPut() {
+    MarginCalcResultCache test = new MarginCalcResultCache(1_000_000, Duration.ofHours(1));
+    ByteString key = MarginCalcResultCache.key(Ccp.LCH, REQUEST);
+    assertNull(test.get(key));
+    test.put(key, Ccp.LCH, COMPLETED);
+    assertSame(test.get(key), COMPLETED);
+    assertSame(test.get(key), COMPLETED);
+
+    ResultCacheStats stats = test.stats();
+    assertEquals(stats.getHitCount(), 2);
+    assertEquals(stats.getMissCount(), 1);
+    assertEquals(stats.getEvictionCount(), 0);
+    assertEquals(stats.getSize(), 1);
+    assertEquals(stats.getHitRate(), 2d / 3d, 1e-12);
+  }
+
+  public void test_put_pendingNotCached() {
+    MarginCalcResultCache test = new MarginCalcResultCache(1_000_000, Duration.ofHours(1));
+    ByteString key = MarginCalcResultCache.key(Ccp.LCH, REQUEST);
+    test.put(key, Ccp.LCH, result(MarginCalcResultStatus.PENDING));
+    assertNull(test.get(key));
+    assertEquals(test.stats().getSize(), 0);
+  }
+
+  public void test_weightBound_evictsLeastRecentlyUsed() {
+    MarginCalcResultCache probe = new MarginCalcResultCache(Long.MAX_VALUE, Duration.ofHours(1));
+    probe.put(key(0), Ccp.LCH, COMPLETED);
+    long weight = probe.stats().getWeight();
+
+    // room for three results
+    MarginCalcResultCache test = new MarginCalcResultCache(weight * 3, Duration.ofHours(1));
+    test.put(key(1), Ccp.LCH, COMPLETED);
+    test.put(key(2), Ccp.LCH, COMPLETED);
+    test.put(key(3), Ccp.LCH, COMPLETED);
+    test.get(key(1));
+    test.put(key(4), Ccp.LCH, COMPLETED);
+
+    assertSame(test.get(key(1)), COMPLETED);
+    assertNull(test.get(key(2)));
+    assertSame(test.get(key(3)), COMPLETED);
+    assertSame(test.get(key(4)), COMPLETED);
+    assertEquals(test.stats().getEvictionCount(), 1);
+    assertEquals(test.stats().getWeight(), weight * 3);
+
+    // a result larger than the whole cache is not cached
+    MarginCalcResultCache small = new MarginCalcResultCache(weight - 1, Duration.ofHours(1));
+    small.put(key(1), Ccp.LCH, COMPLETED);
+    assertEquals(small.stats().getSize(), 0);
+  }
+
+  public void test_timeToLive() {
+    AtomicLong now = new AtomicLong();
+    MarginCalcResultCache test = new MarginCalcResultCache(1_000_000, Duration.ofMinutes(10), now::get);
+    test.put(key(1), Ccp.LCH, COMPLETED);
+    now.addAndGet(Duration.ofMinutes(5).toNanos());
+    test.put(key(2), Ccp.LCH, COMPLETED);
+    assertSame(test.get(key(1)), COMPLETED);
+
+    now.addAndGet(Duration.ofMinutes(5).toNanos());
+    assertNull(test.get(key(1)));
+    assertSame(test.get(key(2)), COMPLETED);
+    now.addAndGet(Duration.ofMinutes(5).toNanos());
+    test.put(key(3), Ccp.LCH, COMPLETED);
+    assertEquals(test.stats().getSize(), 1);
+    assertEquals(test.stats().getEvictionCount(), 2);
+  }
+
+  public void test_timeToLive_removedFromHeadOrWhenLookedUp() {
+    AtomicLong now = new AtomicLong();
+    MarginCalcResultCache test = new MarginCalcResultCache(1_000_000, Duration.ofMinutes(10), now::get);
+    test.put(key(1), Ccp.LCH, COMPLETED);
+    now.addAndGet(Duration.ofMinutes(5).toNanos());
+    test.put(key(2), Ccp.LCH, COMPLETED);
+    // key(2) becomes the least recently used, so the expired key(1) is not at the head
+    assertSame(test.get(key(1)), COMPLETED);
+    now.addAndGet(Duration.ofMinutes(5).toNanos());
+    test.put(key(3), Ccp.LCH, COMPLETED);
+    assertEquals(test.stats().getSize(), 3);
+    assertNull(test.get(key(1)));
+    assertEquals(test.stats().getSize(), 2);
+    assertEquals(test.stats().getEvictionCount(), 1);
+  }
+
+  public void test_ccpInfoReceived_newValuationDate() {
+    MarginCalcResultCache test = new MarginCalcResultCache(1_000_000, Duration.ofHours(1));
+    test.ccpInfoReceived(Ccp.LCH, info(VAL_DATE));
+    test.put(key(1), Ccp.LCH, COMPLETED);
+    test.put(key(2), Ccp.EUREX, COMPLETED);
+
+    // the same latest date leaves the results
+    test.ccpInfoReceived(Ccp.LCH, info(VAL_DATE.minusDays(1), VAL_DATE));
+    assertSame(test.get(key(1)), COMPLETED);
+
+    // a new latest date discards the results of that CCP only
+    test.ccpInfoReceived(Ccp.LCH, info(VAL_DATE, VAL_DATE.plusDays(1)));
+    assertNull(test.get(key(1)));
+    assertSame(test.get(key(2)), COMPLETED);
+    assertEquals(test.stats().getEvictionCount(), 1);
+  }
+
+  //-------------------------------------------------------------------------
+  private static ByteString key(int index) {
+    return MarginCalcResultCache.key(Ccp.LCH, REQUEST.toBuilder().reportingCurrency("C" + index).build());
+  }
+
+  private static CcpInfo info(LocalDate... valuationDates) {
+    return CcpInfo.of(
+        Arrays.asList(valuationDates),
+        "GBP",
+        Collections.singletonList("GBP"),
+        Collections.singletonList("GBP"),
+        EnumSet.of(MarginCalcType.MARGIN),
+        EnumSet.of(MarginCalcMode.SPOT));
+  }
+
+  private static MarginCalcResult result(MarginCalcResultStatus status) {
+    return MarginCalcResult.of(
+        status,
+        Collections.singleton(MarginCalcType.MARGIN),
+        MarginCalcMode.SPOT,
+        VAL_DATE,
+        "GBP",
+        "GBP",
+        true,
+        Collections.emptyList(),
+        null,
+        null,
+        null,
+        Collections.emptyList());
+  }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import okio.ByteString;
+
+/**
+ * Test {@link MarginCalcResultStore}.
+ */
+@Test
+public class MarginCalcResultStoreTest {
+
+  private static final LocalDate VAL_DATE = LocalDate.of(2017, 6, 1);
+  private static final MarginCalcRequest REQUEST = MarginCalcRequest.builder()
+      .calculationTypes(EnumSet.of(MarginCalcType.MARGIN))
+      .valuationDate(VAL_DATE)
+      .reportingCurrency("GBP")
+      .portfolioData(Collections.singletonList(PortfolioDataFile.of("portfolio.txt", "a=b")))
+      .build();
+  private static final long MAX_SIZE = 1024 * 1024;
+  private static final String IDENTITY = "https://margin.opengamma.com/ apikey:user";
+
+  private Path directory;
+  private final AtomicLong now = new AtomicLong();
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("result-store");
+    now.set(0);
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_getPut() {
+    MarginCalcResult result = result(10);
+    try (MarginCalcResultStore test = open(MAX_SIZE)) {
+      assertNull(test.get(key(1)));
+      test.put(key(1), result);
+      assertEquals(test.get(key(1)), result);
+      assertEquals(test.get(key(1)).getMarginDetail().get().getClass(), LchMarginDetail.class);
+      assertNull(test.get(key(2)));
+
+      // only completed results are stored
+      test.put(key(2), result(MarginCalcResultStatus.PENDING, 10));
+      assertNull(test.get(key(2)));
+    }
+  }
+
+  public void test_sharedBetweenStores() {
+    MarginCalcResult result1 = result(1);
+    MarginCalcResult result2 = result(2);
+    // each store stands for a separate process
+    try (MarginCalcResultStore store1 = open(MAX_SIZE);
+        MarginCalcResultStore store2 = open(MAX_SIZE)) {
+      store1.put(key(1), result1);
+      now.addAndGet(MarginCalcResultStore.REFRESH_INTERVAL_NANOS);
+      assertEquals(store2.get(key(1)), result1);
+      store2.put(key(2), result2);
+      now.addAndGet(MarginCalcResultStore.REFRESH_INTERVAL_NANOS);
+      assertEquals(store1.get(key(2)), result2);
+    }
+    // the results outlive the stores
+    try (MarginCalcResultStore test = open(MAX_SIZE)) {
+      assertEquals(test.get(key(1)), result1);
+      assertEquals(test.get(key(2)), result2);
+    }
+  }
+
+  public void test_refreshRateLimited() {
+    MarginCalcResult result = result(1);
+    try (MarginCalcResultStore store1 = open(MAX_SIZE);
+        MarginCalcResultStore store2 = open(MAX_SIZE)) {
+      store1.put(key(1), result);
+      // the files were checked when the store was opened, so a miss does not check them again at once
+      assertNull(store2.get(key(1)));
+      now.addAndGet(MarginCalcResultStore.REFRESH_INTERVAL_NANOS - 1);
+      assertNull(store2.get(key(1)));
+      now.incrementAndGet();
+      assertEquals(store2.get(key(1)), result);
+    }
+  }
+
+  public void test_writtenOnExecutor() {
+    MarginCalcResult result = result(1);
+    List<Runnable> tasks = new ArrayList<>();
+    try (MarginCalcResultStore store1 = MarginCalcResultStore.open(
+        directory, IDENTITY, MAX_SIZE, InvokerMarginClient.SERIALIZER, tasks::add, now::get);
+        MarginCalcResultStore store2 = open(MAX_SIZE)) {
+      store1.put(key(1), result);
+      store1.put(key(2), result);
+      // found at once by the store, but only by other processes once written
+      assertEquals(store1.get(key(1)), result);
+      now.addAndGet(MarginCalcResultStore.REFRESH_INTERVAL_NANOS);
+      assertNull(store2.get(key(1)));
+      assertEquals(tasks.size(), 2);
+      tasks.get(0).run();
+      assertEquals(store1.get(key(1)), result);
+      now.addAndGet(MarginCalcResultStore.REFRESH_INTERVAL_NANOS);
+      assertEquals(store2.get(key(1)), result);
+    }
+    // the result not yet written was written when the store was closed
+    try (MarginCalcResultStore test = open(MAX_SIZE)) {
+      assertNotNull(test.get(key(2)));
+    }
+  }
+
+  public void test_identity() {
+    MarginCalcResult result = result(1);
+    try (MarginCalcResultStore store1 = open(MAX_SIZE);
+        MarginCalcResultStore otherUser = open("https://margin.opengamma.com/ apikey:other", MAX_SIZE);
+        MarginCalcResultStore otherService = open("https://test.opengamma.com/ apikey:user", MAX_SIZE)) {
+      store1.put(key(1), result);
+      now.addAndGet(MarginCalcResultStore.REFRESH_INTERVAL_NANOS);
+      // the same directory is shared, but only the same service and user find the result
+      assertNull(otherUser.get(key(1)));
+      assertNull(otherService.get(key(1)));
+    }
+    try (MarginCalcResultStore test = open(MAX_SIZE)) {
+      assertEquals(test.get(key(1)), result);
+    }
+  }
+
+  public void test_permissions() throws IOException {
+    try (MarginCalcResultStore test = open(MAX_SIZE)) {
+      test.put(key(1), result(1));
+    }
+    if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      Set<PosixFilePermission> ownerOnly = PosixFilePermissions.fromString("rw-------");
+      assertEquals(Files.getPosixFilePermissions(segments().get(0)), ownerOnly);
+      assertEquals(Files.getPosixFilePermissions(directory.resolve("store.lock")), ownerOnly);
+    }
+  }
+
+  public void test_maxSize_evictsOldest() throws IOException {
+    MarginCalcResult result = result(200);
+    long maxSize = 256 * 1024;
+    try (MarginCalcResultStore test = open(maxSize)) {
+      for (int i = 0; i < 200; i++) {
+        test.put(key(i), result);
+      }
+      assertNull(test.get(key(0)));
+      assertEquals(test.get(key(199)), result);
+      assertTrue(directorySize() <= maxSize);
+    }
+  }
+
+  public void test_compaction() throws IOException {
+    MarginCalcResult result = result(200);
+    try (MarginCalcResultStore test = open(MAX_SIZE)) {
+      test.put(key(1), result);
+      // writing the same results again, many times the maximum size, leaves segments that are mostly superseded
+      // the first result is copied forward by compaction, rather than being evicted with its segment
+      for (int i = 0; i < 200; i++) {
+        test.put(key(2 + i % 2), result);
+      }
+      assertEquals(test.get(key(1)), result);
+      assertEquals(test.get(key(2)), result);
+      assertEquals(test.get(key(3)), result);
+      assertTrue(segmentCount() <= 2);
+    }
+    try (MarginCalcResultStore test = open(MAX_SIZE)) {
+      assertEquals(test.get(key(1)), result);
+    }
+  }
+
+  public void test_damagedRecord() throws IOException {
+    try (MarginCalcResultStore test = open(MAX_SIZE)) {
+      test.put(key(1), result(1));
+    }
+    Path segment = segments().get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // a byte of the encoded result, after the segment header, the record header, the key and a length
+      channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xff}), 8 + 8 + 32 + 4 + 10);
+    }
+    try (MarginCalcResultStore test = open(MAX_SIZE)) {
+      assertNull(test.get(key(1)));
+      // later results are still stored
+      test.put(key(2), result(2));
+      assertEquals(test.get(key(2)), result(2));
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private MarginCalcResultStore open(long maxSize) {
+    return open(IDENTITY, maxSize);
+  }
+
+  private MarginCalcResultStore open(String identity, long maxSize) {
+    return MarginCalcResultStore.open(directory, identity, maxSize, InvokerMarginClient.SERIALIZER, Runnable::run, now::get);
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.getFileName().toString().startsWith("segment-")).sorted().collect(Collectors.toList());
+    }
+  }
+
+  private int segmentCount() throws IOException {
+    return segments().size();
+  }
+
+  private long directorySize() throws IOException {
+    long size = 0;
+    for (Path segment : segments()) {
+      size += Files.size(segment);
+    }
+    return size;
+  }
+
+  private static ByteString key(int index) {
+    return MarginCalcResultCache.key(Ccp.LCH, REQUEST.toBuilder().reportingCurrency("C" + index).build());
+  }
+
+  // a completed result with LCH margin detail and trade sensitivities by tenor
+  private static MarginCalcResult result(int trades) {
+    return result(MarginCalcResultStatus.COMPLETED, trades);
+  }
+
+  private static MarginCalcResult result(MarginCalcResultStatus status, int trades) {
+    List<PortfolioItemSummary> items = new ArrayList<>();
+    List<TradeValuation> valuations = new ArrayList<>();
+    for (int i = 0; i < trades; i++) {
+      items.add(PortfolioItemSummary.of("trade" + i, "SWAP", "Swap " + i));
+      Map<Period, Double> tenors = new LinkedHashMap<>();
+      tenors.put(Period.ofMonths(6), i * 1.5d);
+      tenors.put(Period.ofYears(10), i * 2.5d);
+      TradeSensitivity delta = TradeSensitivity.of(i * 4d, Collections.singletonList(
+          TradeCurveSensitivity.of("GBP-SONIA", "GBP", i * 4d, tenors)));
+      valuations.add(TradeValuation.of("trade" + i, TradeValue.of(1000d + i, "GBP", 1000d + i), delta, null));
+    }
+    LchMarginDetail detail = LchMarginDetail.of(
+        125d,
+        Arrays.asList("S1", "S2"),
+        Collections.singletonList(LchMarginIndex.of("GBP-SONIA", 100d, 125d, Arrays.asList("S1", "S2"))),
+        Collections.singletonList(LchMarginScenario.of("S1", VAL_DATE.minusDays(1), -125d, -120d)));
+    return MarginCalcResult.of(
+        status,
+        EnumSet.of(MarginCalcType.MARGIN, MarginCalcType.DELTA),
+        MarginCalcMode.SPOT,
+        VAL_DATE,
+        "GBP",
+        "GBP",
+        true,
+        items,
+        MarginSummary.of(125d, Collections.emptyList(), MarginBreakdown.of(125d, 125d, 0, 0)),
+        detail,
+        TradeValuations.of(1000d * trades, 4d, null, valuations),
+        Collections.emptyList());
+  }
+
+}
@@ -5,31 +5,52 @@
  */
 package com.opengamma.sdk.margin;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.joda.beans.ser.JodaBeanSer;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.opengamma.sdk.common.PollingStrategy;
 import com.opengamma.sdk.common.ServiceInvoker;
 import com.opengamma.sdk.common.auth.Credentials;
 
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
 import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
 
 /**
  * Test.
@@ -156,6 +177,26 @@ public class MarginClientTest {
     assertEquals(ccpInfo.getLatestValuationDate(), expectedValuationDate);
   }
 
+  public void test_defaultAsyncMethods() throws Exception {
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_LIST_CCPS));
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_GET_CCP_INFO));
+    server.enqueue(new MockResponse()
+        .setResponseCode(500)
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_ERROR));
+
+    // a client implementing only the blocking methods gets the asynchronous ones by default
+    MarginClient client = new BlockingMarginClient(MarginClient.of(createInvoker()));
+    assertEquals(client.listCcpsAsync().get(5, SECONDS).isCcpAvailable(Ccp.LCH), true);
+    assertEquals(client.getCcpInfoAsync(Ccp.LCH).get(5, SECONDS).getDefaultCurrency(), "GBP");
+    CompletableFuture<MarginCalcResult> failed = client.getCalculationAsync(Ccp.LCH, "789");
+    assertEquals(expectThrows(CompletionException.class, failed::join).getCause().getClass(), MarginException.class);
+  }
+
   public void test_listCcps_fail() throws Exception {
     server.enqueue(new MockResponse()
         .setResponseCode(500)
@@ -169,6 +210,96 @@ public class MarginClientTest {
     assertThrows(IllegalStateException.class, () -> client.listCcps());
   }
 
+  public void test_listCcpsAsync() {
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_LIST_CCPS));
+
+    // call server
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+
+    CcpsResult ccps = client.listCcpsAsync().join();
+    assertEquals(ccps.getCcpNames().size(), 2);
+    assertEquals(ccps.isCcpAvailable(Ccp.LCH), true);
+  }
+
+  public void test_getCcpInfoAsync() {
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_GET_CCP_INFO));
+
+    // call server
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+
+    CcpInfo ccpInfo = client.getCcpInfoAsync(Ccp.LCH).join();
+    assertEquals(ccpInfo.getDefaultCurrency(), "GBP");
+    assertEquals(ccpInfo.getLatestValuationDate(), LocalDate.of(2017, 6, 1));
+  }
+
+  public void test_listCcpsAsync_fail() throws Exception {
+    server.enqueue(new MockResponse()
+        .setResponseCode(500)
+        .setHeader("Content-Type", "application/xml")
+        .setBody(RESPONSE_ERROR));
+
+    // call server
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+
+    CompletionException ex = expectThrows(CompletionException.class, () -> client.listCcpsAsync().join());
+    assertTrue(ex.getCause() instanceof MarginException);
+  }
+
+  public void test_listCcpsAsync_ioFail() throws Exception {
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+    server.shutdown();
+
+    CompletionException ex = expectThrows(CompletionException.class, () -> client.listCcpsAsync().join());
+    assertTrue(ex.getCause() instanceof UncheckedIOException);
+  }
+
+  public void test_getCalculation_truncated() throws Exception {
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_CALC_GET_COMPLETE)
+        .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+
+    // the response is parsed as it arrives, so the failure happens while parsing
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+    assertThrows(UncheckedIOException.class, () -> client.getCalculation(Ccp.LCH, "789"));
+  }
+
+  public void test_calculationLifecycleAsync() throws Exception {
+    server.enqueue(new MockResponse()
+        .setResponseCode(202)
+        .setHeader("Location", server.url("/ccps/lch/calculations/789"))
+        .setBody(RESPONSE_CALC_POST));
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/xml")
+        .setBody(RESPONSE_CALC_GET_COMPLETE));
+    server.enqueue(new MockResponse()
+        .setBody(RESPONSE_DELETE));
+
+    // call server
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+
+    String calcId = client.createCalculationAsync(Ccp.LCH, REQUEST).join();
+    assertEquals(calcId, "789");
+    MarginCalcResult result = client.getCalculationAsync(Ccp.LCH, calcId).join();
+    assertEquals(result.getStatus(), MarginCalcResultStatus.COMPLETED);
+    client.deleteCalculationAsync(Ccp.LCH, calcId).join();
+    assertEquals(server.takeRequest().getMethod(), "POST");
+    assertEquals(server.takeRequest().getMethod(), "GET");
+    RecordedRequest delete = server.takeRequest();
+    assertEquals(delete.getMethod(), "DELETE");
+    assertEquals(delete.getPath(), "/margin/v3/ccps/lch/calculations/789");
+  }
+
   //-------------------------------------------------------------------------
   @SuppressWarnings("deprecation")
   public void test_calculate() throws Exception {
@@ -195,6 +326,362 @@ public class MarginClientTest {
     assertEquals(result.getValuationDate(), VAL_DATE);
   }
 
+  public void test_calculate_resultCache() throws Exception {
+    server.enqueue(new MockResponse()
+        .setResponseCode(202)
+        .setHeader("Location", server.url("/ccps/lch/calculations/789"))
+        .setBody(RESPONSE_CALC_POST));
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_CALC_GET_COMPLETE));
+    server.enqueue(new MockResponse()
+        .setBody(RESPONSE_DELETE));
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_GET_CCP_INFO));
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(JodaBeanSer.PRETTY.simpleJsonWriter().write(CcpInfo.of(
+            Arrays.asList(VAL_DATE, VAL_DATE.plusDays(1)),
+            "GBP",
+            Collections.singletonList("GBP"),
+            Collections.singletonList("GBP"),
+            set(MarginCalcType.MARGIN),
+            set(MarginCalcMode.SPOT)))));
+    server.enqueue(new MockResponse()
+        .setResponseCode(202)
+        .setHeader("Location", server.url("/ccps/lch/calculations/790"))
+        .setBody(RESPONSE_CALC_POST));
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_CALC_GET_COMPLETE));
+    server.enqueue(new MockResponse()
+        .setBody(RESPONSE_DELETE));
+
+    ServiceInvoker invoker = createInvoker();
+    assertEquals(MarginClient.of(invoker).getResultCacheStats(), Optional.empty());
+    MarginClient client = MarginClient.builder(invoker)
+        .resultCache(1_000_000, Duration.ofHours(1))
+        .build();
+
+    MarginCalcResult result = client.calculate(Ccp.LCH, REQUEST);
+    awaitRequestCount(3);
+    // the same request is answered from the cache
+    assertEquals(client.calculate(Ccp.LCH, REQUEST), result);
+    assertEquals(client.calculateAsync(Ccp.LCH, REQUEST).get(5, SECONDS), result);
+    assertEquals(server.getRequestCount(), 3);
+
+    // a new latest valuation date discards the cached result
+    client.getCcpInfo(Ccp.LCH);
+    client.getCcpInfo(Ccp.LCH);
+    assertEquals(client.calculate(Ccp.LCH, REQUEST), result);
+    awaitRequestCount(8);
+    ResultCacheStats stats = client.getResultCacheStats().get();
+    assertEquals(stats.getHitCount(), 2);
+    assertEquals(stats.getMissCount(), 2);
+    assertEquals(stats.getEvictionCount(), 1);
+    assertEquals(stats.getSize(), 1);
+    // a client that does not override the method has no statistics by default
+    assertEquals(new BlockingMarginClient(client).getResultCacheStats(), Optional.empty());
+  }
+
+  public void test_resultCache_invalid() {
+    MarginClientBuilder builder = MarginClient.builder(createInvoker());
+    assertThrows(IllegalArgumentException.class, () -> builder.resultCache(0, Duration.ofHours(1)));
+    assertThrows(IllegalArgumentException.class, () -> builder.resultCache(1000, Duration.ZERO));
+  }
+
+  public void test_calculate_resultStore() throws Exception {
+    server.enqueue(new MockResponse()
+        .setResponseCode(202)
+        .setHeader("Location", server.url("/ccps/lch/calculations/789"))
+        .setBody(RESPONSE_CALC_POST));
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_CALC_GET_COMPLETE));
+    server.enqueue(new MockResponse()
+        .setBody(RESPONSE_DELETE));
+
+    Path directory = Files.createTempDirectory("result-store");
+    try {
+      MarginCalcResult result;
+      try (ServiceInvoker invoker = createInvoker()) {
+        MarginClient client = MarginClient.builder(invoker)
+            .resultStore(directory, 1_000_000)
+            .build();
+        result = client.calculate(Ccp.LCH, REQUEST);
+        awaitRequestCount(3);
+        assertEquals(client.calculate(Ccp.LCH, REQUEST), result);
+      }
+      // a later client, with the result cache, finds the result without asking the service
+      try (ServiceInvoker invoker = createInvoker()) {
+        MarginClient client = MarginClient.builder(invoker)
+            .resultCache(1_000_000, Duration.ofHours(1))
+            .resultStore(directory, 1_000_000)
+            .build();
+        assertEquals(client.calculateAsync(Ccp.LCH, REQUEST).get(5, SECONDS), result);
+        assertEquals(client.calculate(Ccp.LCH, REQUEST), result);
+        assertEquals(client.getResultCacheStats().get().getHitCount(), 1);
+      }
+      assertEquals(server.getRequestCount(), 3);
+    } finally {
+      try (Stream<Path> files = Files.list(directory)) {
+        for (Path file : files.collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+      Files.delete(directory);
+    }
+  }
+
+  public void test_resultStore_invalid() {
+    MarginClientBuilder builder = MarginClient.builder(createInvoker());
+    assertThrows(IllegalArgumentException.class, () -> builder.resultStore(Paths.get("store"), 0));
+    // without a key identifying the credentials, results could be shared between users
+    Credentials unidentified = client -> client.authenticateApiKey("user", "password");
+    try (ServiceInvoker invoker = ServiceInvoker.builder(unidentified)
+        .serviceUrl(server.url("/"))
+        .authClientFactory(inv -> new TestingAuthClient())
+        .build()) {
+      MarginClientBuilder unidentifiedBuilder = MarginClient.builder(invoker);
+      assertThrows(IllegalStateException.class, () -> unidentifiedBuilder.resultStore(Paths.get("store"), 1_000_000));
+    }
+  }
+
+  public void test_calculate_pendingNotParsed() throws Exception {
+    // while pending, only the status is read, so the rest of the body is never parsed
+    String pendingBody = "{\"status\": \"PENDING\", \"portfolioItems\": [not valid JSON";
+    for (int i = 0; i < 2; i++) {
+      server.enqueue(new MockResponse()
+          .setResponseCode(202)
+          .setHeader("Location", server.url("/ccps/lch/calculations/789"))
+          .setBody(RESPONSE_CALC_POST));
+      server.enqueue(new MockResponse()
+          .setHeader("Content-Type", "application/json")
+          .setBody(pendingBody));
+      server.enqueue(new MockResponse()
+          .setHeader("Content-Type", "application/json")
+          .setBody(RESPONSE_CALC_GET_COMPLETE));
+      server.enqueue(new MockResponse()
+          .setBody(RESPONSE_DELETE));
+    }
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+    assertEquals(client.calculate(Ccp.LCH, REQUEST).getStatus(), MarginCalcResultStatus.COMPLETED);
+    awaitRequestCount(4);
+    assertEquals(client.calculateAsync(Ccp.LCH, REQUEST).join().getStatus(), MarginCalcResultStatus.COMPLETED);
+    awaitRequestCount(8);
+  }
+
+  public void test_calculate_retryAfter() throws Exception {
+    server.enqueue(new MockResponse()
+        .setResponseCode(202)
+        .setHeader("Location", server.url("/ccps/lch/calculations/789"))
+        .setHeader("Retry-After", "0")
+        .setBody(RESPONSE_CALC_POST));
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/xml")
+        .setHeader("Retry-After", "0")
+        .setBody(RESPONSE_CALC_GET_PENDING));
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/xml")
+        .setBody(RESPONSE_CALC_GET_COMPLETE));
+    server.enqueue(new MockResponse()
+        .setBody(RESPONSE_DELETE));
+
+    // strategy would wait a minute, but server says poll immediately
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.builder(invoker)
+        .pollingStrategy(PollingStrategy.fixed(Duration.ofMinutes(1)))
+        .build();
+
+    long start = System.nanoTime();
+    MarginCalcResult result = client.calculate(Ccp.LCH, REQUEST);
+    assertEquals(result.getStatus(), MarginCalcResultStatus.COMPLETED);
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(30)) < 0);
+    awaitRequestCount(4);
+  }
+
+  public void test_calculate_longPolling() throws Exception {
+    server.enqueue(new MockResponse()
+        .setResponseCode(202)
+        .setHeader("Location", server.url("/ccps/lch/calculations/789"))
+        .setBody(RESPONSE_CALC_POST));
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setHeader("Preference-Applied", "wait=20")
+        .setBody(RESPONSE_CALC_GET_PENDING));
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setHeader("Preference-Applied", "wait=20")
+        .setBody(RESPONSE_CALC_GET_COMPLETE));
+    server.enqueue(new MockResponse()
+        .setBody(RESPONSE_DELETE));
+
+    // strategy would wait a minute, but the service holds each poll instead
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.builder(invoker)
+        .pollingStrategy(PollingStrategy.fixed(Duration.ofMinutes(1)))
+        .longPolling(Duration.ofSeconds(20))
+        .build();
+
+    long start = System.nanoTime();
+    MarginCalcResult result = client.calculate(Ccp.LCH, REQUEST);
+    assertEquals(result.getStatus(), MarginCalcResultStatus.COMPLETED);
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(30)) < 0);
+    awaitRequestCount(4);
+    assertEquals(server.takeRequest().getHeader("Prefer"), null);
+    assertEquals(server.takeRequest().getHeader("Prefer"), "wait=20");
+    assertEquals(server.takeRequest().getHeader("Prefer"), "wait=20");
+  }
+
+  public void test_calculate_longPollingNotSupported() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      server.enqueue(new MockResponse()
+          .setResponseCode(202)
+          .setHeader("Location", server.url("/ccps/lch/calculations/789"))
+          .setHeader("Retry-After", "0")
+          .setBody(RESPONSE_CALC_POST));
+      server.enqueue(new MockResponse()
+          .setHeader("Content-Type", "application/json")
+          .setHeader("Retry-After", "0")
+          .setBody(RESPONSE_CALC_GET_PENDING));
+      server.enqueue(new MockResponse()
+          .setHeader("Content-Type", "application/json")
+          .setBody(RESPONSE_CALC_GET_COMPLETE));
+      server.enqueue(new MockResponse()
+          .setBody(RESPONSE_DELETE));
+    }
+
+    // the service ignores the preference, so the client falls back to polling
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.builder(invoker)
+        .pollingStrategy(PollingStrategy.fixed(Duration.ofMillis(10)))
+        .longPolling(Duration.ofSeconds(20))
+        .build();
+    assertEquals(client.calculate(Ccp.LCH, REQUEST).getStatus(), MarginCalcResultStatus.COMPLETED);
+    awaitRequestCount(4);
+    assertEquals(client.calculateAsync(Ccp.LCH, REQUEST).join().getStatus(), MarginCalcResultStatus.COMPLETED);
+    awaitRequestCount(8);
+    server.takeRequest();
+    assertEquals(server.takeRequest().getHeader("Prefer"), "wait=20");
+    for (int i = 2; i < 8; i++) {
+      assertEquals(server.takeRequest().getHeader("Prefer"), null);
+    }
+  }
+
+  public void test_calculate_longPollingCompletedWithoutConfirmation() throws Exception {
+    // a result that completed before the poll is not confirmed, but does not mean the preference was ignored
+    enqueueCalculation(new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_CALC_GET_COMPLETE));
+    // once confirmed, the service is long polled even if a later poll is not confirmed
+    enqueueCalculation(
+        new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setHeader("Preference-Applied", "wait=20")
+            .setBody(RESPONSE_CALC_GET_PENDING),
+        new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(RESPONSE_CALC_GET_COMPLETE));
+    enqueueCalculation(
+        new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(RESPONSE_CALC_GET_PENDING),
+        new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(RESPONSE_CALC_GET_COMPLETE));
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.builder(invoker)
+        .pollingStrategy(PollingStrategy.fixed(Duration.ofMillis(10)))
+        .longPolling(Duration.ofSeconds(20))
+        .build();
+    assertEquals(client.calculate(Ccp.LCH, REQUEST).getStatus(), MarginCalcResultStatus.COMPLETED);
+    awaitRequestCount(3);
+    assertEquals(client.calculate(Ccp.LCH, REQUEST).getStatus(), MarginCalcResultStatus.COMPLETED);
+    awaitRequestCount(7);
+    assertEquals(client.calculateAsync(Ccp.LCH, REQUEST).join().getStatus(), MarginCalcResultStatus.COMPLETED);
+    awaitRequestCount(11);
+    for (int i = 0; i < 11; i++) {
+      RecordedRequest request = server.takeRequest();
+      if (request.getMethod().equals("GET")) {
+        assertEquals(request.getHeader("Prefer"), "wait=20");
+      }
+    }
+  }
+
+  public void test_calculateAsync_longPollsHaveOwnLimit() throws Exception {
+    AtomicInteger created = new AtomicInteger();
+    CountDownLatch bothWaiting = new CountDownLatch(2);
+    AtomicInteger concurrentPolls = new AtomicInteger();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        if (request.getMethod().equals("POST")) {
+          return new MockResponse()
+              .setResponseCode(202)
+              .setHeader("Location", server.url("/ccps/lch/calculations/" + created.incrementAndGet()))
+              .setBody(RESPONSE_CALC_POST);
+        } else if (request.getMethod().equals("GET")) {
+          // the service holds each poll until both calculations are being polled
+          bothWaiting.countDown();
+          if (bothWaiting.await(5, SECONDS)) {
+            concurrentPolls.incrementAndGet();
+          }
+          return new MockResponse()
+              .setHeader("Content-Type", "application/json")
+              .setHeader("Preference-Applied", "wait=20")
+              .setBody(RESPONSE_CALC_GET_COMPLETE);
+        }
+        return new MockResponse().setBody(RESPONSE_DELETE);
+      }
+    });
+
+    // a single normal poll at a time does not limit the long polls
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.builder(invoker)
+        .pollingStrategy(PollingStrategy.fixed(Duration.ofMillis(10)))
+        .maxConcurrentPolls(1)
+        .longPolling(Duration.ofSeconds(20))
+        .build();
+    CompletableFuture<MarginCalcResult> future1 = client.calculateAsync(Ccp.LCH, REQUEST);
+    CompletableFuture<MarginCalcResult> future2 = client.calculateAsync(Ccp.LCH, REQUEST);
+    assertEquals(future1.get(30, SECONDS).getStatus(), MarginCalcResultStatus.COMPLETED);
+    assertEquals(future2.get(30, SECONDS).getStatus(), MarginCalcResultStatus.COMPLETED);
+    assertEquals(concurrentPolls.get(), 2);
+  }
+
+  public void test_longPolling_invalid() {
+    MarginClientBuilder builder = MarginClient.builder(createInvoker());
+    assertThrows(IllegalArgumentException.class, () -> builder.longPolling(Duration.ZERO));
+    assertThrows(IllegalArgumentException.class, () -> builder.longPolling(Duration.ofMillis(1500)));
+    assertThrows(IllegalArgumentException.class, () -> builder.longPolling(Duration.ofSeconds(-1)));
+    assertThrows(IllegalArgumentException.class, () -> builder.maxConcurrentLongPolls(0));
+  }
+
+  public void test_retryAfter() {
+    assertEquals(InvokerMarginClient.retryAfter(response(null)), Optional.empty());
+    assertEquals(InvokerMarginClient.retryAfter(response("3")), Optional.of(Duration.ofSeconds(3)));
+    assertEquals(InvokerMarginClient.retryAfter(response("rubbish")), Optional.empty());
+    assertEquals(
+        InvokerMarginClient.retryAfter(response("Wed, 21 Oct 2015 07:28:00 GMT")),
+        Optional.of(Duration.ZERO));
+  }
+
+  private static Response response(String retryAfter) {
+    Response.Builder builder = new Response.Builder()
+        .request(new Request.Builder().url("http://localhost/").build())
+        .protocol(Protocol.HTTP_1_1)
+        .code(202)
+        .message("Accepted");
+    if (retryAfter != null) {
+      builder.header("Retry-After", retryAfter);
+    }
+    return builder.build();
+  }
+
   // This method handles two concurrent HTTP requests, thus defines the MockWebServer in a different way.
   // For any what-if scenario request, the sequence of HTTP requests should look like this:
   // * POST - /margin/v1/ccps/lch/calculations - base portfolios
@@ -276,6 +763,396 @@ public class MarginClientTest {
     assertEquals(result.getDeltaSummary().getMargin(), 260.0);
   }
 
+  public void test_calculateWhatIf_deltaFail() throws Exception {
+    // the delta cannot be submitted, so the base calculation must still be deleted
+    CountDownLatch deleted = new CountDownLatch(1);
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        if (request.getMethod().equals("POST") && request.getBody().readUtf8().contains("delta.txt")) {
+          return new MockResponse()
+              .setHeader("Content-Type", "application/json")
+              .setResponseCode(400)
+              .setBody(RESPONSE_ERROR);
+        } else if (request.getMethod().equals("POST")) {
+          return new MockResponse()
+              .setResponseCode(202)
+              .setHeader("Location", server.url("/ccps/lch/calculations/789"))
+              .setBody(RESPONSE_CALC_POST);
+        } else if (request.getMethod().equals("DELETE") && request.getPath().endsWith("/789")) {
+          deleted.countDown();
+          return new MockResponse()
+              .setBody(RESPONSE_DELETE);
+        }
+        return new MockResponse().setResponseCode(404);
+      }
+    });
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+    PortfolioDataFile deltaFile = PortfolioDataFile.of("delta.txt", "a=b");
+    assertThrows(MarginException.class, () -> client.calculateWhatIf(Ccp.LCH, REQUEST, Collections.singletonList(deltaFile)));
+    assertTrue(deleted.await(5, SECONDS));
+  }
+
+  public void test_calculateWhatIfAsync() throws Exception {
+    // the two calculations are submitted concurrently, so are told apart by the body
+    Set<String> deleted = Collections.synchronizedSet(new HashSet<>());
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        String path = request.getPath();
+        if (request.getMethod().equals("POST")) {
+          String calcId = request.getBody().readUtf8().contains("delta.txt") ? "790" : "789";
+          return new MockResponse()
+              .setResponseCode(202)
+              .setHeader("Location", server.url("/ccps/lch/calculations/" + calcId))
+              .setBody(RESPONSE_CALC_POST);
+        } else if (request.getMethod().equals("GET") && path.endsWith("/789")) {
+          return new MockResponse()
+              .setHeader("Content-Type", "application/json")
+              .setBody(RESPONSE_CALC_GET_COMPLETE);
+        } else if (request.getMethod().equals("GET") && path.endsWith("/790")) {
+          return new MockResponse()
+              .setHeader("Content-Type", "application/json")
+              .setBody(RESPONSE_CALC_WHATIF_GET_COMPLETE);
+        } else if (request.getMethod().equals("DELETE")) {
+          deleted.add(path.substring(path.lastIndexOf('/') + 1));
+          return new MockResponse()
+              .setBody(RESPONSE_DELETE);
+        }
+        return new MockResponse().setResponseCode(404);
+      }
+    });
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+    PortfolioDataFile deltaFile = PortfolioDataFile.of("delta.txt", "a=b");
+    MarginWhatIfCalcResult result =
+        client.calculateWhatIfAsync(Ccp.LCH, REQUEST, Collections.singletonList(deltaFile)).join();
+    assertEquals(result.getStatus(), MarginCalcResultStatus.COMPLETED);
+    assertEquals(result.getBaseSummary().getMargin(), 125.0);
+    assertEquals(result.getCombinedSummary().getMargin(), 135.0);
+    awaitRequestCount(6);
+    // requests are counted before they are dispatched, so the last delete may not have been recorded yet
+    long start = System.nanoTime();
+    while (deleted.size() < 2 && System.nanoTime() - start < SECONDS.toNanos(5)) {
+      Thread.sleep(5);
+    }
+    assertEquals(deleted, set("789", "790"));
+  }
+
+  public void test_calculateWhatIfAsync_fail() throws Exception {
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        if (request.getMethod().equals("POST") && request.getBody().readUtf8().contains("delta.txt")) {
+          return new MockResponse()
+              .setHeader("Content-Type", "application/json")
+              .setResponseCode(400)
+              .setBody(RESPONSE_ERROR);
+        } else if (request.getMethod().equals("POST")) {
+          return new MockResponse()
+              .setResponseCode(202)
+              .setHeader("Location", server.url("/ccps/lch/calculations/789"))
+              .setBody(RESPONSE_CALC_POST);
+        } else if (request.getMethod().equals("GET")) {
+          return new MockResponse()
+              .setHeader("Content-Type", "application/json")
+              .setBody(RESPONSE_CALC_GET_COMPLETE);
+        }
+        return new MockResponse()
+            .setBody(RESPONSE_DELETE);
+      }
+    });
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+    PortfolioDataFile deltaFile = PortfolioDataFile.of("delta.txt", "a=b");
+    CompletableFuture<MarginWhatIfCalcResult> future =
+        client.calculateWhatIfAsync(Ccp.LCH, REQUEST, Collections.singletonList(deltaFile));
+    CompletionException ex = expectThrows(CompletionException.class, future::join);
+    assertTrue(ex.getCause() instanceof MarginException);
+
+    // a client implementing only the blocking method gets the asynchronous one by default
+    MarginClient blocking = new BlockingMarginClient(client);
+    future = blocking.calculateWhatIfAsync(Ccp.LCH, REQUEST, Collections.singletonList(deltaFile));
+    ex = expectThrows(CompletionException.class, future::join);
+    assertTrue(ex.getCause() instanceof MarginException);
+  }
+
+  public void test_calculateAsync_cancel() throws Exception {
+    // the calculation never completes, and deletes are recorded
+    CountDownLatch deleted = new CountDownLatch(1);
+    server.setDispatcher(pendingDispatcher(deleted));
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.builder(invoker)
+        .pollingStrategy(PollingStrategy.fixed(Duration.ofMillis(20)))
+        .build();
+    CompletableFuture<MarginCalcResult> future = client.calculateAsync(Ccp.LCH, REQUEST);
+    // wait for polling to start
+    server.takeRequest();
+    server.takeRequest();
+    future.cancel(true);
+    assertTrue(deleted.await(5, SECONDS));
+    // no polls are sent after the delete
+    int requestCount = server.getRequestCount();
+    Thread.sleep(200);
+    assertEquals(server.getRequestCount(), requestCount);
+  }
+
+  public void test_calculateAsync_cancelBeforeCreated() throws Exception {
+    CountDownLatch deleted = new CountDownLatch(1);
+    // the calculation is created after the future is cancelled
+    server.setDispatcher(new Dispatcher() {
+      private final Dispatcher delegate = pendingDispatcher(deleted);
+
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        return delegate.dispatch(request).setHeadersDelay(request.getMethod().equals("POST") ? 200 : 0, MILLISECONDS);
+      }
+    });
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+    CompletableFuture<MarginCalcResult> future = client.calculateAsync(Ccp.LCH, REQUEST);
+    future.cancel(true);
+    assertTrue(deleted.await(5, SECONDS));
+    assertEquals(server.getRequestCount(), 2);
+  }
+
+  public void test_calculateAsync_deduplicate() throws Exception {
+    CountDownLatch deleted = new CountDownLatch(1);
+    AtomicInteger creates = new AtomicInteger();
+    Dispatcher pending = pendingDispatcher(deleted);
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        if (request.getMethod().equals("POST")) {
+          creates.incrementAndGet();
+        }
+        return pending.dispatch(request);
+      }
+    });
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.builder(invoker)
+        .pollingStrategy(PollingStrategy.fixed(Duration.ofMillis(20)))
+        .deduplicateCalculations(true)
+        .build();
+    CompletableFuture<MarginCalcResult> future1 = client.calculateAsync(Ccp.LCH, REQUEST);
+    CompletableFuture<MarginCalcResult> future2 = client.calculateAsync(Ccp.LCH, REQUEST);
+    // wait for polling to start
+    server.takeRequest();
+    server.takeRequest();
+    server.takeRequest();
+    assertEquals(creates.get(), 1);
+
+    // the calculation continues while any caller remains
+    future1.cancel(true);
+    Thread.sleep(200);
+    assertEquals(deleted.getCount(), 1);
+    assertEquals(future2.isDone(), false);
+    future2.cancel(true);
+    assertTrue(deleted.await(5, SECONDS));
+    assertEquals(creates.get(), 1);
+  }
+
+  public void test_calculate_deduplicate_error() throws Exception {
+    server.enqueue(new MockResponse()
+        .setResponseCode(500)
+        .setBody(RESPONSE_ERROR));
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.builder(invoker)
+        .deduplicateCalculations(true)
+        .build();
+    assertThrows(MarginException.class, () -> client.calculate(Ccp.LCH, REQUEST));
+    assertEquals(server.getRequestCount(), 1);
+  }
+
+  public void test_calculateWhatIfAsync_cancel() throws Exception {
+    CountDownLatch deleted = new CountDownLatch(2);
+    server.setDispatcher(pendingDispatcher(deleted));
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.builder(invoker)
+        .pollingStrategy(PollingStrategy.fixed(Duration.ofMillis(20)))
+        .build();
+    PortfolioDataFile deltaFile = PortfolioDataFile.of("delta.txt", "a=b");
+    CompletableFuture<MarginWhatIfCalcResult> future =
+        client.calculateWhatIfAsync(Ccp.LCH, REQUEST, Collections.singletonList(deltaFile));
+    for (int i = 0; i < 4; i++) {
+      server.takeRequest();
+    }
+    future.cancel(true);
+    assertTrue(deleted.await(5, SECONDS));
+  }
+
+  // a dispatcher for calculations that never complete, counting down the latch on each delete
+  private Dispatcher pendingDispatcher(CountDownLatch deleted) {
+    AtomicInteger calcIds = new AtomicInteger();
+    return new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        if (request.getMethod().equals("POST")) {
+          return new MockResponse()
+              .setResponseCode(202)
+              .setHeader("Location", server.url("/ccps/lch/calculations/" + calcIds.incrementAndGet()))
+              .setBody(RESPONSE_CALC_POST);
+        } else if (request.getMethod().equals("GET")) {
+          return new MockResponse()
+              .setHeader("Content-Type", "application/json")
+              .setBody(RESPONSE_CALC_GET_PENDING);
+        } else if (request.getMethod().equals("DELETE")) {
+          deleted.countDown();
+          return new MockResponse()
+              .setBody(RESPONSE_DELETE);
+        }
+        return new MockResponse().setResponseCode(404);
+      }
+    };
+  }
+
+  public void test_calculateAll() throws Exception {
+    // calculations for Eurex are rejected, those for LCH complete at once
+    AtomicInteger calcIds = new AtomicInteger();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        if (request.getMethod().equals("POST") && request.getPath().contains("/eurex/")) {
+          return new MockResponse()
+              .setResponseCode(400)
+              .setHeader("Content-Type", "application/json")
+              .setBody(RESPONSE_ERROR);
+        } else if (request.getMethod().equals("POST")) {
+          return new MockResponse()
+              .setResponseCode(202)
+              .setHeader("Location", server.url("/ccps/lch/calculations/" + calcIds.incrementAndGet()))
+              .setBody(RESPONSE_CALC_POST);
+        } else if (request.getMethod().equals("GET")) {
+          return new MockResponse()
+              .setHeader("Content-Type", "application/json")
+              .setBody(RESPONSE_CALC_GET_COMPLETE);
+        }
+        return new MockResponse()
+            .setBody(RESPONSE_DELETE);
+      }
+    });
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.builder(invoker)
+        .maxConcurrentCalculations(2)
+        .build();
+    List<MarginCalcJob> jobs = Arrays.asList(
+        MarginCalcJob.of(Ccp.LCH, REQUEST),
+        MarginCalcJob.of(Ccp.EUREX, REQUEST),
+        MarginCalcJob.of(Ccp.LCH, REQUEST));
+
+    List<MarginCalcJobResult> results = Collections.synchronizedList(new ArrayList<>());
+    client.calculateAll(jobs, results::add).get(30, SECONDS);
+    assertEquals(results.size(), 3);
+    assertEquals(results.stream().filter(MarginCalcJobResult::isSuccess).count(), 2);
+    MarginCalcJobResult failed = results.stream().filter(r -> !r.isSuccess()).findFirst().get();
+    assertEquals(failed.getJob().getCcp(), Ccp.EUREX);
+    assertEquals(failed.getFailure().get().getHttpCode(), 400);
+
+    Iterator<MarginCalcJobResult> it = client.calculateAll(jobs);
+    int count = 0;
+    while (it.hasNext()) {
+      it.next();
+      count++;
+    }
+    assertEquals(count, 3);
+
+    // a client implementing only calculateAsync runs bulk calculations by default
+    MarginClient blocking = new BlockingMarginClient(client);
+    results.clear();
+    blocking.calculateAll(jobs, results::add).get(30, SECONDS);
+    assertEquals(results.size(), 3);
+    assertEquals(results.stream().filter(MarginCalcJobResult::isSuccess).count(), 2);
+    it = blocking.calculateAll(jobs);
+    count = 0;
+    while (it.hasNext()) {
+      assertEquals(it.next().getJob().getRequest(), REQUEST);
+      count++;
+    }
+    assertEquals(count, 3);
+  }
+
+  public void test_calculateAll_invalidConcurrency() {
+    MarginClientBuilder builder = MarginClient.builder(createInvoker());
+    assertThrows(IllegalArgumentException.class, () -> builder.maxConcurrentCalculations(0));
+    assertThrows(IllegalArgumentException.class, () -> builder.maxConcurrentCalculationsPerCcp(0));
+  }
+
+  public void test_compareCcps() throws Exception {
+    // LCH and Eurex are available, but Eurex rejects the calculation
+    String listCcps = JodaBeanSer.PRETTY.simpleJsonWriter().write(CcpsResult.of(Arrays.asList("LCH", "EUREX")));
+    List<String> bodies = Collections.synchronizedList(new ArrayList<>());
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        String path = request.getPath();
+        if (request.getMethod().equals("POST")) {
+          bodies.add(request.getBody().readUtf8());
+          if (path.contains("/eurex/")) {
+            return new MockResponse()
+                .setResponseCode(400)
+                .setHeader("Content-Type", "application/json")
+                .setBody(RESPONSE_ERROR);
+          }
+          return new MockResponse()
+              .setResponseCode(202)
+              .setHeader("Location", server.url("/margin/v3/ccps/lch/calculations/789"))
+              .setBody(RESPONSE_CALC_POST);
+        } else if (request.getMethod().equals("GET") && path.endsWith("/ccps")) {
+          return new MockResponse()
+              .setHeader("Content-Type", "application/json")
+              .setBody(listCcps);
+        } else if (request.getMethod().equals("GET") && !path.contains("/calculations/")) {
+          return new MockResponse()
+              .setHeader("Content-Type", "application/json")
+              .setBody(RESPONSE_GET_CCP_INFO);
+        } else if (request.getMethod().equals("GET")) {
+          return new MockResponse()
+              .setHeader("Content-Type", "application/json")
+              .setBody(RESPONSE_CALC_GET_COMPLETE);
+        }
+        return new MockResponse()
+            .setBody(RESPONSE_DELETE);
+      }
+    });
+
+    ServiceInvoker invoker = createInvoker();
+    MarginClient client = MarginClient.of(invoker);
+    PortfolioDataFile file = PortfolioDataFile.of("portfolio.txt", "TRADES");
+    CcpComparison test = client.compareCcps(Collections.singletonList(file), set(Ccp.LCH, Ccp.EUREX, Ccp.CME));
+
+    assertEquals(test.getCcps(), set(Ccp.LCH, Ccp.EUREX, Ccp.CME));
+    assertEquals(test.getResults().keySet(), set(Ccp.LCH));
+    assertEquals(test.getMargin(Ccp.LCH).get().getMargin(), 125d);
+    assertEquals(test.getFailures().get(Ccp.EUREX).getHttpCode(), 400);
+    assertEquals(test.getFailures().get(Ccp.CME).getReason(), "Unavailable");
+    assertEquals(test.getMargin(Ccp.CME), Optional.empty());
+    assertTrue(test.toTable().contains("125.00"));
+    // each CCP is sent the same portfolio, with the valuation date and currency from its information
+    assertEquals(bodies.size(), 2);
+    for (String body : bodies) {
+      assertTrue(body.contains("\"valuationDate\":\"" + VAL_DATE + "\""));
+      assertTrue(body.contains("\"reportingCurrency\":\"GBP\""));
+      assertTrue(body.contains(file.getData()));
+    }
+
+    // a client implementing only the lower-level methods compares CCPs by default
+    CcpComparison defaulted = new BlockingMarginClient(client)
+        .compareCcps(Collections.singletonList(file), set(Ccp.LCH, Ccp.EUREX, Ccp.CME));
+    assertEquals(defaulted.getResults(), test.getResults());
+    assertEquals(defaulted.getFailures().keySet(), set(Ccp.EUREX, Ccp.CME));
+    assertEquals(bodies.size(), 4);
+  }
+
   public void test_calculate_postFail() throws Exception {
     server.enqueue(new MockResponse()
         .setResponseCode(500)
@@ -401,7 +1278,29 @@ public class MarginClientTest {
 
     CompletableFuture<MarginCalcResult> future = client.calculateAsync(Ccp.LCH, REQUEST);
     assertThrows(CompletionException.class, () -> future.join());
-    assertEquals(server.getRequestCount(), 4);
+    awaitRequestCount(4);
+  }
+
+  // waits for the expected number of requests, as calculations are deleted in the background
+  private void awaitRequestCount(int expected) throws InterruptedException {
+    long start = System.nanoTime();
+    while (server.getRequestCount() < expected && System.nanoTime() - start < SECONDS.toNanos(5)) {
+      Thread.sleep(5);
+    }
+    assertEquals(server.getRequestCount(), expected);
+  }
+
+  // enqueues the responses to create, poll and delete a calculation
+  private void enqueueCalculation(MockResponse... polls) {
+    server.enqueue(new MockResponse()
+        .setResponseCode(202)
+        .setHeader("Location", server.url("/ccps/lch/calculations/789"))
+        .setBody(RESPONSE_CALC_POST));
+    for (MockResponse poll : polls) {
+      server.enqueue(poll);
+    }
+    server.enqueue(new MockResponse()
+        .setBody(RESPONSE_DELETE));
   }
 
   private ServiceInvoker createInvoker() {
@@ -416,4 +1315,54 @@ public class MarginClientTest {
     return new HashSet<>(Arrays.asList(array));
   }
 
+  //-------------------------------------------------------------------------
+  // a client implementing only the methods without a default, as an implementation outside the SDK would
+  private static final class BlockingMarginClient implements MarginClient {
+    private final MarginClient underlying;
+
+    private BlockingMarginClient(MarginClient underlying) {
+      this.underlying = underlying;
+    }
+
+    @Override
+    public CcpsResult listCcps() {
+      return underlying.listCcps();
+    }
+
+    @Override
+    public CcpInfo getCcpInfo(Ccp ccp) {
+      return underlying.getCcpInfo(ccp);
+    }
+
+    @Override
+    public String createCalculation(Ccp ccp, MarginCalcRequest request) {
+      return underlying.createCalculation(ccp, request);
+    }
+
+    @Override
+    public MarginCalcResult getCalculation(Ccp ccp, String calcId) {
+      return underlying.getCalculation(ccp, calcId);
+    }
+
+    @Override
+    public void deleteCalculation(Ccp ccp, String calcId) {
+      underlying.deleteCalculation(ccp, calcId);
+    }
+
+    @Override
+    public MarginCalcResult calculate(Ccp ccp, MarginCalcRequest request) {
+      return underlying.calculate(ccp, request);
+    }
+
+    @Override
+    public CompletableFuture<MarginCalcResult> calculateAsync(Ccp ccp, MarginCalcRequest request) {
+      return underlying.calculateAsync(ccp, request);
+    }
+
+    @Override
+    public MarginWhatIfCalcResult calculateWhatIf(Ccp ccp, MarginCalcRequest request, List<PortfolioDataFile> deltaFiles) {
+      return underlying.calculateWhatIf(ccp, request, deltaFiles);
+    }
+  }
+
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.annotations.Test;
+
+import okio.Buffer;
+
+/**
+ * Test {@link PortfolioBook}.
+ */
+@Test
+public class PortfolioBookTest {
+
+  private static final int TRADES = 20_000;
+
+  //-------------------------------------------------------------------------
+  public void test_toPortfolioDataFile() throws IOException {
+    PortfolioBook test = PortfolioBook.of("trades.csv");
+    test.setHeader("Id,Value");
+    test.put("1", "1,2");
+    test.put("2", "2,3");
+    test.put("3", "3,4");
+    PortfolioDataFile file = test.toPortfolioDataFile();
+    assertEquals(file.getName(), "trades.csv.gz.base64");
+    assertEquals(gunzip(file.getData()), "Id,Value\n1,2\n2,3\n3,4\n");
+    assertEquals(file.getDataLength(), file.getData().length());
+    assertTrue(file.isStreamed());
+    Buffer buffer = new Buffer();
+    file.writeData(buffer);
+    assertEquals(buffer.readUtf8(), file.getData());
+    assertEquals(test.size(), 3);
+    assertTrue(test.contains("2"));
+  }
+
+  public void test_toPortfolioDataFile_empty() throws IOException {
+    PortfolioBook test = PortfolioBook.of("trades.csv", PortfolioCompression.fastest());
+    assertEquals(gunzip(test.toPortfolioDataFile().getData()), "");
+    test.setHeader("Id,Value\n");
+    assertEquals(gunzip(test.toPortfolioDataFile().getData()), "Id,Value\n");
+  }
+
+  public void test_putAndRemove() throws IOException {
+    PortfolioBook test = PortfolioBook.of("trades.csv");
+    test.setHeader("Id,Value");
+    test.put("1", "1,2");
+    test.put("2", "2,3");
+    test.put("3", "3,4");
+    // a replaced trade keeps its position
+    test.put("2", "2,5");
+    assertTrue(test.remove("1"));
+    assertFalse(test.remove("1"));
+    test.put("1", "1,6");
+    assertEquals(gunzip(test.toPortfolioDataFile().getData()), "Id,Value\n2,5\n3,4\n1,6\n");
+    assertEquals(test.size(), 3);
+  }
+
+  public void test_recompressesChangedSegments() throws IOException {
+    PortfolioBook test = PortfolioBook.of("trades.csv");
+    test.setHeader("Id,Value");
+    StringBuilder expected = new StringBuilder("Id,Value\n");
+    for (int i = 0; i < TRADES; i++) {
+      test.put("T" + i, "T" + i + "," + (i * 31 % 1000));
+    }
+    test.toPortfolioDataFile();
+    long initial = test.getCompressedCount();
+    assertTrue(initial > 3);
+
+    // unchanged, so nothing is compressed
+    PortfolioDataFile unchanged = test.toPortfolioDataFile();
+    assertEquals(test.getCompressedCount(), initial);
+
+    // replacing the same line does not change the segment
+    test.put("T5", "T5," + (5 * 31 % 1000));
+    test.toPortfolioDataFile();
+    assertEquals(test.getCompressedCount(), initial);
+
+    // a change to the first and last segments
+    test.put("T0", "T0,changed");
+    test.remove("T" + (TRADES - 1));
+    PortfolioDataFile changed = test.toPortfolioDataFile();
+    assertEquals(test.getCompressedCount(), initial + 2);
+    for (int i = 0; i < TRADES - 1; i++) {
+      expected.append(i == 0 ? "T0,changed" : "T" + i + "," + (i * 31 % 1000)).append('\n');
+    }
+    assertEquals(gunzip(changed.getData()), expected.toString());
+
+    // the earlier file is unaffected
+    assertTrue(gunzip(unchanged.getData()).startsWith("Id,Value\nT0,0\n"));
+    assertEquals(unchanged.getDataLength(), unchanged.getData().length());
+
+    // the header is compressed separately
+    test.setHeader("Id,Amount");
+    test.toPortfolioDataFile();
+    assertEquals(test.getCompressedCount(), initial + 3);
+  }
+
+  public void test_removeAll() throws IOException {
+    PortfolioBook test = PortfolioBook.of("trades.csv");
+    for (int i = 0; i < TRADES; i++) {
+      test.put("T" + i, "T" + i + ",1");
+    }
+    test.toPortfolioDataFile();
+    for (int i = 0; i < TRADES; i++) {
+      assertTrue(test.remove("T" + i));
+    }
+    assertEquals(test.size(), 0);
+    assertEquals(gunzip(test.toPortfolioDataFile().getData()), "");
+  }
+
+  public void test_invalid() {
+    PortfolioBook test = PortfolioBook.of("trades.csv");
+    assertThrows(IllegalArgumentException.class, () -> test.put("1", "1,2\n2,3"));
+    assertThrows(IllegalArgumentException.class, () -> test.put("1", "1,2\r"));
+    assertThrows(NullPointerException.class, () -> test.put(null, "1,2"));
+    assertThrows(NullPointerException.class, () -> test.setHeader(null));
+  }
+
+  //-------------------------------------------------------------------------
+  // decodes and decompresses all the GZIP members
+  private static String gunzip(String data) throws IOException {
+    byte[] compressed = Base64.getDecoder().decode(data);
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      Buffer buffer = new Buffer();
+      buffer.readFrom(in);
+      return buffer.readUtf8();
+    }
+  }
+
+}
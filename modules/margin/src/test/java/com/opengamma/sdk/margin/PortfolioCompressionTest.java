@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test {@link PortfolioCompression}.
+ */
+@Test
+public class PortfolioCompressionTest {
+
+  //-------------------------------------------------------------------------
+  public void test_factories() {
+    assertEquals(PortfolioCompression.standard().getLevel(), -1);
+    assertFalse(PortfolioCompression.standard().isContentDetection());
+    assertEquals(PortfolioCompression.fastest().getLevel(), 1);
+    assertEquals(PortfolioCompression.contentAware().getLevel(), -1);
+    assertTrue(PortfolioCompression.contentAware().isContentDetection());
+    assertSame(PortfolioCompression.level(-1), PortfolioCompression.standard());
+    assertSame(PortfolioCompression.level(9).withContentDetection(), PortfolioCompression.level(9).withContentDetection());
+    assertEquals(PortfolioCompression.level(9).withContentDetection().getLevel(), 9);
+    assertThrows(IllegalArgumentException.class, () -> PortfolioCompression.level(-2));
+    assertThrows(IllegalArgumentException.class, () -> PortfolioCompression.level(10));
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_compress_matchesGzipOutputStream() throws IOException {
+    byte[] bytes = text(100_000);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(expected)) {
+      out.write(bytes);
+    }
+    assertEquals(compress(PortfolioCompression.standard(), bytes), expected.toByteArray());
+    // the compressor is reused, giving the same result
+    assertEquals(compress(PortfolioCompression.standard(), bytes), expected.toByteArray());
+  }
+
+  public void test_compress_levels() throws IOException {
+    for (byte[] bytes : new byte[][] {new byte[0], text(10), text(100_000)}) {
+      for (int level = -1; level <= 9; level++) {
+        byte[] compressed = compress(PortfolioCompression.level(level), bytes);
+        assertEquals(gunzip(compressed), bytes);
+      }
+    }
+    byte[] bytes = text(100_000);
+    assertTrue(compress(PortfolioCompression.level(0), bytes).length > bytes.length);
+    assertTrue(compress(PortfolioCompression.fastest(), bytes).length < bytes.length / 2);
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_contentDetection_compressedStored() throws IOException {
+    byte[] bytes = Files.readAllBytes(Paths.get("src/test/resources/simple.xlsx"));
+    assertTrue(PortfolioCompression.isCompressed(bytes, bytes.length));
+    byte[] compressed = compress(PortfolioCompression.contentAware(), bytes);
+    assertEquals(gunzip(compressed), bytes);
+    assertEquals(compressed, compress(PortfolioCompression.level(0), bytes));
+  }
+
+  public void test_contentDetection_uncompressed() throws IOException {
+    for (String file : new String[] {"simple.csv", "simple.xml", "simple.xls", "lch-trades.txt"}) {
+      byte[] bytes = Files.readAllBytes(Paths.get("src/test/resources", file));
+      assertFalse(PortfolioCompression.isCompressed(bytes, bytes.length));
+      assertEquals(compress(PortfolioCompression.contentAware(), bytes), compress(PortfolioCompression.standard(), bytes));
+    }
+    // too short to hold a signature
+    assertFalse(PortfolioCompression.isCompressed(new byte[] {0x50, 0x4b}, 2));
+  }
+
+  public void test_portfolioDataFile() throws IOException {
+    Path path = Paths.get("src/test/resources/simple.xlsx");
+    PortfolioDataFile test = PortfolioDataFile.of(path, PortfolioCompression.contentAware());
+    assertEquals(test.getName(), PortfolioDataFile.of(path).getName());
+    assertEquals(gunzip(Base64.getDecoder().decode(test.getData())), Files.readAllBytes(path));
+    assertEquals(PortfolioDataFile.ofStreamed(path, PortfolioCompression.contentAware()), test);
+  }
+
+  //-------------------------------------------------------------------------
+  // text with some repetition to compress
+  private static byte[] text(int size) {
+    Random random = new Random(1);
+    byte[] bytes = new byte[size];
+    for (int i = 0; i < size; i++) {
+      bytes[i] = (byte) (i % 100 < 50 ? 'a' + random.nextInt(4) : 'a' + (i % 7));
+    }
+    return bytes;
+  }
+
+  private static byte[] compress(PortfolioCompression compression, byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    compression.compress(new ByteArrayInputStream(bytes), out);
+    return out.toByteArray();
+  }
+
+  private static byte[] gunzip(byte[] compressed) throws IOException {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+
+}
@@ -6,9 +6,13 @@
 package com.opengamma.sdk.margin;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertThrows;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -16,6 +20,8 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -24,6 +30,8 @@ import org.testng.annotations.Test;
 
 import com.opengamma.sdk.margin.PortfolioDataFile;
 
+import okio.Buffer;
+
 /**
  * Test {@link PortfolioDataFile}.
  */
@@ -86,6 +94,99 @@ public class PortfolioDataFileTest {
     assertEquals(test.getData(), Base64.getEncoder().encodeToString(zip(path1, path2)));
   }
 
+  //-------------------------------------------------------------------------
+  public void test_ofParallel() throws IOException {
+    Path path = Paths.get("src/test/resources/simple.csv");
+    PortfolioDataFile test = PortfolioDataFile.ofParallel(path);
+    assertEquals(test.getName().endsWith("simple.csv.gz.base64"), true);
+    assertEquals(gunzip(test.getData()), Files.readAllBytes(path));
+  }
+
+  public void test_ofParallel_blocks() throws IOException {
+    ForkJoinPool pool = new ForkJoinPool(2);
+    Path path = Files.createTempFile("portfolio", ".csv");
+    try {
+      Random random = new Random(1);
+      // empty, less than a block, an exact number of blocks, and many blocks, with some repetition to compress
+      // the blocks are larger than the dictionary, which is then taken from the end of the previous block
+      for (int size : new int[] {0, 10, 80_000, 500_000}) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+          bytes[i] = (byte) (i % 100 < 50 ? 'a' + random.nextInt(4) : 'a' + (i % 7));
+        }
+        Files.write(path, bytes);
+        String data = PortfolioDataFile.gzipBase64(path, new ParallelGzip(pool, 40_000));
+        assertEquals(gunzip(data), bytes);
+      }
+    } finally {
+      Files.delete(path);
+      pool.shutdown();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_ofStreamed() throws IOException {
+    Path path = Paths.get("src/test/resources/simple.xlsx");
+    PortfolioDataFile expected = PortfolioDataFile.of(path);
+    PortfolioDataFile test = PortfolioDataFile.ofStreamed(path);
+    assertEquals(test.getName(), expected.getName());
+    assertEquals(test.getData(), expected.getData());
+    assertEquals(test.getDataLength(), expected.getData().length());
+    assertEquals(test, expected);
+    assertEquals(expected, test);
+    assertEquals(test.hashCode(), expected.hashCode());
+    assertEquals(test, PortfolioDataFile.ofStreamed(path));
+    // the same name and length, but different data
+    String data = expected.getData();
+    PortfolioDataFile different = PortfolioDataFile.of(expected.getName(), data.substring(1) + data.charAt(0));
+    assertNotEquals(test, different);
+    assertNotEquals(different, test);
+    assertEquals(test.toString().endsWith("data=<streamed>}"), true);
+    Buffer buffer = new Buffer();
+    test.writeData(buffer);
+    assertEquals(buffer.readUtf8(), expected.getData());
+  }
+
+  public void test_ofStreamed_large() throws IOException {
+    Path path = Files.createTempFile("portfolio", ".csv");
+    try {
+      Random random = new Random(1);
+      byte[] bytes = new byte[500_000];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = (byte) (i % 100 < 50 ? 'a' + random.nextInt(4) : 'a' + (i % 7));
+      }
+      Files.write(path, bytes);
+      PortfolioDataFile test = PortfolioDataFile.ofStreamed(path);
+      Buffer buffer = new Buffer();
+      test.writeData(buffer);
+      assertEquals(buffer.size(), test.getDataLength());
+      assertEquals(gunzip(buffer.readUtf8()), bytes);
+      assertEquals(test, PortfolioDataFile.of(path));
+
+      // a file changed after being measured is rejected
+      Files.write(path, Arrays.copyOf(bytes, 1000));
+      assertThrows(IOException.class, () -> test.writeData(new Buffer()));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  public void test_ofStreamed_notFound() {
+    assertThrows(IllegalArgumentException.class, () -> PortfolioDataFile.ofStreamed(Paths.get("src/test/resources/missing.csv")));
+  }
+
+  private static byte[] gunzip(String base64) throws IOException {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(base64)))) {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        baos.write(buffer, 0, read);
+      }
+      return baos.toByteArray();
+    }
+  }
+
   private static byte[] gzip(String str) {
     try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
       try (GZIPOutputStream zos = new GZIPOutputStream(baos)) {
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Test {@link PortfolioEncodingCache}.
+ */
+@Test
+public class PortfolioEncodingCacheTest {
+
+  private static final FileTime TIME = FileTime.fromMillis(1_500_000_000_000L);
+
+  private Path dir;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("portfolio");
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(dir);
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_get_hit() throws IOException {
+    Path path = write("a.csv", "Id,Value\n1,2\n");
+    PortfolioEncodingCache test = PortfolioEncodingCache.of(1_000_000);
+    PortfolioDataFile file = test.get(path);
+    assertEquals(file, PortfolioDataFile.of(path));
+    assertSame(test.get(path), file);
+    assertSame(test.get(dir.resolve(".").resolve("a.csv").normalize()), file);
+    EncodingCacheStats stats = test.getStats();
+    assertEquals(stats.getHitCount(), 2);
+    assertEquals(stats.getMissCount(), 1);
+    assertEquals(stats.getSize(), 1);
+    assertEquals(stats.getHitRate(), 2d / 3, 1e-9);
+
+    // each compression is cached separately
+    PortfolioDataFile fastest = test.get(path, PortfolioCompression.fastest());
+    assertEquals(fastest, PortfolioDataFile.of(path, PortfolioCompression.fastest()));
+    assertSame(test.get(path, PortfolioCompression.fastest()), fastest);
+    assertSame(test.get(path), file);
+    assertEquals(test.getStats().getSize(), 2);
+  }
+
+  public void test_get_changed() throws IOException {
+    Path path = write("a.csv", "Id,Value\n1,2\n");
+    PortfolioEncodingCache test = PortfolioEncodingCache.of(1_000_000);
+    PortfolioDataFile file = test.get(path);
+    write("a.csv", "Id,Value\n1,2\n2,3\n");
+    PortfolioDataFile changed = test.get(path);
+    assertEquals(changed, PortfolioDataFile.of(path));
+    assertEquals(test.getStats().getMissCount(), 2);
+    assertEquals(test.getStats().getEvictionCount(), 1);
+    assertEquals(test.getStats().getSize(), 1);
+    assertNotSame(changed, file);
+  }
+
+  public void test_get_sameSizeAndTime() throws IOException {
+    Path path = write("a.csv", "Id,Value\n1,2\n");
+    PortfolioEncodingCache unverified = PortfolioEncodingCache.of(1_000_000);
+    PortfolioEncodingCache verified = PortfolioEncodingCache.verifyingContent(1_000_000);
+    PortfolioDataFile file = unverified.get(path);
+    assertEquals(verified.get(path), file);
+    assertSame(verified.get(path), verified.get(path));
+    assertEquals(verified.getStats().getMissCount(), 1);
+
+    // a change undetectable by size and time is only seen when verifying the content
+    write("a.csv", "Id,Value\n1,3\n");
+    assertSame(unverified.get(path), file);
+    PortfolioDataFile changed = verified.get(path);
+    assertEquals(changed, PortfolioDataFile.of(path));
+    assertEquals(verified.getStats().getMissCount(), 2);
+    assertSame(verified.get(path), changed);
+  }
+
+  public void test_get_evictsLeastRecentlyUsed() throws IOException {
+    StringBuilder buf = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      buf.append(i).append(',').append(i * 31 % 7).append('\n');
+    }
+    Path path1 = write("a.csv", buf.toString());
+    Path path2 = write("b.csv", buf.toString() + "1,2\n");
+    Path path3 = write("c.csv", buf.toString() + "2,3\n");
+    PortfolioEncodingCache probe = PortfolioEncodingCache.of(Long.MAX_VALUE);
+    probe.get(path1);
+    long weight = probe.getStats().getWeight();
+
+    PortfolioEncodingCache test = PortfolioEncodingCache.of(weight * 2 + weight / 2);
+    PortfolioDataFile file1 = test.get(path1);
+    test.get(path2);
+    assertSame(test.get(path1), file1);
+    test.get(path3);
+    // the second file was the least recently used
+    assertEquals(test.getStats().getSize(), 2);
+    assertEquals(test.getStats().getEvictionCount(), 1);
+    assertSame(test.get(path1), file1);
+    test.get(path2);
+    assertEquals(test.getStats().getMissCount(), 4);
+  }
+
+  public void test_get_largerThanCache() throws IOException {
+    Path path = write("a.csv", "Id,Value\n1,2\n");
+    PortfolioEncodingCache test = PortfolioEncodingCache.of(10);
+    assertEquals(test.get(path), PortfolioDataFile.of(path));
+    assertEquals(test.getStats().getSize(), 0);
+    assertEquals(test.getStats().getWeight(), 0);
+  }
+
+  public void test_invalid() {
+    assertThrows(IllegalArgumentException.class, () -> PortfolioEncodingCache.of(0));
+    PortfolioEncodingCache test = PortfolioEncodingCache.of(1000);
+    assertThrows(IllegalArgumentException.class, () -> test.get(Paths.get("src/test/resources/missing.csv")));
+  }
+
+  //-------------------------------------------------------------------------
+  // writes the file, always with the same modification time
+  private Path write(String name, String content) throws IOException {
+    Path path = dir.resolve(name);
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(path, TIME);
+    return path;
+  }
+
+}
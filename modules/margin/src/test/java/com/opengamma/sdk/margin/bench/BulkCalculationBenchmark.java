@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.opengamma.sdk.common.PollingStrategy;
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.margin.Ccp;
+import com.opengamma.sdk.margin.MarginCalcJob;
+import com.opengamma.sdk.margin.MarginCalcJobResult;
+import com.opengamma.sdk.margin.MarginClient;
+
+/**
+ * Benchmark measuring the throughput of bulk calculations against a service with limited capacity.
+ * <p>
+ * The simulated service works on a fixed number of calculations at once, each taking 250ms,
+ * queueing the rest. A batch of jobs is run by starting every calculation at once with
+ * {@code calculateAsync()}, as a hand-rolled fan-out would, and by {@code calculateAll()} with
+ * a range of windows. For each, the throughput is reported as a fraction of the capacity of the
+ * service, together with the most calculations held on the service at once.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class BulkCalculationBenchmark {
+
+  private static final int WORKERS = 16;
+  private static final Duration CALC_DURATION = Duration.ofMillis(250);
+  private static final int JOBS = 480;
+  private static final PollingStrategy STRATEGY = PollingStrategy.fixed(Duration.ofMillis(25));
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  ignored
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    double capacity = WORKERS * 1000d / CALC_DURATION.toMillis();
+    System.out.println(String.format(
+        Locale.ENGLISH, "Service capacity: %d workers, %.0f calcs/sec", WORKERS, capacity));
+    System.out.println("Mode                        calcs/sec   of capacity   max on service");
+    run("fan-out, calculateAsync", 0, capacity);
+    for (int window : new int[] {8, 16, 20, 32}) {
+      run("calculateAll, window " + window, window, capacity);
+    }
+  }
+
+  private static void run(String name, int window, double capacity) throws Exception {
+    try (SimulatedMarginService service =
+        new SimulatedMarginService((path, id) -> CALC_DURATION.toNanos(), null).limitWorkers(WORKERS);
+        ServiceInvoker invoker = service.invokerBuilder().pollingStrategy(STRATEGY).build()) {
+
+      MarginClient client = window > 0 ?
+          MarginClient.builder(invoker).maxConcurrentCalculations(window).build() :
+          MarginClient.of(invoker);
+      List<MarginCalcJob> jobs = new ArrayList<>();
+      for (int i = 0; i < JOBS; i++) {
+        jobs.add(MarginCalcJob.of(i % 2 == 0 ? Ccp.LCH : Ccp.EUREX, SimulatedMarginService.REQUEST));
+      }
+      // warm up
+      client.calculate(Ccp.LCH, SimulatedMarginService.REQUEST);
+      Thread.sleep(100);
+      service.resetCounts();
+
+      long start = System.nanoTime();
+      AtomicInteger failures = new AtomicInteger();
+      if (window > 0) {
+        client.calculateAll(jobs, result -> countFailure(result, failures)).get(10, TimeUnit.MINUTES);
+      } else {
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (MarginCalcJob job : jobs) {
+          futures.add(client.calculateAsync(job.getCcp(), job.getRequest()));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.MINUTES);
+      }
+      long elapsedNanos = System.nanoTime() - start;
+      if (failures.get() > 0) {
+        throw new IllegalStateException("Failed jobs: " + failures.get());
+      }
+      double throughput = JOBS * 1e9 / elapsedNanos;
+      System.out.println(String.format(
+          Locale.ENGLISH,
+          "%-26s %11.1f %12.0f%% %16d",
+          name,
+          throughput,
+          throughput * 100 / capacity,
+          service.maxOutstanding()));
+    }
+  }
+
+  private static void countFailure(MarginCalcJobResult result, AtomicInteger failures) {
+    if (!result.isSuccess()) {
+      failures.incrementAndGet();
+    }
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.opengamma.sdk.common.PollingStrategy;
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.margin.Ccp;
+import com.opengamma.sdk.margin.CcpComparison;
+import com.opengamma.sdk.margin.CcpInfo;
+import com.opengamma.sdk.margin.MarginCalcRequest;
+import com.opengamma.sdk.margin.MarginClient;
+import com.opengamma.sdk.margin.PortfolioDataFile;
+
+/**
+ * Benchmark comparing one portfolio across several CCPs.
+ * <p>
+ * The simulated service takes a different time for each CCP, the slowest being 700ms.
+ * The comparison is run in two ways:
+ * <ul>
+ * <li>sequential - for each CCP in turn, the CCP information is read, the file is encoded
+ *  and {@code calculate()} is called, as a hand-written loop would
+ * <li>compareCcps - the file is encoded once and {@code compareCcps()} is called
+ * </ul>
+ * The wall time of each is reported, together with the time to encode the file once.
+ * The wall time of {@code compareCcps()} should be close to that of the slowest CCP plus one encode.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class CcpComparisonBenchmark {
+
+  private static final Set<Ccp> CCPS = EnumSet.of(Ccp.LCH, Ccp.EUREX, Ccp.CME, Ccp.JSCC);
+  private static final PollingStrategy STRATEGY = PollingStrategy.fixed(Duration.ofMillis(25));
+  private static final int TRADES = 300_000;
+  private static final int RUNS = 5;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  ignored
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    Path file = Files.createTempFile("portfolio", ".csv");
+    try {
+      writePortfolio(file);
+      System.out.println(String.format(
+          Locale.ENGLISH, "Portfolio of %d trades, %.1f MB, compared across %s", TRADES, Files.size(file) / 1e6, CCPS));
+      try (SimulatedMarginService service = new SimulatedMarginService(CcpComparisonBenchmark::durationNanos, null);
+          ServiceInvoker invoker = service.invokerBuilder().pollingStrategy(STRATEGY).build()) {
+
+        MarginClient client = MarginClient.of(invoker);
+        // warm up
+        sequential(client, file);
+        compare(client, file);
+
+        System.out.println("Mode            wall time ms");
+        long encode = 0;
+        long sequential = 0;
+        long compare = 0;
+        for (int i = 0; i < RUNS; i++) {
+          long start = System.nanoTime();
+          PortfolioDataFile.of(file);
+          encode += System.nanoTime() - start;
+          start = System.nanoTime();
+          sequential(client, file);
+          sequential += System.nanoTime() - start;
+          start = System.nanoTime();
+          compare(client, file);
+          compare += System.nanoTime() - start;
+        }
+        print("encode only", encode / RUNS);
+        print("sequential", sequential / RUNS);
+        print("compareCcps", compare / RUNS);
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  // the duration of a calculation, which depends on the CCP
+  private static long durationNanos(String path, long counter) {
+    if (path.contains("/cme/")) {
+      return Duration.ofMillis(700).toNanos();
+    } else if (path.contains("/jscc/")) {
+      return Duration.ofMillis(500).toNanos();
+    } else if (path.contains("/lch/")) {
+      return Duration.ofMillis(400).toNanos();
+    }
+    return Duration.ofMillis(300).toNanos();
+  }
+
+  private static void sequential(MarginClient client, Path file) {
+    for (Ccp ccp : CCPS) {
+      CcpInfo info = client.getCcpInfo(ccp);
+      List<PortfolioDataFile> files = Collections.singletonList(PortfolioDataFile.of(file));
+      MarginCalcRequest request = MarginCalcRequest.of(info.getLatestValuationDate(), info.getDefaultCurrency(), files);
+      client.calculate(ccp, request);
+    }
+  }
+
+  private static void compare(MarginClient client, Path file) {
+    CcpComparison comparison = client.compareCcps(Collections.singletonList(PortfolioDataFile.of(file)), CCPS);
+    if (!comparison.getFailures().isEmpty()) {
+      throw new IllegalStateException("Comparison failed: " + comparison.getFailures());
+    }
+  }
+
+  private static void print(String name, long nanos) {
+    System.out.println(String.format(Locale.ENGLISH, "%-15s %12.0f", name, nanos / 1e6));
+  }
+
+  private static void writePortfolio(Path file) throws IOException {
+    try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writer.write("Id,Type,Currency,Notional,Maturity,FixedRate\n");
+      for (int i = 0; i < TRADES; i++) {
+        writer.write(String.format(Locale.ENGLISH, "T%07d,SWAP,GBP,%d,2030-06-%02d,%.5f%n",
+            i, (i % 97 + 1) * 1_000_000, i % 28 + 1, 0.01 + (i % 113) / 10_000d));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import com.opengamma.sdk.common.PollingStrategy;
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.margin.Ccp;
+import com.opengamma.sdk.margin.MarginClient;
+import com.opengamma.sdk.margin.MarginClientBuilder;
+
+/**
+ * Benchmark comparing the latency of polling with that of long polling.
+ * <p>
+ * Calculations taking between 100ms and 3s are run against a simulated service, with and without
+ * long polling support. For each mode, the percentiles of the time between the calculation completing
+ * on the service and the client deleting it, having received the result, are reported with the number of polls.
+ * Long polling against a service without support shows the fallback to polling.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class CompletionLatencyBenchmark {
+
+  private static final int CALCS = 200;
+  private static final int THREADS = 32;
+  private static final Duration LONG_POLL_WAIT = Duration.ofSeconds(20);
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  ignored
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    System.out.println("                                                      delay after completion (ms)");
+    System.out.println("Mode                                                      p50      p90      p99     polls");
+    run("polling, standard backoff", false, builder -> builder);
+    run("long polling, service with support", true, builder -> builder.longPolling(LONG_POLL_WAIT));
+    run("long polling, service without support (fallback)", false, builder -> builder.longPolling(LONG_POLL_WAIT));
+  }
+
+  private static void run(
+      String name,
+      boolean serviceLongPolling,
+      Function<MarginClientBuilder, MarginClientBuilder> configFn) throws Exception {
+
+    // the duration of each calculation is derived from its identifier, so each run sees the same workload
+    try (SimulatedMarginService service = new SimulatedMarginService(
+        (path, id) -> Duration.ofMillis(100 + (id * 7919) % 2900).toNanos(), null, serviceLongPolling);
+        ServiceInvoker invoker = service.invokerBuilder().pollingStrategy(PollingStrategy.standard()).build()) {
+
+      MarginClient client = configFn.apply(MarginClient.builder(invoker).maxConcurrentPolls(CALCS)).build();
+      // warm up, then start counting
+      client.calculate(Ccp.LCH, SimulatedMarginService.REQUEST);
+      service.resetCounts();
+
+      ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+      try {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < CALCS; i++) {
+          futures.add(CompletableFuture.runAsync(() -> client.calculate(Ccp.LCH, SimulatedMarginService.REQUEST), pool));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+      } finally {
+        pool.shutdown();
+      }
+      long[] delays = service.completionDelays();
+      System.out.println(String.format(
+          Locale.ENGLISH,
+          "%-52s %8.0f %8.0f %8.0f %9d",
+          name,
+          percentile(delays, 50),
+          percentile(delays, 90),
+          percentile(delays, 99),
+          service.polls()));
+    }
+  }
+
+  private static double percentile(long[] sorted, int percentile) {
+    return sorted[(sorted.length - 1) * percentile / 100] / 1e6;
+  }
+
+}
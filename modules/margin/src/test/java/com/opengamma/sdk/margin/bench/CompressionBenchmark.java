@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.opengamma.sdk.margin.PortfolioCompression;
+import com.opengamma.sdk.margin.PortfolioDataFile;
+
+/**
+ * Benchmark measuring the compression ratio against the time to encode portfolio files.
+ * <p>
+ * Representative CSV, XML and LCH files are written, together with an {@code .xlsx}-like ZIP container
+ * of the CSV file. Each is encoded using {@code PortfolioDataFile.of(Path, PortfolioCompression)}
+ * at several levels, and with content detection. The time to encode, and the size of the compressed data
+ * as a percentage of the file, are reported.
+ * <p>
+ * The reuse of compressors is measured separately, by encoding many small files using
+ * {@code PortfolioCompression.standard()}, which reuses its compressors, and {@code GZIPOutputStream},
+ * which creates a compressor for each file.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class CompressionBenchmark {
+
+  private static final int ITERATIONS = 3;
+  private static final int SMALL_FILES = 20_000;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  optionally, the size of each file in MB
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    long size = (args.length > 0 ? Long.parseLong(args[0]) : 32) * 1_000_000;
+    Map<String, PortfolioCompression> compressions = new LinkedHashMap<>();
+    compressions.put("level 0", PortfolioCompression.level(0));
+    compressions.put("fastest (1)", PortfolioCompression.fastest());
+    compressions.put("standard (6)", PortfolioCompression.standard());
+    compressions.put("level 9", PortfolioCompression.level(9));
+    compressions.put("content aware", PortfolioCompression.contentAware());
+
+    List<Path> paths = new ArrayList<>();
+    try {
+      Path csv = write("csv", size, CompressionBenchmark::csvLine);
+      paths.add(csv);
+      paths.add(write("xml", size, CompressionBenchmark::xmlLine));
+      paths.add(write("lch", size, CompressionBenchmark::lchLine));
+      paths.add(zip(csv));
+      System.out.println("File  Compression      encode ms   size %");
+      for (Path path : paths) {
+        String type = path.toString().substring(path.toString().lastIndexOf('.') + 1);
+        for (Map.Entry<String, PortfolioCompression> entry : compressions.entrySet()) {
+          run(type, entry.getKey(), path, entry.getValue());
+        }
+      }
+      runSmallFiles();
+    } finally {
+      for (Path path : paths) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  private static void run(String type, String name, Path path, PortfolioCompression compression) throws Exception {
+    // warm up
+    long compressed = PortfolioDataFile.of(path, compression).getData().length() * 3L / 4;
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      PortfolioDataFile.of(path, compression);
+    }
+    double millis = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    System.out.println(String.format(
+        Locale.ENGLISH,
+        "%-5s %-14s %11.0f %8.1f",
+        type,
+        name,
+        millis,
+        compressed * 100d / Files.size(path)));
+  }
+
+  // encodes many small files, with and without reusing compressors
+  private static void runSmallFiles() throws Exception {
+    Path path = Paths.get("src/test/resources/lch-trades.txt");
+    byte[] bytes = Files.readAllBytes(path);
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < SMALL_FILES; i++) {
+        PortfolioDataFile.of(path, PortfolioCompression.standard());
+      }
+      long reused = System.nanoTime() - start;
+      start = System.nanoTime();
+      for (int i = 0; i < SMALL_FILES; i++) {
+        gzipBase64(path);
+      }
+      long created = System.nanoTime() - start;
+      if (round == 2) {
+        System.out.println(String.format(
+            Locale.ENGLISH,
+            "%n%,d files of %,d bytes: reused compressors %.1f us/file, new compressor per file %.1f us/file",
+            SMALL_FILES,
+            bytes.length,
+            reused / 1e3 / SMALL_FILES,
+            created / 1e3 / SMALL_FILES));
+      }
+    }
+  }
+
+  // encodes the file in the same way as PortfolioDataFile.of(Path), but with a new compressor
+  private static String gzipBase64(Path path) throws Exception {
+    if (Files.notExists(path)) {
+      throw new IllegalArgumentException("Could not find portfolio file: " + path.toAbsolutePath());
+    }
+    ByteArrayOutputStream baos = new ByteArrayOutputStream((int) (Files.size(path) / 4 + 1));
+    try (OutputStream out = new GZIPOutputStream(Base64.getEncoder().wrap(baos))) {
+      Files.copy(path, out);
+    }
+    return baos.toString("ISO-8859-1");
+  }
+
+  //-------------------------------------------------------------------------
+  private interface LineWriter {
+    String line(Random random, long index);
+  }
+
+  private static Path write(String type, long size, LineWriter writer) throws Exception {
+    Path path = Files.createTempFile("portfolio", "." + type);
+    Random random = new Random(1);
+    try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      long index = 0;
+      for (long written = 0; written < size; index++) {
+        String line = writer.line(random, index);
+        out.write(line);
+        written += line.length();
+      }
+    }
+    return path;
+  }
+
+  private static String csvLine(Random random, long index) {
+    return "T" + random.nextInt(10_000_000) + ",SWAP," + (random.nextBoolean() ? "GBP" : "USD") + "," +
+        random.nextInt(100) + "000000,2017-06-01,20" + (18 + random.nextInt(30)) + "-06-01," +
+        (random.nextInt(500) / 100d) + "\n";
+  }
+
+  private static String xmlLine(Random random, long index) {
+    return "  <trade>\n" +
+        "    <tradeId>T" + random.nextInt(10_000_000) + "</tradeId>\n" +
+        "    <productType>SWAP</productType>\n" +
+        "    <currency>" + (random.nextBoolean() ? "GBP" : "USD") + "</currency>\n" +
+        "    <notional>" + random.nextInt(100) + "000000</notional>\n" +
+        "    <startDate>2017-06-01</startDate>\n" +
+        "    <endDate>20" + (18 + random.nextInt(30)) + "-06-01</endDate>\n" +
+        "    <fixedRate>" + (random.nextInt(500) / 100d) + "</fixedRate>\n" +
+        "  </trade>\n";
+  }
+
+  // a line in the format of the LCH trade file in the test resources
+  private static String lchLine(Random random, long index) {
+    boolean payFixed = random.nextBoolean();
+    String fixed = "FIX\t0.00" + random.nextInt(10_000) + "\t\t\t\t30/360\tMODFOLLOWING\t05/07/2016\t1Y\t5";
+    String floating = "FLT\t0\t\tEURIBOR-Reuters\t6M\tACT/360\tMODFOLLOWING\t05/07/2016\t6M\t5";
+    return String.format(
+        Locale.ENGLISH,
+        "01/07/2016\tLCH%011d\t01/07/2016\t01/07/2016 %02d:%02d\t05/07/20%02d\t%s\t%d\tSWAPSWIRE\t%d-2\tIRS\tN\t" +
+            "XXXXDKKKXXX\tDBS\tH\t%dC\t%s\t\t\t\t\t\t\tXXXXDKKKXXX\tDBS\tH\t%dC\t%s\t\t\t%.2f\t%.2f\tN\t\t\t\n",
+        index,
+        random.nextInt(24),
+        random.nextInt(60),
+        18 + random.nextInt(40),
+        random.nextBoolean() ? "EUR" : "USD",
+        (1 + random.nextInt(500)) * 1_000_000L,
+        index,
+        44_000_000 + random.nextInt(1_000_000),
+        payFixed ? fixed : floating,
+        44_000_000 + random.nextInt(1_000_000),
+        payFixed ? floating : fixed,
+        (random.nextDouble() - 0.5) * 100_000,
+        (random.nextDouble() - 0.5) * 100_000);
+  }
+
+  // a ZIP container of the file, like an .xlsx file
+  private static Path zip(Path source) throws Exception {
+    Path path = Files.createTempFile("portfolio", ".xlsx");
+    try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(path))) {
+      out.putNextEntry(new ZipEntry("sheet1.csv"));
+      Files.copy(source, out);
+      out.closeEntry();
+    }
+    return path;
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+import com.opengamma.sdk.common.PollingStrategy;
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.margin.Ccp;
+import com.opengamma.sdk.margin.MarginCalcRequest;
+import com.opengamma.sdk.margin.MarginClient;
+import com.opengamma.sdk.margin.PortfolioDataFile;
+
+/**
+ * Benchmark measuring the sharing of calculations in flight between identical requests.
+ * <p>
+ * Several desks request the same few calculations at about the same time. Each desk submits
+ * each request using {@code calculateAsync()}, with each calculation taking 500ms on the simulated service.
+ * The requests are run with and without deduplication, and the time for all to complete and
+ * the number of calculations created on the service are reported.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class DeduplicationBenchmark {
+
+  private static final Duration CALC_DURATION = Duration.ofMillis(500);
+  private static final PollingStrategy STRATEGY = PollingStrategy.fixed(Duration.ofMillis(25));
+  private static final int PORTFOLIOS = 5;
+  private static final int DESKS = 8;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  ignored
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    List<MarginCalcRequest> distinct = new ArrayList<>();
+    for (int i = 0; i < PORTFOLIOS; i++) {
+      PortfolioDataFile file = PortfolioDataFile.of("portfolio" + i + ".csv", "T" + i + ",SWAP,GBP,1000000\n");
+      distinct.add(SimulatedMarginService.REQUEST.toBuilder().portfolioData(Collections.singletonList(file)).build());
+    }
+    System.out.println("Mode            elapsed ms   calcs on service");
+    run("separate", distinct, false);
+    run("deduplicated", distinct, true);
+  }
+
+  private static void run(String name, List<MarginCalcRequest> distinct, boolean deduplicate) throws Exception {
+    try (SimulatedMarginService service = new SimulatedMarginService((path, id) -> CALC_DURATION.toNanos(), null);
+        ServiceInvoker invoker = service.invokerBuilder().pollingStrategy(STRATEGY).build()) {
+
+      MarginClient client = MarginClient.builder(invoker).deduplicateCalculations(deduplicate).build();
+      long start = System.nanoTime();
+      List<CompletableFuture<?>> futures = new ArrayList<>();
+      for (int desk = 0; desk < DESKS; desk++) {
+        for (MarginCalcRequest request : distinct) {
+          futures.add(client.calculateAsync(Ccp.LCH, request));
+        }
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+      long elapsed = System.nanoTime() - start;
+      System.out.println(String.format(
+          Locale.ENGLISH,
+          "%-14s %11.0f %18d",
+          name,
+          elapsed / 1e6,
+          service.creates()));
+    }
+  }
+
+}
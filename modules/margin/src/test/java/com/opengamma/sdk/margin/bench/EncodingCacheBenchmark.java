@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Function;
+
+import com.opengamma.sdk.margin.PortfolioDataFile;
+import com.opengamma.sdk.margin.PortfolioEncodingCache;
+
+/**
+ * Benchmark measuring repeated submission of the same portfolio file.
+ * <p>
+ * A CSV file of trades is written, then encoded repeatedly, as when the same base portfolio is
+ * sent for several what-if calculations. The file is encoded using {@code PortfolioDataFile.of(Path)} each time,
+ * and obtained from a {@code PortfolioEncodingCache}, with and without verifying the content.
+ * The average time for each submission, and the hit rate of the cache, are reported.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class EncodingCacheBenchmark {
+
+  private static final int SUBMISSIONS = 20;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  optionally, the size of the file in MB
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    long size = (args.length > 0 ? Long.parseLong(args[0]) : 32) * 1_000_000;
+    Path path = Files.createTempFile("portfolio", ".csv");
+    try {
+      Random random = new Random(1);
+      try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+        for (long written = 0; written < size; ) {
+          String line = "T" + random.nextInt(10_000_000) + ",SWAP," + (random.nextBoolean() ? "GBP" : "USD") + "," +
+              random.nextInt(100) + "000000,2017-06-01,20" + (18 + random.nextInt(30)) + "-06-01," +
+              (random.nextInt(500) / 100d) + "\n";
+          writer.write(line);
+          written += line.length();
+        }
+      }
+      System.out.println(String.format(Locale.ENGLISH, "File %.0f MB, %d submissions", Files.size(path) / 1e6, SUBMISSIONS));
+      System.out.println("Mode             ms/submission   hit rate");
+      run("uncached", path, PortfolioDataFile::of, null);
+      PortfolioEncodingCache cache = PortfolioEncodingCache.of(256_000_000);
+      run("cached", path, cache::get, cache);
+      PortfolioEncodingCache verifying = PortfolioEncodingCache.verifyingContent(256_000_000);
+      run("cached, digest", path, verifying::get, verifying);
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  private static void run(
+      String name,
+      Path path,
+      Function<Path, PortfolioDataFile> encoder,
+      PortfolioEncodingCache cache) {
+
+    long start = System.nanoTime();
+    for (int i = 0; i < SUBMISSIONS; i++) {
+      encoder.apply(path);
+    }
+    double millis = (System.nanoTime() - start) / 1e6 / SUBMISSIONS;
+    String hitRate = cache != null ? String.format(Locale.ENGLISH, "%.2f", cache.getStats().getHitRate()) : "-";
+    System.out.println(String.format(Locale.ENGLISH, "%-16s %14.1f %10s", name, millis, hitRate));
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import com.opengamma.sdk.margin.PortfolioDataFile;
+
+/**
+ * Benchmark measuring the throughput of compressing a large portfolio file.
+ * <p>
+ * A CSV file of trades is written, then compressed using {@code PortfolioDataFile.of(Path)},
+ * which uses a single stream, and {@code ofParallel(Path, ForkJoinPool)} with pools of 1, 4 and 16 threads.
+ * The throughput in MB of the file per second, and the size of the Base-64 data, are reported.
+ * The speedup is bounded by the number of cores available.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class ParallelGzipBenchmark {
+
+  private static final int ITERATIONS = 3;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  optionally, the size of the file in MB
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    long size = (args.length > 0 ? Long.parseLong(args[0]) : 256) * 1_000_000;
+    Path path = Files.createTempFile("portfolio", ".csv");
+    try {
+      Random random = new Random(1);
+      try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+        for (long written = 0; written < size; ) {
+          String line = "T" + random.nextInt(10_000_000) + ",SWAP," + (random.nextBoolean() ? "GBP" : "USD") + "," +
+              random.nextInt(100) + "000000,2017-06-01,20" + (18 + random.nextInt(30)) + "-06-01," +
+              (random.nextInt(500) / 100d) + "\n";
+          writer.write(line);
+          written += line.length();
+        }
+      }
+      System.out.println(String.format(Locale.ENGLISH, "File %.0f MB, %d cores", Files.size(path) / 1e6,
+          Runtime.getRuntime().availableProcessors()));
+      System.out.println("Mode            MB/s   Base-64 MB");
+      run("single stream", path, () -> PortfolioDataFile.of(path));
+      for (int threads : new int[] {1, 4, 16}) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+          run("parallel " + threads, path, () -> PortfolioDataFile.ofParallel(path, pool));
+        } finally {
+          pool.shutdown();
+        }
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  private static void run(String name, Path path, Supplier<PortfolioDataFile> compressor) throws Exception {
+    // warm up
+    int length = compressor.get().getData().length();
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      compressor.get();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9 / ITERATIONS;
+    System.out.println(String.format(
+        Locale.ENGLISH,
+        "%-13s %6.1f %12.1f",
+        name,
+        Files.size(path) / 1e6 / seconds,
+        length / 1e6));
+  }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.opengamma.sdk.common.PollingStrategy;
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.margin.Ccp;
+import com.opengamma.sdk.margin.MarginClient;
+
+/**
+ * Benchmark comparing polling strategies against a simulated service.
+ * <p>
+ * The workload mixes small intraday calculations on LCH (80-400ms) with large
+ * end-of-day calculations on EUREX (3-6s). For each strategy, the end-to-end latency
+ * percentiles of each kind of calculation and the total number of polls are reported.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class PollingStrategyBenchmark {
+
+  private static final int CALCS = 400;
+  private static final int THREADS = 32;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  ignored
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    System.out.println("                                   intraday (ms)    end-of-day (ms)");
+    System.out.println("Strategy                           p50      p99      p50      p99     polls");
+    run("fixed 500ms (previous behaviour)", PollingStrategy.fixed(Duration.ofMillis(500)));
+    run("standard backoff", PollingStrategy.standard());
+    run("standard backoff + duration model", PollingStrategy.standard().withDurationModel());
+    run("standard backoff + Retry-After: 1", PollingStrategy.standard(), "1");
+  }
+
+  private static void run(String name, PollingStrategy strategy) throws Exception {
+    run(name, strategy, null);
+  }
+
+  private static void run(String name, PollingStrategy strategy, String retryAfter) throws Exception {
+    // the duration of each calculation is derived from its identifier, so each run sees the same workload
+    try (SimulatedMarginService service = new SimulatedMarginService(
+        (path, id) -> path.contains("/lch/") ?
+            Duration.ofMillis(80 + (id * 7919) % 320).toNanos() :
+            Duration.ofMillis(3000 + (id * 7919) % 3000).toNanos(),
+        retryAfter)) {
+
+      long[] intraday = new long[CALCS * 3 / 4];
+      long[] endOfDay = new long[CALCS / 4];
+      ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+      try (ServiceInvoker invoker = service.invokerBuilder().pollingStrategy(strategy).build()) {
+        MarginClient client = MarginClient.of(invoker);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < CALCS; i++) {
+          boolean eod = i % 4 == 0;
+          long[] latencies = eod ? endOfDay : intraday;
+          int index = eod ? i / 4 : i - i / 4 - 1;
+          futures.add(pool.submit(() -> {
+            long start = System.nanoTime();
+            client.calculate(eod ? Ccp.EUREX : Ccp.LCH, SimulatedMarginService.REQUEST);
+            latencies[index] = System.nanoTime() - start;
+          }));
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        pool.shutdown();
+      }
+      Arrays.sort(intraday);
+      Arrays.sort(endOfDay);
+      System.out.println(String.format(
+          Locale.ENGLISH,
+          "%-33s %6.0f %8.0f %8.0f %8.0f %9d",
+          name,
+          percentile(intraday, 50),
+          percentile(intraday, 99),
+          percentile(endOfDay, 50),
+          percentile(endOfDay, 99),
+          service.polls()));
+    }
+  }
+
+  private static double percentile(long[] sorted, int percentile) {
+    return sorted[(sorted.length - 1) * percentile / 100] / 1e6;
+  }
+
+}
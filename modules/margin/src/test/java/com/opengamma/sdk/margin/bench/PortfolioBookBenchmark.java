@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.util.Locale;
+import java.util.Random;
+
+import com.opengamma.sdk.margin.PortfolioBook;
+import com.opengamma.sdk.margin.PortfolioDataFile;
+
+/**
+ * Benchmark measuring the time to encode a book after a small change.
+ * <p>
+ * A CSV book of trades is held as a {@code PortfolioBook}, and as a string. In each round, a few trades
+ * are amended, added and removed, and the book is encoded, using {@code PortfolioBook.toPortfolioDataFile()}
+ * and using {@code PortfolioDataFile.of(String, String)} on the whole string. The time to encode,
+ * and the size of the encoded data, are reported.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class PortfolioBookBenchmark {
+
+  private static final String HEADER = "Id,Product,Currency,Notional,StartDate,EndDate,FixedRate";
+  private static final int ROUNDS = 20;
+  private static final int CHANGES = 10;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  optionally, the number of trades in the book
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    int trades = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+    Random random = new Random(1);
+    PortfolioBook book = PortfolioBook.of("trades.csv");
+    book.setHeader(HEADER);
+    String[] lines = new String[trades + ROUNDS * CHANGES];
+    for (int i = 0; i < trades; i++) {
+      lines[i] = line(random, i);
+      book.put("T" + i, lines[i]);
+    }
+    long start = System.nanoTime();
+    PortfolioDataFile initial = book.toPortfolioDataFile();
+    double initialMillis = (System.nanoTime() - start) / 1e6;
+
+    long bookNanos = 0;
+    long fullNanos = 0;
+    int first = 0;
+    int next = trades;
+    PortfolioDataFile bookFile = initial;
+    PortfolioDataFile fullFile = null;
+    for (int round = 0; round < ROUNDS; round++) {
+      // amend some trades, add some at the end and remove some from the start
+      for (int i = 0; i < CHANGES; i++) {
+        int amended = first + random.nextInt(next - first);
+        lines[amended] = line(random, amended);
+        book.put("T" + amended, lines[amended]);
+        lines[next] = line(random, next);
+        book.put("T" + next, lines[next]);
+        next++;
+        book.remove("T" + first);
+        lines[first++] = null;
+      }
+      start = System.nanoTime();
+      bookFile = book.toPortfolioDataFile();
+      bookNanos += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      StringBuilder buf = new StringBuilder(HEADER).append('\n');
+      for (int i = first; i < next; i++) {
+        buf.append(lines[i]).append('\n');
+      }
+      fullFile = PortfolioDataFile.of("trades.csv.gz.base64", buf.toString());
+      fullNanos += System.nanoTime() - start;
+    }
+    System.out.println(String.format(Locale.ENGLISH, "Book of %,d trades, %d trades amended, added and removed per round", trades, CHANGES));
+    System.out.println(String.format(Locale.ENGLISH, "Initial encoding of book:     %8.1f ms", initialMillis));
+    System.out.println(String.format(
+        Locale.ENGLISH,
+        "Whole book compressed:        %8.1f ms per round, %,d characters",
+        fullNanos / 1e6 / ROUNDS,
+        fullFile.getData().length()));
+    System.out.println(String.format(
+        Locale.ENGLISH,
+        "Changed segments compressed:  %8.1f ms per round, %,d characters",
+        bookNanos / 1e6 / ROUNDS,
+        bookFile.getData().length()));
+  }
+
+  private static String line(Random random, int index) {
+    return "T" + index + ",SWAP," + (random.nextBoolean() ? "GBP" : "USD") + "," +
+        random.nextInt(100) + "000000,2017-06-01,20" + (18 + random.nextInt(30)) + "-06-01," +
+        (random.nextInt(500) / 100d);
+  }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.joda.beans.ser.JodaBeanSer;
+import org.joda.beans.ser.SerDeserializers;
+
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.common.auth.Credentials;
+import com.opengamma.sdk.margin.Ccp;
+import com.opengamma.sdk.margin.MarginCalcMode;
+import com.opengamma.sdk.margin.MarginCalcResult;
+import com.opengamma.sdk.margin.MarginCalcResultStatus;
+import com.opengamma.sdk.margin.MarginCalcType;
+import com.opengamma.sdk.margin.MarginClient;
+import com.opengamma.sdk.margin.TestingAuthClient;
+import com.opengamma.sdk.margin.TradeCurveSensitivity;
+import com.opengamma.sdk.margin.TradeSensitivity;
+import com.opengamma.sdk.margin.TradeValuation;
+import com.opengamma.sdk.margin.TradeValuations;
+import com.opengamma.sdk.margin.TradeValue;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Benchmark measuring the memory allocated to parse a large calculation result.
+ * <p>
+ * A completed result with trade valuations, including delta and gamma curve sensitivities,
+ * is served for each trade count, and is fetched and parsed repeatedly in two ways. The first reads the
+ * response into a {@code String} before parsing it, as {@code getCalculation()} did before parsing was streamed.
+ * The second calls {@code getCalculation()}, which parses the response as it is read.
+ * <p>
+ * For each, the bytes allocated by the calling thread, which reads and parses the response, are reported
+ * together with the number and duration of garbage collections and the time taken. The allocation is measured
+ * using {@code ThreadMXBean}, and the collections using {@code GarbageCollectorMXBean}, which are the sources
+ * of the allocation and collection figures of the JMH GC profiler. JMH is not a dependency of this build.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class ResponseParsingBenchmark {
+
+  private static final int ITERATIONS = 5;
+  private static final JodaBeanSer SERIALIZER = JodaBeanSer.COMPACT.withDeserializers(SerDeserializers.LENIENT);
+  private static final List<Period> TENORS = Arrays.asList(
+      Period.ofMonths(3), Period.ofMonths(6), Period.ofYears(1), Period.ofYears(2), Period.ofYears(5), Period.ofYears(10));
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  optionally, the trade counts to run
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    Logger.getLogger(MockWebServer.class.getName()).setLevel(Level.WARNING);
+    int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[] {10_000, 100_000};
+    System.out.println("    trades  parsed from  response MB  allocated MB/result  GCs/result  GC ms/result  ms/result");
+    for (int size : sizes) {
+      run(size);
+    }
+  }
+
+  private static void run(int trades) throws Exception {
+    // the JSON is written straight to the buffer, which is shared by the responses, to minimize the heap used
+    Buffer json = new Buffer();
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(json.outputStream(), StandardCharsets.UTF_8))) {
+      JodaBeanSer.COMPACT.jsonWriter().write(result(trades), false, writer);
+    }
+    long responseBytes = json.size();
+    MockWebServer server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return new MockResponse()
+            .setHeader("Content-Type", "application/json")
+            .setBody(json.clone());
+      }
+    });
+    server.start();
+    try (ServiceInvoker invoker = ServiceInvoker.builder(Credentials.ofApiKey("user", "password"))
+        .serviceUrl(server.url("/"))
+        .authClientFactory(inv -> new TestingAuthClient())
+        .build()) {
+      MarginClient client = MarginClient.of(invoker);
+      Request request = new Request.Builder().url(server.url("/margin/v3/ccps/lch/calculations/1")).get().build();
+      measure(trades, "string", responseBytes, () -> {
+        // as before parsing was streamed, reading the whole response first
+        try (Response response = invoker.getHttpClient().newCall(request).execute()) {
+          return SERIALIZER.jsonReader().read(response.body().string(), MarginCalcResult.class);
+        }
+      });
+      measure(trades, "stream", responseBytes, () -> client.getCalculation(Ccp.LCH, "1"));
+    } finally {
+      server.shutdown();
+    }
+  }
+
+  private interface Parser {
+    MarginCalcResult parse() throws Exception;
+  }
+
+  // measures the allocation, garbage collection and time to fetch and parse the result
+  private static void measure(int trades, String name, long responseBytes, Parser parser) throws Exception {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    // warm up
+    parser.parse();
+
+    long allocated = threads.getThreadAllocatedBytes(threadId);
+    long gcCount = gcCount();
+    long gcMillis = gcMillis();
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      if (parser.parse().getTradeValuations().get().getTrades().size() != trades) {
+        throw new IllegalStateException("Incorrect result");
+      }
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+    gcCount = gcCount() - gcCount;
+    gcMillis = gcMillis() - gcMillis;
+    System.out.println(String.format(
+        Locale.ENGLISH,
+        "%10d  %-11s %12.1f %20.1f %11.1f %13.0f %10.0f",
+        trades,
+        name,
+        responseBytes / 1e6,
+        allocated / 1e6 / ITERATIONS,
+        gcCount / (double) ITERATIONS,
+        gcMillis / (double) ITERATIONS,
+        elapsedNanos / 1e6 / ITERATIONS));
+  }
+
+  private static long gcCount() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+  }
+
+  private static long gcMillis() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+  }
+
+  // a result with trade valuations, each with delta and gamma sensitivities to two curves
+  private static MarginCalcResult result(int trades) {
+    List<TradeValuation> valuations = new ArrayList<>(trades);
+    for (int i = 0; i < trades; i++) {
+      valuations.add(TradeValuation.of(
+          "trade" + i,
+          TradeValue.of(1_000_000d + i, "GBP", 1_000_000d + i),
+          sensitivity(i),
+          sensitivity(-i)));
+    }
+    return MarginCalcResult.of(
+        MarginCalcResultStatus.COMPLETED,
+        new HashSet<>(Arrays.asList(MarginCalcType.MARGIN, MarginCalcType.DELTA, MarginCalcType.GAMMA)),
+        MarginCalcMode.SPOT,
+        SimulatedMarginService.VAL_DATE,
+        "GBP",
+        "GBP",
+        true,
+        Collections.emptyList(),
+        null,
+        null,
+        TradeValuations.of(1_000_000d * trades, 1d, 1d, valuations),
+        Collections.emptyList());
+  }
+
+  private static TradeSensitivity sensitivity(int seed) {
+    List<TradeCurveSensitivity> curves = new ArrayList<>();
+    for (String curve : Arrays.asList("GBP-SONIA", "USD-SOFR")) {
+      Map<Period, Double> tenors = new LinkedHashMap<>();
+      for (int i = 0; i < TENORS.size(); i++) {
+        tenors.put(TENORS.get(i), (seed + i) * 12.345d);
+      }
+      curves.add(TradeCurveSensitivity.of(curve, curve.substring(0, 3), seed * 74.07d, tenors));
+    }
+    return TradeSensitivity.of(seed * 148.14d, curves);
+  }
+
+}
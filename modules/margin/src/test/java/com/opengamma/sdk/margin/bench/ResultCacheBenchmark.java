@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import com.opengamma.sdk.common.PollingStrategy;
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.margin.Ccp;
+import com.opengamma.sdk.margin.MarginCalcRequest;
+import com.opengamma.sdk.margin.MarginClient;
+import com.opengamma.sdk.margin.PortfolioDataFile;
+import com.opengamma.sdk.margin.ResultCacheStats;
+
+/**
+ * Benchmark measuring the result cache against a workload of repeated requests.
+ * <p>
+ * A user interface re-requests calculations it has already made. Here, requests are drawn at
+ * random from a small set of distinct portfolios, each calculation taking 200ms on the simulated service.
+ * The requests are run with and without the result cache, and the time per request and the number
+ * of calculations created on the service are reported. A hit still computes the digest of the
+ * request, which reads all the portfolio data, so the portfolios are of a realistic size.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class ResultCacheBenchmark {
+
+  private static final Duration CALC_DURATION = Duration.ofMillis(200);
+  private static final PollingStrategy STRATEGY = PollingStrategy.fixed(Duration.ofMillis(25));
+  private static final int PORTFOLIOS = 10;
+  private static final int PORTFOLIO_CHARS = 2_000_000;
+  private static final int REQUESTS = 100;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  ignored
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    Random random = new Random(1);
+    List<MarginCalcRequest> distinct = new ArrayList<>();
+    for (int i = 0; i < PORTFOLIOS; i++) {
+      StringBuilder data = new StringBuilder(PORTFOLIO_CHARS);
+      while (data.length() < PORTFOLIO_CHARS) {
+        data.append("T").append(random.nextInt(1_000_000)).append(",SWAP,GBP,").append(random.nextInt(100)).append("000000\n");
+      }
+      PortfolioDataFile file = PortfolioDataFile.of("portfolio" + i + ".csv", data.toString());
+      distinct.add(SimulatedMarginService.REQUEST.toBuilder().portfolioData(Collections.singletonList(file)).build());
+    }
+    List<MarginCalcRequest> requests = new ArrayList<>();
+    for (int i = 0; i < REQUESTS; i++) {
+      requests.add(distinct.get(random.nextInt(PORTFOLIOS)));
+    }
+
+    System.out.println("Mode          ms/request   calcs on service   hit rate");
+    run("no cache", requests, false);
+    run("result cache", requests, true);
+  }
+
+  private static void run(String name, List<MarginCalcRequest> requests, boolean cache) throws Exception {
+    try (SimulatedMarginService service = new SimulatedMarginService((path, id) -> CALC_DURATION.toNanos(), null);
+        ServiceInvoker invoker = service.invokerBuilder().pollingStrategy(STRATEGY).build()) {
+
+      MarginClient client = cache ?
+          MarginClient.builder(invoker).resultCache(256L * 1024 * 1024, Duration.ofHours(1)).build() :
+          MarginClient.of(invoker);
+      long start = System.nanoTime();
+      for (MarginCalcRequest request : requests) {
+        client.calculate(Ccp.LCH, request);
+      }
+      long elapsed = System.nanoTime() - start;
+      double hitRate = client.getResultCacheStats().map(ResultCacheStats::getHitRate).orElse(0d);
+      System.out.println(String.format(
+          Locale.ENGLISH,
+          "%-12s %12.1f %18d %9.0f%%",
+          name,
+          elapsed / 1e6 / requests.size(),
+          service.creates(),
+          hitRate * 100));
+    }
+  }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.joda.beans.ser.JodaBeanSer;
+
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.common.auth.Credentials;
+import com.opengamma.sdk.margin.Ccp;
+import com.opengamma.sdk.margin.MarginCalcMode;
+import com.opengamma.sdk.margin.MarginCalcResult;
+import com.opengamma.sdk.margin.MarginCalcResultStatus;
+import com.opengamma.sdk.margin.MarginCalcType;
+import com.opengamma.sdk.margin.MarginClient;
+import com.opengamma.sdk.margin.TestingAuthClient;
+import com.opengamma.sdk.margin.TradeCurveSensitivity;
+import com.opengamma.sdk.margin.TradeSensitivity;
+import com.opengamma.sdk.margin.TradeValuation;
+import com.opengamma.sdk.margin.TradeValuations;
+import com.opengamma.sdk.margin.TradeValue;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Benchmark measuring the time to reload a large calculation result from the result store.
+ * <p>
+ * A completed result with trade valuations, including delta and gamma curve sensitivities,
+ * is served for each trade count. The time to fetch and parse the JSON of the result using
+ * {@code getCalculation()} is compared with the time for a new client, as if in another process,
+ * to read the same result from the store, both the first read, which opens and scans the store,
+ * and later reads. The size of the JSON is also reported.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class ResultStoreBenchmark {
+
+  private static final int ITERATIONS = 5;
+  private static final long MAX_SIZE = 1024L * 1024 * 1024;
+  private static final List<Period> TENORS = Arrays.asList(
+      Period.ofMonths(3), Period.ofMonths(6), Period.ofYears(1), Period.ofYears(2), Period.ofYears(5), Period.ofYears(10));
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  optionally, the trade counts to run
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    Logger.getLogger(MockWebServer.class.getName()).setLevel(Level.WARNING);
+    int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[] {10_000, 100_000};
+    System.out.println("    trades   JSON MB   fetch+parse ms   store first ms   store ms");
+    for (int size : sizes) {
+      run(size);
+    }
+  }
+
+  private static void run(int trades) throws Exception {
+    // the JSON is written straight to the buffer, which is shared by the responses, to minimize the heap used
+    Buffer json = new Buffer();
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(json.outputStream(), StandardCharsets.UTF_8))) {
+      JodaBeanSer.COMPACT.jsonWriter().write(result(trades), false, writer);
+    }
+    long jsonBytes = json.size();
+    MockWebServer server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        switch (request.getMethod()) {
+          case "POST":
+            return new MockResponse()
+                .setResponseCode(202)
+                .setHeader("Location", server.url("/ccps/lch/calculations/1"));
+          case "DELETE":
+            return new MockResponse();
+          default:
+            return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(json.clone());
+        }
+      }
+    });
+    server.start();
+    Path directory = Files.createTempDirectory("result-store");
+    try {
+      double fetchMillis;
+      try (ServiceInvoker invoker = invoker(server)) {
+        MarginClient client = MarginClient.builder(invoker).resultStore(directory, MAX_SIZE).build();
+        // warm up, and store the result
+        check(client.calculate(Ccp.LCH, SimulatedMarginService.REQUEST), trades);
+        client.getCalculation(Ccp.LCH, "1");
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+          check(client.getCalculation(Ccp.LCH, "1"), trades);
+        }
+        fetchMillis = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+      }
+
+      double firstMillis;
+      double storeMillis;
+      int requests = server.getRequestCount();
+      try (ServiceInvoker invoker = invoker(server)) {
+        MarginClient client = MarginClient.builder(invoker).resultStore(directory, MAX_SIZE).build();
+        long start = System.nanoTime();
+        check(client.calculate(Ccp.LCH, SimulatedMarginService.REQUEST), trades);
+        firstMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+          check(client.calculate(Ccp.LCH, SimulatedMarginService.REQUEST), trades);
+        }
+        storeMillis = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+      }
+      if (server.getRequestCount() != requests) {
+        throw new IllegalStateException("Result not read from the store");
+      }
+      System.out.println(String.format(
+          Locale.ENGLISH,
+          "%10d %9.1f %16.0f %16.0f %10.0f",
+          trades,
+          jsonBytes / 1e6,
+          fetchMillis,
+          firstMillis,
+          storeMillis));
+    } finally {
+      server.shutdown();
+      try (Stream<Path> files = Files.list(directory)) {
+        for (Path file : files.collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+      Files.delete(directory);
+    }
+  }
+
+  private static ServiceInvoker invoker(MockWebServer server) {
+    return ServiceInvoker.builder(Credentials.ofApiKey("user", "password"))
+        .serviceUrl(server.url("/"))
+        .authClientFactory(inv -> new TestingAuthClient())
+        .build();
+  }
+
+  private static void check(MarginCalcResult result, int trades) {
+    if (result.getTradeValuations().get().getTrades().size() != trades) {
+      throw new IllegalStateException("Incorrect result");
+    }
+  }
+
+  // a result with trade valuations, each with delta and gamma sensitivities to two curves
+  private static MarginCalcResult result(int trades) {
+    List<TradeValuation> valuations = new ArrayList<>(trades);
+    for (int i = 0; i < trades; i++) {
+      valuations.add(TradeValuation.of(
+          "trade" + i,
+          TradeValue.of(1_000_000d + i, "GBP", 1_000_000d + i),
+          sensitivity(i),
+          sensitivity(-i)));
+    }
+    return MarginCalcResult.of(
+        MarginCalcResultStatus.COMPLETED,
+        new HashSet<>(Arrays.asList(MarginCalcType.MARGIN, MarginCalcType.DELTA, MarginCalcType.GAMMA)),
+        MarginCalcMode.SPOT,
+        SimulatedMarginService.VAL_DATE,
+        "GBP",
+        "GBP",
+        true,
+        Collections.emptyList(),
+        null,
+        null,
+        TradeValuations.of(1_000_000d * trades, 1d, 1d, valuations),
+        Collections.emptyList());
+  }
+
+  private static TradeSensitivity sensitivity(int seed) {
+    List<TradeCurveSensitivity> curves = new ArrayList<>();
+    for (String curve : Arrays.asList("GBP-SONIA", "USD-SOFR")) {
+      Map<Period, Double> tenors = new LinkedHashMap<>();
+      for (int i = 0; i < TENORS.size(); i++) {
+        tenors.put(TENORS.get(i), (seed + i) * 12.345d);
+      }
+      curves.add(TradeCurveSensitivity.of(curve, curve.substring(0, 3), seed * 74.07d, tenors));
+    }
+    return TradeSensitivity.of(seed * 148.14d, curves);
+  }
+
+}
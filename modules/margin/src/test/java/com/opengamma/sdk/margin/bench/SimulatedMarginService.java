@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToLongBiFunction;
+import java.util.stream.Collectors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.joda.beans.ser.JodaBeanSer;
+
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.common.ServiceInvokerBuilder;
+import com.opengamma.sdk.common.auth.Credentials;
+import com.opengamma.sdk.margin.Ccp;
+import com.opengamma.sdk.margin.CcpInfo;
+import com.opengamma.sdk.margin.CcpsResult;
+import com.opengamma.sdk.margin.MarginBreakdown;
+import com.opengamma.sdk.margin.MarginCalcMode;
+import com.opengamma.sdk.margin.MarginCalcRequest;
+import com.opengamma.sdk.margin.MarginCalcResult;
+import com.opengamma.sdk.margin.MarginCalcResultStatus;
+import com.opengamma.sdk.margin.MarginCalcType;
+import com.opengamma.sdk.margin.MarginSummary;
+import com.opengamma.sdk.margin.PortfolioItemSummary;
+import com.opengamma.sdk.margin.TestingAuthClient;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Simulated margin service, used by the benchmarks.
+ * <p>
+ * Each calculation completes after a duration chosen when it is created.
+ * The number of calls of each type is recorded.
+ * <p>
+ * The service optionally supports long polling, holding a poll that asks to wait using
+ * {@code Prefer: wait=N} until the calculation completes or the wait elapses.
+ * <p>
+ * The number of calculations the service works on at once can be limited, with further
+ * calculations queued until a worker is free.
+ * <p>
+ * Every CCP is listed as available, each with the same information.
+ */
+final class SimulatedMarginService implements AutoCloseable {
+
+  static final LocalDate VAL_DATE = LocalDate.of(2017, 6, 1);
+  static final MarginCalcRequest REQUEST = MarginCalcRequest.builder()
+      .calculationTypes(MarginCalcType.MARGIN)
+      .valuationDate(VAL_DATE)
+      .reportingCurrency("GBP")
+      .build();
+
+  private static final String RESPONSE_PENDING = JodaBeanSer.COMPACT.jsonWriter().write(
+      MarginCalcResult.of(
+          MarginCalcResultStatus.PENDING,
+          new HashSet<>(Arrays.asList(MarginCalcType.MARGIN)),
+          MarginCalcMode.SPOT,
+          VAL_DATE,
+          "GBP",
+          "GBP",
+          true,
+          Collections.emptyList(),
+          null,
+          null,
+          null,
+          Collections.emptyList()));
+  private static final String RESPONSE_COMPLETE = JodaBeanSer.COMPACT.jsonWriter().write(
+      MarginCalcResult.of(
+          MarginCalcResultStatus.COMPLETED,
+          new HashSet<>(Arrays.asList(MarginCalcType.MARGIN)),
+          MarginCalcMode.SPOT,
+          VAL_DATE,
+          "GBP",
+          "GBP",
+          true,
+          Collections.singletonList(PortfolioItemSummary.of("1", "SWAP", "MySwap")),
+          MarginSummary.of(125d, Collections.emptyList(), MarginBreakdown.of(125d, 125d, 0, 0)),
+          null,
+          null,
+          Collections.emptyList()));
+
+  private static final String RESPONSE_LIST_CCPS = JodaBeanSer.COMPACT.jsonWriter().write(
+      CcpsResult.of(Arrays.stream(Ccp.values()).map(Ccp::name).collect(Collectors.toList())));
+  private static final String RESPONSE_CCP_INFO = JodaBeanSer.COMPACT.jsonWriter().write(
+      CcpInfo.of(
+          Collections.singletonList(VAL_DATE),
+          "GBP",
+          Collections.singletonList("GBP"),
+          Collections.singletonList("GBP"),
+          new HashSet<>(Arrays.asList(MarginCalcType.MARGIN)),
+          new HashSet<>(Arrays.asList(MarginCalcMode.SPOT))));
+
+  // MockWebServer logs every request, which distorts the timings
+  private static final Logger SERVER_LOG = Logger.getLogger(MockWebServer.class.getName());
+  static {
+    SERVER_LOG.setLevel(Level.WARNING);
+  }
+
+  private final MockWebServer server = new MockWebServer();
+  private final Map<String, Long> completionNanos = new ConcurrentHashMap<>();
+  private final AtomicLong idCounter = new AtomicLong();
+  private final AtomicInteger creates = new AtomicInteger();
+  private final AtomicInteger polls = new AtomicInteger();
+  private final AtomicInteger deletes = new AtomicInteger();
+  private final Queue<Long> completionDelays = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private final AtomicInteger maxOutstanding = new AtomicInteger();
+  // the instant each worker becomes free, empty if the number of workers is unlimited
+  private final PriorityQueue<Long> workerFreeNanos = new PriorityQueue<>();
+  private final ToLongBiFunction<String, Long> durationNanos;
+  private final String retryAfter;
+  private final boolean longPolling;
+
+  /**
+   * Creates and starts the service.
+   *
+   * @param durationNanos  supplies the duration of each calculation from the request path and the calculation number
+   * @param retryAfter  the Retry-After header to send while pending, null for none
+   */
+  SimulatedMarginService(ToLongBiFunction<String, Long> durationNanos, String retryAfter) throws IOException {
+    this(durationNanos, retryAfter, false);
+  }
+
+  /**
+   * Creates and starts the service.
+   *
+   * @param durationNanos  supplies the duration of each calculation from the request path and the calculation number
+   * @param retryAfter  the Retry-After header to send while pending, null for none
+   * @param longPolling  whether polls that ask to wait are held until the calculation completes
+   */
+  SimulatedMarginService(ToLongBiFunction<String, Long> durationNanos, String retryAfter, boolean longPolling) throws IOException {
+    this.durationNanos = durationNanos;
+    this.retryAfter = retryAfter;
+    this.longPolling = longPolling;
+    // the request bodies are not needed, and retaining them would distort measures of memory
+    server.setBodyLimit(0);
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return SimulatedMarginService.this.dispatch(request);
+      }
+    });
+    server.start();
+  }
+
+  private MockResponse dispatch(RecordedRequest request) {
+    String path = request.getPath();
+    switch (request.getMethod()) {
+      case "POST": {
+        creates.incrementAndGet();
+        maxOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+        long counter = idCounter.incrementAndGet();
+        String id = Long.toString(counter);
+        completionNanos.put(id, completion(durationNanos.applyAsLong(path, counter)));
+        return new MockResponse()
+            .setResponseCode(202)
+            .setHeader("Location", server.url(path + "/" + id));
+      }
+      case "GET": {
+        if (path.endsWith("/ccps")) {
+          return json(RESPONSE_LIST_CCPS);
+        } else if (!path.contains("/calculations/")) {
+          return json(RESPONSE_CCP_INFO);
+        }
+        polls.incrementAndGet();
+        Long completion = completionNanos.get(path.substring(path.lastIndexOf('/') + 1));
+        if (completion == null) {
+          return new MockResponse().setResponseCode(404);
+        }
+        String prefer = request.getHeader("Prefer");
+        if (longPolling && prefer != null && prefer.startsWith("wait=")) {
+          long wait = Long.parseLong(prefer.substring(5));
+          holdUntil(Math.min(completion, System.nanoTime() + TimeUnit.SECONDS.toNanos(wait)));
+          return pollResponse(completion).setHeader("Preference-Applied", prefer);
+        }
+        return pollResponse(completion);
+      }
+      case "DELETE": {
+        deletes.incrementAndGet();
+        outstanding.decrementAndGet();
+        // the client deletes the calculation as soon as it has the result
+        Long completion = completionNanos.remove(path.substring(path.lastIndexOf('/') + 1));
+        if (completion != null) {
+          completionDelays.add(Math.max(System.nanoTime() - completion, 0));
+        }
+        return new MockResponse();
+      }
+      default:
+        return new MockResponse().setResponseCode(404);
+    }
+  }
+
+  // the completion of a new calculation, which starts when a worker is free
+  private long completion(long duration) {
+    long now = System.nanoTime();
+    synchronized (workerFreeNanos) {
+      if (workerFreeNanos.isEmpty()) {
+        return now + duration;
+      }
+      long completion = Math.max(now, workerFreeNanos.poll()) + duration;
+      workerFreeNanos.add(completion);
+      return completion;
+    }
+  }
+
+  // the response to a poll, depending on whether the calculation has completed
+  private MockResponse pollResponse(long completion) {
+    if (System.nanoTime() < completion) {
+      MockResponse response = new MockResponse()
+          .setHeader("Content-Type", "application/json")
+          .setBody(RESPONSE_PENDING);
+      return retryAfter != null ? response.setHeader("Retry-After", retryAfter) : response;
+    }
+    return new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(RESPONSE_COMPLETE);
+  }
+
+  // a successful JSON response
+  private static MockResponse json(String body) {
+    return new MockResponse()
+        .setHeader("Content-Type", "application/json")
+        .setBody(body);
+  }
+
+  // holds the response until the deadline
+  private static void holdUntil(long deadlineNanos) {
+    long remaining = deadlineNanos - System.nanoTime();
+    while (remaining > 0) {
+      LockSupport.parkNanos(remaining);
+      remaining = deadlineNanos - System.nanoTime();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // limits the number of calculations worked on at once, called before any are created
+  SimulatedMarginService limitWorkers(int workers) {
+    synchronized (workerFreeNanos) {
+      for (int i = 0; i < workers; i++) {
+        workerFreeNanos.add(Long.MIN_VALUE);
+      }
+    }
+    return this;
+  }
+
+  ServiceInvokerBuilder invokerBuilder() {
+    return ServiceInvoker.builder(Credentials.ofApiKey("user", "password"))
+        .serviceUrl(server.url("/"))
+        .authClientFactory(inv -> new TestingAuthClient());
+  }
+
+  int creates() {
+    return creates.get();
+  }
+
+  int polls() {
+    return polls.get();
+  }
+
+  int deletes() {
+    return deletes.get();
+  }
+
+  // the maximum number of calculations created but not yet deleted
+  int maxOutstanding() {
+    return maxOutstanding.get();
+  }
+
+  // the delays between each calculation completing and its deletion, sorted
+  long[] completionDelays() {
+    long[] delays = completionDelays.stream().mapToLong(Long::longValue).toArray();
+    Arrays.sort(delays);
+    return delays;
+  }
+
+  void resetCounts() {
+    creates.set(0);
+    polls.set(0);
+    deletes.set(0);
+    completionDelays.clear();
+    maxOutstanding.set(outstanding.get());
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.shutdown();
+  }
+
+}
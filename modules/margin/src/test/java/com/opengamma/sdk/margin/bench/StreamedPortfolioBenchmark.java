@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.io.BufferedWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Function;
+
+import com.opengamma.sdk.common.PollingStrategy;
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.margin.Ccp;
+import com.opengamma.sdk.margin.MarginCalcRequest;
+import com.opengamma.sdk.margin.MarginClient;
+import com.opengamma.sdk.margin.PortfolioDataFile;
+
+/**
+ * Benchmark measuring the heap needed to send a large portfolio file.
+ * <p>
+ * A CSV file of trades is written, then a calculation of it is run on the simulated service,
+ * using {@code PortfolioDataFile.of(Path)}, which holds the encoded data in memory,
+ * and {@code PortfolioDataFile.ofStreamed(Path)}, which encodes the data while the request is sent.
+ * The elapsed time, including compressing the file, and the peak heap used are reported.
+ * Run with a small maximum heap, such as {@code -Xmx48m}, to see the file sent only when streamed.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class StreamedPortfolioBenchmark {
+
+  private static final PollingStrategy STRATEGY = PollingStrategy.fixed(Duration.ofMillis(10));
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  optionally, the size of the file in MB
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    long size = (args.length > 0 ? Long.parseLong(args[0]) : 256) * 1_000_000;
+    Path path = Files.createTempFile("portfolio", ".csv");
+    try {
+      Random random = new Random(1);
+      try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+        for (long written = 0; written < size; ) {
+          String line = "T" + random.nextInt(10_000_000) + ",SWAP," + (random.nextBoolean() ? "GBP" : "USD") + "," +
+              random.nextInt(100) + "000000,2017-06-01,20" + (18 + random.nextInt(30)) + "-06-01," +
+              (random.nextInt(500) / 100d) + "\n";
+          writer.write(line);
+          written += line.length();
+        }
+      }
+      System.out.println(String.format(Locale.ENGLISH, "File %.0f MB", Files.size(path) / 1e6));
+      System.out.println("Mode        elapsed ms   peak heap MB");
+      run("in memory", path, PortfolioDataFile::of);
+      run("streamed", path, PortfolioDataFile::ofStreamed);
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  private static void run(String name, Path path, Function<Path, PortfolioDataFile> factory) throws Exception {
+    try (SimulatedMarginService service = new SimulatedMarginService((requestPath, id) -> 0, null);
+        ServiceInvoker invoker = service.invokerBuilder().pollingStrategy(STRATEGY).build()) {
+
+      MarginClient client = MarginClient.of(invoker);
+      System.gc();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        pool.resetPeakUsage();
+      }
+      long start = System.nanoTime();
+      try {
+        MarginCalcRequest request = SimulatedMarginService.REQUEST.toBuilder()
+            .portfolioData(Collections.singletonList(factory.apply(path)))
+            .build();
+        client.calculate(Ccp.LCH, request);
+      } catch (OutOfMemoryError ex) {
+        System.out.println(String.format(Locale.ENGLISH, "%-10s  out of memory", name));
+        return;
+      }
+      long elapsed = System.nanoTime() - start;
+      long peak = 0;
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          peak += pool.getPeakUsage().getUsed();
+        }
+      }
+      System.out.println(String.format(Locale.ENGLISH, "%-10s %11.0f %14.1f", name, elapsed / 1e6, peak / 1e6));
+    }
+  }
+
+}
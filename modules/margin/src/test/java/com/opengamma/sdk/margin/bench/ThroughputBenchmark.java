@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2026 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sdk.margin.bench;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import com.opengamma.sdk.common.PollingStrategy;
+import com.opengamma.sdk.common.ServiceInvoker;
+import com.opengamma.sdk.common.ServiceInvokerBuilder;
+import com.opengamma.sdk.margin.Ccp;
+import com.opengamma.sdk.margin.MarginCalcResult;
+import com.opengamma.sdk.margin.MarginClient;
+
+/**
+ * Benchmark comparing the throughput of the executor modes of the invoker.
+ * <p>
+ * A batch of calculations, each taking 200ms on the simulated service, is started at once
+ * and the number of calculations completed per second is reported. The blocking mode can only
+ * have one calculation in progress per platform thread, so it is measured with a smaller batch.
+ * The modes are:
+ * <ul>
+ * <li>platform pool, blocking - {@code calculate()} run on the standard executor, one calculation per thread
+ * <li>platform pool, async - {@code calculateAsync()} with the standard executor, using non-blocking calls
+ * <li>virtual threads - {@code calculateAsync()} with {@code virtualThreads()}, one virtual thread per calculation
+ * </ul>
+ * The virtual thread mode requires Java 21 or later, and is skipped otherwise.
+ * <p>
+ * Run using the main method; this is not part of the test suite.
+ */
+public final class ThroughputBenchmark {
+
+  private static final Duration CALC_DURATION = Duration.ofMillis(200);
+  private static final PollingStrategy STRATEGY = PollingStrategy.fixed(Duration.ofMillis(50));
+  private static final int BLOCKING_CALCS_PER_THREAD = 40;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args  optionally, the batch sizes to run
+   * @throws Exception if an error occurs
+   */
+  public static void main(String[] args) throws Exception {
+    int[] sizes = args.length > 0 ? parse(args) : new int[] {1_000, 10_000};
+    boolean virtual = isVirtualThreadsSupported();
+    // the blocking mode only runs one calculation per platform thread, so a smaller batch shows its throughput
+    int blockingSize = BLOCKING_CALCS_PER_THREAD * Runtime.getRuntime().availableProcessors();
+    System.out.println("Mode                         concurrency       calcs   calcs/sec");
+    for (int size : sizes) {
+      run("platform pool, blocking", size, Math.min(size, blockingSize), builder -> builder, ThroughputBenchmark::calculateOnExecutor);
+      run("platform pool, async", size, size, builder -> builder, ThroughputBenchmark::calculateAsync);
+      if (virtual) {
+        run("virtual threads", size, size, ServiceInvokerBuilder::virtualThreads, ThroughputBenchmark::calculateAsync);
+      }
+    }
+  }
+
+  private static boolean isVirtualThreadsSupported() {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException ex) {
+      return false;
+    }
+  }
+
+  private static int[] parse(String[] args) {
+    int[] sizes = new int[args.length];
+    for (int i = 0; i < args.length; i++) {
+      sizes[i] = Integer.parseInt(args[i]);
+    }
+    return sizes;
+  }
+
+  // the behaviour prior to non-blocking calls, one executor thread per calculation
+  private static CompletableFuture<MarginCalcResult> calculateOnExecutor(ServiceInvoker invoker, MarginClient client) {
+    return CompletableFuture.supplyAsync(() -> client.calculate(Ccp.LCH, SimulatedMarginService.REQUEST), invoker.getExecutor());
+  }
+
+  private static CompletableFuture<MarginCalcResult> calculateAsync(ServiceInvoker invoker, MarginClient client) {
+    return client.calculateAsync(Ccp.LCH, SimulatedMarginService.REQUEST);
+  }
+
+  private static void run(
+      String name,
+      int concurrency,
+      int size,
+      Function<ServiceInvokerBuilder, ServiceInvokerBuilder> configFn,
+      Calculator calculator) throws Exception {
+
+    try (SimulatedMarginService service = new SimulatedMarginService((path, id) -> CALC_DURATION.toNanos(), null);
+        ServiceInvoker invoker = configFn.apply(service.invokerBuilder().pollingStrategy(STRATEGY)).build()) {
+      MarginClient client = MarginClient.of(invoker);
+      // warm up
+      calculator.calculate(invoker, client).join();
+
+      long start = System.nanoTime();
+      List<CompletableFuture<MarginCalcResult>> futures = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        futures.add(calculator.calculate(invoker, client));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+      long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+      System.out.println(String.format(
+          Locale.ENGLISH,
+          "%-28s %11d %11d %11.0f",
+          name,
+          concurrency,
+          size,
+          size * 1000d / elapsedMillis));
+    }
+  }
+
+  // starts a calculation
+  private interface Calculator {
+    CompletableFuture<MarginCalcResult> calculate(ServiceInvoker invoker, MarginClient client);
+  }
+
+}